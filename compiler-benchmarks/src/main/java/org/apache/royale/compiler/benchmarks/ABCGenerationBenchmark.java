@@ -0,0 +1,101 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.benchmarks;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.apache.royale.compiler.internal.projects.RoyaleProject;
+import org.apache.royale.compiler.internal.workspaces.Workspace;
+import org.apache.royale.compiler.units.ICompilationUnit;
+
+/**
+ * Generates ABC for the synthetic corpus. Every invocation compiles in a fresh
+ * workspace whose units have already been parsed and semantically analyzed,
+ * so the measured time is dominated by the ABC generating reducer and the
+ * peephole optimizer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 10)
+@Measurement(iterations = 20)
+@Fork(1)
+public class ABCGenerationBenchmark
+{
+    @Param({"200"})
+    public int classCount;
+
+    private File sourceRoot;
+    private Workspace workspace;
+    private List<ICompilationUnit> units;
+
+    @Setup(Level.Trial)
+    public void generateCorpus() throws Exception
+    {
+        sourceRoot = BenchmarkCorpus.generate(classCount);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteCorpus() throws Exception
+    {
+        FileUtils.deleteDirectory(sourceRoot);
+    }
+
+    @Setup(Level.Iteration)
+    public void setUp() throws Exception
+    {
+        workspace = new Workspace();
+        final RoyaleProject project = BenchmarkProjects.createSWFProject(workspace, sourceRoot);
+        units = BenchmarkProjects.getSyntheticUnits(workspace, project, sourceRoot, classCount);
+        BenchmarkProjects.analyze(units);
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown()
+    {
+        workspace.close();
+    }
+
+    @Benchmark
+    public int generateABC() throws InterruptedException
+    {
+        int size = 0;
+        for (ICompilationUnit unit : units)
+            size += unit.getABCBytesRequest().get().getABCBytes().length;
+        return size;
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.benchmarks;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.apache.royale.abc.ABCConstants;
+import org.apache.royale.abc.ABCLinker;
+import org.apache.royale.compiler.internal.projects.RoyaleProject;
+import org.apache.royale.compiler.internal.workspaces.Workspace;
+import org.apache.royale.compiler.units.ICompilationUnit;
+
+/**
+ * Links the ABC of the synthetic corpus into a single ABC block, with and
+ * without the optimizing passes, on the calling thread or on a thread pool.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ABCLinkerBenchmark
+{
+    @Param({"200"})
+    public int classCount;
+
+    @Param({"true", "false"})
+    public boolean optimize;
+
+    @Param({"true", "false"})
+    public boolean parallel;
+
+    private List<byte[]> inputABCs;
+
+    private ExecutorService executorService;
+
+    private int threadCount;
+
+    @Setup
+    public void setUp() throws Exception
+    {
+        final File sourceRoot = BenchmarkCorpus.generate(classCount);
+        final Workspace workspace = new Workspace();
+        try
+        {
+            final RoyaleProject project = BenchmarkProjects.createSWFProject(workspace, sourceRoot);
+            inputABCs = new ArrayList<byte[]>(classCount);
+            for (ICompilationUnit unit : BenchmarkProjects.getSyntheticUnits(workspace, project, sourceRoot, classCount))
+                inputABCs.add(unit.getABCBytesRequest().get().getABCBytes());
+        }
+        finally
+        {
+            workspace.close();
+            FileUtils.deleteDirectory(sourceRoot);
+        }
+        if (parallel)
+        {
+            threadCount = Runtime.getRuntime().availableProcessors();
+            executorService = Executors.newFixedThreadPool(threadCount);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        if (executorService != null)
+            executorService.shutdown();
+    }
+
+    @Benchmark
+    public int linkABC() throws Exception
+    {
+        final ABCLinker.ABCLinkerSettings settings = new ABCLinker.ABCLinkerSettings();
+        settings.setOptimize(optimize);
+        settings.setExecutorService(executorService, threadCount);
+        return ABCLinker.linkABC(inputABCs, ABCConstants.VERSION_ABC_MAJOR_FP10, ABCConstants.VERSION_ABC_MINOR_FP10, settings).length;
+    }
+}
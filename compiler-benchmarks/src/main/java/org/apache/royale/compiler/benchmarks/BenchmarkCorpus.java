@@ -0,0 +1,217 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.commons.io.FileUtils;
+
+import org.apache.royale.utils.FilenameNormalization;
+
+/**
+ * Source code for the benchmarks.
+ * <p>
+ * Two corpora are used. The checked-in corpus is the AS3 and MXML test code
+ * of compiler-jx, which is representative of real code but does not compile
+ * without the Royale framework SWCs; it is only tokenized and parsed. The
+ * synthetic corpus is generated into a temporary directory and compiles
+ * against js.swc alone, so it is used for everything from definition
+ * resolution onwards.
+ * <p>
+ * Both locations are relative to the compiler-benchmarks directory by default
+ * and can be changed with the <code>royale.benchmarks.corpus</code> and
+ * <code>royale.benchmarks.jsswc</code> system properties.
+ */
+public final class BenchmarkCorpus
+{
+    public static final String CORPUS_PROPERTY = "royale.benchmarks.corpus";
+    public static final String JS_SWC_PROPERTY = "royale.benchmarks.jsswc";
+
+    private static final String DEFAULT_CORPUS = "../compiler-jx/src/test/resources";
+    private static final String DEFAULT_JS_SWC = "../compiler-externc/target/js.swc";
+
+    /**
+     * Package of the generated classes.
+     */
+    public static final String SYNTHETIC_PACKAGE = "bench";
+
+    private BenchmarkCorpus()
+    {
+    }
+
+    /**
+     * @return the root of the checked-in corpus.
+     */
+    public static File getCheckedInCorpus()
+    {
+        final File corpus = new File(FilenameNormalization.normalize(System.getProperty(CORPUS_PROPERTY, DEFAULT_CORPUS)));
+        if (!corpus.isDirectory())
+            throw new IllegalStateException("Benchmark corpus not found: " + corpus + ". Set -D" + CORPUS_PROPERTY + ".");
+        return corpus;
+    }
+
+    /**
+     * @return the js.swc library that the synthetic corpus compiles against.
+     */
+    public static File getJSSWC()
+    {
+        final File swc = new File(FilenameNormalization.normalize(System.getProperty(JS_SWC_PROPERTY, DEFAULT_JS_SWC)));
+        if (!swc.isFile())
+            throw new IllegalStateException("js.swc not found: " + swc + ". Build compiler-externc or set -D" + JS_SWC_PROPERTY + ".");
+        return swc;
+    }
+
+    /**
+     * Read all the files with the specified extension under a directory.
+     * 
+     * @param root directory to search.
+     * @param extension file extension, such as ".as".
+     * @return file contents keyed by normalized path, in path order.
+     * @throws IOException error reading a file.
+     */
+    public static Map<String, String> readSources(File root, String extension) throws IOException
+    {
+        final Map<String, String> result = new TreeMap<String, String>();
+        for (File file : FileUtils.listFiles(root, new String[] {extension.substring(1)}, true))
+            result.put(FilenameNormalization.normalize(file.getAbsolutePath()), FileUtils.readFileToString(file, "UTF-8"));
+        return result;
+    }
+
+    /**
+     * Generate the synthetic corpus: an interface and a set of classes that
+     * extend and call each other, with the loops, conditionals, closures,
+     * accessors and string and array operations found in typical application
+     * code.
+     * 
+     * @param classCount number of classes to generate.
+     * @return the source root of the generated code.
+     * @throws IOException error writing the files.
+     */
+    public static File generate(int classCount) throws IOException
+    {
+        final File root = File.createTempFile("royale-benchmarks", "");
+        root.delete();
+        final File packageDirectory = new File(root, SYNTHETIC_PACKAGE);
+        packageDirectory.mkdirs();
+
+        FileUtils.writeStringToFile(new File(packageDirectory, "IShape.as"),
+                "package " + SYNTHETIC_PACKAGE + "\n" +
+                "{\n" +
+                "    public interface IShape\n" +
+                "    {\n" +
+                "        function get name():String;\n" +
+                "        function area(scale:Number):Number;\n" +
+                "    }\n" +
+                "}\n", "UTF-8");
+
+        for (int i = 0; i < classCount; i++)
+            FileUtils.writeStringToFile(new File(packageDirectory, getSyntheticClassName(i) + ".as"), generateClass(i), "UTF-8");
+
+        return root;
+    }
+
+    /**
+     * @param index index of a generated class.
+     * @return the base name of the generated class.
+     */
+    public static String getSyntheticClassName(int index)
+    {
+        return "Shape" + index;
+    }
+
+    private static String generateClass(int index)
+    {
+        final String name = getSyntheticClassName(index);
+        // Inheritance chains are five classes deep, and every class also
+        // refers to a class from another chain.
+        final String base = index % 5 == 0 ? null : getSyntheticClassName(index - 1);
+        final String other = getSyntheticClassName(index / 2);
+
+        final StringBuilder source = new StringBuilder();
+        source.append("package ").append(SYNTHETIC_PACKAGE).append("\n");
+        source.append("{\n");
+        source.append("    public class ").append(name);
+        if (base != null)
+            source.append(" extends ").append(base);
+        else
+            source.append(" implements IShape");
+        source.append("\n    {\n");
+        source.append("        public static const ID:int = ").append(index).append(";\n\n");
+        source.append("        public function ").append(name).append("(width:Number = 1, height:Number = 1)\n");
+        source.append("        {\n");
+        if (base != null)
+            source.append("            super(width, height);\n");
+        source.append("            _width").append(index).append(" = width;\n");
+        source.append("            _height").append(index).append(" = height;\n");
+        source.append("        }\n\n");
+        source.append("        private var _width").append(index).append(":Number;\n");
+        source.append("        private var _height").append(index).append(":Number;\n");
+        source.append("        protected var items").append(index).append(":Array = [];\n\n");
+        source.append("        public ").append(base != null ? "override " : "").append("function get name():String\n");
+        source.append("        {\n");
+        source.append("            return \"").append(name).append("\" + ID;\n");
+        source.append("        }\n\n");
+        source.append("        public ").append(base != null ? "override " : "").append("function area(scale:Number):Number\n");
+        source.append("        {\n");
+        source.append("            var result:Number = _width").append(index).append(" * _height").append(index).append(" * scale;\n");
+        if (base != null)
+            source.append("            result += super.area(scale) / 2;\n");
+        source.append("            for (var i:int = 0; i < items").append(index).append(".length; i++)\n");
+        source.append("            {\n");
+        source.append("                if (items").append(index).append("[i] is IShape)\n");
+        source.append("                    result += IShape(items").append(index).append("[i]).area(scale);\n");
+        source.append("                else if (i % 2 == 0)\n");
+        source.append("                    result -= Math.sqrt(i);\n");
+        source.append("            }\n");
+        source.append("            return Math.max(0, result);\n");
+        source.append("        }\n\n");
+        source.append("        public function combine").append(index).append("(shapes:Array):").append(other).append("\n");
+        source.append("        {\n");
+        source.append("            var total:Number = 0;\n");
+        source.append("            var names:Array = [];\n");
+        source.append("            shapes.forEach(function(shape:IShape, index:int, array:Array):void\n");
+        source.append("            {\n");
+        source.append("                total += shape.area(index + 1);\n");
+        source.append("                names.push(shape.name.toUpperCase());\n");
+        source.append("            });\n");
+        source.append("            var label:String = names.join(\", \");\n");
+        source.append("            switch (label.length % 3)\n");
+        source.append("            {\n");
+        source.append("                case 0:\n");
+        source.append("                    total *= 2;\n");
+        source.append("                    break;\n");
+        source.append("                case 1:\n");
+        source.append("                    total += label.charCodeAt(0);\n");
+        source.append("                    break;\n");
+        source.append("                default:\n");
+        source.append("                    total = -total;\n");
+        source.append("            }\n");
+        source.append("            var result:").append(other).append(" = new ").append(other).append("(total, label.length);\n");
+        source.append("            items").append(index).append(".push(result);\n");
+        source.append("            return result;\n");
+        source.append("        }\n");
+        source.append("    }\n");
+        source.append("}\n");
+        return source.toString();
+    }
+}
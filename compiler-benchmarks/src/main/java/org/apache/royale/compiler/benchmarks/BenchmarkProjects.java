@@ -0,0 +1,115 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.benchmarks;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.royale.compiler.config.Configurator;
+import org.apache.royale.compiler.driver.IBackend;
+import org.apache.royale.compiler.internal.definitions.DefinitionBase;
+import org.apache.royale.compiler.internal.driver.js.royale.RoyaleBackend;
+import org.apache.royale.compiler.internal.projects.RoyaleJSProject;
+import org.apache.royale.compiler.internal.projects.RoyaleProject;
+import org.apache.royale.compiler.internal.projects.RoyaleProjectConfigurator;
+import org.apache.royale.compiler.internal.workspaces.Workspace;
+import org.apache.royale.compiler.projects.ICompilerProject;
+import org.apache.royale.compiler.units.ICompilationUnit;
+import org.apache.royale.utils.FilenameNormalization;
+
+/**
+ * Creates the projects that the benchmarks compile the synthetic corpus in.
+ * The set up mirrors the compiler-jx test base classes.
+ */
+final class BenchmarkProjects
+{
+    private BenchmarkProjects()
+    {
+    }
+
+    /**
+     * @param workspace workspace to create the project in.
+     * @param sourceRoot source path of the project.
+     * @return a project that compiles to ABC against js.swc.
+     */
+    static RoyaleProject createSWFProject(Workspace workspace, File sourceRoot)
+    {
+        final RoyaleProject project = new RoyaleProject(workspace);
+        RoyaleProjectConfigurator.configure(project);
+        setPaths(project, sourceRoot);
+        return project;
+    }
+
+    /**
+     * @param workspace workspace to create the project in.
+     * @param sourceRoot source path of the project.
+     * @return a project that compiles to JavaScript with the Royale backend.
+     */
+    static RoyaleJSProject createJSProject(Workspace workspace, File sourceRoot)
+    {
+        DefinitionBase.setPerformanceCachingEnabled(true);
+        final IBackend backend = new RoyaleBackend();
+        final RoyaleJSProject project = new RoyaleJSProject(workspace, backend);
+        RoyaleProjectConfigurator.configure(project);
+        try
+        {
+            final Configurator projectConfigurator = backend.createConfigurator();
+            project.setTargetSettings(projectConfigurator.getTargetSettings(null));
+        }
+        catch (UnsupportedOperationException e)
+        {
+        }
+        setPaths(project, sourceRoot);
+        return project;
+    }
+
+    private static void setPaths(RoyaleProject project, File sourceRoot)
+    {
+        project.setSourcePath(Collections.singletonList(sourceRoot));
+        project.setLibraries(Collections.singletonList(BenchmarkCorpus.getJSSWC()));
+    }
+
+    /**
+     * @return the compilation units of the synthetic classes, in class order.
+     */
+    static List<ICompilationUnit> getSyntheticUnits(Workspace workspace, ICompilerProject project, File sourceRoot, int classCount)
+    {
+        final File packageDirectory = new File(sourceRoot, BenchmarkCorpus.SYNTHETIC_PACKAGE);
+        final List<ICompilationUnit> result = new ArrayList<ICompilationUnit>(classCount);
+        for (int i = 0; i < classCount; i++)
+        {
+            final File file = new File(packageDirectory, BenchmarkCorpus.getSyntheticClassName(i) + ".as");
+            result.addAll(workspace.getCompilationUnits(FilenameNormalization.normalize(file.getAbsolutePath()), project));
+        }
+        return result;
+    }
+
+    /**
+     * Run semantic analysis on the specified units, which parses them and
+     * builds their scopes.
+     */
+    static void analyze(List<ICompilationUnit> units) throws InterruptedException
+    {
+        for (ICompilationUnit unit : units)
+            unit.getOutgoingDependenciesRequest().get();
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.benchmarks;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.apache.royale.compiler.common.DependencyType;
+import org.apache.royale.compiler.definitions.IDefinition;
+import org.apache.royale.compiler.internal.definitions.ScopedDefinitionBase;
+import org.apache.royale.compiler.internal.projects.RoyaleProject;
+import org.apache.royale.compiler.internal.scopes.ASScope;
+import org.apache.royale.compiler.internal.workspaces.Workspace;
+import org.apache.royale.compiler.units.ICompilationUnit;
+
+/**
+ * Resolves own, inherited, global and missing names in the class scopes of
+ * the synthetic corpus, either with warm {@code ASScopeCache}s or with caches
+ * that are reset before every invocation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DefinitionResolutionBenchmark
+{
+    @Param({"200"})
+    public int classCount;
+
+    @Param({"true", "false"})
+    public boolean warmCache;
+
+    private File sourceRoot;
+    private Workspace workspace;
+    private RoyaleProject project;
+    private List<ICompilationUnit> units;
+    private List<ASScope> scopes;
+    private List<String[]> names;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception
+    {
+        sourceRoot = BenchmarkCorpus.generate(classCount);
+        workspace = new Workspace();
+        project = BenchmarkProjects.createSWFProject(workspace, sourceRoot);
+        units = BenchmarkProjects.getSyntheticUnits(workspace, project, sourceRoot, classCount);
+        BenchmarkProjects.analyze(units);
+
+        scopes = new ArrayList<ASScope>(classCount);
+        names = new ArrayList<String[]>(classCount);
+        for (int i = 0; i < classCount; i++)
+        {
+            final String className = BenchmarkCorpus.getSyntheticClassName(i);
+            final IDefinition definition = project.resolveQNameToDefinition(BenchmarkCorpus.SYNTHETIC_PACKAGE + "." + className);
+            scopes.add(((ScopedDefinitionBase)definition).getContainedScope());
+            names.add(new String[] {
+                "name", "area", "ID", "items" + i, "items" + Math.max(0, i - 1),
+                "combine" + i, BenchmarkCorpus.getSyntheticClassName(i / 2),
+                "IShape", "Math", "Array", "notDefined" + i
+            });
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void resetCaches()
+    {
+        if (warmCache)
+            return;
+        for (ICompilationUnit unit : units)
+            project.resetScopeCacheForCompilationUnit(unit);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception
+    {
+        workspace.close();
+        FileUtils.deleteDirectory(sourceRoot);
+    }
+
+    @Benchmark
+    public int findProperty()
+    {
+        int found = 0;
+        for (int i = 0; i < scopes.size(); i++)
+        {
+            final ASScope scope = scopes.get(i);
+            for (String name : names.get(i))
+            {
+                if (scope.findProperty(project, name, DependencyType.EXPRESSION) != null)
+                    found++;
+            }
+        }
+        return found;
+    }
+}
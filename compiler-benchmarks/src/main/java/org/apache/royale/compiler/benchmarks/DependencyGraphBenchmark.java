@@ -0,0 +1,152 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+
+package org.apache.royale.compiler.benchmarks;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.apache.royale.compiler.common.DependencyType;
+import org.apache.royale.compiler.internal.projects.DependencyGraph;
+import org.apache.royale.compiler.internal.projects.RoyaleProject;
+import org.apache.royale.compiler.internal.workspaces.Workspace;
+import org.apache.royale.compiler.units.ICompilationUnit;
+
+/**
+ * Adds dependencies between the units of the synthetic corpus to a
+ * {@link DependencyGraph} from one thread and from as many threads as there
+ * are processors, like parallel semantic analysis does. Each thread walks
+ * the pairs of units in its own order, so the threads update both the same
+ * and different edges. Comparing the throughput of the two benchmarks shows
+ * how much the threads slow each other down.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DependencyGraphBenchmark
+{
+    @Param({"200"})
+    public int classCount;
+
+    private File sourceRoot;
+    private Workspace workspace;
+    private ICompilationUnit[] units;
+    private String[] qnames;
+    private DependencyGraph graph;
+
+    /**
+     * The position of a thread in the sequence of unit pairs.
+     */
+    @State(Scope.Thread)
+    public static class Cursor
+    {
+        private static int nextSeed;
+
+        private int position;
+        private int stride;
+
+        @Setup(Level.Trial)
+        public void setUp()
+        {
+            synchronized (Cursor.class)
+            {
+                position = nextSeed * 7919;
+                stride = 2 * nextSeed + 1;
+                nextSeed++;
+            }
+        }
+
+        int next()
+        {
+            position += stride;
+            return position & 0x7fffffff;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception
+    {
+        sourceRoot = BenchmarkCorpus.generate(classCount);
+        workspace = new Workspace();
+        final RoyaleProject project = BenchmarkProjects.createSWFProject(workspace, sourceRoot);
+        final List<ICompilationUnit> unitList = BenchmarkProjects.getSyntheticUnits(workspace, project, sourceRoot, classCount);
+        units = unitList.toArray(new ICompilationUnit[unitList.size()]);
+        qnames = new String[units.length];
+        for (int i = 0; i < units.length; i++)
+            qnames[i] = BenchmarkCorpus.SYNTHETIC_PACKAGE + "." + BenchmarkCorpus.getSyntheticClassName(i);
+    }
+
+    @Setup(Level.Iteration)
+    public void createGraph()
+    {
+        graph = new DependencyGraph();
+        graph.addCompilationUnits(Arrays.asList(units));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception
+    {
+        workspace.close();
+        FileUtils.deleteDirectory(sourceRoot);
+    }
+
+    private void addDependency(Cursor cursor)
+    {
+        final int pair = cursor.next();
+        final int from = pair % units.length;
+        final int to = (pair / units.length) % units.length;
+        graph.addDependency(units[from], units[to], DependencyType.EXPRESSION, qnames[to]);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void addDependencySingleThread(Cursor cursor)
+    {
+        addDependency(cursor);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public void addDependencyAllThreads(Cursor cursor)
+    {
+        addDependency(cursor);
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.apache.royale.compiler.codegen.js.IJSWriter;
+import org.apache.royale.compiler.internal.projects.RoyaleJSProject;
+import org.apache.royale.compiler.internal.workspaces.Workspace;
+import org.apache.royale.compiler.problems.ICompilerProblem;
+import org.apache.royale.compiler.units.ICompilationUnit;
+
+/**
+ * Emits JavaScript for the synthetic corpus with the Royale backend. The units
+ * are analyzed once, so the measured time is spent in the JS emitters.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JSEmitterBenchmark
+{
+    @Param({"200"})
+    public int classCount;
+
+    private File sourceRoot;
+    private Workspace workspace;
+    private RoyaleJSProject project;
+    private List<ICompilationUnit> units;
+
+    @Setup
+    public void setUp() throws Exception
+    {
+        sourceRoot = BenchmarkCorpus.generate(classCount);
+        workspace = new Workspace();
+        project = BenchmarkProjects.createJSProject(workspace, sourceRoot);
+        units = BenchmarkProjects.getSyntheticUnits(workspace, project, sourceRoot, classCount);
+        BenchmarkProjects.analyze(units);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception
+    {
+        workspace.close();
+        FileUtils.deleteDirectory(sourceRoot);
+    }
+
+    @Benchmark
+    public int emitJS() throws Exception
+    {
+        int size = 0;
+        final List<ICompilerProblem> problems = new ArrayList<ICompilerProblem>();
+        for (ICompilationUnit unit : units)
+        {
+            final IJSWriter writer = (IJSWriter)project.getBackend().createWriter(project, problems, unit, false);
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try
+            {
+                writer.writeTo(out, null, null);
+            }
+            finally
+            {
+                writer.close();
+            }
+            size += out.size();
+        }
+        return size;
+    }
+}
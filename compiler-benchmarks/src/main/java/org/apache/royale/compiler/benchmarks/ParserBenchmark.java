@@ -0,0 +1,158 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.benchmarks;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.apache.royale.compiler.internal.filespecs.StringFileSpecification;
+import org.apache.royale.compiler.internal.mxml.MXMLData;
+import org.apache.royale.compiler.internal.parsing.as.ASParser;
+import org.apache.royale.compiler.internal.parsing.as.StreamingASTokenizer;
+import org.apache.royale.compiler.internal.parsing.mxml.MXMLToken;
+import org.apache.royale.compiler.internal.parsing.mxml.MXMLTokenizer;
+import org.apache.royale.compiler.internal.tree.as.FileNode;
+import org.apache.royale.compiler.internal.workspaces.Workspace;
+
+/**
+ * Parses the checked-in AS3 corpus into syntax trees and the MXML corpus into
+ * {@link MXMLData}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBenchmark
+{
+    private Map<String, String> asSources;
+    private Map<String, String> mxmlSources;
+    private Workspace workspace;
+    private long asTokenCount;
+
+    @Setup
+    public void setUp() throws IOException
+    {
+        asSources = BenchmarkCorpus.readSources(BenchmarkCorpus.getCheckedInCorpus(), ".as");
+        mxmlSources = BenchmarkCorpus.readSources(BenchmarkCorpus.getCheckedInCorpus(), ".mxml");
+        workspace = new Workspace();
+
+        for (Map.Entry<String, String> source : asSources.entrySet())
+        {
+            final StreamingASTokenizer tokenizer = new StreamingASTokenizer();
+            try
+            {
+                tokenizer.setPath(source.getKey());
+                tokenizer.setReader(new StringReader(source.getValue()));
+                while (tokenizer.next() != null)
+                    asTokenCount++;
+            }
+            finally
+            {
+                tokenizer.close();
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        workspace.close();
+    }
+
+    /**
+     * Counts the tokens of the files parsed by the throughput benchmarks, so
+     * that JMH reports the number of tokens parsed per second.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class TokenCounter
+    {
+        public long tokens;
+
+        @Setup(Level.Iteration)
+        public void reset()
+        {
+            tokens = 0;
+        }
+    }
+
+    @Benchmark
+    public int parseAS()
+    {
+        int childCount = 0;
+        for (Map.Entry<String, String> source : asSources.entrySet())
+        {
+            final FileNode fileNode = ASParser.parseFile(
+                    new StringFileSpecification(source.getKey(), source.getValue()), workspace);
+            childCount += fileNode.getChildCount();
+        }
+        return childCount;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public void parseASThroughput(TokenCounter counter)
+    {
+        parseAS();
+        counter.tokens += asTokenCount;
+    }
+
+    @Benchmark
+    public int parseMXML() throws IOException
+    {
+        int unitCount = 0;
+        for (Map.Entry<String, String> source : mxmlSources.entrySet())
+        {
+            final StringFileSpecification fileSpec = new StringFileSpecification(source.getKey(), source.getValue());
+            final MXMLTokenizer tokenizer = new MXMLTokenizer(fileSpec);
+            try
+            {
+                final List<MXMLToken> tokens = tokenizer.parseTokens(new StringReader(source.getValue()));
+                final MXMLData mxmlData = new MXMLData(tokens, tokenizer.getPrefixMap(), fileSpec);
+                unitCount += mxmlData.getNumUnits();
+            }
+            finally
+            {
+                tokenizer.close();
+            }
+        }
+        return unitCount;
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.benchmarks;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.apache.royale.abc.ABCParser;
+import org.apache.royale.abc.instructionlist.InstructionList;
+import org.apache.royale.abc.optimize.PeepholeOptimizerMethodBodyVisitor;
+import org.apache.royale.abc.semantics.Instruction;
+import org.apache.royale.abc.semantics.InstructionFactory;
+import org.apache.royale.abc.semantics.Label;
+import org.apache.royale.abc.semantics.MethodBodyInfo;
+import org.apache.royale.abc.semantics.MethodInfo;
+import org.apache.royale.abc.visitors.IMethodBodyVisitor;
+import org.apache.royale.abc.visitors.IMethodVisitor;
+import org.apache.royale.abc.visitors.NilABCVisitor;
+import org.apache.royale.abc.visitors.NilMethodBodyVisitor;
+import org.apache.royale.abc.visitors.NilMethodVisitor;
+import org.apache.royale.abc.visitors.NilVisitors;
+import org.apache.royale.compiler.internal.projects.RoyaleProject;
+import org.apache.royale.compiler.internal.workspaces.Workspace;
+import org.apache.royale.compiler.units.ICompilationUnit;
+
+/**
+ * Runs the peephole optimizer over the method bodies of the synthetic corpus,
+ * as decoded from its ABC, without the rest of the linker.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PeepholeOptimizerBenchmark
+{
+    @Param({"200"})
+    public int classCount;
+
+    private List<InstructionList> methodBodies;
+
+    @Setup
+    public void setUp() throws Exception
+    {
+        final File sourceRoot = BenchmarkCorpus.generate(classCount);
+        final Workspace workspace = new Workspace();
+        try
+        {
+            final RoyaleProject project = BenchmarkProjects.createSWFProject(workspace, sourceRoot);
+            methodBodies = new ArrayList<InstructionList>();
+            for (ICompilationUnit unit : BenchmarkProjects.getSyntheticUnits(workspace, project, sourceRoot, classCount))
+            {
+                final ABCParser parser = new ABCParser(unit.getABCBytesRequest().get().getABCBytes());
+                parser.parseABC(new MethodBodyCollector(methodBodies));
+            }
+        }
+        finally
+        {
+            workspace.close();
+            FileUtils.deleteDirectory(sourceRoot);
+        }
+    }
+
+    @Benchmark
+    public int optimize()
+    {
+        int size = 0;
+        for (InstructionList methodBody : methodBodies)
+        {
+            final PeepholeOptimizerMethodBodyVisitor optimizer =
+                new PeepholeOptimizerMethodBodyVisitor(NilVisitors.NIL_METHOD_BODY_VISITOR);
+            optimizer.visitInstructionList(methodBody);
+            optimizer.visitEnd();
+            size += methodBody.size();
+        }
+        return size;
+    }
+
+    /**
+     * Collects the instructions and labels of the method bodies of an ABC.
+     */
+    private static final class MethodBodyCollector extends NilABCVisitor
+    {
+        MethodBodyCollector(List<InstructionList> methodBodies)
+        {
+            this.methodBodies = methodBodies;
+        }
+
+        private final List<InstructionList> methodBodies;
+
+        @Override
+        public IMethodVisitor visitMethod(MethodInfo minfo)
+        {
+            return new NilMethodVisitor()
+            {
+                @Override
+                public IMethodBodyVisitor visitBody(MethodBodyInfo mbi)
+                {
+                    final InstructionList instructions = new InstructionList();
+                    methodBodies.add(instructions);
+                    return new NilMethodBodyVisitor()
+                    {
+                        @Override
+                        public void visitInstruction(int opcode)
+                        {
+                            instructions.addInstruction(InstructionFactory.getInstruction(opcode));
+                        }
+
+                        @Override
+                        public void visitInstruction(int opcode, int immediate_operand)
+                        {
+                            instructions.addInstruction(InstructionFactory.getInstruction(opcode, immediate_operand));
+                        }
+
+                        @Override
+                        public void visitInstruction(int opcode, Object single_operand)
+                        {
+                            instructions.addInstruction(InstructionFactory.getInstruction(opcode, single_operand));
+                        }
+
+                        @Override
+                        public void visitInstruction(int opcode, Object[] operands)
+                        {
+                            instructions.addInstruction(InstructionFactory.getInstruction(opcode, operands));
+                        }
+
+                        @Override
+                        public void visitInstruction(Instruction instruction)
+                        {
+                            instructions.addInstruction(instruction);
+                        }
+
+                        @Override
+                        public void labelCurrent(Label l)
+                        {
+                            instructions.labelCurrent(l);
+                        }
+
+                        @Override
+                        public void labelNext(Label l)
+                        {
+                            instructions.labelNext(l);
+                        }
+                    };
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.royale.compiler.benchmarks;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.apache.royale.compiler.internal.filespecs.StringFileSpecification;
+import org.apache.royale.compiler.internal.parsing.as.ASParser;
+import org.apache.royale.compiler.internal.tree.as.FileNode;
+import org.apache.royale.compiler.internal.tree.as.NodeBase;
+import org.apache.royale.compiler.internal.workspaces.Workspace;
+import org.apache.royale.compiler.tree.as.IASNode;
+
+/**
+ * Parses the checked-in AS3 corpus and keeps the syntax trees, as a resident
+ * workspace does. After each iteration the heap retained by the trees is
+ * printed, with and without sharing identifier texts between files through
+ * the name interner of the workspace, along with how many of the node
+ * locations share the line table of their file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SyntaxTreeFootprintBenchmark
+{
+    @Param({"true", "false"})
+    public boolean internNames;
+
+    private Map<String, String> asSources;
+    private Workspace workspace;
+    private List<FileNode> fileNodes;
+    private long baseline;
+
+    @Setup(Level.Trial)
+    public void readCorpus() throws IOException
+    {
+        asSources = BenchmarkCorpus.readSources(BenchmarkCorpus.getCheckedInCorpus(), ".as");
+    }
+
+    @Setup(Level.Iteration)
+    public void setUp()
+    {
+        workspace = new Workspace();
+        workspace.getNameInterner().setEnabled(internNames);
+        fileNodes = new ArrayList<FileNode>(asSources.size());
+        baseline = getUsedHeap();
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown()
+    {
+        final long retained = getUsedHeap() - baseline;
+        System.out.println();
+        System.out.println("retained by " + fileNodes.size() + " syntax trees: " + (retained / 1024) + " KB, " +
+                           "name lookups: " + workspace.getNameInterner().getLookupCount() + ", " +
+                           "name copies: " + workspace.getNameInterner().getMissCount());
+        printLocationCounts();
+        fileNodes = null;
+        workspace.close();
+    }
+
+    @Benchmark
+    public int parseAndRetain()
+    {
+        for (Map.Entry<String, String> source : asSources.entrySet())
+        {
+            fileNodes.add(ASParser.parseFile(
+                    new StringFileSpecification(source.getKey(), source.getValue()), workspace));
+        }
+        return fileNodes.size();
+    }
+
+    private void printLocationCounts()
+    {
+        long nodes = 0;
+        long compact = 0;
+        final ArrayDeque<IASNode> pending = new ArrayDeque<IASNode>(fileNodes);
+        while (!pending.isEmpty())
+        {
+            final IASNode node = pending.pop();
+            nodes++;
+            if (node instanceof NodeBase && ((NodeBase)node).isCompact())
+                compact++;
+            for (int i = 0; i < node.getChildCount(); i++)
+                pending.push(node.getChild(i));
+        }
+        System.out.println("node locations: " + nodes + ", sharing a line table: " + compact);
+    }
+
+    private static long getUsedHeap()
+    {
+        final Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++)
+            System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.benchmarks;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.apache.royale.compiler.internal.parsing.as.StreamingASTokenizer;
+import org.apache.royale.compiler.internal.parsing.mxml.MXMLToken;
+import org.apache.royale.compiler.internal.parsing.mxml.MXMLTokenizer;
+
+/**
+ * Tokenizes the checked-in AS3 and MXML corpus. Point the
+ * {@code royale.benchmarks.corpus} system property at the framework sources
+ * to measure them instead.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TokenizerBenchmark
+{
+    private Map<String, String> asSources;
+    private Map<String, String> mxmlSources;
+
+    @Setup
+    public void setUp() throws IOException
+    {
+        asSources = BenchmarkCorpus.readSources(BenchmarkCorpus.getCheckedInCorpus(), ".as");
+        mxmlSources = BenchmarkCorpus.readSources(BenchmarkCorpus.getCheckedInCorpus(), ".mxml");
+    }
+
+    @Benchmark
+    public int tokenizeAS() throws IOException
+    {
+        int tokenCount = 0;
+        for (Map.Entry<String, String> source : asSources.entrySet())
+        {
+            final StreamingASTokenizer tokenizer = new StreamingASTokenizer();
+            try
+            {
+                tokenizer.setPath(source.getKey());
+                tokenizer.setReader(new StringReader(source.getValue()));
+                while (tokenizer.next() != null)
+                    tokenCount++;
+            }
+            finally
+            {
+                tokenizer.close();
+            }
+        }
+        return tokenCount;
+    }
+
+    /**
+     * Counts the tokens produced by {@link TokenizerBenchmark#tokenizeASThroughput},
+     * so that JMH reports the number of tokens per second.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class TokenCounter
+    {
+        public long tokens;
+
+        @Setup(Level.Iteration)
+        public void reset()
+        {
+            tokens = 0;
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public void tokenizeASThroughput(TokenCounter counter) throws IOException
+    {
+        counter.tokens += tokenizeAS();
+    }
+
+    @Benchmark
+    public int tokenizeMXML() throws IOException
+    {
+        int tokenCount = 0;
+        for (Map.Entry<String, String> source : mxmlSources.entrySet())
+        {
+            final MXMLTokenizer tokenizer = new MXMLTokenizer(source.getKey());
+            try
+            {
+                for (MXMLToken token : tokenizer.parseTokens(new StringReader(source.getValue())))
+                {
+                    if (token != null)
+                        tokenCount++;
+                }
+            }
+            finally
+            {
+                tokenizer.close();
+            }
+        }
+        return tokenCount;
+    }
+}
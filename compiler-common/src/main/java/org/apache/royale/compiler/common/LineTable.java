@@ -0,0 +1,194 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.common;
+
+import java.util.Arrays;
+
+/**
+ * Maps the offsets of a file to zero-based line and column numbers.
+ * <p>
+ * The locations of a syntax tree share the table of their file. A
+ * {@link SourceLocation} whose line and column numbers are the ones the table
+ * gives for its offsets only stores its offsets and the table; see
+ * {@link SourceLocation#compact(LineTable)}.
+ * <p>
+ * The table is built from the locations themselves rather than from the
+ * text of the file, so it agrees with the way the tokenizer counted lines.
+ * It only knows the lines on which a location starts or ends, and takes an
+ * offset to be on the last known line that starts at or before it. The line
+ * and column of an offset before the first known line are
+ * {@link ISourceLocation#UNKNOWN}.
+ */
+public final class LineTable
+{
+    /**
+     * Collects the line starts implied by the locations of a file.
+     */
+    public static final class Builder
+    {
+        /**
+         * Constructor.
+         *
+         * @param sourcePath The path of the file. Locations in other files,
+         * such as included ones, are not added to the table.
+         */
+        public Builder(String sourcePath)
+        {
+            assert sourcePath != null;
+            this.sourcePath = sourcePath;
+        }
+
+        private final String sourcePath;
+
+        // Each entry is a line start offset in the high half and a line
+        // number in the low half, so that sorting orders them by offset.
+        private long[] entries = new long[64];
+        private int size;
+
+        /**
+         * @return The path of the file.
+         */
+        public String getSourcePath()
+        {
+            return sourcePath;
+        }
+
+        /**
+         * Adds a line start. Negative lines and offsets are ignored.
+         *
+         * @param line The zero-based line number.
+         * @param lineStart The offset of the first character of the line.
+         */
+        public void add(int line, int lineStart)
+        {
+            if (line < 0 || lineStart < 0)
+                return;
+            if (size == entries.length)
+                entries = Arrays.copyOf(entries, size * 2);
+            entries[size++] = ((long)lineStart << 32) | line;
+        }
+
+        /**
+         * Builds the table. Where locations disagree about the start of a
+         * line, the table keeps the first consistent entry, and the
+         * locations that disagree with it keep their own line and column
+         * numbers.
+         *
+         * @return The table of the lines that were added.
+         */
+        public LineTable build()
+        {
+            final long[] sorted = Arrays.copyOf(entries, size);
+            Arrays.sort(sorted);
+
+            final int[] lines = new int[size];
+            final int[] lineStarts = new int[size];
+            int count = 0;
+            for (final long entry : sorted)
+            {
+                final int lineStart = (int)(entry >>> 32);
+                final int line = (int)entry;
+                if (count == 0 || (lineStart > lineStarts[count - 1] && line > lines[count - 1]))
+                {
+                    lines[count] = line;
+                    lineStarts[count] = lineStart;
+                    count++;
+                }
+            }
+            return new LineTable(sourcePath, Arrays.copyOf(lines, count), Arrays.copyOf(lineStarts, count));
+        }
+    }
+
+    private LineTable(String sourcePath, int[] lines, int[] lineStarts)
+    {
+        this.sourcePath = sourcePath;
+        this.lines = lines;
+        this.lineStarts = lineStarts;
+    }
+
+    private final String sourcePath;
+
+    // Known line numbers, and the offsets at which they start, both in
+    // increasing order.
+    private final int[] lines;
+    private final int[] lineStarts;
+
+    /**
+     * @return The path of the file.
+     */
+    public String getSourcePath()
+    {
+        return sourcePath;
+    }
+
+    /**
+     * @return The number of lines known to the table.
+     */
+    public int getLineCount()
+    {
+        return lines.length;
+    }
+
+    /**
+     * Gets the line that contains an offset.
+     *
+     * @param offset A zero-based offset, or {@link ISourceLocation#UNKNOWN}.
+     * @return The zero-based line number, or {@link ISourceLocation#UNKNOWN}.
+     */
+    public int getLine(int offset)
+    {
+        final int index = findLine(offset);
+        return index >= 0 ? lines[index] : ISourceLocation.UNKNOWN;
+    }
+
+    /**
+     * Gets the column of an offset.
+     *
+     * @param offset A zero-based offset, or {@link ISourceLocation#UNKNOWN}.
+     * @return The zero-based column number, or {@link ISourceLocation#UNKNOWN}.
+     */
+    public int getColumn(int offset)
+    {
+        final int index = findLine(offset);
+        return index >= 0 ? offset - lineStarts[index] : ISourceLocation.UNKNOWN;
+    }
+
+    /**
+     * @return The index of the last line that starts at or before the
+     * offset, or -1.
+     */
+    private int findLine(int offset)
+    {
+        if (offset < 0)
+            return -1;
+
+        int low = 0;
+        int high = lineStarts.length - 1;
+        while (low <= high)
+        {
+            final int middle = (low + high) >>> 1;
+            if (lineStarts[middle] <= offset)
+                low = middle + 1;
+            else
+                high = middle - 1;
+        }
+        return high;
+    }
+}
@@ -24,22 +24,50 @@ import org.apache.royale.utils.FilenameNormalization;
 /**
  * Common class to store file/location information across all source types
  * such as AS, CSS etc
+ * <p>
+ * A location stores its offsets. Its source path, line and column numbers
+ * are either stored with it, or, once it is compacted, derived from its
+ * offsets by the {@link LineTable} of its file. Setting any of them on a
+ * compacted location stores them with it again.
  */
 public class SourceLocation implements ISourceLocation
 {
+    /**
+     * The source path, line and column numbers of a location that doesn't
+     * derive them from a {@link LineTable}. Each instance belongs to a single
+     * location.
+     */
+    private static final class Lines
+    {
+        Lines(String sourcePath, int line, int column, int endLine, int endColumn)
+        {
+            this.sourcePath = sourcePath;
+            this.line = line;
+            this.column = column;
+            this.endLine = endLine;
+            this.endColumn = endColumn;
+        }
+
+        String sourcePath;
+        int line;
+        int column;
+        int endLine;
+        int endColumn;
+    }
+
     /**
      * Constructor for a known source location.
      */
     public SourceLocation(String sourcePath, int start, int end,
                           int line, int column, int endLine, int endColumn)
     {
-        this.sourcePath = sourcePath;
         this.start = start;
         this.end = end;
-        this.line = line;
-        this.column = column;
-        this.endLine = endLine;
-        this.endColumn = endColumn;
+        if (sourcePath != null || line != UNKNOWN || column != UNKNOWN ||
+            endLine != UNKNOWN || endColumn != UNKNOWN)
+        {
+            this.lines = new Lines(sourcePath, line, column, endLine, endColumn);
+        }
     }
 
     /**
@@ -72,11 +100,6 @@ public class SourceLocation implements ISourceLocation
         this(null, UNKNOWN, UNKNOWN, UNKNOWN, UNKNOWN, UNKNOWN, UNKNOWN);
     }
 
-    /**
-     * Source path.
-     */
-    private String sourcePath;
-
     /**
      * Zero-based starting offset.
      * <p>
@@ -94,29 +117,73 @@ public class SourceLocation implements ISourceLocation
      * offset in this field and use it to compute the local ending offset.
      */
     private int end;
-    
-    /**
-     * Zero-based line number.
-     * Corresponds to start, not end.
-     */
-    private int line;
-    
-    /**
-     * Zero-based column number.
-     * Corresponds to start, not end.
-     */
-    private int column;
 
     /**
-     * Zero-based line number that corresponds to end.
+     * Source path and zero-based line and column numbers. The line and column
+     * correspond to start, the end line and end column to end.
+     * <p>
+     * This is either the {@link LineTable} of the file, which derives them
+     * from the offsets, or the {@link Lines} of this location, or null if the
+     * source path and all the line and column numbers are unknown.
      */
-    private int endLine;
+    private Object lines;
 
     /**
-     * Zero-based column number that corresponds to end.
+     * Gets the {@link Lines} of this location, so that they can be set. A
+     * location that derived them from a {@link LineTable} stores them again.
+     * This must be called before the offsets of the location change.
      */
-    private int endColumn;
-    
+    private Lines getLinesForUpdate()
+    {
+        final Object lines = this.lines;
+        if (lines instanceof Lines)
+            return (Lines)lines;
+
+        final Lines result = new Lines(sourcePath(), line(), column(), endLine(), endColumn());
+        this.lines = result;
+        return result;
+    }
+
+    private String sourcePath()
+    {
+        final Object lines = this.lines;
+        if (lines instanceof Lines)
+            return ((Lines)lines).sourcePath;
+        return lines != null ? ((LineTable)lines).getSourcePath() : null;
+    }
+
+    private int line()
+    {
+        final Object lines = this.lines;
+        if (lines instanceof Lines)
+            return ((Lines)lines).line;
+        return lines != null ? ((LineTable)lines).getLine(start) : UNKNOWN;
+    }
+
+    private int column()
+    {
+        final Object lines = this.lines;
+        if (lines instanceof Lines)
+            return ((Lines)lines).column;
+        return lines != null ? ((LineTable)lines).getColumn(start) : UNKNOWN;
+    }
+
+    private int endLine()
+    {
+        final Object lines = this.lines;
+        if (lines instanceof Lines)
+            return ((Lines)lines).endLine;
+        return lines != null ? ((LineTable)lines).getLine(end) : UNKNOWN;
+    }
+
+    private int endColumn()
+    {
+        final Object lines = this.lines;
+        if (lines instanceof Lines)
+            return ((Lines)lines).endColumn;
+        return lines != null ? ((LineTable)lines).getColumn(end) : UNKNOWN;
+    }
+
     /**
      * Copies source location information from another instance
      * into this instance.
@@ -125,13 +192,75 @@ public class SourceLocation implements ISourceLocation
     {
         assert src != null : "source location can't be null";
         
+        final Lines lines = this.lines instanceof Lines ?
+                (Lines)this.lines : new Lines(null, UNKNOWN, UNKNOWN, UNKNOWN, UNKNOWN);
         this.start = src.getStart();
         this.end = src.getEnd();
-        this.line = src.getLine();
-        this.column = src.getColumn();
-        this.endLine = src.getEndLine();
-        this.endColumn = src.getEndColumn();
-        this.sourcePath = src.getSourcePath();
+        lines.line = src.getLine();
+        lines.column = src.getColumn();
+        lines.endLine = src.getEndLine();
+        lines.endColumn = src.getEndColumn();
+        lines.sourcePath = src.getSourcePath();
+        this.lines = lines;
+    }
+
+    /**
+     * Adds the line starts implied by this location to the table of the
+     * lines of its file. Locations in other files are not added.
+     * 
+     * @param builder The builder of the table.
+     */
+    public final void addLineStarts(LineTable.Builder builder)
+    {
+        if (!(lines instanceof Lines))
+            return;
+
+        final Lines lines = (Lines)this.lines;
+        if (!builder.getSourcePath().equals(lines.sourcePath))
+            return;
+        if (start >= 0 && lines.column >= 0)
+            builder.add(lines.line, start - lines.column);
+        if (end >= 0 && lines.endColumn >= 0)
+            builder.add(lines.endLine, end - lines.endColumn);
+    }
+
+    /**
+     * Derives the source path, line and column numbers of this location from
+     * the table of the lines of its file, if the table gives the ones it has
+     * now. The location then only stores its offsets and shares the table,
+     * and its getters return the same values as before.
+     * 
+     * @param table The table of the lines of the file.
+     * @return true if this location uses the table.
+     */
+    public final boolean compact(LineTable table)
+    {
+        final Object lines = this.lines;
+        if (lines == table)
+            return true;
+        if (!(lines instanceof Lines))
+            return false;
+
+        final Lines explicit = (Lines)lines;
+        if (table.getSourcePath().equals(explicit.sourcePath) &&
+            table.getLine(start) == explicit.line &&
+            table.getColumn(start) == explicit.column &&
+            table.getLine(end) == explicit.endLine &&
+            table.getColumn(end) == explicit.endColumn)
+        {
+            this.lines = table;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return true if this location derives its source path, line and
+     * column numbers from the table of the lines of its file.
+     */
+    public final boolean isCompact()
+    {
+        return lines instanceof LineTable;
     }
 
     /**
@@ -170,7 +299,11 @@ public class SourceLocation implements ISourceLocation
     public void setStart(int start)
     {
         if (start != UNKNOWN)
+        {
+            if (start != this.start && lines instanceof LineTable)
+                getLinesForUpdate();
             this.start = start;
+        }
     }
 
     /**
@@ -189,7 +322,11 @@ public class SourceLocation implements ISourceLocation
     public void setEnd(int end)
     {
         if (end != UNKNOWN)
+        {
+            if (end != this.end && lines instanceof LineTable)
+                getLinesForUpdate();
             this.end = end;
+        }
     }
 
     /**
@@ -200,6 +337,7 @@ public class SourceLocation implements ISourceLocation
     @Override
     public int getLine()
     {
+        final int line = line();
         assert line >= 0 || line == UNKNOWN : "Invalid value for line: " + line;
         return line;
     }
@@ -211,8 +349,8 @@ public class SourceLocation implements ISourceLocation
      */
     public void setLine(int line)
     {
-        if (line != UNKNOWN)
-            this.line = line;
+        if (line != UNKNOWN && line != line())
+            getLinesForUpdate().line = line;
     }
 
     /**
@@ -222,6 +360,7 @@ public class SourceLocation implements ISourceLocation
     @Override
     public int getColumn()
     {
+        final int column = column();
         assert column >= 0 || column == UNKNOWN : "Invalid value for column: " + column;
         return column;
     }
@@ -232,8 +371,8 @@ public class SourceLocation implements ISourceLocation
      */
     public void setColumn(int column)
     {
-        if (column != UNKNOWN)
-            this.column = column;
+        if (column != UNKNOWN && column != column())
+            getLinesForUpdate().column = column;
     }
 
     /**
@@ -243,7 +382,7 @@ public class SourceLocation implements ISourceLocation
      */
     public int getEndLine()
     {
-        return endLine;
+        return endLine();
     }
 
     /**
@@ -253,7 +392,8 @@ public class SourceLocation implements ISourceLocation
      */
     public void setEndLine(int line)
     {
-        this.endLine = line;
+        if (line != endLine())
+            getLinesForUpdate().endLine = line;
     }
 
     /**
@@ -262,7 +402,7 @@ public class SourceLocation implements ISourceLocation
      */
     public int getEndColumn()
     {
-        return endColumn;
+        return endColumn();
     }
 
     /**
@@ -271,7 +411,8 @@ public class SourceLocation implements ISourceLocation
      */
     public void setEndColumn(int column)
     {
-        this.endColumn = column;
+        if (column != endColumn())
+            getLinesForUpdate().endColumn = column;
     }
 
     /**
@@ -281,6 +422,7 @@ public class SourceLocation implements ISourceLocation
     @Override
     public final String getSourcePath()
     {
+        final String sourcePath = sourcePath();
         // null means the source is unknown.
         // "" means the source is a buffer that hasn't yet been saved to a file.
         // Something like "framework.swc:defaults.css" means the source is a file inside a SWC.
@@ -300,7 +442,8 @@ public class SourceLocation implements ISourceLocation
      */
     public final void setSourcePath(String sourcePath)
     {
-        this.sourcePath = sourcePath;
+        if (sourcePath == null ? sourcePath() != null : !sourcePath.equals(sourcePath()))
+            getLinesForUpdate().sourcePath = sourcePath;
     }
     
     /**
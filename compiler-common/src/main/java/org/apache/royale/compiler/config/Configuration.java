@@ -500,6 +500,226 @@ public class Configuration
         this.sizeReportFileName = getOutputPath(cv, filename);
     }
 
+    //
+    // 'swc-cache-dir' option
+    //
+
+    private String swcCacheDirectory = null;
+
+    public File getSWCCacheDirectory()
+    {
+        return swcCacheDirectory != null ? new File(swcCacheDirectory) : null;
+    }
+
+    /**
+     * A directory in which the compiler keeps the parsed catalogs and the
+     * library ABC of the SWCs on the library paths, so that later compilations
+     * don't have to decode the SWC files again.
+     */
+    @Config(advanced = true)
+    @Mapping("swc-cache-dir")
+    @Arguments("directory")
+    public void setSWCCacheDirectory(ConfigurationValue cv, String directory)
+    {
+        this.swcCacheDirectory = getOutputPath(cv, directory);
+    }
+
+    //
+    // 'abc-cache-dir' option
+    //
+
+    private String abcCacheDirectory = null;
+
+    public File getABCCacheDirectory()
+    {
+        return abcCacheDirectory != null ? new File(abcCacheDirectory) : null;
+    }
+
+    /**
+     * A directory in which the compiler keeps the ABC generated for the
+     * ActionScript source files, so that later compilations with the same
+     * configuration don't have to generate the code of unchanged files again.
+     */
+    @Config(advanced = true)
+    @Mapping("abc-cache-dir")
+    @Arguments("directory")
+    public void setABCCacheDirectory(ConfigurationValue cv, String directory)
+    {
+        this.abcCacheDirectory = getOutputPath(cv, directory);
+    }
+
+    //
+    // 'profile-output' option
+    //
+
+    private String profileOutput = null;
+
+    public File getProfileOutput()
+    {
+        return profileOutput != null ? new File(profileOutput) : null;
+    }
+
+    /**
+     * Record the time and memory spent in each phase of the compilation and
+     * in each operation on each compilation unit, and write them to this file
+     * when the compilation completes.
+     */
+    @Config(advanced = true)
+    @Mapping("profile-output")
+    @Arguments("filename")
+    public void setProfileOutput(ConfigurationValue cv, String filename)
+    {
+        this.profileOutput = getOutputPath(cv, filename);
+    }
+
+    //
+    // 'profile-format' option
+    //
+
+    private String profileFormat = "chrome";
+
+    public String getProfileFormat()
+    {
+        return profileFormat;
+    }
+
+    /**
+     * The format of the {@code -profile-output} file: "chrome" for Chrome
+     * trace-event JSON or "collapsed" for flame graph collapsed stacks.
+     */
+    @Config(advanced = true)
+    @Mapping("profile-format")
+    @Arguments("format")
+    public void setProfileFormat(ConfigurationValue cv, String format) throws ConfigurationException
+    {
+        if (!"chrome".equalsIgnoreCase(format) && !"collapsed".equalsIgnoreCase(format))
+            throw new ConfigurationException.BadValue(format, cv.getVar(), cv.getSource(), cv.getLine());
+        this.profileFormat = format.toLowerCase();
+    }
+
+    //
+    // 'workspace-executor' option
+    //
+
+    private String workspaceExecutor = null;
+
+    /**
+     * @return the name of the strategy used to run the compiler's
+     * background work, or null to use the default.
+     */
+    public String getWorkspaceExecutor()
+    {
+        return workspaceExecutor;
+    }
+
+    /**
+     * How the threads that parse, analyze and generate code for compilation
+     * units are managed: "thread-pool" (default), "fixed", "fork-join" or
+     * "virtual". Virtual threads need Java 21 or later.
+     */
+    @Config(advanced = true)
+    @Mapping("workspace-executor")
+    @Arguments("strategy")
+    public void setWorkspaceExecutor(ConfigurationValue cv, String strategy) throws ConfigurationException
+    {
+        if (!"thread-pool".equalsIgnoreCase(strategy) && !"fixed".equalsIgnoreCase(strategy) &&
+            !"fork-join".equalsIgnoreCase(strategy) && !"virtual".equalsIgnoreCase(strategy))
+            throw new ConfigurationException.BadValue(strategy, cv.getVar(), cv.getSource(), cv.getLine());
+        this.workspaceExecutor = strategy.toLowerCase();
+    }
+
+    //
+    // 'workspace-threads' option
+    //
+
+    private int workspaceThreads = 0;
+
+    /**
+     * @return the number of threads for the {@code -workspace-executor}, or
+     * 0 to use the default.
+     */
+    public int getWorkspaceThreads()
+    {
+        return workspaceThreads;
+    }
+
+    /**
+     * The number of threads used to parse, analyze and generate code for
+     * compilation units. 0 uses the default.
+     */
+    @Config(advanced = true)
+    @Mapping("workspace-threads")
+    @Arguments("count")
+    public void setWorkspaceThreads(ConfigurationValue cv, int count) throws ConfigurationException
+    {
+        if (count < 0)
+            throw new ConfigurationException.BadValue(String.valueOf(count), cv.getVar(), cv.getSource(), cv.getLine());
+        this.workspaceThreads = count;
+    }
+
+    //
+    // 'parse-ahead' option
+    //
+
+    private boolean parseAhead = false;
+
+    /**
+     * @return true if the source files are parsed before the compiler finds
+     * the dependencies on them.
+     */
+    public boolean getParseAhead()
+    {
+        return parseAhead;
+    }
+
+    /**
+     * Parse the files of the source path and the source list in parallel at
+     * the start of a build, instead of when the compiler finds the
+     * dependencies on them. Parsing stops when half of the maximum heap is in
+     * use.
+     */
+    @Config(advanced = true)
+    @Mapping("parse-ahead")
+    public void setParseAhead(ConfigurationValue cv, boolean parseAhead)
+    {
+        this.parseAhead = parseAhead;
+    }
+
+    //
+    // 'parallel-codegen' option
+    //
+
+    private boolean parallelCodegen = false;
+
+    /**
+     * @return true if the bodies of package-level functions and of the
+     * methods of ActionScript classes are generated in parallel.
+     */
+    public boolean getParallelCodegen()
+    {
+        return parallelCodegen;
+    }
+
+    /**
+     * Generate the ABC of the bodies of package-level functions and of the
+     * methods of ActionScript classes on the threads of the workspace,
+     * instead of on the thread which generates the rest of their compilation
+     * unit. Constructors and the methods of MXML classes are still generated
+     * on that thread.
+     * <p>
+     * The output doesn't depend on the order in which the threads run, so
+     * parallel builds of the same sources produce the same bytes. It differs
+     * from the output of a serial build: the methods generated in parallel
+     * are numbered after the rest of their class or file, and the synthetic
+     * names of their anonymous functions are numbered within each function.
+     */
+    @Config(advanced = true)
+    @Mapping("parallel-codegen")
+    public void setParallelCodegen(ConfigurationValue cv, boolean parallelCodegen)
+    {
+        this.parallelCodegen = parallelCodegen;
+    }
+
     // 'api-report' option
     //
 
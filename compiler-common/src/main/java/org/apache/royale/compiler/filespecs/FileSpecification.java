@@ -19,21 +19,15 @@
 
 package org.apache.royale.compiler.filespecs;
 
-import static org.apache.royale.compiler.filespecs.CombinedFile.getBOM;
-
 import java.io.BufferedInputStream;
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.Reader;
 
-import org.apache.royale.compiler.filespecs.CombinedFile.BOM;
-
 /**
  * A file specification that reads the content of the file from the file itself.
  */
@@ -113,19 +107,10 @@ public class FileSpecification extends BaseFileSpecification implements IBinaryF
 	}
 
 	private Reader createNIOReader() throws IOException {
-	    final File file = getFileHandle();
-	    
-	    // Skip BOM header.
-        final BufferedInputStream strm = new BufferedInputStream(new FileInputStream(file));
-	    final BOM bom = getBOM(strm);
-        strm.skip(bom.pattern.length);
-        
-        final InputStreamReader inputSR = useCRLFFilter ? 
-        		new InputStreamReader(new NoCRLFInputStream(strm), bom.charset) :
-                new InputStreamReader(strm, bom.charset);
-        			
-        final Reader reader = new BufferedReader(inputSR);
-        return reader;
+	    // The file is read and decoded once, and the text is shared by every
+	    // reader until the file changes.
+	    final String text = SourceTextCache.getText(getFileHandle(), useCRLFFilter);
+	    return new SourceTextReader(text);
 	}
 
     @Override
@@ -0,0 +1,155 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+
+package org.apache.royale.compiler.filespecs;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+
+import org.apache.royale.compiler.filespecs.CombinedFile.BOM;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+/**
+ * Cache of the decoded text of source files. A file is read in one bulk read
+ * and decoded once, and every {@link FileSpecification#createReader()} on it
+ * shares the decoded text until the file changes. This saves reading and
+ * decoding the file again each time its syntax tree is rebuilt, each time a
+ * deferred function body is parsed, and for included files and ASDoc.
+ * <p>
+ * An entry is only used while the size and modification time of the file
+ * are unchanged. {@link org.apache.royale.compiler.workspaces.IWorkspace}
+ * implementations also remove the entry of a file when they are notified
+ * that it changed, because the modification time may not change for quick
+ * successive edits. The texts are held through soft references.
+ */
+public final class SourceTextCache
+{
+    private static final class Entry
+    {
+        Entry(long lastModified, long length, boolean stripCR, String text)
+        {
+            this.lastModified = lastModified;
+            this.length = length;
+            this.stripCR = stripCR;
+            this.text = text;
+        }
+
+        final long lastModified;
+        final long length;
+        final boolean stripCR;
+        final String text;
+    }
+
+    private static final Cache<String, Entry> entries = CacheBuilder.newBuilder()
+            .softValues()
+            .recordStats()
+            .build();
+
+    private SourceTextCache()
+    {
+    }
+
+    /**
+     * Gets the text of a file, decoded with the charset of its BOM, or UTF-8
+     * if it has none. The BOM itself is not part of the text.
+     * 
+     * @param file the file to read.
+     * @param stripCR if true, carriage returns are removed from the text.
+     * @return the text of the file.
+     * @throws IOException if the file can't be read.
+     */
+    public static String getText(File file, boolean stripCR) throws IOException
+    {
+        final String key = file.getPath();
+        final long lastModified = file.lastModified();
+        final long length = file.length();
+        final Entry entry = entries.getIfPresent(key);
+        if (entry != null && entry.lastModified == lastModified && entry.length == length && entry.stripCR == stripCR)
+            return entry.text;
+
+        final byte[] bytes;
+        try
+        {
+            bytes = Files.readAllBytes(file.toPath());
+        }
+        catch (NoSuchFileException e)
+        {
+            // Callers tell a missing file from other read errors.
+            throw new FileNotFoundException(e.getFile());
+        }
+
+        final String text = decode(bytes, stripCR);
+        // Don't cache text that was read while the file was being written.
+        if (file.lastModified() == lastModified && file.length() == length)
+            entries.put(key, new Entry(lastModified, length, stripCR, text));
+        return text;
+    }
+
+    /**
+     * Removes the text of a file from the cache.
+     * 
+     * @param path the path of the file.
+     */
+    public static void invalidate(String path)
+    {
+        entries.invalidate(path);
+    }
+
+    /**
+     * Removes all texts from the cache.
+     */
+    public static void invalidateAll()
+    {
+        entries.invalidateAll();
+    }
+
+    /**
+     * @return the hit and miss counters of the cache.
+     */
+    public static CacheStats getStatistics()
+    {
+        return entries.stats();
+    }
+
+    private static String decode(byte[] bytes, boolean stripCR) throws IOException
+    {
+        final BOM bom = CombinedFile.getBOM(new BufferedInputStream(new ByteArrayInputStream(bytes)));
+        final String text = new String(bytes, bom.pattern.length, bytes.length - bom.pattern.length, bom.charset);
+        if (!stripCR || text.indexOf('\r') == -1)
+            return text;
+
+        final StringBuilder sb = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++)
+        {
+            final char c = text.charAt(i);
+            if (c != '\r')
+                sb.append(c);
+        }
+        return sb.toString();
+    }
+}
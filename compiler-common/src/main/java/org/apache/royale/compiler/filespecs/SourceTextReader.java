@@ -0,0 +1,128 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+
+package org.apache.royale.compiler.filespecs;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * A {@link Reader} over text that is already in memory, such as the text of
+ * a file from the {@link SourceTextCache}. Unlike
+ * {@link java.io.StringReader}, it doesn't synchronize, because a reader is
+ * only used by one tokenizer at a time, and skipping is a constant time
+ * operation.
+ */
+public final class SourceTextReader extends Reader
+{
+    /**
+     * @param text the text to read.
+     */
+    public SourceTextReader(CharSequence text)
+    {
+        super(new Object());
+        this.text = text;
+        this.length = text.length();
+    }
+
+    private final CharSequence text;
+    private final int length;
+    private int position;
+    private int mark;
+
+    /**
+     * @return the total number of characters in the text.
+     */
+    public int getLength()
+    {
+        return length;
+    }
+
+    @Override
+    public int read()
+    {
+        if (position >= length)
+            return -1;
+        return text.charAt(position++);
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len)
+    {
+        if ((off < 0) || (len < 0) || (off + len > cbuf.length))
+            throw new IndexOutOfBoundsException();
+        if (len == 0)
+            return 0;
+        if (position >= length)
+            return -1;
+
+        final int count = Math.min(len, length - position);
+        if (text instanceof String)
+        {
+            ((String)text).getChars(position, position + count, cbuf, off);
+        }
+        else
+        {
+            for (int i = 0; i < count; i++)
+                cbuf[off + i] = text.charAt(position + i);
+        }
+        position += count;
+        return count;
+    }
+
+    @Override
+    public long skip(long n)
+    {
+        if (n <= 0)
+            return 0;
+        final int count = (int)Math.min(n, length - position);
+        position += count;
+        return count;
+    }
+
+    @Override
+    public boolean ready()
+    {
+        return true;
+    }
+
+    @Override
+    public boolean markSupported()
+    {
+        return true;
+    }
+
+    @Override
+    public void mark(int readAheadLimit)
+    {
+        mark = position;
+    }
+
+    @Override
+    public void reset()
+    {
+        position = mark;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+    }
+}
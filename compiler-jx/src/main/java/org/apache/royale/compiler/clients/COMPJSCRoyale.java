@@ -59,6 +59,7 @@ import org.apache.royale.compiler.internal.projects.RoyaleJSProject;
 import org.apache.royale.compiler.internal.targets.RoyaleSWCTarget;
 import org.apache.royale.compiler.internal.units.SWCCompilationUnit;
 import org.apache.royale.compiler.internal.targets.JSTarget;
+import org.apache.royale.compiler.internal.workspaces.CompilationProfiler;
 import org.apache.royale.compiler.internal.workspaces.Workspace;
 import org.apache.royale.compiler.problems.ICompilerProblem;
 import org.apache.royale.compiler.problems.InternalCompilerProblem;
@@ -151,6 +152,19 @@ public class COMPJSCRoyale extends MXMLJSCRoyale
         asFileHandler = backend.getSourceFileHandlerInstance();
     }
 
+    /**
+     * Constructor for compiling into an existing, possibly already warm,
+     * workspace and project.
+     * 
+     * @param workspace The workspace to compile in.
+     * @param project The project to compile.
+     * @see JSCompilerDaemon
+     */
+    public COMPJSCRoyale(Workspace workspace, RoyaleJSProject project)
+    {
+        super(workspace, project);
+    }
+
     /**
      * Main body of this program. This method is called from the public static
      * method's for this program.
@@ -164,12 +178,23 @@ public class COMPJSCRoyale extends MXMLJSCRoyale
     {
         boolean compilationSuccess = false;
 
+        startProfiling();
         try
         {
             project.getSourceCompilationUnitFactory().addHandler(asFileHandler);
 
             if (setupTargetFile())
-                buildArtifact();
+            {
+                CompilationProfiler.startPhase(workspace, "build");
+                try
+                {
+                    buildArtifact();
+                }
+                finally
+                {
+                    CompilationProfiler.completePhase(workspace, "build");
+                }
+            }
 
             if (jsTarget != null)
             {
@@ -544,6 +569,10 @@ public class COMPJSCRoyale extends MXMLJSCRoyale
             final ICompilerProblem problem = new InternalCompilerProblem(e);
             problems.add(problem);
         }
+        finally
+        {
+            stopProfiling();
+        }
 
         return compilationSuccess;
     }
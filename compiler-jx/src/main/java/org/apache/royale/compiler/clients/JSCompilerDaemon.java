@@ -0,0 +1,105 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.clients;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.royale.compiler.clients.problems.ProblemPrinter;
+import org.apache.royale.compiler.clients.problems.WorkspaceProblemFormatter;
+import org.apache.royale.compiler.internal.driver.mxml.royale.MXMLRoyaleBackend;
+import org.apache.royale.compiler.internal.driver.mxml.royale.MXMLRoyaleSWCBackend;
+import org.apache.royale.compiler.internal.parsing.as.RoyaleASDocDelegate;
+import org.apache.royale.compiler.internal.projects.RoyaleJSProject;
+import org.apache.royale.compiler.internal.workspaces.Workspace;
+import org.apache.royale.compiler.problems.ICompilerProblem;
+
+/**
+ * A {@link CompilerDaemon} that also keeps warm sessions for the JavaScript
+ * compilers: <code>mxmljsc</code> ({@link MXMLJSCRoyale}) and
+ * <code>compjsc</code> ({@link COMPJSCRoyale}).
+ */
+public class JSCompilerDaemon extends CompilerDaemon
+{
+    /**
+     * Java program entry point.
+     * 
+     * @param args command line arguments, ignored.
+     */
+    public static void main(final String[] args)
+    {
+        final JSCompilerDaemon daemon = new JSCompilerDaemon();
+        System.exit(daemon.run(System.in, System.out, System.err));
+    }
+
+    @Override
+    protected CompilationSession createSession(String toolName)
+    {
+        if ("mxmljsc".equals(toolName))
+        {
+            final Workspace workspace = new Workspace();
+            workspace.setASDocDelegate(new RoyaleASDocDelegate());
+            final RoyaleJSProject jsProject = new RoyaleJSProject(workspace, new MXMLRoyaleBackend());
+            return new CompilationSession(workspace, jsProject)
+            {
+                @Override
+                protected int compile(String[] args, PrintStream err)
+                {
+                    final List<ICompilerProblem> problems = new ArrayList<ICompilerProblem>();
+                    final int exitCode = new MXMLJSCRoyale(workspace, jsProject).mainNoExit(args, problems, false);
+                    printProblems(workspace, problems, err);
+                    return exitCode;
+                }
+            };
+        }
+        if ("compjsc".equals(toolName))
+        {
+            final Workspace workspace = new Workspace();
+            workspace.setASDocDelegate(new RoyaleASDocDelegate());
+            final RoyaleJSProject jsProject = new RoyaleJSProject(workspace, new MXMLRoyaleSWCBackend());
+            return new CompilationSession(workspace, jsProject)
+            {
+                @Override
+                protected int compile(String[] args, PrintStream err)
+                {
+                    final List<ICompilerProblem> problems = new ArrayList<ICompilerProblem>();
+                    final int exitCode = new COMPJSCRoyale(workspace, jsProject).mainNoExit(args, problems, false);
+                    printProblems(workspace, problems, err);
+                    return exitCode;
+                }
+            };
+        }
+        return super.createSession(toolName);
+    }
+
+    /**
+     * Prints the problems of one build to the daemon's error stream instead
+     * of <code>System.err</code>.
+     */
+    private static void printProblems(Workspace workspace, List<ICompilerProblem> problems, PrintStream err)
+    {
+        if (problems.isEmpty())
+            return;
+        final ProblemPrinter printer = new ProblemPrinter(new WorkspaceProblemFormatter(workspace), err);
+        printer.printProblems(problems);
+        err.flush();
+    }
+}
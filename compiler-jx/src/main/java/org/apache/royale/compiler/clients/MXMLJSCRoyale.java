@@ -32,6 +32,11 @@ import java.io.InputStreamReader;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.io.FilenameUtils;
 import org.apache.royale.compiler.clients.problems.ProblemPrinter;
@@ -52,6 +57,7 @@ import org.apache.royale.compiler.exceptions.ConfigurationException.IOError;
 import org.apache.royale.compiler.exceptions.ConfigurationException.MustSpecifyTarget;
 import org.apache.royale.compiler.exceptions.ConfigurationException.OnlyOneSource;
 import org.apache.royale.compiler.internal.codegen.as.ASEmitterTokens;
+import org.apache.royale.compiler.internal.codegen.js.JSOutputManifest;
 import org.apache.royale.compiler.internal.codegen.js.goog.JSGoogDocEmitter;
 import org.apache.royale.compiler.internal.config.FlashBuilderConfigurator;
 import org.apache.royale.compiler.internal.definitions.AccessorDefinition;
@@ -73,8 +79,11 @@ import org.apache.royale.compiler.internal.targets.JSTarget;
 import org.apache.royale.compiler.internal.units.ResourceBundleCompilationUnit;
 import org.apache.royale.compiler.internal.units.ResourceModuleCompilationUnit;
 import org.apache.royale.compiler.internal.units.SourceCompilationUnitFactory;
+import org.apache.royale.compiler.internal.units.SyntaxTreeRetention;
+import org.apache.royale.compiler.internal.workspaces.CompilationProfiler;
 import org.apache.royale.compiler.internal.workspaces.Workspace;
 import org.apache.royale.compiler.problems.ConfigurationProblem;
+import org.apache.royale.compiler.problems.FileIOProblem;
 import org.apache.royale.compiler.problems.ICompilerProblem;
 import org.apache.royale.compiler.problems.InternalCompilerProblem;
 import org.apache.royale.compiler.problems.UnableToBuildSWFProblem;
@@ -178,6 +187,7 @@ public class MXMLJSCRoyale implements JSCompilerEntryPoint, ProblemQueryProvider
     }
 
     protected Workspace workspace;
+    private CompilationProfiler profiler;
     protected RoyaleJSProject project;
 
     protected ProblemQuery problems;
@@ -190,6 +200,7 @@ public class MXMLJSCRoyale implements JSCompilerEntryPoint, ProblemQueryProvider
     protected ITargetSettings targetSettings;
     protected IJSApplication jsTarget;
     private IJSGoogPublisher jsPublisher;
+    protected boolean keepWorkspaceOpen;
     
     public MXMLJSCRoyale()
     {
@@ -206,6 +217,25 @@ public class MXMLJSCRoyale implements JSCompilerEntryPoint, ProblemQueryProvider
         asFileHandler = backend.getSourceFileHandlerInstance();
     }
 
+    /**
+     * Constructor for compiling into an existing, possibly already warm,
+     * workspace and project. The workspace is left open when the compilation
+     * finishes so that it can be reused by the next one.
+     * 
+     * @param workspace The workspace to compile in.
+     * @param project The project to compile.
+     * @see JSCompilerDaemon
+     */
+    public MXMLJSCRoyale(Workspace workspace, RoyaleJSProject project)
+    {
+        DefinitionBase.setPerformanceCachingEnabled(true);
+        this.workspace = workspace;
+        this.project = project;
+        problems = new ProblemQuery(); // this gets replaced in configure().  Do we need it here?
+        asFileHandler = project.getBackend().getSourceFileHandlerInstance();
+        keepWorkspaceOpen = true;
+    }
+
     @Override
     public int mainNoExit(final String[] args, List<ICompilerProblem> problems,
             Boolean printProblems)
@@ -314,6 +344,7 @@ public class MXMLJSCRoyale implements JSCompilerEntryPoint, ProblemQueryProvider
         JSGoogConfiguration googConfiguration = (JSGoogConfiguration) config;
         boolean compilationSuccess = false;
 
+        startProfiling();
         try
         {
             project.getSourceCompilationUnitFactory().addHandler(asFileHandler);
@@ -324,7 +355,15 @@ public class MXMLJSCRoyale implements JSCompilerEntryPoint, ProblemQueryProvider
                     return false;
                 }
 
-	            buildArtifact();
+                CompilationProfiler.startPhase(workspace, "build");
+                try
+                {
+                    buildArtifact();
+                }
+                finally
+                {
+                    CompilationProfiler.completePhase(workspace, "build");
+                }
             }
             if (jsTarget != null || googConfiguration.getSkipTranspile())
             {
@@ -366,58 +405,51 @@ public class MXMLJSCRoyale implements JSCompilerEntryPoint, ProblemQueryProvider
 	                    	outputResourceBundle((ResourceBundleCompilationUnit)cu, outputFolder);
 	                    }
 	                }
-	                for (final ICompilationUnit cu : reachableCompilationUnits)
+	                CompilationProfiler.startPhase(workspace, "emit JS");
+	                try
 	                {
-	                    ICompilationUnit.UnitType cuType = cu.getCompilationUnitType();
-	
-	                    if (cuType == ICompilationUnit.UnitType.AS_UNIT
-	                            || cuType == ICompilationUnit.UnitType.MXML_UNIT)
+	                    JSOutputManifest outputManifest = null;
+	                    Map<ICompilationUnit, String> unitsToWrite;
+	                    if (googConfiguration.getJSIncrementalOutput())
 	                    {
-	                        final File outputClassFile = getOutputClassFile(
-	                                cu.getQualifiedNames().get(0), outputFolder);
-    
-                            if (config.isVerbose())
-                            {
-                                System.out.println("Compiling file: " + outputClassFile);
-                            }
-	
-	                        ICompilationUnit unit = cu;
-	
-	                        IJSWriter writer;
-	                        if (cuType == ICompilationUnit.UnitType.AS_UNIT)
-	                        {
-	                            writer = (IJSWriter) project.getBackend().createWriter(project,
-	                                    problems.getProblems(), unit, false);
-	                        }
-	                        else
-	                        {
-	                            writer = (IJSWriter) project.getBackend().createMXMLWriter(
-	                                    project, problems.getProblems(), unit, false);
-	                        }
-	
-	                        BufferedOutputStream out = new BufferedOutputStream(
-	                                new FileOutputStream(outputClassFile));
-
-                            BufferedOutputStream sourceMapOut = null;
-	                        File outputSourceMapFile = null;
-	                        if (project.config.getSourceMap())
+	                        outputManifest = JSOutputManifest.load(outputFolder, configBuffer.toString());
+	                        unitsToWrite = getChangedCompilationUnits(reachableCompilationUnits, outputFolder, outputManifest);
+	                    }
+	                    else
+	                    {
+	                        unitsToWrite = new LinkedHashMap<ICompilationUnit, String>();
+	                        for (final ICompilationUnit cu : reachableCompilationUnits)
+	                            unitsToWrite.put(cu, null);
+	                    }
+	                    Set<ICompilationUnit> unitsWithProblems = new HashSet<ICompilationUnit>();
+	                    int emitThreads = googConfiguration.getJSOutputThreads();
+	                    if (emitThreads > 1)
+	                    {
+	                        writeCompilationUnitsInParallel(new ArrayList<ICompilationUnit>(unitsToWrite.keySet()), outputFolder, emitThreads,
+	                                unitsWithProblems);
+	                    }
+	                    else
+	                    {
+	                        for (final ICompilationUnit cu : unitsToWrite.keySet())
 	                        {
-	                            outputSourceMapFile = getOutputSourceMapFile(
-                                        cu.getQualifiedNames().get(0), outputFolder);
-                                sourceMapOut = new BufferedOutputStream(
-	                                    new FileOutputStream(outputSourceMapFile));
+	                            int problemCount = getEmitProblemCount();
+	                            writeCompilationUnit(cu, outputFolder, problems.getProblems());
+	                            if (getEmitProblemCount() != problemCount)
+	                                unitsWithProblems.add(cu);
 	                        }
-	                        
-	                        writer.writeTo(out, sourceMapOut, outputSourceMapFile);
-	                        out.flush();
-	                        out.close();
-                            if (sourceMapOut != null)
-                            {
-                                sourceMapOut.flush();
-                                sourceMapOut.close();
-                            }
-	                        writer.close();
 	                    }
+	                    if (outputManifest != null)
+	                        saveOutputManifest(outputManifest, unitsToWrite, unitsWithProblems, outputFolder);
+	                }
+	                finally
+	                {
+	                    CompilationProfiler.completePhase(workspace, "emit JS");
+	                }
+	                // The trees were only kept for the emitters.
+	                if (workspace.getSyntaxTreeRetention().getPolicy() != SyntaxTreeRetention.Policy.KEEP)
+	                    project.clearASTCache();
+	                for (final ICompilationUnit cu : reachableCompilationUnits)
+	                {
                         ClosureUtils.collectPropertyNamesToKeep(cu, project, closurePropNamesToKeep);
                         ClosureUtils.collectSymbolNamesToExport(cu, project, closureSymbolNamesToExport);
 	                }
@@ -439,7 +471,15 @@ public class MXMLJSCRoyale implements JSCompilerEntryPoint, ProblemQueryProvider
                 {
                     jsPublisher.setClosurePropertyNamesToKeep(closurePropNamesToKeep);
                     jsPublisher.setClosureSymbolNamesToExport(closureSymbolNamesToExport);
-                    compilationSuccess = jsPublisher.publish(problems);
+                    CompilationProfiler.startPhase(workspace, "publish");
+                    try
+                    {
+                        compilationSuccess = jsPublisher.publish(problems);
+                    }
+                    finally
+                    {
+                        CompilationProfiler.completePhase(workspace, "publish");
+                    }
                 }
                 else
                 {
@@ -452,6 +492,10 @@ public class MXMLJSCRoyale implements JSCompilerEntryPoint, ProblemQueryProvider
             final ICompilerProblem problem = new InternalCompilerProblem(e);
             problems.add(problem);
         }
+        finally
+        {
+            stopProfiling();
+        }
         List<ICompilerProblem> errs = new ArrayList<ICompilerProblem>();
         List<ICompilerProblem> warns = new ArrayList<ICompilerProblem>();
         problems.getErrorsAndWarnings(errs, warns);
@@ -459,6 +503,353 @@ public class MXMLJSCRoyale implements JSCompilerEntryPoint, ProblemQueryProvider
         return compilationSuccess && (errs.size() == 0);
     }
 
+    /**
+     * Start profiling the compilation if {@code -profile-output} is set, and
+     * start collecting new statistics for the workspace executor.
+     */
+    protected void startProfiling()
+    {
+        profiler = CompilationProfiler.startBuild(workspace, config.getProfileOutput());
+    }
+
+    /**
+     * Print the workspace statistics if the workspace diagnostics are
+     * enabled, stop profiling the compilation and write the profile to the
+     * {@code -profile-output} file.
+     */
+    protected void stopProfiling()
+    {
+        for (String line : CompilationProfiler.getWorkspaceDiagnostics(workspace, project))
+            System.out.println(line);
+        try
+        {
+            CompilationProfiler.completeBuild(workspace, profiler,
+                    config.getProfileOutput(), config.getProfileFormat());
+        }
+        catch (IOException e)
+        {
+            problems.add(new FileIOProblem(e));
+        }
+        finally
+        {
+            profiler = null;
+        }
+    }
+
+    /**
+     * Finds the compilation units whose output has to be written because
+     * their source, or the source of one of the dependencies covered by
+     * {@link JSOutputManifest#computeHash}, changed since the previous
+     * build. The entries of the other AS and MXML units are carried over to
+     * the new manifest. The main application unit is always written, because
+     * its output depends on the other units.
+     * 
+     * @param reachableCompilationUnits The units to write, in SWF order.
+     * @param outputFolder The js-debug output folder.
+     * @param outputManifest The manifest of the previous build.
+     * @return The units to write, in SWF order, mapped to the hash to record
+     * for their output, or to null if the unit isn't recorded in the manifest.
+     * @throws IOException
+     */
+    private Map<ICompilationUnit, String> getChangedCompilationUnits(List<ICompilationUnit> reachableCompilationUnits,
+            File outputFolder, JSOutputManifest outputManifest) throws IOException
+    {
+        boolean sourceMap = project.config.getSourceMap();
+        Map<ICompilationUnit, String> result = new LinkedHashMap<ICompilationUnit, String>();
+        for (ICompilationUnit cu : reachableCompilationUnits)
+        {
+            ICompilationUnit.UnitType cuType = cu.getCompilationUnitType();
+            if (cu == mainCU || (cuType != ICompilationUnit.UnitType.AS_UNIT
+                    && cuType != ICompilationUnit.UnitType.MXML_UNIT))
+            {
+                result.put(cu, null);
+                continue;
+            }
+
+            String hash = outputManifest.computeHash(cu, project);
+            File outputClassFile = getOutputClassFile(cu.getQualifiedNames().get(0), outputFolder);
+            if (outputManifest.isUpToDate(outputClassFile, hash, sourceMap))
+            {
+                if (outputManifest.keep(outputClassFile))
+                    project.needLanguage = true;
+                if (config.isVerbose())
+                {
+                    System.out.println("Keeping unchanged file: " + outputClassFile);
+                }
+            }
+            else
+            {
+                result.put(cu, hash);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return The number of problems reported so far by the emitters, to the
+     * problem query or to the project.
+     */
+    private int getEmitProblemCount()
+    {
+        int count = problems.getProblems().size();
+        Collection<ICompilerProblem> projectProblems = project.getProblems();
+        if (projectProblems != null && projectProblems != problems.getProblems())
+            count += projectProblems.size();
+        return count;
+    }
+
+    /**
+     * Adds the units that were written to the output manifest and saves it.
+     * If the build has errors, the manifest is deleted instead, so that the
+     * next build writes every file again.
+     * <p>
+     * Units whose emitters reported problems are left out of the manifest.
+     * A kept unit isn't emitted, so the next build writes them again and
+     * reports their warnings again.
+     * 
+     * @param outputManifest The manifest to save.
+     * @param writtenUnits The units that were written, mapped to the hash of
+     * their output.
+     * @param unitsWithProblems The units whose emitters reported problems.
+     * @param outputFolder The js-debug output folder.
+     * @throws IOException
+     */
+    private void saveOutputManifest(JSOutputManifest outputManifest,
+            Map<ICompilationUnit, String> writtenUnits, Set<ICompilationUnit> unitsWithProblems,
+            File outputFolder) throws IOException
+    {
+        if (problems.hasErrors())
+        {
+            outputManifest.delete();
+            return;
+        }
+        for (Map.Entry<ICompilationUnit, String> entry : writtenUnits.entrySet())
+        {
+            if (entry.getValue() != null && !unitsWithProblems.contains(entry.getKey()))
+            {
+                File outputClassFile = getOutputClassFile(
+                        entry.getKey().getQualifiedNames().get(0), outputFolder);
+                outputManifest.record(outputClassFile, entry.getValue());
+            }
+        }
+        outputManifest.save();
+    }
+
+    /**
+     * Writes the .js file (and the .js.map file, if source maps are enabled)
+     * for a single AS or MXML compilation unit. Other kinds of compilation
+     * units are ignored.
+     * 
+     * @param cu The compilation unit to write.
+     * @param outputFolder The js-debug output folder.
+     * @param unitProblems The collection that receives the problems reported
+     * while emitting the unit.
+     * @throws IOException
+     */
+    private void writeCompilationUnit(ICompilationUnit cu, File outputFolder,
+            List<ICompilerProblem> unitProblems) throws IOException
+    {
+        ICompilationUnit.UnitType cuType = cu.getCompilationUnitType();
+
+        if (cuType != ICompilationUnit.UnitType.AS_UNIT
+                && cuType != ICompilationUnit.UnitType.MXML_UNIT)
+            return;
+
+        final File outputClassFile = getOutputClassFile(
+                cu.getQualifiedNames().get(0), outputFolder);
+
+        if (config.isVerbose())
+        {
+            System.out.println("Compiling file: " + outputClassFile);
+        }
+
+        IJSWriter writer;
+        if (cuType == ICompilationUnit.UnitType.AS_UNIT)
+        {
+            writer = (IJSWriter) project.getBackend().createWriter(project,
+                    unitProblems, cu, false);
+        }
+        else
+        {
+            writer = (IJSWriter) project.getBackend().createMXMLWriter(
+                    project, unitProblems, cu, false);
+        }
+
+        BufferedOutputStream out = new BufferedOutputStream(
+                new FileOutputStream(outputClassFile));
+
+        BufferedOutputStream sourceMapOut = null;
+        File outputSourceMapFile = null;
+        if (project.config.getSourceMap())
+        {
+            outputSourceMapFile = getOutputSourceMapFile(
+                    cu.getQualifiedNames().get(0), outputFolder);
+            sourceMapOut = new BufferedOutputStream(
+                    new FileOutputStream(outputSourceMapFile));
+        }
+
+        writer.writeTo(out, sourceMapOut, outputSourceMapFile);
+        out.flush();
+        out.close();
+        if (sourceMapOut != null)
+        {
+            sourceMapOut.flush();
+            sourceMapOut.close();
+        }
+        writer.close();
+    }
+
+    /**
+     * Writes the compilation units on the workspace's executor, using at most
+     * <code>threadCount</code> concurrent workers.
+     * <p>
+     * The output is the same as a serial build: each unit collects its
+     * problems into its own list, and those lists are appended to the problem
+     * query in reachable order once every worker has finished. Problems that
+     * the emitters report directly to the project are routed to the list of
+     * the unit being written on that thread, so they keep their serial
+     * position too. The main application unit is written last, on the
+     * calling thread, because its output depends on flags (such as
+     * {@link RoyaleJSProject#needLanguage}) set while emitting the other
+     * units.
+     * 
+     * @param reachableCompilationUnits The units to write, in SWF order.
+     * @param outputFolder The js-debug output folder.
+     * @param threadCount The maximum number of concurrent workers.
+     * @param unitsWithProblems Receives the units, other than the main
+     * application unit, whose emitters reported problems.
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    private void writeCompilationUnitsInParallel(List<ICompilationUnit> reachableCompilationUnits,
+            final File outputFolder, int threadCount, Set<ICompilationUnit> unitsWithProblems)
+            throws IOException, InterruptedException
+    {
+        final List<ICompilationUnit> units = new ArrayList<ICompilationUnit>();
+        for (ICompilationUnit cu : reachableCompilationUnits)
+        {
+            if (cu != mainCU)
+                units.add(cu);
+        }
+
+        final List<List<ICompilerProblem>> unitProblems = new ArrayList<List<ICompilerProblem>>(units.size());
+        for (int i = 0; i < units.size(); i++)
+            unitProblems.add(new ArrayList<ICompilerProblem>());
+
+        // emitters occasionally report straight to the project. In a serial
+        // build those problems land in the problem query next to the unit's
+        // own problems (or in whatever collection the project was given), so
+        // route them per thread to the list of the unit being written and
+        // merge in unit order after the join.
+        final Collection<ICompilerProblem> projectProblems = project.getProblems();
+        final boolean projectSharesQuery = projectProblems == problems.getProblems();
+        final List<List<ICompilerProblem>> unitProjectProblems;
+        if (projectSharesQuery)
+        {
+            unitProjectProblems = unitProblems;
+        }
+        else
+        {
+            unitProjectProblems = new ArrayList<List<ICompilerProblem>>(units.size());
+            for (int i = 0; i < units.size(); i++)
+                unitProjectProblems.add(new ArrayList<ICompilerProblem>());
+        }
+        final ThreadLocal<List<ICompilerProblem>> currentProjectProblems = new ThreadLocal<List<ICompilerProblem>>();
+        final List<ICompilerProblem> unroutedProblems =
+                Collections.synchronizedList(new ArrayList<ICompilerProblem>());
+        project.setProblems(new AbstractCollection<ICompilerProblem>()
+        {
+            private List<ICompilerProblem> target()
+            {
+                List<ICompilerProblem> target = currentProjectProblems.get();
+                return target != null ? target : unroutedProblems;
+            }
+
+            @Override
+            public boolean add(ICompilerProblem problem)
+            {
+                return target().add(problem);
+            }
+
+            @Override
+            public Iterator<ICompilerProblem> iterator()
+            {
+                return target().iterator();
+            }
+
+            @Override
+            public int size()
+            {
+                return target().size();
+            }
+        });
+
+        final AtomicInteger nextUnit = new AtomicInteger();
+        Callable<Void> worker = new Callable<Void>()
+        {
+            @Override
+            public Void call()
+            {
+                int i;
+                while ((i = nextUnit.getAndIncrement()) < units.size())
+                {
+                    List<ICompilerProblem> problemsForUnit = unitProblems.get(i);
+                    currentProjectProblems.set(unitProjectProblems.get(i));
+                    try
+                    {
+                        writeCompilationUnit(units.get(i), outputFolder, problemsForUnit);
+                    }
+                    catch (Exception e)
+                    {
+                        problemsForUnit.add(new InternalCompilerProblem(e));
+                    }
+                    finally
+                    {
+                        currentProjectProblems.remove();
+                    }
+                }
+                return null;
+            }
+        };
+
+        try
+        {
+            ExecutorService executor = project.getWorkspace().getExecutorService();
+            int workerCount = Math.min(threadCount, units.size());
+            List<Future<Void>> futures = new ArrayList<Future<Void>>(workerCount);
+            for (int i = 0; i < workerCount; i++)
+                futures.add(executor.submit(worker));
+            for (Future<Void> future : futures)
+            {
+                try
+                {
+                    future.get();
+                }
+                catch (ExecutionException e)
+                {
+                    problems.add(new InternalCompilerProblem(e));
+                }
+            }
+        }
+        finally
+        {
+            project.setProblems(projectProblems);
+        }
+
+        for (int i = 0; i < units.size(); i++)
+        {
+            if (!unitProblems.get(i).isEmpty() || !unitProjectProblems.get(i).isEmpty())
+                unitsWithProblems.add(units.get(i));
+            problems.addAll(unitProblems.get(i));
+            if (!projectSharesQuery)
+                projectProblems.addAll(unitProjectProblems.get(i));
+        }
+        projectProblems.addAll(unroutedProblems);
+
+        if (mainCU != null && reachableCompilationUnits.contains(mainCU))
+            writeCompilationUnit(mainCU, outputFolder, problems.getProblems());
+    }
+
     private void generateExternsReport(File externsReportFile,
 			List<ICompilationUnit> reachableCompilationUnits,
 			ProblemQuery problems) {
@@ -1156,7 +1547,8 @@ public class MXMLJSCRoyale implements JSCompilerEntryPoint, ProblemQueryProvider
         workspace.startIdleState();
         try
         {
-            workspace.close();
+            if (!keepWorkspaceOpen)
+                workspace.close();
         }
         finally
         {
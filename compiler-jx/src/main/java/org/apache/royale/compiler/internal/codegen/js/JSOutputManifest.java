@@ -0,0 +1,341 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.internal.codegen.js;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.apache.royale.compiler.common.DependencyType;
+import org.apache.royale.compiler.common.DependencyTypeSet;
+import org.apache.royale.compiler.common.VersionInfo;
+import org.apache.royale.compiler.internal.codegen.js.royale.JSRoyaleEmitterTokens;
+import org.apache.royale.compiler.internal.projects.CompilerProject;
+import org.apache.royale.compiler.internal.projects.DependencyGraph;
+import org.apache.royale.compiler.units.ICompilationUnit;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+
+/**
+ * Records which compilation units produced which files in the js-debug
+ * folder, so that a later build can leave the files of unchanged units alone
+ * instead of emitting and writing them again.
+ * <p>
+ * Each entry maps the path of a .js file, relative to the output folder, to a
+ * hash of everything the emitted code depends on: the source of the unit, of
+ * every unit it directly depends on, and of the base classes and signature
+ * types those depend on in turn (SWC and other binary dependencies are
+ * identified by size and modification time). The whole
+ * manifest is discarded when the compiler version or the configuration
+ * changes.
+ * <p>
+ * The manifest also remembers whether the file needed
+ * <code>org.apache.royale.utils.Language</code>, because the main application
+ * unit is always written and requires that class if any other unit did.
+ */
+public class JSOutputManifest
+{
+    /**
+     * The name of the manifest file in the output folder.
+     */
+    public static final String FILE_NAME = ".royale-js-output";
+
+    private static final String FORMAT_VERSION = "2";
+    private static final String FINGERPRINT_KEY = "#fingerprint";
+    private static final String LANGUAGE_SUFFIX = ",language";
+    private static final Charset UTF8 = Charset.forName("utf8");
+
+    /**
+     * Load the manifest of the previous build from the output folder.
+     * 
+     * @param outputFolder The js-debug output folder.
+     * @param configuration A canonical form of the configuration; entries
+     * written with another configuration are ignored.
+     * @return The manifest. It is empty if there was no manifest, if it
+     * could not be read, or if it was written by another compiler or with
+     * another configuration.
+     */
+    public static JSOutputManifest load(File outputFolder, String configuration)
+    {
+        final String fingerprint = Hashing.sha256().newHasher()
+                .putString(FORMAT_VERSION, UTF8)
+                .putString(VersionInfo.buildMessage(), UTF8)
+                .putString(configuration, UTF8)
+                .hash().toString();
+        final JSOutputManifest manifest = new JSOutputManifest(outputFolder, fingerprint);
+
+        final File file = new File(outputFolder, FILE_NAME);
+        if (!file.isFile())
+            return manifest;
+
+        final Properties properties = new Properties();
+        try
+        {
+            final InputStream in = new FileInputStream(file);
+            try
+            {
+                properties.load(in);
+            }
+            finally
+            {
+                in.close();
+            }
+        }
+        catch (IOException e)
+        {
+            // an unreadable manifest just means a full build.
+            return manifest;
+        }
+
+        if (!fingerprint.equals(properties.getProperty(FINGERPRINT_KEY)))
+            return manifest;
+
+        for (String path : properties.stringPropertyNames())
+        {
+            if (!path.equals(FINGERPRINT_KEY))
+                manifest.previousEntries.put(path, properties.getProperty(path));
+        }
+        return manifest;
+    }
+
+    private JSOutputManifest(File outputFolder, String fingerprint)
+    {
+        this.outputFolder = outputFolder;
+        this.fingerprint = fingerprint;
+    }
+
+    private final File outputFolder;
+    private final String fingerprint;
+
+    // relative output path -> "hash" or "hash,language"
+    private final Map<String, String> previousEntries = new HashMap<String, String>();
+    private final Map<String, String> entries = new TreeMap<String, String>();
+
+    // file name -> content hash, shared by all the units that depend on a file
+    private final Map<String, String> fileHashes = new HashMap<String, String>();
+
+    /**
+     * Compute the hash of the inputs of a compilation unit's output.
+     * <p>
+     * Besides the unit itself, the hash covers every unit it directly
+     * depends on and, transitively, the units those depend on through
+     * inheritance or signature dependencies. The emitted code of a subclass
+     * depends on the members it inherits from all of its base classes, not
+     * only from its direct base class.
+     * 
+     * @param cu The compilation unit.
+     * @param project The project that owns the unit.
+     * @return The hash.
+     * @throws IOException if the source of the unit or of one of its
+     * dependencies can't be read.
+     */
+    public String computeHash(ICompilationUnit cu, CompilerProject project) throws IOException
+    {
+        final Hasher hasher = Hashing.sha256().newHasher();
+        putFile(hasher, cu);
+
+        final DependencyGraph graph = project.getDependencyGraph();
+        final Map<String, ICompilationUnit> dependenciesByName = new TreeMap<String, ICompilationUnit>();
+        final Set<ICompilationUnit> visited = new HashSet<ICompilationUnit>();
+        visited.add(cu);
+        final Deque<ICompilationUnit> apiDependers = new ArrayDeque<ICompilationUnit>();
+        for (ICompilationUnit dependency : project.getDirectDependencies(cu))
+        {
+            if (visited.add(dependency))
+            {
+                dependenciesByName.put(getDependencyName(dependency), dependency);
+                apiDependers.add(dependency);
+            }
+        }
+        while (!apiDependers.isEmpty())
+        {
+            final ICompilationUnit depender = apiDependers.remove();
+            for (ICompilationUnit dependency : project.getDirectDependencies(depender))
+            {
+                if (visited.contains(dependency))
+                    continue;
+                final DependencyTypeSet types = graph.getDependencyTypes(depender, dependency);
+                if (types.contains(DependencyType.INHERITANCE) || types.contains(DependencyType.SIGNATURE))
+                {
+                    visited.add(dependency);
+                    dependenciesByName.put(getDependencyName(dependency), dependency);
+                    apiDependers.add(dependency);
+                }
+            }
+        }
+        for (ICompilationUnit dependency : dependenciesByName.values())
+            putFile(hasher, dependency);
+
+        return hasher.hash().toString();
+    }
+
+    private static String getDependencyName(ICompilationUnit cu)
+    {
+        return cu.getName() + "|" + cu.getAbsoluteFilename();
+    }
+
+    private void putFile(Hasher hasher, ICompilationUnit cu) throws IOException
+    {
+        final String fileName = cu.getAbsoluteFilename() != null ? cu.getAbsoluteFilename() : "";
+        hasher.putString(cu.getName(), UTF8);
+        hasher.putChar('\0');
+        hasher.putString(fileName, UTF8);
+        hasher.putChar('\0');
+        hasher.putString(getFileHash(cu, fileName), UTF8);
+        hasher.putChar('\0');
+    }
+
+    private String getFileHash(ICompilationUnit cu, String fileName) throws IOException
+    {
+        String hash = fileHashes.get(fileName);
+        if (hash == null)
+        {
+            final File file = new File(fileName);
+            switch (cu.getCompilationUnitType())
+            {
+                case AS_UNIT:
+                case MXML_UNIT:
+                case FXG_UNIT:
+                case CSS_UNIT:
+                case RESOURCE_UNIT:
+                case EMBED_UNIT:
+                    hash = file.isFile() ? Files.asByteSource(file).hash(Hashing.sha256()).toString() : "";
+                    break;
+                default:
+                    // SWC and ABC files are too large to read on every build.
+                    hash = file.length() + ":" + file.lastModified();
+                    break;
+            }
+            fileHashes.put(fileName, hash);
+        }
+        return hash;
+    }
+
+    /**
+     * Check whether the previous build wrote the output file of a unit from
+     * the same inputs, and whether the file is still there.
+     * 
+     * @param outputFile The .js file of the unit.
+     * @param hash The hash returned by {@link #computeHash}.
+     * @param sourceMap true if the .js.map file must exist, too.
+     * @return true if the output file can be kept.
+     */
+    public boolean isUpToDate(File outputFile, String hash, boolean sourceMap)
+    {
+        final String entry = previousEntries.get(getRelativePath(outputFile));
+        if (entry == null || !getHash(entry).equals(hash))
+            return false;
+        if (!outputFile.isFile())
+            return false;
+        if (sourceMap && !new File(outputFile.getPath() + ".map").isFile())
+            return false;
+        return true;
+    }
+
+    /**
+     * Carry the entry of an output file that is kept over to this build.
+     * 
+     * @param outputFile The .js file of the unit.
+     * @return true if the file needed <code>org.apache.royale.utils.Language</code>.
+     */
+    public boolean keep(File outputFile)
+    {
+        final String path = getRelativePath(outputFile);
+        final String entry = previousEntries.get(path);
+        entries.put(path, entry);
+        return entry.endsWith(LANGUAGE_SUFFIX);
+    }
+
+    /**
+     * Add the entry of an output file that was written by this build.
+     * 
+     * @param outputFile The .js file of the unit.
+     * @param hash The hash returned by {@link #computeHash}.
+     * @throws IOException if the output file can't be read.
+     */
+    public void record(File outputFile, String hash) throws IOException
+    {
+        final String output = Files.asCharSource(outputFile, UTF8).read();
+        final boolean needLanguage = output.contains(JSRoyaleEmitterTokens.LANGUAGE_QNAME.getToken());
+        entries.put(getRelativePath(outputFile), needLanguage ? hash + LANGUAGE_SUFFIX : hash);
+    }
+
+    /**
+     * Write the manifest to the output folder. Only the entries that were
+     * kept or recorded by this build are written.
+     * 
+     * @throws IOException
+     */
+    public void save() throws IOException
+    {
+        final Properties properties = new Properties();
+        properties.setProperty(FINGERPRINT_KEY, fingerprint);
+        for (Map.Entry<String, String> entry : entries.entrySet())
+            properties.setProperty(entry.getKey(), entry.getValue());
+
+        final OutputStream out = new FileOutputStream(new File(outputFolder, FILE_NAME));
+        try
+        {
+            properties.store(out, null);
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    /**
+     * Delete the manifest, so that the next build writes every file.
+     */
+    public void delete()
+    {
+        new File(outputFolder, FILE_NAME).delete();
+    }
+
+    private String getRelativePath(File outputFile)
+    {
+        final String folderPath = outputFolder.getAbsolutePath() + File.separator;
+        String path = outputFile.getAbsolutePath();
+        if (path.startsWith(folderPath))
+            path = path.substring(folderPath.length());
+        return path.replace(File.separatorChar, '/');
+    }
+
+    private static String getHash(String entry)
+    {
+        return entry.endsWith(LANGUAGE_SUFFIX) ?
+                entry.substring(0, entry.length() - LANGUAGE_SUFFIX.length()) :
+                entry;
+    }
+}
@@ -23,6 +23,7 @@ import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.Charset;
 import java.util.*;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
@@ -256,6 +257,29 @@ public class JSGoogPublisher extends JSPublisher implements IJSPublisher
         fw.close();
     }
 
+    /**
+     * Writes the content to the target file, unless the file already has
+     * exactly that content. Files that don't change keep their modification
+     * time, so tools that watch the output folder don't see them as changed.
+     * 
+     * @param target The file to write.
+     * @param content The content of the file.
+     * @return true if the file was written.
+     * @throws IOException
+     */
+    protected boolean writeFileIfChanged(File target, String content)
+            throws IOException
+    {
+        Charset utf8 = Charset.forName("utf8");
+        if (target.isFile() && target.length() == content.getBytes(utf8).length
+                && content.equals(FileUtils.readFileToString(target, utf8)))
+        {
+            return false;
+        }
+        FileUtils.write(target, content, utf8);
+        return true;
+    }
+
     protected List<SourceFile> getClasspathResources(File jarFile) throws IOException {
         return getClasspathResources(jarFile, null);
     }
@@ -379,8 +379,8 @@ public class MXMLRoyalePublisher extends JSGoogPublisher implements IJSGoogPubli
         // Dump a copy of the closure lib files to the intermediate directory. Without this
         // the application will not be able to run.
         for(SourceFile closureSourceFile : closureSourceFiles) {
-            FileUtils.write(new File(new File(intermediateDir, "library/closure"),
-                    closureSourceFile.getName()), closureSourceFile.getCode(), Charset.forName("utf8"));
+            writeFileIfChanged(new File(new File(intermediateDir, "library/closure"),
+                    closureSourceFile.getName()), closureSourceFile.getCode());
         }
         closureSourceFiles = closureFilesInOrder(intermediateDir + "/library/closure/", closureSourceFiles, "goog.events.EventTarget");
 
@@ -528,7 +528,7 @@ public class MXMLRoyalePublisher extends JSGoogPublisher implements IJSGoogPubli
             
         	// need better test someday
         	depsFileData += "\ngoog.require('" + mainClassQName + "');\n";
-            writeFile(new File(intermediateDir, projectName + "__deps.js"), depsFileData + additionalScript + "\n", false);
+            writeFileIfChanged(new File(intermediateDir, projectName + "__deps.js"), depsFileData + additionalScript + "\n");
             gdw.needCSS = true;
             if (configuration.release()) {
             	writeFile(new File(releaseDir, projectName + ".js"), additionalScript, false);
@@ -950,4 +950,58 @@ public class JSGoogConfiguration extends JSConfiguration
     	inlineConstants = value;
     }
 
+
+    //
+    // 'js-output-threads'
+    //
+
+    private int jsOutputThreads = 1;
+
+    public int getJSOutputThreads()
+    {
+        return jsOutputThreads;
+    }
+
+    /**
+     * The number of threads used to write the .js files for the compilation
+     * units. The default of 1 writes them one at a time. The value must be
+     * greater than zero.
+     */
+    @Config(advanced = true)
+    @Mapping("js-output-threads")
+    @Arguments("count")
+    public void setJSOutputThreads(ConfigurationValue cv, int value)
+            throws ConfigurationException
+    {
+        if (value <= 0)
+            throw new ConfigurationException.GreaterThanZero(cv.getVar(), cv.getSource(), cv.getLine());
+        jsOutputThreads = value;
+    }
+
+    //
+    // 'js-incremental-output'
+    //
+
+    private boolean jsIncrementalOutput = false;
+
+    public boolean getJSIncrementalOutput()
+    {
+        return jsIncrementalOutput;
+    }
+
+    /**
+     * Keeps the .js files of the compilation units whose source hasn't
+     * changed since the previous build, nor the source of their direct
+     * dependencies or of the base classes and signature types those depend
+     * on, instead of writing every file in the output folder again. Units
+     * whose emitters reported warnings are written on every build.
+     */
+    @Config(advanced = true)
+    @Mapping("js-incremental-output")
+    public void setJSIncrementalOutput(ConfigurationValue cv, boolean value)
+            throws ConfigurationException
+    {
+        jsIncrementalOutput = value;
+    }
+
 }
@@ -28,6 +28,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.royale.compiler.asdoc.IASDocComment;
 import org.apache.royale.compiler.asdoc.royale.ASDocComment;
@@ -294,8 +295,13 @@ public class RoyaleJSProject extends RoyaleProject
     public boolean needCSS;
     public boolean needXML;
 
-    private LinkageChecker linkageChecker;
-    private ITargetSettings ts;
+    /**
+     * Set together with {@link #ts}, which is written first, while holding
+     * the lock of this project. Emitter and code generation threads read them
+     * without the lock.
+     */
+    private volatile LinkageChecker linkageChecker;
+    private volatile ITargetSettings ts;
 
     // definitions that had @externs in the source
     public ArrayList<String> sourceExterns = new ArrayList<String>();
@@ -386,13 +392,21 @@ public class RoyaleJSProject extends RoyaleProject
         return !isExterns(qname);
     }
 
-    public boolean isExternalLinkage(ICompilationUnit cu)
+    private synchronized LinkageChecker initLinkageChecker()
     {
         if (linkageChecker == null)
         {
             ts = getTargetSettings();
             linkageChecker = new LinkageChecker(this, ts);
         }
+        return linkageChecker;
+    }
+
+    public boolean isExternalLinkage(ICompilationUnit cu)
+    {
+        LinkageChecker linkageChecker = this.linkageChecker;
+        if (linkageChecker == null)
+            linkageChecker = initLinkageChecker();
         // in unit tests, ts may be null and LinkageChecker NPEs
         if (ts == null)
         {
@@ -436,6 +450,20 @@ public class RoyaleJSProject extends RoyaleProject
         return false;
     }
 
+    /**
+     * The JS output of an externally linked compilation unit is never written,
+     * so only the signatures of its functions are needed to check and emit
+     * the units that use it.
+     */
+    @Override
+    public boolean requiresFunctionBodies(ICompilationUnit unit) throws InterruptedException
+    {
+        // inlined functions are copied from their bodies, wherever they are linked
+        if (isInliningEnabled())
+            return true;
+        return !isExternalLinkage(unit);
+    }
+
     public ArrayList<String> getInterfaces(ICompilationUnit from)
     {
         if (interfaces.containsKey(from))
@@ -510,14 +538,24 @@ public class RoyaleJSProject extends RoyaleProject
         astCache.put(ast, "");
     }
 
+    @Override
+    public void clearASTCache()
+    {
+        astCache.clear();
+    }
+
     @Override
     public void setTargetSettings(ITargetSettings value)
     {
         super.setTargetSettings(value);
-        ts = value;
-        linkageChecker = new LinkageChecker(this, value);
+        final LinkageChecker checker = new LinkageChecker(this, value);
+        synchronized (this)
+        {
+            ts = value;
+            linkageChecker = checker;
+        }
         try {
-            linkageChecker.initExterns();
+            checker.initExterns();
         } catch (InterruptedException e) {
             // TODO Auto-generated catch block
             e.printStackTrace();
@@ -615,7 +653,9 @@ public class RoyaleJSProject extends RoyaleProject
 		return true;
 	}
 
-	private HashSet<String> exportedNames = new HashSet<String>();
+	// written by the JS emitters, which may run on several threads at once
+	// when js-output-threads is greater than 1.
+	private Set<String> exportedNames = ConcurrentHashMap.<String>newKeySet();
 	
 	public List<String> compiledResourceBundleNames = new ArrayList<String>();
 	public List<String> compiledResourceBundleClasses = new ArrayList<String>();
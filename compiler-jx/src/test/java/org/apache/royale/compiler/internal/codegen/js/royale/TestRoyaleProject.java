@@ -22,12 +22,25 @@ package org.apache.royale.compiler.internal.codegen.js.royale;
 import static org.hamcrest.core.Is.is;
 import static org.junit.Assert.assertThat;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 
 import junit.framework.Assert;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.filefilter.DirectoryFileFilter;
+import org.apache.commons.io.filefilter.FileFileFilter;
+import org.apache.commons.io.filefilter.FileFilterUtils;
+import org.apache.commons.io.filefilter.IOFileFilter;
+import org.apache.commons.io.filefilter.TrueFileFilter;
+import org.apache.royale.compiler.clients.JSCompilerDaemon;
+import org.apache.royale.compiler.clients.MXMLJSC;
 import org.apache.royale.compiler.driver.IBackend;
 import org.apache.royale.compiler.exceptions.ConfigurationException;
 import org.apache.royale.compiler.internal.codegen.js.goog.TestGoogProject;
@@ -146,6 +159,159 @@ public class TestRoyaleProject extends TestGoogProject
 
         assertPublishedProjectOut(testDirPath, "circular_proto");
     }
+
+    @Test
+    public void test_ParallelOutputMatchesSerial()
+    {
+        String testDirPath = projectDirPath + "/interfaces";
+
+        String fileName = "Test.as";
+
+        int exitCode = publishProjectWithThreads(testDirPath, "interfaces_serial", fileName, 1);
+        assertThat(exitCode, is(0));
+        exitCode = publishProjectWithThreads(testDirPath, "interfaces_parallel", fileName, 4);
+        assertThat(exitCode, is(0));
+
+        File serialFolder = new File(tempDir + "/interfaces_serial/bin/js-debug");
+        File parallelFolder = new File(tempDir + "/interfaces_parallel/bin/js-debug");
+        IOFileFilter jsFilter = FileFilterUtils.and(FileFileFilter.FILE,
+                FileFilterUtils.suffixFileFilter(".js"));
+        Collection<File> serialFiles = FileUtils.listFiles(serialFolder, jsFilter, TrueFileFilter.INSTANCE);
+        assertThat(serialFiles.isEmpty(), is(false));
+        assertThat(FileUtils.listFiles(parallelFolder, jsFilter, TrueFileFilter.INSTANCE).size(),
+                is(serialFiles.size()));
+        for (File serialFile : serialFiles)
+        {
+            String relativePath = serialFile.getAbsolutePath().substring(
+                    serialFolder.getAbsolutePath().length());
+            File parallelFile = new File(parallelFolder, relativePath);
+            assertThat(relativePath, readCodeFile(parallelFile), is(readCodeFile(serialFile)));
+        }
+    }
+
+    @Test
+    public void test_DaemonCompilesTwice()
+    {
+        String testDirPath = projectDirPath + "/interfaces";
+
+        File sourceFolder = new File(tempDir + "/interfaces_daemon/src");
+        File projectFolder = new File(TestAdapterFactory.getTestAdapter().getUnitTestBaseDir(), testDirPath);
+        File brokenFile = new File(sourceFolder, "Broken.as");
+        try
+        {
+            FileUtils.copyDirectory(projectFolder, sourceFolder,
+                    FileFilterUtils.or(DirectoryFileFilter.DIRECTORY,
+                            FileFilterUtils.suffixFileFilter(".as")));
+            FileUtils.writeStringToFile(brokenFile,
+                    "package { public class Broken { public function Broken() { undefinedThing = 1; } } }",
+                    "UTF-8");
+        }
+        catch (IOException e)
+        {
+            Assert.fail(e.getMessage());
+        }
+
+        StringBuilder commonArgs = new StringBuilder();
+        commonArgs.append(" \"-external-library-path=" + env.ASJS + "/js/libs/js.swc\"");
+        commonArgs.append(" -remove-circulars");
+        if (env.GOOG != null)
+            commonArgs.append(" \"-closure-lib=" + env.GOOG + "\"");
+        String mainFile = " \"" + new File(sourceFolder, "Test.as").getAbsolutePath() + "\"";
+        String commands = "mxmljsc" + commonArgs + mainFile + "\n"
+                + "mxmljsc" + commonArgs + mainFile + "\n"
+                + "mxmljsc" + commonArgs + " \"" + brokenFile.getAbsolutePath() + "\"\n"
+                + "quit\n";
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        int exitCode = new JSCompilerDaemon().run(
+                new ByteArrayInputStream(commands.getBytes(Charset.forName("UTF-8"))),
+                new PrintStream(out, true), new PrintStream(err, true));
+        assertThat(exitCode, is(0));
+
+        String[] results = out.toString().trim().split("\\r?\\n");
+        assertThat(results.length, is(3));
+        assertThat(results[0], results[0].startsWith("done 0 "), is(true));
+        assertThat(results[1], results[1].startsWith("done 0 "), is(true));
+        assertThat(results[2], results[2].startsWith("done 0 "), is(false));
+        // the problems of the daemon's builds go to its error stream
+        assertThat(err.toString(), err.toString().contains("undefinedThing"), is(true));
+    }
+
+    @Test
+    public void test_IncrementalOutputRewritesSubclassOfChangedGrandparent()
+    {
+        File sourceFolder = new File(tempDir + "/incremental_grandparent/src");
+        File childOutput = new File(tempDir + "/incremental_grandparent/bin/js-debug/Child.js");
+        List<String> argList = new ArrayList<String>();
+        argList.add("-external-library-path=" + env.ASJS + "/js/libs/js.swc");
+        argList.add("-js-incremental-output");
+        if (env.GOOG != null)
+            argList.add("-closure-lib=" + env.GOOG);
+        argList.add(new File(sourceFolder, "Main.as").getAbsolutePath());
+        String[] args = argList.toArray(new String[argList.size()]);
+        try
+        {
+            FileUtils.writeStringToFile(new File(sourceFolder, "Main.as"),
+                    "package { public class Main { public function Main() { new Child(); } } }", "UTF-8");
+            FileUtils.writeStringToFile(new File(sourceFolder, "GrandParent.as"),
+                    "package { public class GrandParent { public function foo():void {} } }", "UTF-8");
+            FileUtils.writeStringToFile(new File(sourceFolder, "Parent.as"),
+                    "package { public class Parent extends GrandParent {} }", "UTF-8");
+            FileUtils.writeStringToFile(new File(sourceFolder, "Child.as"),
+                    "package { public class Child extends Parent { override public function foo():void {} } }", "UTF-8");
+        }
+        catch (IOException e)
+        {
+            Assert.fail(e.getMessage());
+        }
+
+        assertThat(MXMLJSC.staticMainNoExit(args), is(0));
+        assertThat(childOutput.isFile(), is(true));
+
+        // nothing changed, so the file is kept
+        childOutput.setLastModified(1000);
+        assertThat(MXMLJSC.staticMainNoExit(args), is(0));
+        assertThat(childOutput.lastModified(), is(1000L));
+
+        // the API of a base class of Child's base class changed
+        try
+        {
+            FileUtils.writeStringToFile(new File(sourceFolder, "GrandParent.as"),
+                    "package { public class GrandParent { public function foo():void {} public function bar():void {} } }", "UTF-8");
+        }
+        catch (IOException e)
+        {
+            Assert.fail(e.getMessage());
+        }
+        assertThat(MXMLJSC.staticMainNoExit(args), is(0));
+        assertThat(childOutput.lastModified() == 1000L, is(false));
+    }
+
+    private int publishProjectWithThreads(String projectFolderPath,
+            String projectName, String mainFileName, int threadCount)
+    {
+        File sourceFolder = new File(tempDir + "/" + projectName + "/src");
+        File projectFolder = new File(TestAdapterFactory.getTestAdapter().getUnitTestBaseDir(), projectFolderPath);
+        try
+        {
+            FileUtils.copyDirectory(projectFolder, sourceFolder,
+                    FileFilterUtils.or(DirectoryFileFilter.DIRECTORY,
+                            FileFilterUtils.suffixFileFilter(".as")));
+        }
+        catch (IOException e)
+        {
+            Assert.fail(e.getMessage());
+        }
+        List<String> args = new ArrayList<String>();
+        args.add("-external-library-path=" + env.ASJS + "/js/libs/js.swc");
+        args.add("-remove-circulars");
+        args.add("-js-output-threads=" + threadCount);
+        if (env.GOOG != null)
+            args.add("-closure-lib=" + env.GOOG);
+        args.add(new File(sourceFolder, mainFileName).getAbsolutePath());
+        return MXMLJSC.staticMainNoExit(args.toArray(new String[args.size()]));
+    }
     
     @Test
     public void test_XMLRequires()
@@ -0,0 +1,153 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.internal.projects;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.royale.compiler.internal.driver.js.royale.RoyaleBackend;
+import org.apache.royale.compiler.internal.tree.as.FileNode;
+import org.apache.royale.compiler.internal.tree.as.FunctionNode;
+import org.apache.royale.compiler.internal.workspaces.Workspace;
+import org.apache.royale.compiler.problems.ICompilerProblem;
+import org.apache.royale.compiler.tree.as.IASNode;
+import org.apache.royale.compiler.units.ICompilationUnit;
+import org.apache.royale.utils.FilenameNormalization;
+import org.apache.royale.utils.ITestAdapter;
+import org.apache.royale.utils.TestAdapterFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * This class tests that the function bodies of externally linked compilation
+ * units are not parsed in JS builds.
+ */
+public class TestRoyaleJSProjectFunctionBodies
+{
+    private static final String CODE =
+        "package p\n" +
+        "{\n" +
+        "    public class A\n" +
+        "    {\n" +
+        "        public function f():int\n" +
+        "        {\n" +
+        "            var x:int = 1;\n" +
+        "            return x;\n" +
+        "        }\n" +
+        "    }\n" +
+        "}\n";
+
+    private ITestAdapter testAdapter = TestAdapterFactory.getTestAdapter();
+    private File folder;
+    private Workspace workspace;
+    private RoyaleJSProject project;
+    private ICompilationUnit unit;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        folder = File.createTempFile(getClass().getSimpleName(), "", new File(testAdapter.getTempDir()));
+        folder.delete();
+        folder.mkdirs();
+        File file = new File(folder, "p/A.as");
+        FileUtils.writeStringToFile(file, CODE, "UTF-8");
+
+        workspace = new Workspace();
+        project = new RoyaleJSProject(workspace, new RoyaleBackend());
+        project.setSourcePath(Collections.singletonList(new File(FilenameNormalization.normalize(folder.getAbsolutePath()))));
+        unit = workspace.getCompilationUnits(FilenameNormalization.normalize(file.getAbsolutePath()), project).iterator().next();
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        workspace.close();
+        FileUtils.deleteDirectory(folder);
+    }
+
+    private static FunctionNode findFunction(IASNode node)
+    {
+        if (node instanceof FunctionNode)
+            return (FunctionNode)node;
+        for (int i = 0; i < node.getChildCount(); i++)
+        {
+            FunctionNode result = findFunction(node.getChild(i));
+            if (result != null)
+                return result;
+        }
+        return null;
+    }
+
+    /**
+     * Generates the code of the unit, then asks for the body of its function
+     * as a later consumer of the syntax tree would.
+     *
+     * @return the number of statements in the body.
+     */
+    private int generateAndParseBody(boolean expectSkipped) throws InterruptedException
+    {
+        unit.getABCBytesRequest().get();
+
+        FileNode fileNode = (FileNode)unit.getSyntaxTreeRequest().get().getAST();
+        assertThat("skip flag", fileNode.getSkipDeferredFunctionBodies(), is(expectSkipped));
+        FunctionNode function = findFunction(fileNode);
+        function.parseFunctionBody(new ArrayList<ICompilerProblem>());
+        try
+        {
+            return function.getScopedNode().getChildCount();
+        }
+        finally
+        {
+            function.discardFunctionBody();
+        }
+    }
+
+    @Test
+    public void test_externalUnitSkipsBodies() throws InterruptedException
+    {
+        project.unitTestExterns = Collections.singletonList("p.A");
+        assertThat("required", project.requiresFunctionBodies(unit), is(false));
+        assertThat("statements", generateAndParseBody(true), is(0));
+    }
+
+    @Test
+    public void test_internalUnitKeepsBodies() throws InterruptedException
+    {
+        project.unitTestExterns = Collections.<String>emptyList();
+        assertThat("required", project.requiresFunctionBodies(unit), is(true));
+        assertThat("statements", generateAndParseBody(false), is(2));
+    }
+
+    @Test
+    public void test_inliningKeepsBodies() throws InterruptedException
+    {
+        project.unitTestExterns = Collections.singletonList("p.A");
+        project.setEnableInlining(true);
+        assertThat("required", project.requiresFunctionBodies(unit), is(true));
+        assertThat("statements", generateAndParseBody(false), is(2));
+    }
+}
@@ -23,6 +23,7 @@ import org.apache.royale.abc.diagnostics.AbstractDiagnosticVisitor;
 import org.apache.royale.abc.graph.IFlowgraph;
 import org.apache.royale.abc.graph.IBasicBlock;
 import org.apache.royale.abc.instructionlist.InstructionList;
+import org.apache.royale.abc.optimize.CopyPropagationFilter;
 import org.apache.royale.abc.optimize.DeadCodeFilter;
 import org.apache.royale.abc.optimize.PeepholeOptimizerMethodBodyVisitor;
 import org.apache.royale.abc.semantics.ClassInfo;
@@ -55,7 +56,16 @@ import org.apache.royale.compiler.problems.ICompilerProblem;
 import org.apache.royale.compiler.problems.UnreachableBlockProblem;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * The ABCLinker links a sequence of ABC blocks into a single ABC block,
@@ -70,15 +80,130 @@ public class ABCLinker
         // so allow those, instead of throwin java exceptions
         emitter.setAllowBadJumps(true);
         emitter.visit(majorVersion, minorVersion);
-        for (byte[] inputABC : inputABCs)
+        if (settings.transformsInParallel() && hasSeveralInputs(inputABCs))
         {
-            ABCParser abcParser = new ABCParser(inputABC);
-            abcParser.parseABC(new LinkingVisitor(emitter, settings));
+            // Transform the method bodies of each input ABC on the executor,
+            // then merge the transformed ABCs in their original order, so the
+            // linked ABC doesn't depend on the scheduling of the threads.
+            ABCLinkerSettings mergeSettings = settings.getMergeSettings();
+            List<FutureTask<TransformedABC>> transforms = startTransforms(inputABCs, majorVersion, minorVersion, settings);
+            try
+            {
+                for (FutureTask<TransformedABC> transform : transforms)
+                {
+                    TransformedABC transformedABC = finishTransform(transform);
+                    ABCParser abcParser = new ABCParser(transformedABC.abc);
+                    abcParser.parseABC(new LinkingVisitor(emitter, mergeSettings));
+                    if (settings.problems != null)
+                        settings.problems.addAll(transformedABC.problems);
+                }
+            }
+            finally
+            {
+                // Don't leave transformations running if one of them failed.
+                for (FutureTask<TransformedABC> transform : transforms)
+                    transform.cancel(false);
+            }
+        }
+        else
+        {
+            for (byte[] inputABC : inputABCs)
+            {
+                ABCParser abcParser = new ABCParser(inputABC);
+                abcParser.parseABC(new LinkingVisitor(emitter, settings));
+            }
         }
         emitter.visitEnd();
         return emitter.emit();
     }
 
+    private static boolean hasSeveralInputs(Iterable<byte[]> inputABCs)
+    {
+        Iterator<byte[]> it = inputABCs.iterator();
+        if (!it.hasNext())
+            return false;
+        it.next();
+        return it.hasNext();
+    }
+
+    /**
+     * Submit the transformation of each input ABC to the executor of the
+     * settings.
+     * 
+     * @return the transformations, in the order of the input ABCs.
+     */
+    private static List<FutureTask<TransformedABC>> startTransforms(Iterable<byte[]> inputABCs, final int majorVersion, final int minorVersion, final ABCLinkerSettings settings)
+    {
+        List<FutureTask<TransformedABC>> transforms = new ArrayList<FutureTask<TransformedABC>>();
+        for (final byte[] inputABC : inputABCs)
+        {
+            FutureTask<TransformedABC> transform = new FutureTask<TransformedABC>(new Callable<TransformedABC>()
+            {
+                @Override
+                public TransformedABC call() throws Exception
+                {
+                    return transformABC(inputABC, majorVersion, minorVersion, settings);
+                }
+            });
+            settings.executorService.execute(transform);
+            transforms.add(transform);
+        }
+        return transforms;
+    }
+
+    /**
+     * Wait for the transformation of an input ABC. If no thread of the
+     * executor picked it up yet, it is run on the calling thread, so linking
+     * can't starve when it is itself called from a thread of the executor.
+     */
+    private static TransformedABC finishTransform(FutureTask<TransformedABC> transform) throws Exception
+    {
+        transform.run();
+        try
+        {
+            return transform.get();
+        }
+        catch (ExecutionException e)
+        {
+            if (e.getCause() instanceof Exception)
+                throw (Exception)e.getCause();
+            throw e;
+        }
+    }
+
+    /**
+     * Link a single input ABC with the method body transformations of the
+     * settings: stripping of debug opcodes, peephole optimization and dead code
+     * removal.
+     */
+    private static TransformedABC transformABC(byte[] inputABC, int majorVersion, int minorVersion, ABCLinkerSettings settings) throws Exception
+    {
+        List<ICompilerProblem> problems = new ArrayList<ICompilerProblem>();
+        ABCEmitter emitter = new ABCEmitter();
+        emitter.setAllowBadJumps(true);
+        emitter.visit(majorVersion, minorVersion);
+        ABCParser abcParser = new ABCParser(inputABC);
+        abcParser.parseABC(new LinkingVisitor(emitter, settings.getTransformSettings(problems)));
+        emitter.visitEnd();
+        return new TransformedABC(emitter.emit(), problems);
+    }
+
+    /**
+     * An input ABC whose method bodies were transformed, and the problems
+     * found while transforming them.
+     */
+    private static final class TransformedABC
+    {
+        TransformedABC(byte[] abc, Collection<ICompilerProblem> problems)
+        {
+            this.abc = abc;
+            this.problems = problems;
+        }
+
+        final byte[] abc;
+        final Collection<ICompilerProblem> problems;
+    }
+
     public static class ABCLinkerSettings
     {
         private boolean optimize = false;
@@ -93,6 +218,11 @@ public class ABCLinker
         @SuppressWarnings("unused")
         private int majorVersion = ABCConstants.VERSION_ABC_MAJOR_FP10;
         private Collection<ICompilerProblem> problems;
+        private ExecutorService executorService = null;
+        private int threadCount = 0;
+        private boolean propagateCopies = false;
+        private AtomicInteger propagatedCopyCount = new AtomicInteger();
+        private AtomicLong copyPropagationNanos = new AtomicLong();
 
         /**
          * Tell the linker whether it should run the peephole optimizer defaults
@@ -195,6 +325,119 @@ public class ABCLinker
         {
             this.problems = problems;
         }
+
+        /**
+         * Set an executor on which the method bodies of the input ABCs are
+         * optimized and stripped in parallel. Defaults to null, which links
+         * the input ABCs on the calling thread. The executor is only used
+         * when there are several input ABCs and it has more than one thread,
+         * as transforming the inputs on their own and merging them costs
+         * more than linking them in one pass.
+         * 
+         * @param executorService the executor, or null.
+         * @param threadCount the number of threads of the executor, or 0 if
+         * it isn't known.
+         */
+        public void setExecutorService(ExecutorService executorService, int threadCount)
+        {
+            this.executorService = executorService;
+            this.threadCount = threadCount;
+        }
+
+        /**
+         * Enable or disable the CopyPropagationFilter optimization step, which
+         * removes the locals that only hold a copy of another register. Only
+         * used when the ABCs are optimized. Defaults to false.
+         * 
+         * @param propagateCopies true if the CopyPropagationFilter should be
+         * run.
+         */
+        public void setPropagateCopies(boolean propagateCopies)
+        {
+            this.propagateCopies = propagateCopies;
+        }
+
+        /**
+         * @return the number of copies removed by the CopyPropagationFilter in
+         * the links done with these settings.
+         */
+        public int getPropagatedCopyCount()
+        {
+            return propagatedCopyCount.get();
+        }
+
+        /**
+         * @return the time spent by the CopyPropagationFilter in the links
+         * done with these settings, in nanoseconds. When the inputs are
+         * transformed in parallel, this is the sum of the times of all the
+         * threads.
+         */
+        public long getCopyPropagationNanos()
+        {
+            return copyPropagationNanos.get();
+        }
+
+        /**
+         * @return true if the linker transforms the instructions of the
+         * method bodies.
+         */
+        boolean transformsMethodBodies()
+        {
+            return optimize || stripDebug;
+        }
+
+        /**
+         * @return true if the method bodies of the input ABCs are transformed
+         * on the executor.
+         */
+        boolean transformsInParallel()
+        {
+            return executorService != null && threadCount != 1 && transformsMethodBodies();
+        }
+
+        /**
+         * @return the settings to link a single input ABC with, on a thread
+         * of the executor.
+         * @param problems the problems collection of the input ABC.
+         */
+        ABCLinkerSettings getTransformSettings(Collection<ICompilerProblem> problems)
+        {
+            ABCLinkerSettings result = copy();
+            result.problems = problems;
+            result.executorService = null;
+            return result;
+        }
+
+        /**
+         * @return the settings to merge the transformed input ABCs with. The
+         * transformations were done already, only the namespaces still have
+         * to be merged.
+         */
+        ABCLinkerSettings getMergeSettings()
+        {
+            ABCLinkerSettings result = new ABCLinkerSettings();
+            result.enableInlining = enableInlining;
+            return result;
+        }
+
+        private ABCLinkerSettings copy()
+        {
+            ABCLinkerSettings result = new ABCLinkerSettings();
+            result.optimize = optimize;
+            result.enableInlining = enableInlining;
+            result.stripDebug = stripDebug;
+            result.stripFileAttributeFromGotoDefinitionHelp = stripFileAttributeFromGotoDefinitionHelp;
+            result.stripGotoDefinitionHelp = stripGotoDefinitionHelp;
+            result.removeDeadCode = removeDeadCode;
+            result.propagateCopies = propagateCopies;
+            result.propagatedCopyCount = propagatedCopyCount;
+            result.copyPropagationNanos = copyPropagationNanos;
+            result.meta_names = meta_names;
+            result.problems = problems;
+            result.executorService = executorService;
+            result.threadCount = threadCount;
+            return result;
+        }
     }
 
     /**
@@ -334,11 +577,14 @@ public class ABCLinker
      */
     private static class OptimizingMethodVisitor extends DelegatingMethodVisitor
     {
-        public OptimizingMethodVisitor(IMethodVisitor delegate, Collection<ICompilerProblem> problems, final boolean removeDeadCode)
+        public OptimizingMethodVisitor(IMethodVisitor delegate, Collection<ICompilerProblem> problems, final boolean removeDeadCode,
+                                       AtomicInteger propagatedCopyCount, AtomicLong copyPropagationNanos)
         {
             super(delegate);
             this.problems = problems;
             this.removeDeadCode = removeDeadCode;
+            this.propagatedCopyCount = propagatedCopyCount;
+            this.copyPropagationNanos = copyPropagationNanos;
         }
 
         /**
@@ -351,12 +597,37 @@ public class ABCLinker
          */
         final boolean removeDeadCode;
 
+        /**
+         * When not null, run a CopyPropagationFilter after the dead code has
+         * been removed, and count the copies it removes.
+         */
+        final AtomicInteger propagatedCopyCount;
+
+        /**
+         * The time spent by the CopyPropagationFilter, when it is run.
+         */
+        final AtomicLong copyPropagationNanos;
+
         @Override
         public IMethodBodyVisitor visitBody(MethodBodyInfo mbi)
         {
             //  Set up the optimizer pipeline.
             IMethodBodyVisitor delegate = super.visitBody(mbi);
 
+            if ( propagatedCopyCount != null )
+            {
+                delegate = new CopyPropagationFilter(mbi, delegate)
+                {
+                    @Override
+                    public void visitEnd()
+                    {
+                        super.visitEnd();
+                        propagatedCopyCount.addAndGet(getEliminatedCopyCount());
+                        copyPropagationNanos.addAndGet(getElapsedNanos());
+                    }
+                };
+            }
+
             if ( removeDeadCode )
             {
                 IDiagnosticsVisitor diagnostics = new AbstractDiagnosticVisitor()
@@ -715,7 +986,9 @@ public class ABCLinker
         {
             IMethodVisitor mv = delegate.visitMethod(minfo);
             if (settings.optimize)
-                mv = new OptimizingMethodVisitor(mv, settings.problems, settings.removeDeadCode);
+                mv = new OptimizingMethodVisitor(mv, settings.problems, settings.removeDeadCode,
+                        settings.propagateCopies ? settings.propagatedCopyCount : null,
+                        settings.copyPropagationNanos);
 
             // Run the debug stripping visitor first, so the debug
             // instructions won't confuse the peephole optimizer
@@ -116,6 +116,24 @@ public class ABCParser
      */
     private InstanceInfo[] instanceInfos;
 
+    /**
+     * Shares the strings of the string pool with those of other ABCs.
+     */
+    public interface IStringInterner
+    {
+        /**
+         * @param s A string decoded from the string pool.
+         * @return A string equal to {@code s}.
+         */
+        String intern(String s);
+    }
+
+    /**
+     * Interns the strings of the string pool, or null to keep the decoded
+     * strings.
+     */
+    private IStringInterner stringInterner;
+
     /**
      * Construct a new ABC parser from a byte array.
      * 
@@ -147,6 +165,18 @@ public class ABCParser
         this.abc = bufferedABC.toByteArray();
     }
 
+    /**
+     * Set the interner of the strings of the string pool. All the names,
+     * namespaces and metadata of the ABC are built from those strings.
+     * 
+     * @param stringInterner The interner, or null to keep the decoded
+     * strings.
+     */
+    public void setStringInterner(IStringInterner stringInterner)
+    {
+        this.stringInterner = stringInterner;
+    }
+
     /**
      * Parse the ABC and send its information to the visitor.
      * 
@@ -206,6 +236,8 @@ public class ABCParser
             try
             {
                 strings[i] = new String(abc, p.pos, len, "UTF-8");
+                if (stringInterner != null)
+                    strings[i] = stringInterner.intern(strings[i]);
             }
             catch (UnsupportedEncodingException badEncoding)
             {
@@ -0,0 +1,356 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.abc.optimize;
+
+import static org.apache.royale.abc.ABCConstants.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.apache.royale.abc.graph.IBasicBlock;
+import org.apache.royale.abc.graph.IFlowgraph;
+import org.apache.royale.abc.semantics.Instruction;
+import org.apache.royale.abc.semantics.InstructionFactory;
+import org.apache.royale.abc.semantics.MethodBodyInfo;
+import org.apache.royale.abc.semantics.MethodInfo;
+import org.apache.royale.abc.visitors.DelegatingMethodBodyVisitor;
+import org.apache.royale.abc.visitors.IMethodBodyVisitor;
+
+/**
+ * CopyPropagationFilter removes the local registers that only hold a copy of
+ * another register, at visitEnd() time.
+ * <p>
+ * A local is a copy when it is written once, by
+ * <code>getlocal a; [coerce_a;] setlocal b</code>, and register <code>a</code>
+ * is never written in the method. Every <code>getlocal b</code> that the copy
+ * dominates in the control flow graph reads the same value as
+ * <code>getlocal a</code>, so if the copy dominates all of them they are
+ * rewritten to read <code>a</code> and the copy is deleted.
+ * <p>
+ * A <code>kill</code> counts as a write of its register. The code generator
+ * kills temporaries at the end of their lifetime, but a later
+ * <code>getlocal</code> of the killed register, in a loop or after a branch,
+ * reads <code>undefined</code> rather than the copied value, so a killed
+ * register is never a copy and a killed source is never propagated.
+ * <p>
+ * Methods with exception handlers or debug opcodes are left alone: the
+ * handlers are extra roots of the dominator tree, and the debug opcodes name
+ * the registers for the debugger.
+ */
+public class CopyPropagationFilter extends DelegatingMethodBodyVisitor
+{
+    /**
+     * Constructor.
+     *
+     * @param mbi - the MethodBodyInfo to be analyzed.
+     * @param delegate - the next IMethodBodyVisitor in the chain.
+     */
+    public CopyPropagationFilter(MethodBodyInfo mbi, IMethodBodyVisitor delegate)
+    {
+        super(delegate);
+        this.mbi = mbi;
+    }
+
+    /**
+     * The MethodBodyInfo under analysis.
+     */
+    protected final MethodBodyInfo mbi;
+
+    /**
+     * Number of copies removed from the method.
+     */
+    private int eliminatedCopyCount = 0;
+
+    /**
+     * @return the number of copies removed from the method, once visitEnd()
+     * has been called.
+     */
+    public int getEliminatedCopyCount()
+    {
+        return eliminatedCopyCount;
+    }
+
+    /**
+     * Time spent finding and removing the copies, in nanoseconds.
+     */
+    private long elapsedNanos = 0;
+
+    /**
+     * @return the time spent finding and removing the copies of the method,
+     * in nanoseconds, once visitEnd() has been called. The time of the
+     * visitors that the method body is passed to is not included.
+     */
+    public long getElapsedNanos()
+    {
+        return elapsedNanos;
+    }
+
+    /**
+     * Find and remove the copies.
+     */
+    @Override
+    public void visitEnd()
+    {
+        long startTime = System.nanoTime();
+        if (this.mbi.getExceptions().isEmpty())
+            propagateCopies();
+        elapsedNanos = System.nanoTime() - startTime;
+
+        super.visitEnd();
+    }
+
+    /**
+     * Reads and writes of a local register.
+     */
+    private static class Local
+    {
+        int writeCount = 0;
+
+        /**
+         * The block and index of the setlocal, if the local is only written
+         * by a setlocal.
+         */
+        IBasicBlock copyBlock = null;
+        int copyIndex = -1;
+
+        /**
+         * The blocks and indexes of the getlocals.
+         */
+        final List<IBasicBlock> readBlocks = new ArrayList<IBasicBlock>();
+        final List<Integer> readIndexes = new ArrayList<Integer>();
+    }
+
+    private void propagateCopies()
+    {
+        IFlowgraph cfg = this.mbi.getCfg();
+        List<IBasicBlock> blocks = cfg.getBlocksInEntryOrder();
+
+        //  Reads and writes of the locals, keyed by register.
+        Map<Integer, Local> locals = new TreeMap<Integer, Local>();
+
+        for (IBasicBlock b : blocks)
+        {
+            for (int i = 0; i < b.size(); i++)
+            {
+                Instruction insn = b.get(i);
+                switch (insn.getOpcode())
+                {
+                    case OP_debug:
+                        return;
+                    case OP_getlocal:
+                        read(locals, insn.getImmediate(), b, i);
+                        break;
+                    case OP_getlocal0:
+                    case OP_getlocal1:
+                    case OP_getlocal2:
+                    case OP_getlocal3:
+                        read(locals, insn.getOpcode() - OP_getlocal0, b, i);
+                        break;
+                    case OP_setlocal:
+                        write(locals, insn.getImmediate(), b, i);
+                        break;
+                    case OP_setlocal0:
+                    case OP_setlocal1:
+                    case OP_setlocal2:
+                    case OP_setlocal3:
+                        write(locals, insn.getOpcode() - OP_setlocal0, b, i);
+                        break;
+                    case OP_kill:
+                    case OP_inclocal:
+                    case OP_inclocal_i:
+                    case OP_declocal:
+                    case OP_declocal_i:
+                        write(locals, insn.getImmediate(), null, -1);
+                        break;
+                    case OP_hasnext2:
+                        write(locals, (Integer)insn.getOperand(0), null, -1);
+                        write(locals, (Integer)insn.getOperand(1), null, -1);
+                        break;
+                }
+            }
+        }
+
+        MethodInfo mi = this.mbi.getMethodInfo();
+        int firstLocal = mi.getParamCount() + 1;
+        if ((mi.getFlags() & (NEED_ARGUMENTS | NEED_REST)) != 0)
+            firstLocal++;
+
+        //  Copies are found in entry order, so a copy of a copy is found after
+        //  the first copy was propagated into its getlocal.
+        List<Copy> copies = new ArrayList<Copy>();
+        for (Map.Entry<Integer, Local> entry : locals.entrySet())
+        {
+            Local local = entry.getValue();
+            if (entry.getKey() >= firstLocal && local.writeCount == 1 && local.copyBlock != null)
+                copies.add(new Copy(entry.getKey(), local, blocks.indexOf(local.copyBlock)));
+        }
+        Collections.sort(copies);
+
+        Map<IBasicBlock, IBasicBlock> idoms = null;
+        Set<IBasicBlock> changedBlocks = new HashSet<IBasicBlock>();
+
+        for (Copy copy : copies)
+        {
+            Local local = copy.local;
+            IBasicBlock b = local.copyBlock;
+            int sourceIndex = local.copyIndex - 1;
+            if (sourceIndex > 0 && b.get(sourceIndex) != null && b.get(sourceIndex).getOpcode() == OP_coerce_a)
+                sourceIndex--;
+            if (sourceIndex < 0)
+                continue;
+
+            int source = getLocalRead(b.get(sourceIndex));
+            if (source < 0 || source == copy.register)
+                continue;
+            Local sourceLocal = locals.get(source);
+            if (sourceLocal != null && sourceLocal.writeCount > 0)
+                continue;
+
+            if (idoms == null)
+                idoms = cfg.getDominatorTree().getIdoms();
+
+            boolean dominatesReads = true;
+            for (int r = 0; r < local.readBlocks.size() && dominatesReads; r++)
+            {
+                IBasicBlock readBlock = local.readBlocks.get(r);
+                if (readBlock == b)
+                    dominatesReads = local.readIndexes.get(r) > local.copyIndex;
+                else
+                    dominatesReads = dominates(idoms, b, readBlock);
+            }
+            if (!dominatesReads)
+                continue;
+
+            Instruction getSource = source < 4 ?
+                InstructionFactory.getInstruction(OP_getlocal0 + source) :
+                InstructionFactory.getInstruction(OP_getlocal, source);
+            for (int r = 0; r < local.readBlocks.size(); r++)
+                local.readBlocks.get(r).getInstructions().set(local.readIndexes.get(r), getSource);
+
+            //  Null out the copy, the blocks are compacted at the end.
+            for (int i = sourceIndex; i <= local.copyIndex; i++)
+                b.getInstructions().set(i, null);
+            changedBlocks.add(b);
+            eliminatedCopyCount++;
+        }
+
+        for (IBasicBlock b : changedBlocks)
+        {
+            List<Instruction> instructions = b.getInstructions();
+            while (instructions.remove(null))
+                ;
+            if (instructions.isEmpty())
+                instructions.add(InstructionFactory.getInstruction(OP_nop));
+        }
+    }
+
+    private static void read(Map<Integer, Local> locals, int register, IBasicBlock b, int index)
+    {
+        Local local = getLocal(locals, register);
+        local.readBlocks.add(b);
+        local.readIndexes.add(index);
+    }
+
+    private static void write(Map<Integer, Local> locals, int register, IBasicBlock b, int index)
+    {
+        Local local = getLocal(locals, register);
+        local.writeCount++;
+        local.copyBlock = b;
+        local.copyIndex = index;
+    }
+
+    private static Local getLocal(Map<Integer, Local> locals, int register)
+    {
+        Local local = locals.get(register);
+        if (local == null)
+        {
+            local = new Local();
+            locals.put(register, local);
+        }
+        return local;
+    }
+
+    /**
+     * @return the register read by a getlocal instruction, or -1 if the
+     * instruction isn't a getlocal.
+     */
+    private static int getLocalRead(Instruction insn)
+    {
+        if (insn == null)
+            return -1;
+
+        switch (insn.getOpcode())
+        {
+            case OP_getlocal:
+                return insn.getImmediate();
+            case OP_getlocal0:
+            case OP_getlocal1:
+            case OP_getlocal2:
+            case OP_getlocal3:
+                return insn.getOpcode() - OP_getlocal0;
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * @return true if every path from the start block to b goes through
+     * dominator.
+     */
+    private static boolean dominates(Map<IBasicBlock, IBasicBlock> idoms, IBasicBlock dominator, IBasicBlock b)
+    {
+        for (IBasicBlock d = idoms.get(b); d != null && d != b; b = d, d = idoms.get(b))
+        {
+            if (d == dominator)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * A candidate copy, ordered by position in the method.
+     */
+    private static class Copy implements Comparable<Copy>
+    {
+        Copy(int register, Local local, int blockIndex)
+        {
+            this.register = register;
+            this.local = local;
+            this.blockIndex = blockIndex;
+        }
+
+        final int register;
+        final Local local;
+        final int blockIndex;
+
+        @Override
+        public int compareTo(Copy other)
+        {
+            if (blockIndex != other.blockIndex)
+                return blockIndex < other.blockIndex ? -1 : 1;
+            return local.copyIndex < other.local.copyIndex ? -1 : local.copyIndex == other.local.copyIndex ? 0 : 1;
+        }
+    }
+}
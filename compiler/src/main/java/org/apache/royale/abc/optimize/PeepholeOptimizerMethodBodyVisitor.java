@@ -30,7 +30,7 @@ import org.apache.royale.abc.visitors.DelegatingMethodBodyVisitor;
 import org.apache.royale.abc.visitors.IMethodBodyVisitor;
 
 import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -63,7 +63,7 @@ public class PeepholeOptimizerMethodBodyVisitor extends DelegatingMethodBodyVisi
      * Hold a small window of previous instructions so that the optimizer can
      * rewind and rewrite small sections of ABC
      */
-    private List<InstructionInfo> instructions = new LinkedList<InstructionInfo>();
+    private final InstructionWindow instructions = new InstructionWindow();
 
     /**
      * The index of the instruction with the most recently seen label - we can't
@@ -264,9 +264,9 @@ public class PeepholeOptimizerMethodBodyVisitor extends DelegatingMethodBodyVisi
         processPreviousInstructions();
         
         // finish any remaining instructions
-        for (InstructionInfo info : instructions)
+        for (int i = 0, size = instructions.size(); i < size; ++i)
         {
-            finishInstruction(info);
+            finishInstruction(instructions.get(i));
         }
         
         instructions.clear();
@@ -560,11 +560,12 @@ public class PeepholeOptimizerMethodBodyVisitor extends DelegatingMethodBodyVisi
             List<Label> labelNexts = null;
             for (int r = size - 1; r >= (realIdx + 1); --r)
             {
-                InstructionInfo temp = instructions.remove(r);
-                if (r == size - 1)
+                InstructionInfo temp = instructions.removeLast();
+                if (r == size - 1 && !temp.getLabelNexts().isEmpty())
                 {
-                    // Save the labelNexts from the last deleted instruction
-                    labelNexts = temp.getLabelNexts();
+                    // Save the labelNexts from the last deleted instruction,
+                    // the InstructionInfo is reused by the next instruction added
+                    labelNexts = new ArrayList<Label>(temp.getLabelNexts());
                 }
             }
 
@@ -609,7 +610,7 @@ public class PeepholeOptimizerMethodBodyVisitor extends DelegatingMethodBodyVisi
 
             for (int r = size - 1; r >= realIdx; --r)
             {
-                InstructionInfo temp = instructions.remove(r);
+                InstructionInfo temp = instructions.removeLast();
 
                 if (r == size - 1)
                 {
@@ -1270,22 +1271,14 @@ public class PeepholeOptimizerMethodBodyVisitor extends DelegatingMethodBodyVisi
     private void addInstruction(Instruction insn)
     {
         int size = instructions.size();
-        InstructionInfo info = null;
         if (size == PEEPHOLE_WINDOW_SIZE)
         {
-            // reuse the InstructionInfo if we can
-            info = instructions.remove(0);
-            finishInstruction(info);
+            finishInstruction(instructions.removeFirst());
 
             if (lastLabelSeen != NO_LABEL)
                 --lastLabelSeen;
         }
-        else
-        {
-            info = new InstructionInfo();
-        }
-        info.reset(insn);
-        instructions.add(info);
+        instructions.addLast(insn);
 
         if (labelsFromDeletedInsns != null)
         {
@@ -1341,15 +1334,15 @@ public class PeepholeOptimizerMethodBodyVisitor extends DelegatingMethodBodyVisi
 
         /**
          * label(s) to use for a labelNext operation once we are done with the
-         * instruction
+         * instruction, created when the first one is added
          */
-        private List<Label> labelNexts = new ArrayList<Label>();
+        private List<Label> labelNexts = null;
 
         /**
          * label(s) to use for a labelCurrent operation once we are done with
-         * the instruction
+         * the instruction, created when the first one is added
          */
-        private List<Label> labelCurrents = new ArrayList<Label>();
+        private List<Label> labelCurrents = null;
 
         /**
          * Reset the Instruction info to its default state with a new
@@ -1359,8 +1352,10 @@ public class PeepholeOptimizerMethodBodyVisitor extends DelegatingMethodBodyVisi
         void reset(Instruction i)
         {
             this.insn = i;
-            labelNexts.clear();
-            labelCurrents.clear();
+            if (labelNexts != null)
+                labelNexts.clear();
+            if (labelCurrents != null)
+                labelCurrents.clear();
         }
 
         /**
@@ -1392,6 +1387,8 @@ public class PeepholeOptimizerMethodBodyVisitor extends DelegatingMethodBodyVisi
          */
         public void addLabelCurrent(Label l)
         {
+            if (labelCurrents == null)
+                labelCurrents = new ArrayList<Label>(1);
             this.labelCurrents.add(l);
         }
 
@@ -1403,6 +1400,8 @@ public class PeepholeOptimizerMethodBodyVisitor extends DelegatingMethodBodyVisi
          */
         public void addLabelNext(Label l)
         {
+            if (labelNexts == null)
+                labelNexts = new ArrayList<Label>(1);
             this.labelNexts.add(l);
         }
 
@@ -1412,7 +1411,7 @@ public class PeepholeOptimizerMethodBodyVisitor extends DelegatingMethodBodyVisi
          */
         public List<Label> getLabelCurrents()
         {
-            return labelCurrents;
+            return labelCurrents != null ? labelCurrents : Collections.<Label>emptyList();
         }
 
         /**
@@ -1421,7 +1420,7 @@ public class PeepholeOptimizerMethodBodyVisitor extends DelegatingMethodBodyVisi
          */
         public List<Label> getLabelNexts()
         {
-            return labelNexts;
+            return labelNexts != null ? labelNexts : Collections.<Label>emptyList();
         }
 
         /**
@@ -1454,6 +1453,88 @@ public class PeepholeOptimizerMethodBodyVisitor extends DelegatingMethodBodyVisi
         }
     }
 
+    /**
+     * The peephole window: a ring of InstructionInfos, oldest instruction
+     * first. The InstructionInfos are allocated once per optimizer and reused
+     * as instructions enter and leave the window, so visiting an instruction
+     * doesn't allocate anything.
+     */
+    private static final class InstructionWindow
+    {
+        InstructionWindow()
+        {
+            for (int i = 0; i < PEEPHOLE_WINDOW_SIZE; ++i)
+                infos[i] = new InstructionInfo();
+        }
+
+        private final InstructionInfo[] infos = new InstructionInfo[PEEPHOLE_WINDOW_SIZE];
+
+        /**
+         * Position of the oldest instruction in {@link #infos}.
+         */
+        private int first = 0;
+
+        private int size = 0;
+
+        /**
+         * @return the number of instructions in the window
+         */
+        int size()
+        {
+            return size;
+        }
+
+        /**
+         * @param i the index of an instruction, 0 being the oldest
+         * @return the InstructionInfo of the instruction
+         */
+        InstructionInfo get(int i)
+        {
+            assert i >= 0 && i < size : "Index outside of the peephole window";
+            return infos[(first + i) % PEEPHOLE_WINDOW_SIZE];
+        }
+
+        /**
+         * Add an instruction after the newest one. The window must not be
+         * full.
+         */
+        void addLast(Instruction insn)
+        {
+            assert size < PEEPHOLE_WINDOW_SIZE : "The peephole window is full";
+            infos[(first + size) % PEEPHOLE_WINDOW_SIZE].reset(insn);
+            ++size;
+        }
+
+        /**
+         * Remove the oldest instruction. Its InstructionInfo is valid until
+         * the next call to {@link #addLast(Instruction)}.
+         */
+        InstructionInfo removeFirst()
+        {
+            InstructionInfo info = get(0);
+            first = (first + 1) % PEEPHOLE_WINDOW_SIZE;
+            --size;
+            return info;
+        }
+
+        /**
+         * Remove the newest instruction. Its InstructionInfo is valid until
+         * the next call to {@link #addLast(Instruction)}.
+         */
+        InstructionInfo removeLast()
+        {
+            InstructionInfo info = get(size - 1);
+            --size;
+            return info;
+        }
+
+        void clear()
+        {
+            first = 0;
+            size = 0;
+        }
+    }
+
     /**
      * Interface so we can do different things when we are done with an
      * instruction
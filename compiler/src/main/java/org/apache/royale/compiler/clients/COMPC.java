@@ -32,8 +32,10 @@ import org.apache.royale.compiler.config.CompilerDiagnosticsConstants;
 import org.apache.royale.compiler.config.Configurator;
 import org.apache.royale.compiler.config.ICompilerSettingsConstants;
 import org.apache.royale.compiler.exceptions.ConfigurationException;
+import org.apache.royale.compiler.internal.projects.RoyaleProject;
 import org.apache.royale.compiler.internal.projects.RoyaleProjectConfigurator;
 import org.apache.royale.compiler.internal.targets.SWFTarget;
+import org.apache.royale.compiler.internal.workspaces.Workspace;
 import org.apache.royale.compiler.problems.ICompilerProblem;
 import org.apache.royale.compiler.problems.MissingRequirementConfigurationProblem;
 import org.apache.royale.compiler.targets.ISWCTarget;
@@ -78,6 +80,24 @@ public class COMPC extends MXMLC implements FlexTool
         return compc.mainNoExit(args);
     }
 
+    public COMPC()
+    {
+        super();
+    }
+
+    /**
+     * Constructor for compiling into an existing, possibly already warm,
+     * workspace and project.
+     * 
+     * @param workspace The workspace to compile in.
+     * @param project The project to compile.
+     * @see CompilerDaemon
+     */
+    public COMPC(Workspace workspace, RoyaleProject project)
+    {
+        super(workspace, project);
+    }
+
     @Override
     public String getName() {
         return FLEX_TOOL_COMPC;
@@ -0,0 +1,318 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.clients;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.royale.compiler.filespecs.FileSpecification;
+import org.apache.royale.compiler.internal.projects.ASProject;
+import org.apache.royale.compiler.internal.projects.RoyaleProject;
+import org.apache.royale.compiler.internal.workspaces.FileChangeTracker;
+import org.apache.royale.compiler.internal.workspaces.Workspace;
+import org.apache.royale.swc.ISWC;
+import org.apache.royale.utils.FilenameNormalization;
+
+/**
+ * A long lived compiler process that keeps a warm {@link Workspace} and
+ * project for every tool it has been asked to run, so that the SWCs, source
+ * files and project scope loaded by one build are reused by the next.
+ * <p>
+ * Commands are read from standard input, one per line:
+ * <ul>
+ * <li><code>mxmlc &lt;args&gt;</code>, <code>compc &lt;args&gt;</code> -
+ * compile with the same arguments the command line tool takes. Files that
+ * changed since the previous build are detected by modification time and
+ * only the compilation units that depend on them are rebuilt. When the build
+ * is done <code>done &lt;exit code&gt; &lt;milliseconds&gt;</code> is
+ * printed.</li>
+ * <li><code>changed &lt;path&gt;</code>, <code>added &lt;path&gt;</code>,
+ * <code>removed &lt;path&gt;</code> - explicit notifications, for clients that
+ * already run a file watcher. Notifications received while there is no
+ * session are given to the next session that is created, because some
+ * caches outlive the workspaces.</li>
+ * <li><code>reset &lt;tool&gt;</code> - drop the warm state of a tool.</li>
+ * <li><code>quit</code> - close every workspace and exit.</li>
+ * </ul>
+ * Arguments containing spaces may be enclosed in double quotes.
+ */
+public class CompilerDaemon
+{
+    /**
+     * Java program entry point.
+     * 
+     * @param args command line arguments, ignored.
+     */
+    public static void main(final String[] args)
+    {
+        final CompilerDaemon daemon = new CompilerDaemon();
+        System.exit(daemon.run(System.in, System.out, System.err));
+    }
+
+    /**
+     * The warm workspace and project of one tool, together with the tracker
+     * that detects file changes between two of its builds.
+     */
+    protected static abstract class CompilationSession
+    {
+        protected CompilationSession(Workspace workspace, ASProject project)
+        {
+            this.workspace = workspace;
+            this.project = project;
+            tracker = new FileChangeTracker(workspace);
+        }
+
+        protected final Workspace workspace;
+        protected final ASProject project;
+        private final FileChangeTracker tracker;
+
+        /**
+         * Runs one build in this session's workspace and project.
+         * 
+         * @param args Command line arguments for the tool.
+         * @param err Stream to print problems to.
+         * @return The tool's exit code.
+         */
+        protected abstract int compile(String[] args, PrintStream err);
+
+        private List<File> getLibraryFiles()
+        {
+            final List<File> result = new ArrayList<File>();
+            for (ISWC swc : project.getLibraries())
+                result.add(swc.getSWCFile());
+            return result;
+        }
+    }
+
+    private final Map<String, CompilationSession> sessions =
+            new LinkedHashMap<String, CompilationSession>();
+
+    /**
+     * The last explicit notification received for each path while there was
+     * no session, in the order they were received. They are replayed into the
+     * workspace of the next new session, which also invalidates the caches
+     * that outlive the workspaces, and then dropped.
+     */
+    private final Map<String, String> notifications =
+            new LinkedHashMap<String, String>();
+
+    /**
+     * Creates the session for a tool. Subclasses may override this to
+     * support more tools.
+     * 
+     * @param toolName The name of the tool, for example <code>mxmlc</code>.
+     * @return A new session, or <code>null</code> if the tool is unknown.
+     */
+    protected CompilationSession createSession(String toolName)
+    {
+        if ("mxmlc".equals(toolName))
+        {
+            final Workspace workspace = new Workspace();
+            final RoyaleProject royaleProject = new RoyaleProject(workspace);
+            return new CompilationSession(workspace, royaleProject)
+            {
+                @Override
+                protected int compile(String[] args, PrintStream err)
+                {
+                    return new MXMLC(workspace, royaleProject).mainNoExit(args, err);
+                }
+            };
+        }
+        if ("compc".equals(toolName))
+        {
+            final Workspace workspace = new Workspace();
+            final RoyaleProject royaleProject = new RoyaleProject(workspace);
+            return new CompilationSession(workspace, royaleProject)
+            {
+                @Override
+                protected int compile(String[] args, PrintStream err)
+                {
+                    return new COMPC(workspace, royaleProject).mainNoExit(args, err);
+                }
+            };
+        }
+        return null;
+    }
+
+    /**
+     * Reads and executes commands until <code>quit</code> or the end of the
+     * input.
+     * 
+     * @param in Stream the commands are read from.
+     * @param out Stream the command results are written to.
+     * @param err Stream compiler problems are written to.
+     * @return The exit code of the daemon process.
+     */
+    public int run(InputStream in, PrintStream out, PrintStream err)
+    {
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(in));
+        try
+        {
+            String line;
+            while ((line = reader.readLine()) != null)
+            {
+                final List<String> words = splitArguments(line);
+                if (words.isEmpty())
+                    continue;
+
+                final String command = words.get(0);
+                final String[] commandArgs = words.subList(1, words.size()).toArray(new String[0]);
+                if ("quit".equals(command))
+                {
+                    break;
+                }
+                else if ("changed".equals(command) || "added".equals(command) || "removed".equals(command))
+                {
+                    notifyFileChange(command, commandArgs);
+                    out.println("ok");
+                }
+                else if ("reset".equals(command))
+                {
+                    reset(commandArgs);
+                    out.println("ok");
+                }
+                else
+                {
+                    compile(command, commandArgs, out, err);
+                }
+                out.flush();
+            }
+            return 0;
+        }
+        catch (IOException e)
+        {
+            err.println(e.getMessage());
+            return 1;
+        }
+        finally
+        {
+            for (CompilationSession session : sessions.values())
+                session.workspace.close();
+            sessions.clear();
+        }
+    }
+
+    private void compile(String toolName, String[] args, PrintStream out, PrintStream err)
+    {
+        CompilationSession session = sessions.get(toolName);
+        if (session == null)
+        {
+            session = createSession(toolName);
+            if (session == null)
+            {
+                out.println("error unknown command: " + toolName);
+                return;
+            }
+            sessions.put(toolName, session);
+            for (Map.Entry<String, String> notification : notifications.entrySet())
+                notifyFileChange(session, notification.getValue(), notification.getKey());
+            notifications.clear();
+        }
+
+        final long startTime = System.nanoTime();
+        // The tracker records the modification times when the build starts,
+        // so that a file saved during the build is reported by the next one.
+        session.tracker.notifyWorkspace(session.project.getSourcePath());
+        final int exitCode = session.compile(args, err);
+        session.tracker.snapshot(session.project.getSourcePath(), session.getLibraryFiles());
+        final long elapsed = (System.nanoTime() - startTime) / 1000000;
+        out.println("done " + exitCode + " " + elapsed);
+    }
+
+    private void notifyFileChange(String kind, String[] paths)
+    {
+        for (String path : paths)
+        {
+            final String normalizedPath = FilenameNormalization.normalize(path);
+            if (sessions.isEmpty())
+            {
+                notifications.remove(normalizedPath);
+                notifications.put(normalizedPath, kind);
+            }
+            for (CompilationSession session : sessions.values())
+                notifyFileChange(session, kind, normalizedPath);
+        }
+    }
+
+    private static void notifyFileChange(CompilationSession session, String kind, String path)
+    {
+        final FileSpecification fileSpec = new FileSpecification(path);
+        if ("changed".equals(kind))
+            session.workspace.fileChanged(fileSpec);
+        else if ("added".equals(kind))
+            session.workspace.fileAdded(fileSpec);
+        else
+            session.workspace.fileRemoved(fileSpec);
+    }
+
+    private void reset(String[] toolNames)
+    {
+        for (String toolName : toolNames)
+        {
+            final CompilationSession session = sessions.remove(toolName);
+            if (session != null)
+                session.workspace.close();
+        }
+    }
+
+    /**
+     * Splits a command line on white space. Double quotes group words that
+     * contain white space.
+     */
+    static List<String> splitArguments(String line)
+    {
+        final List<String> result = new ArrayList<String>();
+        final StringBuilder current = new StringBuilder();
+        boolean inQuotes = false;
+        boolean hasWord = false;
+        for (int i = 0; i < line.length(); i++)
+        {
+            final char c = line.charAt(i);
+            if (c == '"')
+            {
+                inQuotes = !inQuotes;
+                hasWord = true;
+            }
+            else if (Character.isWhitespace(c) && !inQuotes)
+            {
+                if (hasWord)
+                    result.add(current.toString());
+                current.setLength(0);
+                hasWord = false;
+            }
+            else
+            {
+                current.append(c);
+                hasWord = true;
+            }
+        }
+        if (hasWord)
+            result.add(current.toString());
+        return result;
+    }
+}
@@ -73,6 +73,7 @@ import org.apache.royale.compiler.internal.targets.Target;
 import org.apache.royale.compiler.internal.units.ResourceModuleCompilationUnit;
 import org.apache.royale.compiler.internal.units.SourceCompilationUnitFactory;
 import org.apache.royale.compiler.internal.units.StyleModuleCompilationUnit;
+import org.apache.royale.compiler.internal.workspaces.CompilationProfiler;
 import org.apache.royale.compiler.internal.workspaces.Workspace;
 import org.apache.royale.compiler.problems.ConfigurationProblem;
 import org.apache.royale.compiler.problems.FileIOProblem;
@@ -403,8 +404,26 @@ public class MXMLC implements FlexTool
         problems = new ProblemQuery();
     }
 
+    /**
+     * Constructor for compiling into an existing, possibly already warm,
+     * workspace and project. The workspace is left open when the compilation
+     * finishes so that it can be reused by the next one.
+     * 
+     * @param workspace The workspace to compile in.
+     * @param project The project to compile.
+     * @see CompilerDaemon
+     */
+    public MXMLC(Workspace workspace, RoyaleProject project)
+    {
+        this.workspace = workspace;
+        this.project = project;
+        problems = new ProblemQuery();
+        keepWorkspaceOpen = true;
+    }
+
     protected Workspace workspace;
     protected RoyaleProject project;
+    protected boolean keepWorkspaceOpen;
     public Configuration config;
     public ProblemQuery problems;
     public ConfigurationBuffer configBuffer;
@@ -418,6 +437,7 @@ public class MXMLC implements FlexTool
     protected ITargetSettings targetSettings;
     private ISWF swfTarget;
     private String swfOutputMessage;
+    private CompilationProfiler profiler;
     
     /**
      * Print a message.
@@ -437,7 +457,8 @@ public class MXMLC implements FlexTool
         workspace.startIdleState();
         try
         {
-            workspace.close();
+            if (!keepWorkspaceOpen)
+                workspace.close();
         }
         finally
         {
@@ -627,11 +648,22 @@ public class MXMLC implements FlexTool
     private boolean compile(boolean skipLinking)
     {
         boolean compilationSuccess = false;
+        startProfiling();
         try
         {
             if ((CompilerDiagnosticsConstants.diagnostics & CompilerDiagnosticsConstants.COMPC_PHASES) == CompilerDiagnosticsConstants.COMPC_PHASES)
             	System.out.println("Setting up target file");
-            if (!setupTargetFile())
+            CompilationProfiler.startPhase(workspace, "setup target");
+            final boolean targetFileSetUp;
+            try
+            {
+                targetFileSetUp = setupTargetFile();
+            }
+            finally
+            {
+                CompilationProfiler.completePhase(workspace, "setup target");
+            }
+            if (!targetFileSetUp)
             {
                 if ((CompilerDiagnosticsConstants.diagnostics & CompilerDiagnosticsConstants.COMPC_PHASES) == CompilerDiagnosticsConstants.COMPC_PHASES)
                 	System.out.println("Could not set up target file");
@@ -641,7 +673,15 @@ public class MXMLC implements FlexTool
             if (config.isDumpAst())
                 dumpAST();
 
-            buildArtifact();
+            CompilationProfiler.startPhase(workspace, "build");
+            try
+            {
+                buildArtifact();
+            }
+            finally
+            {
+                CompilationProfiler.completePhase(workspace, "build");
+            }
             project.generateAPIReport();
 
             if (swfTarget == null)
@@ -665,7 +705,16 @@ public class MXMLC implements FlexTool
             if ((CompilerDiagnosticsConstants.diagnostics & CompilerDiagnosticsConstants.COMPC_PHASES) == CompilerDiagnosticsConstants.COMPC_PHASES)
             	System.out.println("attempting to write output");
             final File outputFile = new File(getOutputFilePath());
-            final int swfSize = writeSWF(swfTarget, outputFile);
+            CompilationProfiler.startPhase(workspace, "write");
+            final int swfSize;
+            try
+            {
+                swfSize = writeSWF(swfTarget, outputFile);
+            }
+            finally
+            {
+                CompilationProfiler.completePhase(workspace, "write");
+            }
             long endTime = System.nanoTime();
             String seconds = String.format("%5.3f", (endTime - startTime) / 1e9);
             Map<String, Object> params = new HashMap<String, Object>();
@@ -691,10 +740,47 @@ public class MXMLC implements FlexTool
             final ICompilerProblem problem = new InternalCompilerProblem(e);
             problems.add(problem);
         }
+        finally
+        {
+            stopProfiling();
+        }
 
         return compilationSuccess;
     }
 
+    /**
+     * Start profiling the compilation if {@code -profile-output} is set, and
+     * start collecting new statistics for the workspace executor.
+     */
+    protected void startProfiling()
+    {
+        profiler = CompilationProfiler.startBuild(workspace, config.getProfileOutput());
+    }
+
+    /**
+     * Print the workspace statistics if the workspace diagnostics are
+     * enabled, stop profiling the compilation and write the profile to the
+     * {@code -profile-output} file.
+     */
+    protected void stopProfiling()
+    {
+        for (String line : CompilationProfiler.getWorkspaceDiagnostics(workspace, project))
+            println(line);
+        try
+        {
+            CompilationProfiler.completeBuild(workspace, profiler,
+                    config.getProfileOutput(), config.getProfileFormat());
+        }
+        catch (IOException e)
+        {
+            problems.add(new FileIOProblem(e));
+        }
+        finally
+        {
+            profiler = null;
+        }
+    }
+
     /**
      * Setup theme files.
      */
@@ -19,6 +19,7 @@
 
 package org.apache.royale.compiler.clients;
 
+import org.apache.royale.abc.ABCLinker;
 import org.apache.royale.compiler.Messages;
 import org.apache.royale.compiler.clients.problems.ProblemFormatter;
 import org.apache.royale.compiler.clients.problems.ProblemPrinter;
@@ -52,6 +53,8 @@ import org.apache.royale.swf.ISWF;
 import org.apache.royale.swf.io.ISWFWriter;
 import org.apache.royale.swf.io.SWFReader;
 import org.apache.royale.swf.io.SizeReportWritingSWFWriter;
+import org.apache.royale.swf.tags.DoABCTag;
+import org.apache.royale.swf.tags.ITag;
 import com.google.common.collect.ImmutableSet;
 
 import java.io.BufferedInputStream;
@@ -163,6 +166,15 @@ public class Optimizer implements FlexTool
                             System.out.println(Messages.getString(
                                     "MXMLC.bytes_written_to_file_in_seconds_format",
                                     params));
+
+                            params.clear();
+                            params.put("inputByteCount", getABCByteCount(swf));
+                            params.put("outputByteCount", getABCByteCount(optimizedSWF));
+                            params.put("copyCount", target.getPropagatedCopyCount());
+                            params.put("copySeconds", String.format("%5.3f", target.getCopyPropagationNanos() / 1e9));
+                            System.out.println(Messages.getString(
+                                    "Optimizer.abc_optimized_format",
+                                    params));
                         }
                     }
                     finally
@@ -213,6 +225,23 @@ public class Optimizer implements FlexTool
         return result;
     }
 
+    /**
+     * @return the total size of the ABC in the DoABC tags of a swf
+     */
+    private static long getABCByteCount(ISWF swf)
+    {
+        long byteCount = 0;
+        for (int i = 0; i < swf.getFrameCount(); ++i)
+        {
+            for (ITag tag : swf.getFrameAt(i))
+            {
+                if (tag instanceof DoABCTag)
+                    byteCount += ((DoABCTag)tag).getABCData().length;
+            }
+        }
+        return byteCount;
+    }
+
     public Optimizer()
     {
         workspace = new Workspace();
@@ -497,12 +526,46 @@ public class Optimizer implements FlexTool
          */
         private ISWF swf;
 
+        /**
+         * The settings the swf was linked with
+         */
+        private ABCLinker.ABCLinkerSettings linkSettings;
+
         @Override
         public ISWF build(Collection<ICompilerProblem> problems)
         {
             return linkSWF(swf);
         }
 
+        /**
+         * The optimizer also removes the locals that only copy another
+         * register, which the compiler doesn't do by default.
+         */
+        @Override
+        protected void setOptimizationLinkerSettings(ABCLinker.ABCLinkerSettings linkSettings)
+        {
+            linkSettings.setPropagateCopies(true);
+            this.linkSettings = linkSettings;
+        }
+
+        /**
+         * @return the number of locals removed by copy propagation when the
+         * swf was linked
+         */
+        public int getPropagatedCopyCount()
+        {
+            return linkSettings != null ? linkSettings.getPropagatedCopyCount() : 0;
+        }
+
+        /**
+         * @return the time spent by copy propagation when the swf was
+         * linked, in nanoseconds
+         */
+        public long getCopyPropagationNanos()
+        {
+            return linkSettings != null ? linkSettings.getCopyPropagationNanos() : 0;
+        }
+
         public OptimizerSWFTarget (ISWF swf, CompilerProject project, ITargetSettings targetSettings, ITargetProgressMonitor progressMonitor)
         {
             super(project, targetSettings, progressMonitor);
@@ -192,6 +192,8 @@ public class ABCScopeBuilder extends NilABCVisitor
         scopes = new ArrayList<IASScope>();
         classDefinitions = new HashMap<ClassInfo, TypeDefinitionBase>();
         abcParser = new ABCParser(abcData);
+        if (workspace instanceof Workspace)
+            abcParser.setStringInterner(((Workspace)workspace).getNameInterner());
         namespacesMap = new HashMap<Namespace, INamespaceDefinition>();
         nameMap = new HashMap<Name, IReference>();
         this.workspace = workspace;
@@ -265,7 +265,16 @@ public class ABCGenerator implements ICodeGenerator
         }
         else
         {
-            generateMethodBodyForFunction(mi, func, enclosing_scope, instance_init_insns);
+            // Number the synthetic names and add the methods the way
+            // generateFunctionInParallel() does, so that the ABC is the
+            // same whether or not functions are generated in parallel.
+            ParallelFunctionContext context = new ParallelFunctionContext(
+                enclosing_scope.getGlobalScope().reserveSyntheticNamePrefix(), enclosing_scope.getEmitter());
+            List<IVisitor> deferredVisitEnds = new LinkedList<IVisitor>();
+            generateMethodBodyForFunction(deferredVisitEnds, mi, func, enclosing_scope, instance_init_insns, context);
+            context.visitMethods();
+            for (IVisitor v : deferredVisitEnds)
+                v.visitEnd();
         }
 
         func.discardFunctionBody();
@@ -290,15 +299,28 @@ public class ABCGenerator implements ICodeGenerator
      */
     public GenerateFunctionInParallelResult generateFunctionInParallel (ExecutorService executorService, FunctionNode func, LexicalScope enclosing_scope)
     {
-        MethodInfo mi = createMethodInfo(enclosing_scope, func, null);
+        return generateFunctionInParallel(executorService, func, enclosing_scope, null, true);
+    }
+
+    @Override
+    public GenerateFunctionInParallelResult generateMethodInParallel (ExecutorService executorService, FunctionNode func, LexicalScope enclosing_scope, Name alternate_name)
+    {
+        return generateFunctionInParallel(executorService, func, enclosing_scope, alternate_name, false);
+    }
+
+    private GenerateFunctionInParallelResult generateFunctionInParallel (ExecutorService executorService, FunctionNode func, LexicalScope enclosing_scope, Name alternate_name, boolean prepareBody)
+    {
+        MethodInfo mi = createMethodInfo(enclosing_scope, func, alternate_name);
         if (mi.isNative())
         {
             generateNativeMethod(func, mi, enclosing_scope);
-            return new GenerateFunctionInParallelResult(Futures.immediateFuture(null), mi, Collections.<IVisitor>emptyList());
+            return new GenerateFunctionInParallelResult(Futures.immediateFuture(null), mi, null, Collections.<IVisitor>emptyList());
         }
-        GenerateFunctionRunnable runnable = new GenerateFunctionRunnable(mi, func, enclosing_scope);
+        ParallelFunctionContext context = new ParallelFunctionContext(
+            enclosing_scope.getGlobalScope().reserveSyntheticNamePrefix(), enclosing_scope.getEmitter());
+        GenerateFunctionRunnable runnable = new GenerateFunctionRunnable(mi, func, enclosing_scope, context, prepareBody);
         Future<?> future = executorService.submit(runnable);
-        return new GenerateFunctionInParallelResult(future, mi, runnable.getDeferredVisitEndsList());
+        return new GenerateFunctionInParallelResult(future, mi, context, runnable.getDeferredVisitEndsList());
     }
     
     /**
@@ -350,7 +372,7 @@ public class ABCGenerator implements ICodeGenerator
             InstructionList instance_init_insns)
     {
         List<IVisitor> deferredVisitEnds = new LinkedList<IVisitor>();
-        generateMethodBodyForFunction(deferredVisitEnds, mi, node, enclosing_scope, instance_init_insns);
+        generateMethodBodyForFunction(deferredVisitEnds, mi, node, enclosing_scope, instance_init_insns, null);
         for (IVisitor v : deferredVisitEnds)
             v.visitEnd();
     }
@@ -358,12 +380,15 @@ public class ABCGenerator implements ICodeGenerator
     private void generateMethodBodyForFunction(List<IVisitor> deferredVisitEnds,
             MethodInfo mi, IASNode node,
             LexicalScope enclosing_scope,
-            InstructionList instance_init_insns)
+            InstructionList instance_init_insns,
+            ParallelFunctionContext parallel_context)
     {
         assert node != null;
         final boolean is_constructor =  SemanticUtils.isInConstructor(node);
         //  Set up a lexical scope for this function.
         LexicalScope function_scope = enclosing_scope.pushFrame();
+        if ( parallel_context != null )
+            function_scope.setParallelFunctionContext(parallel_context);
 
         //  If instance_init_insns is not null, then the new
         //  scope needs to assume ownership of the initializers'
@@ -696,26 +721,39 @@ public class ABCGenerator implements ICodeGenerator
     private class GenerateFunctionRunnable implements Runnable
     {
         
-        GenerateFunctionRunnable(MethodInfo methodInfo, FunctionNode func, LexicalScope enclosing_scope)
+        GenerateFunctionRunnable(MethodInfo methodInfo, FunctionNode func, LexicalScope enclosing_scope, ParallelFunctionContext context, boolean prepareBody)
         {
             this.methodInfo = methodInfo;
             this.functionNode = func;
             this.enclosingScope = enclosing_scope;
+            this.context = context;
+            this.prepareBody = prepareBody;
             this.deferredVisitEnds = new LinkedList<IVisitor>();
         }
         
         private final MethodInfo methodInfo;
         private final FunctionNode functionNode;
         private final LexicalScope enclosingScope;
+        private final ParallelFunctionContext context;
+        
+        /**
+         * True if the body of the function must be parsed and processed
+         * before generating it, false if the caller already did it.
+         */
+        private final boolean prepareBody;
         private final List<IVisitor> deferredVisitEnds;
         
         @Override
         public void run()
         {
             assert !methodInfo.isNative() : "Native methods should be handled in the main thread and not be dispatched to a background thread!";
-            functionNode.parseFunctionBody(enclosingScope.getProblems());
-            ASTUtil.processFunctionNode(functionNode, enclosingScope.getProject());
-            generateMethodBodyForFunction(deferredVisitEnds, methodInfo, functionNode, enclosingScope, null);
+            if (prepareBody)
+            {
+                functionNode.parseFunctionBody(enclosingScope.getProblems());
+                ASTUtil.processFunctionNode(functionNode, enclosingScope.getProject());
+            }
+            generateMethodBodyForFunction(deferredVisitEnds, methodInfo, functionNode, enclosingScope, null, context);
+            functionNode.discardFunctionBody();
         }
         
         public List<IVisitor> getDeferredVisitEndsList()
@@ -22,6 +22,8 @@ package org.apache.royale.compiler.internal.as.codegen;
 import static org.apache.royale.abc.ABCConstants.*;
 
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 
 import org.apache.royale.abc.ABCConstants;
 import org.apache.royale.abc.instructionlist.InstructionList;
@@ -165,6 +167,18 @@ class ClassDirectiveProcessor extends DirectiveProcessor
      */
     protected final Collection<VariableNode> staticVariableInitializers = new ArrayList<VariableNode>();
 
+    /**
+     * Executor that generates the bodies of the methods, or null to generate
+     * them on this thread.
+     */
+    private ExecutorService executorService;
+
+    /**
+     * Methods being generated by the {@link #executorService}, in the order
+     * they were declared.
+     */
+    private final List<GenerateFunctionInParallelResult> parallelCodeGenList = new ArrayList<GenerateFunctionInParallelResult>();
+
     /**
      * Constructor.
      * Initializes the ClassDirectiveProcessor and its
@@ -479,11 +493,70 @@ class ClassDirectiveProcessor extends DirectiveProcessor
         }
     }
 
+    /**
+     * Generate the bodies of the methods of this class on the threads of an
+     * executor. The constructor is still generated on this thread, once
+     * the instance variables are known.
+     * 
+     * @param executorService The executor.
+     */
+    void setParallelCodeGeneration(ExecutorService executorService)
+    {
+        this.executorService = executorService;
+    }
+
+    /**
+     * Generate a method, or start generating it if the methods are generated
+     * in parallel.
+     */
+    private MethodInfo generateMethod(FunctionNode func, LexicalScope ls, Name alternate_name)
+    {
+        if (executorService == null)
+            return classScope.getGenerator().generateFunction(func, ls, null, alternate_name);
+
+        // Each worker gets a frame of its own, pushed here on the main thread
+        // before the method is submitted. The frame copies what a nested
+        // frame takes from its enclosing frame, so the worker never reads the
+        // class frame, which this thread keeps changing as it processes the
+        // rest of the class. The only way back to the class frame is the
+        // lookup of the method body visitor and of the semantic checker,
+        // which the function frame the worker pushes sets for itself.
+        final LexicalScope workerScope = ls.pushFrame();
+        final GenerateFunctionInParallelResult parallelCodeGen =
+            classScope.getGenerator().generateMethodInParallel(executorService, func, workerScope, alternate_name);
+        parallelCodeGenList.add(parallelCodeGen);
+        return parallelCodeGen.getMethodInfo();
+    }
+
+    /**
+     * Block until the methods generated in parallel are complete and add
+     * them to the emitter, in the order they were declared.
+     */
+    void finishMethodGeneration()
+    {
+        try
+        {
+            for (GenerateFunctionInParallelResult parallelCodeGen : parallelCodeGenList)
+                parallelCodeGen.finish();
+            parallelCodeGenList.clear();
+        }
+        catch (InterruptedException e)
+        {
+            throw new CodegenInterruptedException(e);
+        }
+        catch (ExecutionException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+
     /**
      * Finish the class' definition.
      */
     void finishClassDefinition()
     {
+        finishMethodGeneration();
+
         // should be able to pass null here because GlobalDirectiveProcessor
         // already called getSkinsParts and collected problems.  This
         // call should get the cached array.
@@ -877,7 +950,7 @@ class ClassDirectiveProcessor extends DirectiveProcessor
         {
             LexicalScope ls = funcDef.isStatic()? classStaticScope: classScope;
 
-            MethodInfo mi = classScope.getGenerator().generateFunction(func, ls, null, bindableName);
+            MethodInfo mi = generateMethod(func, ls, bindableName);
             
             if ( mi != null )
             {
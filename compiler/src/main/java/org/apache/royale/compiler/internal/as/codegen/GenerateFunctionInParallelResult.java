@@ -36,26 +36,33 @@ import java.util.concurrent.Future;
  */
 public class GenerateFunctionInParallelResult
 {
-    GenerateFunctionInParallelResult (Future<?> future, MethodInfo methodInfo, List<IVisitor> deferredVisitEndsList)
+    GenerateFunctionInParallelResult (Future<?> future, MethodInfo methodInfo, ParallelFunctionContext context, List<IVisitor> deferredVisitEndsList)
     {
         assert future != null;
         assert methodInfo != null;
         this.future = future;
         this.methodInfo = methodInfo;
+        this.context = context;
         this.deferredVisitEnds = deferredVisitEndsList;
     }
 
     private final Future<?> future;
     private final MethodInfo methodInfo;
+    private final ParallelFunctionContext context;
     private final List<IVisitor> deferredVisitEnds;
 
     /**
      * Blocks until the code generation work that this object corresponds to
-     * is completed.
+     * is completed, then adds the methods it generated to the emitter.
+     * Results must be finished in the order the functions were started, on
+     * the thread that started them, for the ABC not to depend on the
+     * scheduling of the background threads.
      */
     public void finish() throws InterruptedException, ExecutionException
     {
         future.get();
+        if (context != null)
+            context.visitMethods();
         for (IVisitor v : deferredVisitEnds)
         {
             v.visitEnd();
@@ -459,6 +459,8 @@ class GlobalDirectiveProcessor extends DirectiveProcessor
             currentScope.getMethodBodySemanticChecker().checkDefaultSuperCall(c.getDefinition().getConstructor().getNode());
         }
         ClassDirectiveProcessor cp = new ClassDirectiveProcessor(c, this.currentScope, this.emitter);
+        if (this.useParallelCodeGen)
+            cp.setParallelCodeGeneration(this.executorService);
         cp.traverse(c.getScopedNode());
         cp.finishClassDefinition();
     }
@@ -346,11 +346,23 @@ public class GlobalLexicalScope extends LexicalScope
      *  @return a synthetic name string, unique within this compilation unit.
      *  @param user_supplied - some user-supplied text, which may make debugging easier.
      */
+    @Override
     protected String getSyntheticName(String user_supplied)
     {
         return syntheticNamePrefix +  "$" + Integer.toString(ticketCount++) + ":" + user_supplied;
     }
 
+    /**
+     *  Reserve a prefix for the synthetic names of a function generated
+     *  on a background thread. Must be called on the thread that started
+     *  code generation.
+     *  @return a prefix no other synthetic name of this compilation unit starts with.
+     */
+    String reserveSyntheticNamePrefix()
+    {
+        return syntheticNamePrefix +  "$" + Integer.toString(ticketCount++);
+    }
+
     /**
      * @param filename The filename to get the encoded filename for
      * @return the encoded filename
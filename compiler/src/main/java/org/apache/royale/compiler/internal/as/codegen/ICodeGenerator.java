@@ -131,6 +131,27 @@ public interface ICodeGenerator
                                                                 FunctionNode func,
                                                                 LexicalScope enclosing_scope);
 
+    /**
+     * Generate code for a method of a class, using a background thread
+     * provided by the specified {@link ExecutorService}. Unlike
+     * {@link #generateFunctionInParallel}, the body of the method must
+     * already have been parsed and processed by the calling thread.
+     *
+     * @param executorService {@link ExecutorService} used to do work in other
+     * threads.
+     * @param func the function declaration node.
+     * @param enclosing_scope the lexical scope in which the function was
+     * defined.
+     * @param alternate_name the name of the method, if it isn't the name of
+     * its definition.
+     * @return {@link GenerateFunctionInParallelResult} which can be used to
+     * wait for code generation of the specified method to complete.
+     */
+    GenerateFunctionInParallelResult generateMethodInParallel(ExecutorService executorService,
+                                                              FunctionNode func,
+                                                              LexicalScope enclosing_scope,
+                                                              Name alternate_name);
+
     /**
      * Helper method used by mxml databinding codegen to emit an anonymous
      * function used by an mxml data binding destination function. Example:
@@ -229,6 +229,12 @@ public class LexicalScope
      */
     private final LexicalScope enclosingFrame;
 
+    /**
+     * Context of the function generated on a background thread that this
+     * scope is part of, or null if code is generated on the main thread.
+     */
+    private ParallelFunctionContext parallelFunctionContext;
+
     /**
      *  The MethodInfo of this scope's anonymous function,
      *  or null if this is not an anonymous function scope.
@@ -419,6 +425,7 @@ public class LexicalScope
         this.enclosingFrame = enclosingFrame;
         this.globalLexicalScope = enclosingFrame.globalLexicalScope;
         this.nestingState = enclosingFrame.nestingState;
+        this.parallelFunctionContext = enclosingFrame.parallelFunctionContext;
         if (mergableTempManager)
             this.tempManager = new TempManager(enclosingFrame.tempManager);
         else
@@ -1041,7 +1048,7 @@ public class LexicalScope
         IDefinition def = id.resolve(project);
         Name name;
         if ( id.getName().length() == 0 )
-            name = new Name(getGlobalScope().getSyntheticName("anonymous"));
+            name = new Name(getSyntheticName("anonymous"));
         else
             name = id.getMName(project);
 
@@ -1692,7 +1699,7 @@ public class LexicalScope
     void declareAnonymousFunction()
     {
         declareNestedFunction();
-        setFunctionName(getGlobalScope().getSyntheticName("anonymous"));
+        setFunctionName(getSyntheticName("anonymous"));
     }
     
     /**
@@ -1992,9 +1999,33 @@ public class LexicalScope
      */
     IABCVisitor getEmitter()
     {
+        if (parallelFunctionContext != null)
+            return parallelFunctionContext.getEmitter();
         return getGlobalScope().getEmitter();
     }
 
+    /**
+     *  @return a synthetic name string, unique within this compilation unit.
+     *  @param user_supplied - some user-supplied text, which may make debugging easier.
+     */
+    protected String getSyntheticName(String user_supplied)
+    {
+        if (parallelFunctionContext != null)
+            return parallelFunctionContext.getSyntheticName(user_supplied);
+        return getGlobalScope().getSyntheticName(user_supplied);
+    }
+
+    /**
+     * Make this scope, and the scopes pushed from it, generate a function
+     * on a background thread.
+     * 
+     * @param context The context of the function.
+     */
+    void setParallelFunctionContext(ParallelFunctionContext context)
+    {
+        this.parallelFunctionContext = context;
+    }
+
     /**
      * @return true if this scope is for an invisible compilation unit.
      * In this case, {@link IDefinition}'s for package/file classes,
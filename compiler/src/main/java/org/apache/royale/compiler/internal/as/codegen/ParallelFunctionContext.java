@@ -0,0 +1,111 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.internal.as.codegen;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.royale.abc.semantics.MethodInfo;
+import org.apache.royale.abc.visitors.DelegatingABCVisitor;
+import org.apache.royale.abc.visitors.DelegatingMethodVisitor;
+import org.apache.royale.abc.visitors.IABCVisitor;
+import org.apache.royale.abc.visitors.IMethodVisitor;
+
+/**
+ * State of a function whose body is generated on a background thread.
+ * <p>
+ * The ABC of a compilation unit must not depend on the order in which the
+ * background threads run, so the things a function body used to take from
+ * the global scope in the order it was generated are taken from this context
+ * instead:
+ * <ul>
+ * <li>Synthetic names, such as those of anonymous functions, are numbered
+ * within the function, under a prefix reserved on the main thread.</li>
+ * <li>The emitter numbers methods in the order in which their visitors are
+ * visited. The visits of the function and of its nested functions are
+ * recorded and replayed by {@link #visitMethods()} when the main thread
+ * collects the function, in the order the functions were started.</li>
+ * </ul>
+ * Functions generated on the main thread by
+ * {@link ABCGenerator#generateFunction} use a context too, so their
+ * synthetic names and methods come out the same as in a parallel build.
+ */
+final class ParallelFunctionContext
+{
+    /**
+     * @param syntheticNamePrefix Unique prefix of the synthetic names of the
+     * function, reserved by {@link GlobalLexicalScope#reserveSyntheticNamePrefix()}.
+     * @param emitter The emitter of the compilation unit.
+     */
+    ParallelFunctionContext(String syntheticNamePrefix, IABCVisitor emitter)
+    {
+        this.syntheticNamePrefix = syntheticNamePrefix;
+        this.emitter = new DelegatingABCVisitor(emitter)
+        {
+            @Override
+            public IMethodVisitor visitMethod(MethodInfo minfo)
+            {
+                final IMethodVisitor delegate = super.visitMethod(minfo);
+                return new DelegatingMethodVisitor(delegate)
+                {
+                    @Override
+                    public void visit()
+                    {
+                        deferredMethodVisits.add(delegate);
+                    }
+                };
+            }
+        };
+    }
+
+    private final String syntheticNamePrefix;
+    private final IABCVisitor emitter;
+    private final List<IMethodVisitor> deferredMethodVisits = new ArrayList<IMethodVisitor>();
+    private int ticketCount = 0;
+
+    /**
+     * @return the emitter the function body is generated into.
+     */
+    IABCVisitor getEmitter()
+    {
+        return emitter;
+    }
+
+    /**
+     * @return a synthetic name string, unique within the compilation unit.
+     * @param user_supplied - some user-supplied text, which may make debugging easier.
+     */
+    String getSyntheticName(String user_supplied)
+    {
+        return syntheticNamePrefix + "." + Integer.toString(ticketCount++) + ":" + user_supplied;
+    }
+
+    /**
+     * Visit the methods of the function, in the order in which the function
+     * body visited them. Must be called on the thread that started code
+     * generation, after the function body is generated.
+     */
+    void visitMethods()
+    {
+        for (IMethodVisitor mv : deferredMethodVisits)
+            mv.visit();
+        deferredMethodVisits.clear();
+    }
+}
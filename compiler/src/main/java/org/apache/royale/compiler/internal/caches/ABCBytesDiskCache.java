@@ -0,0 +1,601 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.internal.caches;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.royale.compiler.common.DependencyType;
+import org.apache.royale.compiler.common.DependencyTypeSet;
+import org.apache.royale.compiler.definitions.IDefinition;
+import org.apache.royale.compiler.filespecs.IFileSpecification;
+import org.apache.royale.compiler.internal.definitions.APIFingerprint;
+import org.apache.royale.compiler.internal.projects.CompilerProject;
+import org.apache.royale.compiler.internal.projects.DependencyGraph;
+import org.apache.royale.compiler.internal.scopes.ASProjectScope;
+import org.apache.royale.compiler.internal.units.requests.ABCBytesRequestResult;
+import org.apache.royale.compiler.internal.units.requests.FileScopeRequestResultBase;
+import org.apache.royale.compiler.units.ICompilationUnit;
+import org.apache.royale.compiler.units.requests.IABCBytesRequestResult;
+import org.apache.royale.compiler.units.requests.IFileScopeRequestResult;
+
+/**
+ * An on-disk cache of the ABC generated for ActionScript compilation units,
+ * so that a new compiler process doesn't have to generate the code of source
+ * files that didn't change since an earlier compilation.
+ * <p>
+ * An entry is stored in <code>&lt;key&gt;.abc</code>, where the key is a
+ * SHA-1 hash of the text and the path of the source file, and of the
+ * compiler version and configuration. The dependencies of a compilation unit
+ * are only known once its code is generated, so an entry also records:
+ * <ul>
+ * <li>the dependencies of the unit, with the {@link APIFingerprint} of every
+ * compilation unit it depends on. The fingerprint covers the resolved values
+ * of constants, so an entry whose code has a constant folded into it isn't
+ * used once the constant's value changes, even if the value comes from a
+ * file the unit doesn't depend on,</li>
+ * <li>the qualified names of all the definitions in the project with the base
+ * names that the unit resolved or failed to resolve, so that a new
+ * definition that would change how a name resolves is noticed.</li>
+ * </ul>
+ * An entry is only used if all of them are unchanged, and then its
+ * dependencies are added to the dependency graph as code generation would
+ * have added them.
+ * <p>
+ * Only units whose code was generated without problems or embedded assets
+ * are stored, and units that include other files are never stored. Reading
+ * or writing an entry never fails the compilation: any I/O error is treated
+ * as a cache miss.
+ */
+public class ABCBytesDiskCache
+{
+    /**
+     * Bump this whenever the layout of the cache files, the ABC the code
+     * generator produces for a source, or the fingerprints of the
+     * dependencies, change.
+     */
+    private static final int FORMAT_VERSION = 2;
+
+    private static final int MAGIC = 0x52414243; // "RABC"
+
+    private static final String EXTENSION = ".abc";
+
+    /**
+     * Fingerprint of units whose API can't be fingerprinted.
+     */
+    private static final String NO_FINGERPRINT = "";
+
+    /**
+     * Constructor.
+     *
+     * @param directory The cache directory. It is created if needed.
+     * @param configuration A canonical form of the compiler version and
+     * configuration. Entries written with another configuration are never
+     * found.
+     */
+    public ABCBytesDiskCache(File directory, String configuration)
+    {
+        this.directory = directory;
+        this.configuration = configuration;
+        fingerprints = new WeakHashMap<IFileScopeRequestResult, String>();
+    }
+
+    private final File directory;
+    private final String configuration;
+
+    /**
+     * Fingerprints of the units that were depended on, keyed by the file
+     * scope they were computed from, so that a unit that is rebuilt gets a new
+     * fingerprint.
+     */
+    private final Map<IFileScopeRequestResult, String> fingerprints;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong stored = new AtomicLong();
+
+    /**
+     * @return The cache directory.
+     */
+    public File getDirectory()
+    {
+        return directory;
+    }
+
+    /**
+     * Computes the key of the entry of a compilation unit.
+     *
+     * @param file The root file of the compilation unit.
+     * @param skipFunctionBodies Whether the code generator skips the function
+     * bodies of the unit.
+     * @return A hexadecimal hash of the file and the configuration, or null if
+     * the file can't be read.
+     */
+    public String getKey(IFileSpecification file, boolean skipFunctionBodies)
+    {
+        final String text;
+        Reader reader = null;
+        try
+        {
+            reader = file.createReader();
+            text = IOUtils.toString(reader);
+        }
+        catch (IOException e)
+        {
+            return null;
+        }
+        finally
+        {
+            IOUtils.closeQuietly(reader);
+        }
+
+        final MessageDigest digest;
+        try
+        {
+            digest = MessageDigest.getInstance("SHA-1");
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new IllegalStateException(e);
+        }
+        final StringBuilder header = new StringBuilder();
+        header.append(FORMAT_VERSION).append('\0');
+        header.append(configuration).append('\0');
+        header.append(file.getPath()).append('\0');
+        header.append(skipFunctionBodies).append('\0');
+        update(digest, header);
+        update(digest, text);
+
+        final StringBuilder key = new StringBuilder(40);
+        for (byte b : digest.digest())
+        {
+            key.append(Character.forDigit((b >> 4) & 0xF, 16));
+            key.append(Character.forDigit(b & 0xF, 16));
+        }
+        return key.toString();
+    }
+
+    /**
+     * Hash the UTF-16 code units of a text, so that no character is replaced
+     * by an encoder.
+     */
+    private static void update(MessageDigest digest, CharSequence text)
+    {
+        final byte[] chunk = new byte[8192];
+        int length = 0;
+        for (int i = 0; i < text.length(); i++)
+        {
+            final char c = text.charAt(i);
+            chunk[length++] = (byte)(c >> 8);
+            chunk[length++] = (byte)c;
+            if (length == chunk.length)
+            {
+                digest.update(chunk, 0, length);
+                length = 0;
+            }
+        }
+        digest.update(chunk, 0, length);
+    }
+
+    private File getFile(String key)
+    {
+        return new File(directory, key + EXTENSION);
+    }
+
+    /**
+     * Reads the ABC of a compilation unit from the cache. If the entry is
+     * used, the dependencies it records are added to the project.
+     *
+     * @param key Key returned by {@link #getKey}.
+     * @param project The project of the compilation unit.
+     * @param unit The compilation unit.
+     * @return The ABC, or null if there is no valid entry for the key, or the
+     * dependencies of the unit changed.
+     * @throws InterruptedException
+     */
+    public IABCBytesRequestResult load(String key, CompilerProject project, ICompilationUnit unit) throws InterruptedException
+    {
+        final File file = getFile(key);
+        if (!file.isFile())
+        {
+            misses.incrementAndGet();
+            return null;
+        }
+
+        final byte[] bytes;
+        final List<Dependency> dependencies = new ArrayList<Dependency>();
+        final Map<String, List<String>> lookups = new TreeMap<String, List<String>>();
+        final List<String> unfoundNames = new ArrayList<String>();
+        DataInputStream in = null;
+        try
+        {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION)
+            {
+                misses.incrementAndGet();
+                return null;
+            }
+            bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+
+            final int dependencyCount = in.readInt();
+            for (int i = 0; i < dependencyCount; i++)
+            {
+                final Dependency dependency = new Dependency(in.readUTF(), in.readUTF(), readTypes(in));
+                final int namedCount = in.readInt();
+                for (int j = 0; j < namedCount; j++)
+                    dependency.namedTypes.put(in.readUTF(), readTypes(in));
+                dependencies.add(dependency);
+            }
+
+            final int lookupCount = in.readInt();
+            for (int i = 0; i < lookupCount; i++)
+            {
+                final String baseName = in.readUTF();
+                final int qnameCount = in.readInt();
+                final List<String> qnames = new ArrayList<String>(qnameCount);
+                for (int j = 0; j < qnameCount; j++)
+                    qnames.add(in.readUTF());
+                lookups.put(baseName, qnames);
+            }
+
+            final int unfoundCount = in.readInt();
+            for (int i = 0; i < unfoundCount; i++)
+                unfoundNames.add(in.readUTF());
+        }
+        catch (IOException e)
+        {
+            // A truncated or unreadable entry is generated again.
+            misses.incrementAndGet();
+            return null;
+        }
+        finally
+        {
+            close(in);
+        }
+
+        // Check everything before adding any dependency, so that a miss
+        // leaves the dependency graph as it was.
+        final ASProjectScope projectScope = project.getScope();
+        for (Map.Entry<String, List<String>> lookup : lookups.entrySet())
+        {
+            if (!lookup.getValue().equals(projectScope.getQualifiedNamesByDefinitionName(lookup.getKey())))
+            {
+                misses.incrementAndGet();
+                return null;
+            }
+        }
+
+        final List<ICompilationUnit> dependees = new ArrayList<ICompilationUnit>(dependencies.size());
+        for (Dependency dependency : dependencies)
+        {
+            final ICompilationUnit dependee = projectScope.getCompilationUnitForDefinition(
+                    projectScope.findDefinitionByName(dependency.qname));
+            if (dependee == null || dependee == unit ||
+                !dependency.fingerprint.equals(getFingerprint(dependee)))
+            {
+                misses.incrementAndGet();
+                return null;
+            }
+            dependees.add(dependee);
+        }
+
+        for (int i = 0; i < dependencies.size(); i++)
+        {
+            final Dependency dependency = dependencies.get(i);
+            final ICompilationUnit dependee = dependees.get(i);
+            for (Map.Entry<String, DependencyTypeSet> named : dependency.namedTypes.entrySet())
+                project.addDependency(unit, dependee, named.getValue(), named.getKey());
+            for (DependencyType type : dependency.types)
+                project.addDependency(unit, dependee, type);
+        }
+        for (String unfoundName : unfoundNames)
+            project.addUnfoundDefinitionDependency(unfoundName, unit);
+
+        hits.incrementAndGet();
+        return new ABCBytesRequestResult(bytes);
+    }
+
+    /**
+     * Stores the ABC of a compilation unit, with the dependencies that the
+     * code generator added to the project. Nothing is stored if the result
+     * has problems or embedded assets, or if a dependency can't be
+     * fingerprinted.
+     *
+     * @param key Key returned by {@link #getKey}.
+     * @param project The project of the compilation unit.
+     * @param unit The compilation unit.
+     * @param result The result of generating the ABC of the unit.
+     * @throws InterruptedException
+     */
+    public void store(String key, CompilerProject project, ICompilationUnit unit, IABCBytesRequestResult result) throws InterruptedException
+    {
+        final byte[] bytes = result.getABCBytes();
+        if (bytes == null || bytes.length == 0 || result.getProblems().length > 0 || !result.getEmbeds().isEmpty())
+            return;
+
+        final ASProjectScope projectScope = project.getScope();
+        final DependencyGraph graph = project.getDependencyGraph();
+        final Set<String> baseNames = new TreeSet<String>();
+        for (IDefinition definition : unit.getFileScopeRequest().get().getExternallyVisibleDefinitions())
+            baseNames.add(definition.getBaseName());
+
+        final List<Dependency> dependencies = new ArrayList<Dependency>();
+        for (ICompilationUnit dependee : graph.getDirectDependencies(unit))
+        {
+            if (dependee.isInvisible())
+                return;
+            final String fingerprint = getFingerprint(dependee);
+            if (NO_FINGERPRINT.equals(fingerprint))
+                return;
+
+            final Map<String, DependencyTypeSet> namedTypes = graph.getDependencySet(unit, dependee);
+            // the types of anonymous dependencies are recorded with all types.
+            namedTypes.remove(null);
+            // a qualified name by which the dependee can be found again.
+            String qname = null;
+            if (!namedTypes.isEmpty())
+                qname = Collections.min(namedTypes.keySet());
+            else if (!dependee.getQualifiedNames().isEmpty())
+                qname = Collections.min(dependee.getQualifiedNames());
+            if (qname == null ||
+                projectScope.getCompilationUnitForDefinition(projectScope.findDefinitionByName(qname)) != dependee)
+            {
+                return;
+            }
+
+            final Dependency dependency = new Dependency(qname, fingerprint, graph.getDependencyTypes(unit, dependee));
+            dependency.namedTypes.putAll(namedTypes);
+            dependencies.add(dependency);
+            for (String namedQName : namedTypes.keySet())
+                baseNames.add(namedQName.substring(namedQName.lastIndexOf('.') + 1));
+        }
+        final Set<String> unfoundNames = new TreeSet<String>(project.getUnfoundDefinitionDependencies(unit));
+        baseNames.addAll(unfoundNames);
+
+        final File entry = getFile(key);
+        final File tempFile = createTempFile(entry);
+        if (tempFile == null)
+            return;
+        DataOutputStream out = null;
+        try
+        {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+
+            out.writeInt(dependencies.size());
+            for (Dependency dependency : dependencies)
+            {
+                out.writeUTF(dependency.qname);
+                out.writeUTF(dependency.fingerprint);
+                writeTypes(out, dependency.types);
+                out.writeInt(dependency.namedTypes.size());
+                for (Map.Entry<String, DependencyTypeSet> named : dependency.namedTypes.entrySet())
+                {
+                    out.writeUTF(named.getKey());
+                    writeTypes(out, named.getValue());
+                }
+            }
+
+            out.writeInt(baseNames.size());
+            for (String baseName : baseNames)
+            {
+                final List<String> qnames = projectScope.getQualifiedNamesByDefinitionName(baseName);
+                out.writeUTF(baseName);
+                out.writeInt(qnames.size());
+                for (String qname : qnames)
+                    out.writeUTF(qname);
+            }
+
+            out.writeInt(unfoundNames.size());
+            for (String unfoundName : unfoundNames)
+                out.writeUTF(unfoundName);
+            out.close();
+            out = null;
+            commit(tempFile, entry);
+            stored.incrementAndGet();
+        }
+        catch (IOException e)
+        {
+            tempFile.delete();
+        }
+        finally
+        {
+            close(out);
+        }
+    }
+
+    /**
+     * @return The digest of the {@link APIFingerprint} of a compilation unit,
+     * or {@link #NO_FINGERPRINT} if it doesn't have one.
+     */
+    private String getFingerprint(ICompilationUnit unit) throws InterruptedException
+    {
+        final IFileScopeRequestResult fileScope = unit.getFileScopeRequest().get();
+        synchronized (fingerprints)
+        {
+            final String fingerprint = fingerprints.get(fileScope);
+            if (fingerprint != null)
+                return fingerprint;
+        }
+
+        String fingerprint = NO_FINGERPRINT;
+        if (fileScope instanceof FileScopeRequestResultBase)
+        {
+            final APIFingerprint apiFingerprint = APIFingerprint.create(((FileScopeRequestResultBase)fileScope).getFileScopes(), unit.getProject());
+            if (apiFingerprint != null)
+                fingerprint = apiFingerprint.getDigest();
+        }
+        synchronized (fingerprints)
+        {
+            fingerprints.put(fileScope, fingerprint);
+        }
+        return fingerprint;
+    }
+
+    private static DependencyTypeSet readTypes(DataInputStream in) throws IOException
+    {
+        final String symbols = in.readUTF();
+        final DependencyTypeSet types = DependencyTypeSet.noneOf();
+        try
+        {
+            for (int i = 0; i < symbols.length(); i++)
+                types.add(DependencyType.get(symbols.charAt(i)));
+        }
+        catch (IllegalArgumentException e)
+        {
+            throw new IOException(e.getMessage());
+        }
+        return types;
+    }
+
+    private static void writeTypes(DataOutputStream out, DependencyTypeSet types) throws IOException
+    {
+        out.writeUTF(DependencyType.getTypeString(types));
+    }
+
+    private File createTempFile(File entry)
+    {
+        if (!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory())
+            return null;
+        try
+        {
+            return File.createTempFile(entry.getName(), ".tmp", directory);
+        }
+        catch (IOException e)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Moves a completely written temporary file to its final name, so that
+     * concurrent readers never see a partial entry.
+     */
+    private static void commit(File tempFile, File entry)
+    {
+        if (!tempFile.renameTo(entry))
+            tempFile.delete();
+    }
+
+    private static void close(Closeable closeable)
+    {
+        if (closeable == null)
+            return;
+        try
+        {
+            closeable.close();
+        }
+        catch (IOException e)
+        {
+            // ignore
+        }
+    }
+
+    /**
+     * @return The number of entries that were used.
+     */
+    long getHitCount()
+    {
+        return hits.get();
+    }
+
+    /**
+     * @return The number of loads that found no valid entry.
+     */
+    long getMissCount()
+    {
+        return misses.get();
+    }
+
+    /**
+     * @return The number of entries stored.
+     */
+    long getStoredCount()
+    {
+        return stored.get();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "ABC cache in " + directory.getPath() + ": " + hits.get() + " hits, " +
+               misses.get() + " misses, " + stored.get() + " stored";
+    }
+
+    /**
+     * The dependencies of a compilation unit on another unit.
+     */
+    private static final class Dependency
+    {
+        Dependency(String qname, String fingerprint, DependencyTypeSet types)
+        {
+            this.qname = qname;
+            this.fingerprint = fingerprint;
+            this.types = types;
+            namedTypes = new TreeMap<String, DependencyTypeSet>();
+        }
+
+        /**
+         * Qualified name of a definition of the unit that is depended on.
+         */
+        final String qname;
+
+        /**
+         * Fingerprint of the unit that is depended on.
+         */
+        final String fingerprint;
+
+        /**
+         * All the dependency types of the dependency, including those of
+         * anonymous dependencies.
+         */
+        final DependencyTypeSet types;
+
+        /**
+         * Dependency types by the qualified name of the definition depended
+         * on.
+         */
+        final Map<String, DependencyTypeSet> namedTypes;
+    }
+}
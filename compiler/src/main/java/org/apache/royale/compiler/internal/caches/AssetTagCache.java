@@ -49,8 +49,8 @@ import org.apache.royale.swf.tags.SymbolClassTag;
  * DefineJPEG tag. This cache stores all the asset SWF tags needed for a
  * definition. The cache is a table of key-value pairs.
  * <p>
- * The key is a string in the form "swc/library/script/qname". The value is a
- * soft reference to an array of non-DoABC SWF tags.
+ * The key is a string in the form "swc/library/script/qname". The value is an
+ * array of non-DoABC SWF tags.
  * <p>
  * When linking, the library manager will query the cache with a key like
  * swc/library/script/qname. It asks {@link FileScopeCache} for public
@@ -126,6 +126,8 @@ public class AssetTagCache extends ConcurrentCacheStoreBase<AssetTagCache.AssetT
      */
     public AssetTagCache(SWCManager swcManager)
     {
+        // Collected values are read again from the SWF cache.
+        super(CacheStorePolicy.forStore("assetTag", CacheStorePolicy.SOFT_VALUES));
         this.swcManager = swcManager;
     }
     
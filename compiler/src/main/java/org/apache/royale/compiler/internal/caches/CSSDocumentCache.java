@@ -325,6 +325,12 @@ public class CSSDocumentCache extends ConcurrentCacheStoreBase<ICSSDocument> imp
         return new CSSDocumentCacheKey2(cssFileName);
     }
 
+    public CSSDocumentCache()
+    {
+        // Collected documents are parsed again from their CSS files.
+        super(CacheStorePolicy.forStore("cssDocument", CacheStorePolicy.SOFT_VALUES));
+    }
+
     @Override
     protected ICSSDocument createEntryValue(CacheStoreKeyBase key)
     {
@@ -0,0 +1,128 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.internal.caches;
+
+/**
+ * Describes how a {@link ConcurrentCacheStoreBase} retains its values.
+ * <p>
+ * A store either keeps its values until they are removed (optionally bounded
+ * by a maximum total weight, in which case the least recently used values are
+ * evicted first), or keeps them through soft references and lets the garbage
+ * collector decide.
+ * <p>
+ * The policy of a store can be overridden with the system properties
+ * <code>royale.cache.&lt;name&gt;.maximumWeight</code> and
+ * <code>royale.cache.&lt;name&gt;.softValues</code>, where
+ * <code>&lt;name&gt;</code> is the name the store was created with.
+ */
+public final class CacheStorePolicy
+{
+    private static final String PROPERTY_PREFIX = "royale.cache.";
+
+    /**
+     * Values are kept until they are removed.
+     */
+    public static final CacheStorePolicy UNBOUNDED = new CacheStorePolicy(-1, false);
+
+    /**
+     * Values are held through soft references.
+     */
+    public static final CacheStorePolicy SOFT_VALUES = new CacheStorePolicy(-1, true);
+
+    /**
+     * Creates a policy that evicts the least recently used values once the
+     * total weight of the store exceeds the specified maximum.
+     * 
+     * @param maximumWeight maximum total weight of the store.
+     * @return policy
+     */
+    public static CacheStorePolicy maximumWeight(long maximumWeight)
+    {
+        if (maximumWeight < 0)
+            throw new IllegalArgumentException("maximumWeight must not be negative");
+        return new CacheStorePolicy(maximumWeight, false);
+    }
+
+    /**
+     * Gets the policy for the store with the specified name, applying any
+     * system property overrides to the default policy.
+     * 
+     * @param name name of the cache store.
+     * @param defaultPolicy policy to use when there is no override.
+     * @return policy
+     */
+    public static CacheStorePolicy forStore(String name, CacheStorePolicy defaultPolicy)
+    {
+        final String maximumWeightProperty = System.getProperty(PROPERTY_PREFIX + name + ".maximumWeight");
+        final String softValuesProperty = System.getProperty(PROPERTY_PREFIX + name + ".softValues");
+        if (maximumWeightProperty == null && softValuesProperty == null)
+            return defaultPolicy;
+
+        long maximumWeight = defaultPolicy.maximumWeight;
+        if (maximumWeightProperty != null)
+        {
+            try
+            {
+                maximumWeight = Long.parseLong(maximumWeightProperty.trim());
+            }
+            catch (NumberFormatException e)
+            {
+                // keep the default
+            }
+        }
+        final boolean softValues = softValuesProperty != null ?
+                Boolean.parseBoolean(softValuesProperty.trim()) :
+                defaultPolicy.softValues;
+        return new CacheStorePolicy(maximumWeight, softValues);
+    }
+
+    private CacheStorePolicy(long maximumWeight, boolean softValues)
+    {
+        this.maximumWeight = maximumWeight;
+        this.softValues = softValues;
+    }
+
+    private final long maximumWeight;
+    private final boolean softValues;
+
+    /**
+     * @return the maximum total weight, or -1 if the store is not bounded.
+     */
+    public long getMaximumWeight()
+    {
+        return maximumWeight;
+    }
+
+    /**
+     * @return true if values are held through soft references.
+     */
+    public boolean isSoftValues()
+    {
+        return softValues;
+    }
+
+    @Override
+    public String toString()
+    {
+        if (softValues)
+            return maximumWeight < 0 ? "soft values" : "soft values, maximum weight " + maximumWeight;
+        return maximumWeight < 0 ? "unbounded" : "maximum weight " + maximumWeight;
+    }
+}
@@ -19,63 +19,107 @@
 
 package org.apache.royale.compiler.internal.caches;
 
-import java.lang.ref.SoftReference;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
-
 import com.google.common.base.Joiner;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
+import com.google.common.cache.Weigher;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 
 /**
  * A key-value pair cache store that supports concurrent access.
+ * <p>
+ * Values are created on demand by {@link #createEntryValue}. Concurrent
+ * requests for a missing key wait for a single call to
+ * {@link #createEntryValue} instead of each building the value. How long
+ * values are retained is decided by the store's {@link CacheStorePolicy}, and
+ * hit, miss, load time and eviction counters are available from
+ * {@link #getStatistics()}.
  */
 public abstract class ConcurrentCacheStoreBase<T>
 {
     /**
-     * Initialize the cache store.
+     * Initialize an unbounded cache store.
      */
     protected ConcurrentCacheStoreBase()
     {
-        this.cache = new ConcurrentHashMap<CacheStoreKeyBase, SoftReference<T>>();
+        this(CacheStorePolicy.UNBOUNDED);
     }
 
-    private final ConcurrentMap<CacheStoreKeyBase, SoftReference<T>> cache;
+    /**
+     * Initialize the cache store.
+     * 
+     * @param policy how the store retains its values.
+     */
+    protected ConcurrentCacheStoreBase(CacheStorePolicy policy)
+    {
+        this.policy = policy;
+
+        final CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder().recordStats();
+        if (policy.isSoftValues())
+            builder.softValues();
+        if (policy.getMaximumWeight() >= 0)
+        {
+            builder.maximumWeight(policy.getMaximumWeight());
+            builder.weigher(new Weigher<CacheStoreKeyBase, T>()
+            {
+                @Override
+                public int weigh(CacheStoreKeyBase key, T value)
+                {
+                    return ConcurrentCacheStoreBase.this.weigh(value);
+                }
+            });
+        }
+
+        this.cache = builder.build(new CacheLoader<CacheStoreKeyBase, T>()
+        {
+            @Override
+            public T load(CacheStoreKeyBase key)
+            {
+                final T result = createEntryValue(key);
+                if (result == null)
+                    throw new NullPointerException("Null value not allowed in cache store.");
+                return result;
+            }
+        });
+    }
+
+    private final CacheStorePolicy policy;
+    private final LoadingCache<CacheStoreKeyBase, T> cache;
 
     /**
      * Get a value from the cache store. If the cache doesn't have a valid
      * entry, it will obtain the value, add to the cache and return the value.
      * <p>
-     * The implementation is thread-safe. The API looks like a "read" access,
-     * but when the cache doesn't have a hit, it will write an entry to the
-     * cache table. The first attempt queries the cache, so the read-lock allows
-     * parallelized read if no other thread is writing the cache. If there's no
-     * hit, the second attempt is to create a valid entry, store it in the cache
-     * and return it. This requires upgrading the read-lock to a write-lock.
+     * The implementation is thread-safe. When several threads ask for the same
+     * missing key, one of them creates the value and the others wait for it.
+     * Exceptions thrown by {@link #createEntryValue} are rethrown unchanged.
      * 
      * @param key cache key
      * @return cached value
      */
     public final T get(CacheStoreKeyBase key)
     {
-        T result = null;
-
-        if (cache.containsKey(key))
+        try
         {
-            result = cache.get(key).get();
+            final T result = cache.getUnchecked(key);
+            assert result != null : "Expected non-null value from cache.";
+            return result;
         }
-
-        // create entry and store in cache
-        if (result == null)
+        catch (UncheckedExecutionException e)
         {
-            result = createEntryValue(key);
-            if (result == null)
-                throw new NullPointerException("Null value not allowed in cache store.");
-            cache.put(key, new SoftReference<T>(result));
-
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException)e.getCause();
+            throw e;
+        }
+        catch (ExecutionError e)
+        {
+            if (e.getCause() instanceof Error)
+                throw (Error)e.getCause();
+            throw e;
         }
-
-        assert result != null : "Expected non-null value from cache.";
-        return result;
-
     }
 
     /**
@@ -86,10 +130,7 @@ public abstract class ConcurrentCacheStoreBase<T>
      */
     public final T remove(CacheStoreKeyBase key)
     {
-        SoftReference<T> entryRef = cache.remove(key);
-        if (entryRef == null)
-            return null;
-        return entryRef.get();
+        return cache.asMap().remove(key);
     }
 
     /**
@@ -99,7 +140,25 @@ public abstract class ConcurrentCacheStoreBase<T>
      */
     public int size()
     {
-        return cache.size();
+        return (int)cache.size();
+    }
+
+    /**
+     * @return the policy this store was created with.
+     */
+    public CacheStorePolicy getPolicy()
+    {
+        return policy;
+    }
+
+    /**
+     * Get the hit, miss, load time and eviction counters of this store.
+     * 
+     * @return a snapshot of the counters.
+     */
+    public CacheStats getStatistics()
+    {
+        return cache.stats();
     }
 
     /**
@@ -112,13 +171,26 @@ public abstract class ConcurrentCacheStoreBase<T>
      */
     protected abstract T createEntryValue(CacheStoreKeyBase key);
 
+    /**
+     * Computes the weight of a value for stores with a maximum weight. The
+     * default weight of every value is 1, so the maximum weight is a maximum
+     * number of entries.
+     * 
+     * @param value cached value
+     * @return a non-negative weight
+     */
+    protected int weigh(T value)
+    {
+        return 1;
+    }
+
     @Override
     public String toString()
     {
         final StringBuilder result = new StringBuilder();
         result.append(getClass().getSimpleName());
         result.append(" (").append(cache.size()).append(") {");
-        result.append(Joiner.on(", ").join(cache.keySet()));
+        result.append(Joiner.on(", ").join(cache.asMap().keySet()));
         result.append("} ");
         return result.toString();
     }
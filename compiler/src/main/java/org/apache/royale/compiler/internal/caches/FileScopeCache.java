@@ -20,7 +20,6 @@
 package org.apache.royale.compiler.internal.caches;
 
 import java.io.IOException;
-import java.lang.ref.SoftReference;
 import java.util.Collection;
 
 import org.apache.royale.compiler.caches.IFileScopeCache;
@@ -29,6 +28,7 @@ import org.apache.royale.compiler.internal.scopes.ASFileScope;
 import org.apache.royale.compiler.internal.scopes.SWCFileScopeProvider;
 import org.apache.royale.compiler.scopes.IASScope;
 import org.apache.royale.swc.ISWC;
+import org.apache.royale.swc.ISWCLibrary;
 import org.apache.royale.swc.ISWCScript;
 import org.apache.royale.swc.SWCManager;
 import org.apache.royale.swf.ITagContainer;
@@ -39,7 +39,7 @@ import org.apache.royale.swf.tags.DoABCTag;
  * SWF. The tag contains an ABC script which has a top-level file scope with one
  * or many public definitions inside. The {@code FileScopeCache} is a table of
  * key-value pairs. The key is a string in the form: {@code swc/library/script}.
- * The value is a {@link SoftReference} to a collection of {@link ASFileScope}s.
+ * The value is a collection of {@link ASFileScope}s.
  */
 public class FileScopeCache extends ConcurrentCacheStoreBase<Collection<IASScope>> implements IFileScopeCache
 {
@@ -85,7 +85,9 @@ public class FileScopeCache extends ConcurrentCacheStoreBase<Collection<IASScope
 
     public FileScopeCache(SWCManager swcManager)
     {
-        super();
+        // The scopes of a script are held by its compilation unit while the
+        // unit is alive, so only the scopes of unused SWCs can be collected.
+        super(CacheStorePolicy.forStore("fileScope", CacheStorePolicy.SOFT_VALUES));
         this.swcManager = swcManager;
     }
     
@@ -103,17 +105,33 @@ public class FileScopeCache extends ConcurrentCacheStoreBase<Collection<IASScope
             throw new IllegalArgumentException("expect FileScopeCacheKey but got " + key.getClass().getSimpleName());
 
         final FileScopeCacheKey fileScopeCacheKey = (FileScopeCacheKey)key;
-        final CacheStoreKeyBase swfCacheKey = SWFCache.createKey(fileScopeCacheKey.swc, fileScopeCacheKey.swfPath);
-        final ITagContainer tags = ((SWFCache)swcManager.getSWFCache()).get(swfCacheKey);
+        final SWCDiskCache diskCache = swcManager.getDiskCache();
+        final ISWCLibrary library = fileScopeCacheKey.swc.getLibrary(fileScopeCacheKey.swfPath);
 
-        final DoABCTag abcTag = SWFCache.findDoABCTagByName(tags, fileScopeCacheKey.scriptName);
-        if (abcTag != null)
+        // Try the on-disk cache first, so the library SWF need not be decoded.
+        byte[] abcData = null;
+        if (diskCache != null && library != null)
+            abcData = diskCache.readScriptABC(library, fileScopeCacheKey.scriptName);
+
+        if (abcData == null)
+        {
+            final CacheStoreKeyBase swfCacheKey = SWFCache.createKey(fileScopeCacheKey.swc, fileScopeCacheKey.swfPath);
+            final ITagContainer tags = ((SWFCache)swcManager.getSWFCache()).get(swfCacheKey);
+            if (diskCache != null && library != null)
+                diskCache.writeLibraryABC(library, tags);
+
+            final DoABCTag abcTag = SWFCache.findDoABCTagByName(tags, fileScopeCacheKey.scriptName);
+            if (abcTag != null)
+                abcData = abcTag.getABCData();
+        }
+
+        if (abcData != null)
         {
             try
             {
                 final ABCScopeBuilder abcScopeBuilder = new ABCScopeBuilder(
                         swcManager.getWorkspace(), 
-                        abcTag.getABCData(), 
+                        abcData, 
                         fileScopeCacheKey.swc.getSWCFile().getCanonicalPath(),
                         SWCFileScopeProvider.getInstance());
                 return abcScopeBuilder.build();
@@ -20,20 +20,17 @@
 package org.apache.royale.compiler.internal.caches;
 
 import java.io.FileNotFoundException;
-import java.lang.ref.SoftReference;
-import java.util.List;
 
 import org.apache.commons.io.IOUtils;
 
 import org.apache.royale.compiler.filespecs.IFileSpecification;
 import org.apache.royale.compiler.internal.mxml.MXMLData;
-import org.apache.royale.compiler.internal.parsing.mxml.MXMLToken;
 import org.apache.royale.compiler.internal.parsing.mxml.MXMLTokenizer;
 
 /**
  * Concurrent cache for parsed MXML models. The cache is a list of key-value pairs.
  * The key is an {@code IFileSpecificaton} for an MXML file.
- * The value is a {@link SoftReference} to a DOM-like {@link MXMLData} object.
+ * The value is a DOM-like {@link MXMLData} object, held through a soft reference.
  */
 public class MXMLDataCache extends ConcurrentCacheStoreBase<MXMLData>
 {
@@ -64,7 +61,7 @@ public class MXMLDataCache extends ConcurrentCacheStoreBase<MXMLData>
      */
     public MXMLDataCache()
     {
-        super();
+        super(CacheStorePolicy.forStore("mxmlData", CacheStorePolicy.SOFT_VALUES));
     }
     
     /**
@@ -82,10 +79,8 @@ public class MXMLDataCache extends ConcurrentCacheStoreBase<MXMLData>
         final MXMLTokenizer tokenizer = new MXMLTokenizer(fileSpec);
         try
         {
-            List<MXMLToken> tokens = tokenizer.parseTokens(fileSpec.createReader());
-            
-            // Build tags and attributes from the tokens.
-            final MXMLData mxmlData = new MXMLData(tokens, tokenizer.getPrefixMap(), fileSpec);
+            // Build tags and attributes from the tokens as they are lexed.
+            final MXMLData mxmlData = new MXMLData(tokenizer.streamTokens(fileSpec.createReader()), fileSpec);
             if (tokenizer.hasTokenizationProblems())
             	mxmlData.getProblems().addAll(tokenizer.getTokenizationProblems());
             return mxmlData;
@@ -0,0 +1,645 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.internal.caches;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.royale.compiler.common.DependencyType;
+import org.apache.royale.swc.ISWC;
+import org.apache.royale.swc.ISWCComponent;
+import org.apache.royale.swc.ISWCDigest;
+import org.apache.royale.swc.ISWCFileEntry;
+import org.apache.royale.swc.ISWCLibrary;
+import org.apache.royale.swc.ISWCScript;
+import org.apache.royale.swc.ISWCVersion;
+import org.apache.royale.swc.SWC;
+import org.apache.royale.swc.SWCComponent;
+import org.apache.royale.swc.SWCDigest;
+import org.apache.royale.swc.SWCLibrary;
+import org.apache.royale.swc.SWCScript;
+import org.apache.royale.swc.catalog.SWCFileEntry;
+import org.apache.royale.swf.ITagContainer;
+import org.apache.royale.swf.tags.DoABCTag;
+import org.apache.royale.swf.tags.ITag;
+
+import com.google.common.collect.SetMultimap;
+
+/**
+ * An on-disk cache of the parts of a SWC that are needed to build the project
+ * scope, so that a new compiler process doesn't have to unzip and parse
+ * <code>catalog.xml</code> and decode every library SWF again.
+ * <p>
+ * The cache directory holds two kinds of entries:
+ * <ul>
+ * <li><code>&lt;key&gt;.catalog</code> - a compact binary form of the SWC
+ * catalog. The key is derived from the canonical path, size and modification
+ * time of the SWC file, because the catalog has to be found before the SWC is
+ * opened.</li>
+ * <li><code>&lt;digest&gt;.abc</code> - the ABC of every script in a library
+ * SWF, keyed by the SHA-256 digest that the catalog records for the library.
+ * These entries are content-addressed, so copies of the same SWC in different
+ * locations share one entry. The digest is also recorded in the entry, and an
+ * entry that was written for another digest is a miss.</li>
+ * </ul>
+ * The catalog is all that is needed to hydrate the project scope: every
+ * script of a SWC becomes a {@code SWCCompilationUnit} whose definitions are
+ * {@code DefinitionPromise}s created from the qualified names in the catalog.
+ * The ABC of a script is only turned into definitions by
+ * {@code ABCScopeBuilder} when one of its promises is resolved, so a build
+ * decodes the scripts it references rather than every script of every SWC.
+ * For those the cache saves unzipping and decoding the library SWF, and a
+ * serialized definition model would only save the ABC parse of the
+ * referenced scripts. {@link #toString()} reports the hits and misses of
+ * both kinds of entries.
+ * Reading or writing an entry never fails the compilation: any I/O error is
+ * treated as a cache miss.
+ */
+public class SWCDiskCache
+{
+    /**
+     * Bump this whenever the layout of the cache files changes.
+     */
+    private static final int FORMAT_VERSION = 2;
+
+    private static final int CATALOG_MAGIC = 0x52435743; // "RCWC"
+    private static final int ABC_MAGIC = 0x52434142; // "RCAB"
+
+    private static final String CATALOG_EXTENSION = ".catalog";
+    private static final String ABC_EXTENSION = ".abc";
+
+    /**
+     * Constructor.
+     * 
+     * @param directory The cache directory. It is created if needed.
+     */
+    public SWCDiskCache(File directory)
+    {
+        this.directory = directory;
+        libraryScripts = new ConcurrentHashMap<String, SoftReference<Map<String, byte[]>>>();
+    }
+
+    private final File directory;
+
+    /**
+     * Library ABC entries that were already read from disk, keyed by digest.
+     */
+    private final ConcurrentMap<String, SoftReference<Map<String, byte[]>>> libraryScripts;
+
+    private final AtomicLong catalogHits = new AtomicLong();
+    private final AtomicLong catalogMisses = new AtomicLong();
+    private final AtomicLong libraryHits = new AtomicLong();
+    private final AtomicLong libraryMisses = new AtomicLong();
+
+    /**
+     * @return The cache directory.
+     */
+    public File getDirectory()
+    {
+        return directory;
+    }
+
+    /**
+     * Reads the catalog of a SWC from the cache.
+     * 
+     * @param swcFile The SWC file.
+     * @return The SWC model, or null if the cache has no valid entry for the
+     * current version of the file.
+     */
+    public ISWC readCatalog(File swcFile)
+    {
+        final ISWC swc = readCatalogEntry(swcFile);
+        (swc != null ? catalogHits : catalogMisses).incrementAndGet();
+        return swc;
+    }
+
+    private ISWC readCatalogEntry(File swcFile)
+    {
+        final File entry = getCatalogEntry(swcFile);
+        if (entry == null || !entry.isFile())
+            return null;
+
+        DataInputStream in = null;
+        try
+        {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(entry)));
+            if (in.readInt() != CATALOG_MAGIC || in.readInt() != FORMAT_VERSION)
+                return null;
+
+            final SWC swc = new SWC(swcFile);
+            final ISWCVersion version = swc.getVersion();
+            version.setSWCVersion(readString(in));
+            version.setRoyaleVersion(readString(in));
+            version.setRoyaleBuild(readString(in));
+            version.setRoyaleMinSupportedVersion(readString(in));
+            version.setCompilerName(readString(in));
+            version.setCompilerVersion(readString(in));
+            version.setCompilerBuild(readString(in));
+            swc.setIsANE(in.readBoolean());
+
+            final Map<String, SWCComponent> componentIndex = new HashMap<String, SWCComponent>();
+            final int componentCount = in.readInt();
+            for (int i = 0; i < componentCount; i++)
+            {
+                final SWCComponent component = new SWCComponent();
+                final String qname = readString(in);
+                final String name = readString(in);
+                final String uri = readString(in);
+                final String icon = readString(in);
+                final String preview = readString(in);
+                if (qname != null)
+                    component.setQName(qname.intern());
+                if (name != null)
+                    component.setName(name.intern());
+                if (uri != null)
+                    component.setURI(uri.intern());
+                if (icon != null)
+                    component.setIcon(icon.intern());
+                if (preview != null)
+                    component.setPreview(preview.intern());
+                swc.addComponent(component);
+                componentIndex.put(qname, component);
+            }
+
+            final int libraryCount = in.readInt();
+            for (int i = 0; i < libraryCount; i++)
+            {
+                final SWCLibrary library = new SWCLibrary(in.readUTF());
+                swc.addLibrary(library);
+
+                final int digestCount = in.readInt();
+                for (int j = 0; j < digestCount; j++)
+                {
+                    final SWCDigest digest = new SWCDigest();
+                    digest.setType(readString(in));
+                    digest.setValue(readString(in));
+                    digest.setSigned(in.readBoolean());
+                    library.addDigest(digest);
+                }
+
+                final int metadataCount = in.readInt();
+                for (int j = 0; j < metadataCount; j++)
+                    library.addNameToKeepAS3MetadataSet(in.readUTF());
+
+                final int scriptCount = in.readInt();
+                for (int j = 0; j < scriptCount; j++)
+                {
+                    final SWCScript script = new SWCScript();
+                    script.setName(in.readUTF().intern());
+                    script.setLastModified(in.readLong());
+                    final String signatureChecksum = readString(in);
+                    if (signatureChecksum != null)
+                        script.setSignatureChecksum(signatureChecksum);
+                    library.addScript(script);
+
+                    final int definitionCount = in.readInt();
+                    for (int k = 0; k < definitionCount; k++)
+                    {
+                        final String id = in.readUTF();
+                        script.addDefinition(id);
+                        final SWCComponent component = componentIndex.get(id);
+                        if (component != null)
+                            component.setScript(script);
+                    }
+
+                    final int dependencyCount = in.readInt();
+                    for (int k = 0; k < dependencyCount; k++)
+                    {
+                        final String id = in.readUTF();
+                        script.addDependency(id, readDependencyType(in));
+                    }
+                }
+            }
+
+            final String containingSWCPath = swcFile.getAbsolutePath();
+            final int fileCount = in.readInt();
+            for (int i = 0; i < fileCount; i++)
+            {
+                final String path = in.readUTF();
+                swc.addFile(new SWCFileEntry(containingSWCPath, path, in.readLong()));
+            }
+            return swc;
+        }
+        catch (IOException e)
+        {
+            // a truncated or otherwise corrupt entry
+            return null;
+        }
+        finally
+        {
+            close(in);
+        }
+    }
+
+    /**
+     * Writes the catalog of a SWC to the cache. SWCs that had problems while
+     * being read are not cached, so that the problems are reported again by
+     * the next compilation.
+     * 
+     * @param swc The SWC model read by {@code SWCReader}.
+     */
+    public void writeCatalog(ISWC swc)
+    {
+        if (!swc.getProblems().isEmpty())
+            return;
+        final File entry = getCatalogEntry(swc.getSWCFile());
+        if (entry == null)
+            return;
+
+        final File tempFile = createTempFile(entry);
+        if (tempFile == null)
+            return;
+        DataOutputStream out = null;
+        try
+        {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+            out.writeInt(CATALOG_MAGIC);
+            out.writeInt(FORMAT_VERSION);
+
+            final ISWCVersion version = swc.getVersion();
+            writeString(out, version.getSWCVersion());
+            writeString(out, version.getRoyaleVersion());
+            writeString(out, version.getRoyaleBuild());
+            writeString(out, version.getRoyaleMinSupportedVersion());
+            writeString(out, version.getCompilerName());
+            writeString(out, version.getCompilerVersion());
+            writeString(out, version.getCompilerBuild());
+            out.writeBoolean(swc.isANE());
+
+            out.writeInt(swc.getComponents().size());
+            for (ISWCComponent component : swc.getComponents())
+            {
+                writeString(out, component.getQName());
+                writeString(out, component.getName());
+                writeString(out, component.getURI());
+                writeString(out, component.getIcon());
+                writeString(out, component.getPreview());
+            }
+
+            out.writeInt(swc.getLibraries().size());
+            for (ISWCLibrary library : swc.getLibraries())
+            {
+                out.writeUTF(library.getPath());
+
+                out.writeInt(library.getDigests().size());
+                for (ISWCDigest digest : library.getDigests())
+                {
+                    writeString(out, digest.getType());
+                    writeString(out, digest.getValue());
+                    out.writeBoolean(digest.isSigned());
+                }
+
+                final Set<String> keepAS3Metadata = library.getKeepAS3MetadataSet();
+                out.writeInt(keepAS3Metadata.size());
+                for (String name : keepAS3Metadata)
+                    out.writeUTF(name);
+
+                out.writeInt(library.getScripts().size());
+                for (ISWCScript script : library.getScripts())
+                {
+                    out.writeUTF(script.getName());
+                    out.writeLong(script.getLastModified());
+                    writeString(out, script.getSignatureChecksum());
+
+                    out.writeInt(script.getDefinitions().size());
+                    for (String id : script.getDefinitions())
+                        out.writeUTF(id);
+
+                    final SetMultimap<String, DependencyType> dependencies = script.getDependencies();
+                    out.writeInt(dependencies.size());
+                    for (Map.Entry<String, DependencyType> dependency : dependencies.entries())
+                    {
+                        out.writeUTF(dependency.getKey());
+                        out.writeChar(dependency.getValue().getSymbol());
+                    }
+                }
+            }
+
+            out.writeInt(swc.getFiles().size());
+            for (ISWCFileEntry file : swc.getFiles().values())
+            {
+                out.writeUTF(file.getPath());
+                out.writeLong(file.getLastModified());
+            }
+            out.close();
+            out = null;
+            commit(tempFile, entry);
+        }
+        catch (IOException e)
+        {
+            tempFile.delete();
+        }
+        finally
+        {
+            close(out);
+        }
+    }
+
+    /**
+     * Reads the ABC of one script of a library from the cache.
+     * 
+     * @param library The library that contains the script.
+     * @param scriptName The name of the script.
+     * @return The ABC bytes, or null if the cache has no entry for the
+     * library.
+     */
+    public byte[] readScriptABC(ISWCLibrary library, String scriptName)
+    {
+        final String digest = getLibraryDigest(library);
+        if (digest == null)
+            return null;
+
+        final SoftReference<Map<String, byte[]>> ref = libraryScripts.get(digest);
+        Map<String, byte[]> scripts = ref != null ? ref.get() : null;
+        if (scripts == null)
+        {
+            scripts = readLibraryABC(digest);
+            if (scripts == null)
+            {
+                libraryMisses.incrementAndGet();
+                return null;
+            }
+            libraryHits.incrementAndGet();
+            libraryScripts.put(digest, new SoftReference<Map<String, byte[]>>(scripts));
+        }
+        return scripts.get(scriptName);
+    }
+
+    /**
+     * Writes the ABC of every script of a library to the cache, unless the
+     * cache already has an entry for the library.
+     * 
+     * @param library The library.
+     * @param tags The tags decoded from the library SWF.
+     */
+    public void writeLibraryABC(ISWCLibrary library, ITagContainer tags)
+    {
+        final String digest = getLibraryDigest(library);
+        if (digest == null)
+            return;
+        final File entry = new File(directory, digest + ABC_EXTENSION);
+        if (entry.isFile())
+            return;
+
+        final Map<String, byte[]> scripts = new HashMap<String, byte[]>();
+        for (final ITag tag : tags)
+        {
+            if (tag instanceof DoABCTag)
+            {
+                final DoABCTag abcTag = (DoABCTag)tag;
+                scripts.put(abcTag.getName(), abcTag.getABCData());
+            }
+        }
+
+        final File tempFile = createTempFile(entry);
+        if (tempFile == null)
+            return;
+        DataOutputStream out = null;
+        try
+        {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+            out.writeInt(ABC_MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeUTF(digest);
+            out.writeInt(scripts.size());
+            for (Map.Entry<String, byte[]> script : scripts.entrySet())
+            {
+                out.writeUTF(script.getKey());
+                out.writeInt(script.getValue().length);
+                out.write(script.getValue());
+            }
+            out.close();
+            out = null;
+            commit(tempFile, entry);
+            libraryScripts.put(digest, new SoftReference<Map<String, byte[]>>(scripts));
+        }
+        catch (IOException e)
+        {
+            tempFile.delete();
+        }
+        finally
+        {
+            close(out);
+        }
+    }
+
+    private Map<String, byte[]> readLibraryABC(String digest)
+    {
+        final File entry = new File(directory, digest + ABC_EXTENSION);
+        if (!entry.isFile())
+            return null;
+
+        DataInputStream in = null;
+        try
+        {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(entry)));
+            if (in.readInt() != ABC_MAGIC || in.readInt() != FORMAT_VERSION)
+                return null;
+            if (!digest.equals(in.readUTF()))
+                return null;
+            final int scriptCount = readCount(in);
+            final Map<String, byte[]> scripts = new HashMap<String, byte[]>(scriptCount * 2);
+            for (int i = 0; i < scriptCount; i++)
+            {
+                final String name = in.readUTF();
+                final byte[] abc = new byte[readCount(in)];
+                in.readFully(abc);
+                scripts.put(name, abc);
+            }
+            return scripts;
+        }
+        catch (IOException e)
+        {
+            // a truncated or otherwise corrupt entry
+            return null;
+        }
+        finally
+        {
+            close(in);
+        }
+    }
+
+    /**
+     * Gets the content-addressed key of a library: its unsigned SHA-256
+     * digest from the catalog.
+     * 
+     * @return The digest, or null if the catalog doesn't record one.
+     */
+    private static String getLibraryDigest(ISWCLibrary library)
+    {
+        for (ISWCDigest digest : library.getDigests())
+        {
+            if (!digest.isSigned() && SWCDigest.SHA_256.equals(digest.getType()) &&
+                digest.getValue() != null && !digest.getValue().isEmpty())
+            {
+                return digest.getValue();
+            }
+        }
+        return null;
+    }
+
+    private File getCatalogEntry(File swcFile)
+    {
+        try
+        {
+            final String key = swcFile.getCanonicalPath() + '\0' +
+                               swcFile.length() + '\0' +
+                               swcFile.lastModified();
+            final SWCDigest digest = new SWCDigest();
+            digest.setValue(MessageDigest.getInstance(SWCDigest.SHA_256).digest(key.getBytes("UTF-8")));
+            return new File(directory, digest.getValue() + CATALOG_EXTENSION);
+        }
+        catch (IOException e)
+        {
+            return null;
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            return null;
+        }
+    }
+
+    private File createTempFile(File entry)
+    {
+        if (!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory())
+            return null;
+        try
+        {
+            return File.createTempFile(entry.getName(), ".tmp", directory);
+        }
+        catch (IOException e)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Moves a completely written temporary file to its final name, so that
+     * concurrent readers never see a partial entry.
+     */
+    private static void commit(File tempFile, File entry)
+    {
+        if (!tempFile.renameTo(entry))
+            tempFile.delete();
+    }
+
+    private static String readString(DataInputStream in) throws IOException
+    {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static int readCount(DataInputStream in) throws IOException
+    {
+        final int count = in.readInt();
+        if (count < 0)
+            throw new IOException("negative count: " + count);
+        return count;
+    }
+
+    private static DependencyType readDependencyType(DataInputStream in) throws IOException
+    {
+        final char key = in.readChar();
+        try
+        {
+            return DependencyType.get(key);
+        }
+        catch (IllegalArgumentException e)
+        {
+            throw new IOException(e.getMessage());
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException
+    {
+        out.writeBoolean(value != null);
+        if (value != null)
+            out.writeUTF(value);
+    }
+
+    /**
+     * @return the number of catalogs read from the cache.
+     */
+    long getCatalogHitCount()
+    {
+        return catalogHits.get();
+    }
+
+    /**
+     * @return the number of catalogs that were not in the cache.
+     */
+    long getCatalogMissCount()
+    {
+        return catalogMisses.get();
+    }
+
+    /**
+     * @return the number of library ABC entries read from disk.
+     */
+    long getLibraryHitCount()
+    {
+        return libraryHits.get();
+    }
+
+    /**
+     * @return the number of libraries whose ABC was not in the cache.
+     */
+    long getLibraryMissCount()
+    {
+        return libraryMisses.get();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "SWC cache in " + directory.getPath() + ": catalogs " + catalogHits.get() + " hits, " +
+               catalogMisses.get() + " misses; libraries " + libraryHits.get() + " hits, " +
+               libraryMisses.get() + " misses";
+    }
+
+    private static void close(Closeable closeable)
+    {
+        if (closeable == null)
+            return;
+        try
+        {
+            closeable.close();
+        }
+        catch (IOException e)
+        {
+            // ignore
+        }
+    }
+}
@@ -23,7 +23,6 @@ import java.io.BufferedInputStream;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.lang.ref.SoftReference;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
@@ -43,8 +42,13 @@ import org.apache.royale.swf.tags.SymbolClassTag;
 
 /**
  * Cache for parsed SWF models. The cache is a list of key-value pairs. The key
- * is the URI to the SWF file. The value is a {@link SoftReference} to a
- * collection of SWF tags.
+ * is the URI to the SWF file. The value is a collection of SWF tags.
+ * <p>
+ * The cache is bounded by the total size of the ABC data it holds. When the
+ * bound is reached the least recently used SWF models are evicted and read
+ * again on demand. The default bound is a quarter of the maximum heap size and
+ * can be changed with the <code>royale.cache.swf.maximumWeight</code> system
+ * property.
  */
 public class SWFCache extends ConcurrentCacheStoreBase<ITagContainer> implements ISWFCache
 {
@@ -229,7 +233,23 @@ public class SWFCache extends ConcurrentCacheStoreBase<ITagContainer> implements
      */
     public SWFCache(SWCManager swcManager)
     {
-        super();
+        super(CacheStorePolicy.forStore("swf", CacheStorePolicy.maximumWeight(Runtime.getRuntime().maxMemory() / 4)));
+    }
+
+    /**
+     * The weight of a SWF model is the size of its ABC data in bytes, which
+     * dominates the memory held by a library SWF.
+     */
+    @Override
+    protected int weigh(ITagContainer value)
+    {
+        long weight = 0;
+        for (final ITag tag : value)
+        {
+            if (tag instanceof DoABCTag)
+                weight += ((DoABCTag)tag).getABCData().length;
+        }
+        return (int)Math.min(weight, Integer.MAX_VALUE);
     }
 
     /**
@@ -0,0 +1,376 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.internal.definitions;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.royale.compiler.common.DependencyType;
+import org.apache.royale.compiler.common.DependencyTypeSet;
+import org.apache.royale.compiler.constants.IMetaAttributeConstants;
+import org.apache.royale.compiler.definitions.IClassDefinition;
+import org.apache.royale.compiler.definitions.IDefinition;
+import org.apache.royale.compiler.definitions.IFunctionDefinition;
+import org.apache.royale.compiler.definitions.IInterfaceDefinition;
+import org.apache.royale.compiler.definitions.INamespaceDefinition;
+import org.apache.royale.compiler.definitions.IParameterDefinition;
+import org.apache.royale.compiler.definitions.IScopedDefinition;
+import org.apache.royale.compiler.definitions.ITypeDefinition;
+import org.apache.royale.compiler.definitions.IVariableDefinition;
+import org.apache.royale.compiler.definitions.metadata.IMetaTag;
+import org.apache.royale.compiler.definitions.metadata.IMetaTagAttribute;
+import org.apache.royale.compiler.definitions.references.IReference;
+import org.apache.royale.compiler.internal.scopes.ASFileScope;
+import org.apache.royale.compiler.projects.ICompilerProject;
+import org.apache.royale.compiler.tree.as.IASNode;
+import org.apache.royale.compiler.tree.as.IIdentifierNode;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+/**
+ * A digest of the parts of a file's definitions that other compilation units
+ * can depend on: the externally visible definitions and their non-private
+ * members, with their namespaces, modifiers, type annotations, parameters,
+ * metadata and constant values. Function bodies and private members are not
+ * part of the fingerprint, so editing them doesn't change it.
+ * <p>
+ * Constants are hashed by the value their initializer resolves to, because
+ * that value is folded into the code of the units that use them. A constant
+ * initialized from a constant in another file therefore changes the
+ * fingerprint when the other constant's value changes.
+ * <p>
+ * The fingerprint has two parts, so that a change can be mapped to the
+ * {@link DependencyType}s that it affects:
+ * <ul>
+ * <li>The <i>type</i> part covers the top-level definitions themselves,
+ * including class hierarchies and namespace URIs. A change to it affects
+ * every kind of dependency.</li>
+ * <li>The <i>member</i> part covers the members of classes and interfaces. A
+ * change to it doesn't affect units that only depend on a namespace
+ * definition of the file.</li>
+ * </ul>
+ */
+public final class APIFingerprint
+{
+    private static final Charset UTF8 = Charset.forName("utf8");
+
+    /**
+     * Computes the fingerprint of the definitions in the specified file
+     * scopes. Type annotations, base classes and interfaces are resolved in
+     * the specified project and hashed by qualified name, so that a change of
+     * imports that binds the same short name to another definition changes
+     * the fingerprint.
+     * 
+     * @param fileScopes The file scopes of a compilation unit.
+     * @param project The project used to resolve type references.
+     * @return The fingerprint, or null if the file has inline functions,
+     * whose bodies are compiled into the units that call them, or constants
+     * whose initializers don't resolve to a value.
+     */
+    public static APIFingerprint create(ASFileScope[] fileScopes, ICompilerProject project)
+    {
+        final List<IDefinition> definitions = new ArrayList<IDefinition>();
+        for (ASFileScope fileScope : fileScopes)
+            fileScope.collectExternallyVisibleDefinitions(definitions, false);
+
+        final List<String> typeSignatures = new ArrayList<String>(definitions.size());
+        final List<String> memberSignatures = new ArrayList<String>();
+        for (IDefinition definition : definitions)
+        {
+            if (isInline(definition))
+                return null;
+            final String signature = getSignature(definition, project);
+            if (signature == null)
+                return null;
+            typeSignatures.add(signature);
+
+            if (definition instanceof ITypeDefinition && definition instanceof IScopedDefinition)
+            {
+                final Collection<IDefinition> members =
+                        ((IScopedDefinition)definition).getContainedScope().getAllLocalDefinitions();
+                for (IDefinition member : members)
+                {
+                    if (member.isPrivate() || member.isImplicit())
+                        continue;
+                    if (isInline(member))
+                        return null;
+                    final String memberSignature = getSignature(member, project);
+                    if (memberSignature == null)
+                        return null;
+                    memberSignatures.add(definition.getQualifiedName() + "/" + memberSignature);
+                }
+            }
+        }
+
+        return new APIFingerprint(hash(typeSignatures), hash(memberSignatures));
+    }
+
+    /**
+     * Determines whether the specified file scopes define an externally
+     * visible constant whose initializer refers to other definitions. The
+     * value of such a constant can change without a change to its file, and
+     * it is folded into the code of the units that use the constant, so those
+     * units have to be rebuilt whenever the constant's unit is.
+     * 
+     * @param fileScopes The file scopes of a compilation unit.
+     * @return true if a constant's value may be computed from other
+     * definitions.
+     */
+    public static boolean hasComputedConstants(ASFileScope[] fileScopes)
+    {
+        final List<IDefinition> definitions = new ArrayList<IDefinition>();
+        for (ASFileScope fileScope : fileScopes)
+            fileScope.collectExternallyVisibleDefinitions(definitions, false);
+
+        for (IDefinition definition : definitions)
+        {
+            if (isComputedConstant(definition))
+                return true;
+
+            if (definition instanceof ITypeDefinition && definition instanceof IScopedDefinition)
+            {
+                for (IDefinition member : ((IScopedDefinition)definition).getContainedScope().getAllLocalDefinitions())
+                {
+                    if (!member.isPrivate() && isComputedConstant(member))
+                        return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean isComputedConstant(IDefinition definition)
+    {
+        if (!(definition instanceof ConstantDefinition))
+            return false;
+        final ConstantDefinition constant = (ConstantDefinition)definition;
+        return constant.initValue == null && constant.getInitializer() != null &&
+               hasIdentifier(constant.getInitializer());
+    }
+
+    private static boolean hasIdentifier(IASNode node)
+    {
+        if (node instanceof IIdentifierNode)
+            return true;
+        for (int i = 0; i < node.getChildCount(); i++)
+        {
+            final IASNode child = node.getChild(i);
+            if (child != null && hasIdentifier(child))
+                return true;
+        }
+        return false;
+    }
+
+    private APIFingerprint(HashCode typeHash, HashCode memberHash)
+    {
+        this.typeHash = typeHash;
+        this.memberHash = memberHash;
+    }
+
+    private final HashCode typeHash;
+    private final HashCode memberHash;
+
+    /**
+     * Compares this fingerprint with the fingerprint of an earlier version of
+     * the same file.
+     * 
+     * @param previous The fingerprint of the earlier version.
+     * @return The {@link DependencyType}s of the dependencies on the file
+     * that are affected by the change. The set is empty if the API didn't
+     * change.
+     */
+    public DependencyTypeSet getChangedDependencyTypes(APIFingerprint previous)
+    {
+        if (!typeHash.equals(previous.typeHash))
+            return DependencyTypeSet.allOf();
+        if (!memberHash.equals(previous.memberHash))
+            return DependencyTypeSet.of(DependencyType.INHERITANCE, DependencyType.SIGNATURE, DependencyType.EXPRESSION);
+        return DependencyTypeSet.noneOf();
+    }
+
+    /**
+     * @return A string form of the fingerprint, which can be stored and
+     * compared with the fingerprint of the file in a later compilation.
+     */
+    public String getDigest()
+    {
+        return typeHash + "/" + memberHash;
+    }
+
+    private static boolean isInline(IDefinition definition)
+    {
+        return definition instanceof IFunctionDefinition && ((IFunctionDefinition)definition).isInline();
+    }
+
+    private static HashCode hash(List<String> signatures)
+    {
+        // definition sets aren't ordered, so sort the signatures first.
+        Collections.sort(signatures);
+        final Hasher hasher = Hashing.sha256().newHasher();
+        for (String signature : signatures)
+        {
+            hasher.putString(signature, UTF8);
+            hasher.putChar('\n');
+        }
+        return hasher.hash();
+    }
+
+    /**
+     * @return The signature of a definition, or null if it is a constant
+     * whose value can't be resolved.
+     */
+    private static String getSignature(IDefinition definition, ICompilerProject project)
+    {
+        final StringBuilder sb = new StringBuilder();
+        sb.append(definition.getClass().getSimpleName());
+        sb.append(' ');
+        if (definition.isPublic())
+            sb.append("public");
+        else if (definition.isProtected())
+            sb.append("protected");
+        else if (definition.isInternal())
+            sb.append("internal");
+        else
+            sb.append(definition.getNamespaceReference().getBaseName());
+        sb.append(' ');
+        if (definition.isStatic())
+            sb.append("static ");
+        if (definition.isFinal())
+            sb.append("final ");
+        if (definition.isOverride())
+            sb.append("override ");
+        if (definition.isDynamic())
+            sb.append("dynamic ");
+        if (definition.isNative())
+            sb.append("native ");
+        if (definition.isAbstract())
+            sb.append("abstract ");
+        sb.append(definition.getQualifiedName());
+
+        if (definition instanceof IFunctionDefinition)
+        {
+            final IFunctionDefinition function = (IFunctionDefinition)definition;
+            sb.append('(');
+            for (IParameterDefinition parameter : function.getParameters())
+            {
+                if (parameter.isRest())
+                    sb.append("...");
+                sb.append(parameter.getBaseName());
+                sb.append(':');
+                appendType(sb, parameter.getTypeReference(), parameter, project);
+                if (parameter.hasDefaultValue())
+                    sb.append("=?");
+                sb.append(',');
+            }
+            sb.append("):");
+            appendType(sb, function.getReturnTypeReference(), function, project);
+        }
+        else if (definition instanceof IVariableDefinition)
+        {
+            sb.append(':');
+            appendType(sb, definition.getTypeReference(), definition, project);
+            // the values of constants can be folded into the code that
+            // uses them, even if the value comes from another file.
+            if (definition instanceof ConstantDefinition)
+            {
+                final ConstantDefinition constant = (ConstantDefinition)definition;
+                if (constant.initValue != null || constant.getInitializer() != null)
+                {
+                    final Object value = constant.resolveValue(project);
+                    if (value == null)
+                        return null;
+                    sb.append('=');
+                    sb.append(value.getClass().getSimpleName()).append(value);
+                }
+            }
+        }
+        else if (definition instanceof IClassDefinition)
+        {
+            final IClassDefinition classDefinition = (IClassDefinition)definition;
+            sb.append(" extends ");
+            appendType(sb, classDefinition.getBaseClassReference(), classDefinition, project);
+            sb.append(" implements ");
+            for (IReference interfaceReference : classDefinition.getImplementedInterfaceReferences())
+            {
+                appendType(sb, interfaceReference, classDefinition, project);
+                sb.append(',');
+            }
+        }
+        else if (definition instanceof IInterfaceDefinition)
+        {
+            sb.append(" extends ");
+            for (IReference interfaceReference : ((IInterfaceDefinition)definition).getExtendedInterfaceReferences())
+            {
+                appendType(sb, interfaceReference, definition, project);
+                sb.append(',');
+            }
+        }
+        else if (definition instanceof INamespaceDefinition)
+        {
+            sb.append('=');
+            sb.append(((INamespaceDefinition)definition).getURI());
+        }
+
+        final List<String> metaTags = new ArrayList<String>();
+        for (IMetaTag metaTag : definition.getAllMetaTags())
+        {
+            // these tags record source positions, which change with any edit.
+            final String tagName = metaTag.getTagName();
+            if (tagName.equals(IMetaAttributeConstants.ATTRIBUTE_GOTODEFINITIONHELP) ||
+                tagName.equals(IMetaAttributeConstants.ATTRIBUTE_GOTODEFINITION_CTOR_HELP))
+                continue;
+            final StringBuilder tag = new StringBuilder();
+            tag.append('[').append(tagName);
+            for (IMetaTagAttribute attribute : metaTag.getAllAttributes())
+                tag.append(' ').append(attribute.getKey()).append('=').append(attribute.getValue());
+            tag.append(']');
+            metaTags.add(tag.toString());
+        }
+        Collections.sort(metaTags);
+        for (String metaTag : metaTags)
+            sb.append(metaTag);
+
+        return sb.toString();
+    }
+
+    /**
+     * Appends the qualified name of the definition a type reference resolves
+     * to. No dependency is recorded for the lookup. References that don't
+     * resolve are appended as written.
+     */
+    private static void appendType(StringBuilder sb, IReference reference, IDefinition context, ICompilerProject project)
+    {
+        if (reference == null)
+        {
+            sb.append('*');
+            return;
+        }
+        final IDefinition type = reference.resolve(project, context.getContainingScope(), null, true);
+        if (type != null)
+            sb.append(type.getQualifiedName());
+        else
+            sb.append('?').append(reference.getDisplayString());
+    }
+}
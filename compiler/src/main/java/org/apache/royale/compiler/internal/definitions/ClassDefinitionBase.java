@@ -420,6 +420,17 @@ public abstract class ClassDefinitionBase extends TypeDefinitionBase implements
     private ArrayList<IDefinition> baseDefinitions = null;
     private ArrayList<IDefinition> implDefinitions = null;
     
+    @Override
+    public void resetResolutionCaches()
+    {
+        super.resetResolutionCaches();
+        synchronized (this)
+        {
+            baseDefinitions = null;
+            implDefinitions = null;
+        }
+    }
+
     @Override
     public boolean isInstanceOf(final ITypeDefinition type, ICompilerProject project)
     {
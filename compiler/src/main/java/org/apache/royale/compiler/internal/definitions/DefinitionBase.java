@@ -65,6 +65,7 @@ import org.apache.royale.compiler.internal.scopes.ASProjectScope;
 import org.apache.royale.compiler.internal.scopes.ASScope;
 import org.apache.royale.compiler.internal.scopes.ASScopeBase;
 import org.apache.royale.compiler.internal.scopes.SWCFileScopeProvider.SWCFileScope;
+import org.apache.royale.compiler.internal.workspaces.NameInterner;
 import org.apache.royale.compiler.mxml.IMXMLTagData;
 import org.apache.royale.compiler.projects.ICompilerProject;
 import org.apache.royale.compiler.scopes.IASScope;
@@ -160,7 +161,9 @@ public abstract class DefinitionBase implements IDocumentableDefinition, IDefini
     private INamespaceResolvedReference namespaceReference;
 
     // The name stored for this definition. See getStorageName() for details.
-    private final String storageName;
+    // It is replaced by the shared instance of the name when the definition
+    // is added to a scope of a workspace.
+    private String storageName;
 
     // The type reference for this definition. See getTypeReference() for details.
     // Note that this is an IReference, which is basically a reference-by-name
@@ -275,6 +278,16 @@ public abstract class DefinitionBase implements IDocumentableDefinition, IDefini
         return result;
     }
 
+    /**
+     * Discards what this definition has cached about other definitions while
+     * performance caching is enabled. This is called when a definition this
+     * one refers to is replaced by a new version but this definition is kept.
+     */
+    public void resetResolutionCaches()
+    {
+        parentDef = null;
+    }
+
     @Override
     public IDefinition getAncestorOfType(Class<? extends IDefinition> ancestorType)
     {
@@ -293,6 +306,8 @@ public abstract class DefinitionBase implements IDocumentableDefinition, IDefini
         // However, this method is overridin in DefinitionPromise,
         // PackageDefinition, and AppliedVectorDefinition to NOT
         // reduce the constructor name to a base name.
+        // The base names cut from qnames are shared through the NameInterner
+        // of the workspace when the definition is added to a scope.
         int i = name.lastIndexOf('.');
         return i == -1 ? name : name.substring(i + 1);
     }
@@ -336,6 +351,18 @@ public abstract class DefinitionBase implements IDocumentableDefinition, IDefini
         return storageName;
     }
 
+    /**
+     * Replaces the storage name of this definition with the instance of the
+     * name shared by its workspace. The scope the definition is added to
+     * calls this before it stores the definition by its name.
+     * 
+     * @param nameInterner The name interner of the workspace.
+     */
+    public final void internStorageName(NameInterner nameInterner)
+    {
+        storageName = nameInterner.intern(storageName);
+    }
+
     /**
      */
     public IFileSpecification getFileSpecification()
@@ -0,0 +1,208 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+
+package org.apache.royale.compiler.internal.graph;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Implementation of {@link IGraph} that keeps the edges of each vertex in a
+ * concurrent map, so that threads adding or looking up edges between
+ * different vertices don't block each other.
+ * <p>
+ * Adding vertices and edges is thread safe. Edges are changed while holding
+ * the outgoing edge map of their source vertex as a lock, and an edge is put
+ * in the incoming edge map of its target before it is put in the outgoing
+ * edge map of its source. So a thread that finds an edge with
+ * {@link #getEdge(Object, Object)} also finds it in
+ * {@link #getIncomingEdges(Object)}, without a lock of its own.
+ * <p>
+ * Removing vertices or edges while
+ * other threads add edges between the same vertices may leave an edge that is
+ * only reachable from one of its vertices, so clients should make sure
+ * removals don't overlap with other modifications.
+ * 
+ * @param <V> vertex type
+ * @param <E> edge type
+ */
+public class ConcurrentGraph<V, E extends IGraphEdge<V>> implements IGraph<V, E>
+{
+    private final ConcurrentMap<V, ConcurrentMap<V, E>> vertexToOutgoingEdges;
+    private final ConcurrentMap<V, ConcurrentMap<V, E>> vertexToIncomingEdges;
+
+    public ConcurrentGraph()
+    {
+        super();
+        vertexToOutgoingEdges = new ConcurrentHashMap<V, ConcurrentMap<V, E>>();
+        vertexToIncomingEdges = new ConcurrentHashMap<V, ConcurrentMap<V, E>>();
+    }
+
+    @Override
+    public boolean addVertex(V vertex)
+    {
+        boolean added = vertexToOutgoingEdges.putIfAbsent(vertex, new ConcurrentHashMap<V, E>()) == null;
+        vertexToIncomingEdges.putIfAbsent(vertex, new ConcurrentHashMap<V, E>());
+        return added;
+    }
+
+    /**
+     * Adds a collection of vertices to the graph.
+     * @param vertices Collection of vertices to add.
+     */
+    public void addVertices(Collection<V> vertices)
+    {
+        for (V v : vertices)
+            addVertex(v);
+    }
+
+    @Override
+    public void removeVertex(V vertex)
+    {
+        removeEdges(vertexToOutgoingEdges.get(vertex));
+        removeEdges(vertexToIncomingEdges.get(vertex));
+        vertexToOutgoingEdges.remove(vertex);
+        vertexToIncomingEdges.remove(vertex);
+    }
+
+    private void removeEdges(Map<V, E> edgeMap)
+    {
+        if (edgeMap == null)
+            return;
+        for (E e : new ArrayList<E>(edgeMap.values()))
+            removeEdge(e);
+    }
+
+    private ConcurrentMap<V, E> getEdgeMap(ConcurrentMap<V, ConcurrentMap<V, E>> vertexMap, V v)
+    {
+        ConcurrentMap<V, E> edgeMap = vertexMap.get(v);
+        if (edgeMap == null)
+        {
+            final ConcurrentMap<V, E> newEdgeMap = new ConcurrentHashMap<V, E>();
+            edgeMap = vertexMap.putIfAbsent(v, newEdgeMap);
+            if (edgeMap == null)
+                edgeMap = newEdgeMap;
+        }
+        return edgeMap;
+    }
+
+    @Override
+    public E setEdge(E edge)
+    {
+        final ConcurrentMap<V, E> outgoingEdges = getEdgeMap(vertexToOutgoingEdges, edge.getFrom());
+        synchronized (outgoingEdges)
+        {
+            getEdgeMap(vertexToIncomingEdges, edge.getTo()).put(edge.getFrom(), edge);
+            return outgoingEdges.put(edge.getTo(), edge);
+        }
+    }
+
+    /**
+     * Adds the specified edge to the graph, unless the graph already contains
+     * an edge between the same two vertices. Unlike {@link #setEdge(IGraphEdge)},
+     * this never replaces an edge that another thread has just added.
+     * 
+     * @param edge The new edge to add to the graph.
+     * @return The edge in the graph that connects the two vertices connected
+     * by the specified edge, which is the specified edge if it was added.
+     */
+    public E addEdgeIfAbsent(E edge)
+    {
+        final ConcurrentMap<V, E> outgoingEdges = getEdgeMap(vertexToOutgoingEdges, edge.getFrom());
+        synchronized (outgoingEdges)
+        {
+            final E existingEdge = outgoingEdges.get(edge.getTo());
+            if (existingEdge != null)
+                return existingEdge;
+            getEdgeMap(vertexToIncomingEdges, edge.getTo()).put(edge.getFrom(), edge);
+            outgoingEdges.put(edge.getTo(), edge);
+            return edge;
+        }
+    }
+
+    @Override
+    public E getEdge(V from, V to)
+    {
+        Map<V, E> edgeMap = vertexToOutgoingEdges.get(from);
+        if (edgeMap != null)
+            return edgeMap.get(to);
+
+        return null;
+    }
+
+    private Set<E> getEdgeSet(Map<V, ConcurrentMap<V, E>> vertexMap, V v)
+    {
+        Map<V, E> edgeMap = vertexMap.get(v);
+        @SuppressWarnings("unchecked")
+        Set<E> result = (Set<E>)Collections.EMPTY_SET;
+        if ((edgeMap != null) && (!edgeMap.isEmpty()))
+            result = new HashSet<E>(edgeMap.values());
+        return Collections.unmodifiableSet(result);
+    }
+
+    @Override
+    public Set<E> getOutgoingEdges(V vertex)
+    {
+        return getEdgeSet(vertexToOutgoingEdges, vertex);
+    }
+
+    @Override
+    public Set<E> getIncomingEdges(V vertex)
+    {
+        return getEdgeSet(vertexToIncomingEdges, vertex);
+    }
+
+    @Override
+    public E removeEdge(E edge)
+    {
+        E outgoingRemoved = null;
+        Map<V, E> outgoingEdges = vertexToOutgoingEdges.get(edge.getFrom());
+        if (outgoingEdges == null)
+        {
+            removeIncomingEdge(edge);
+            return null;
+        }
+        synchronized (outgoingEdges)
+        {
+            outgoingRemoved = outgoingEdges.remove(edge.getTo());
+            removeIncomingEdge(edge);
+        }
+        return outgoingRemoved;
+    }
+
+    private void removeIncomingEdge(E edge)
+    {
+        Map<V, E> incomingEdges = vertexToIncomingEdges.get(edge.getTo());
+        if (incomingEdges != null)
+            incomingEdges.remove(edge.getFrom());
+    }
+
+    @Override
+    public Set<V> getVertices()
+    {
+        return Collections.unmodifiableSet(vertexToIncomingEdges.keySet());
+    }
+}
@@ -32,12 +32,15 @@ import java.util.Map;
 
 import org.apache.commons.io.IOUtils;
 
+import org.apache.royale.compiler.common.LineTable;
 import org.apache.royale.compiler.common.MutablePrefixMap;
 import org.apache.royale.compiler.common.PrefixMap;
+import org.apache.royale.compiler.common.SourceLocation;
 import org.apache.royale.compiler.filespecs.FileSpecification;
 import org.apache.royale.compiler.filespecs.IFileSpecification;
 import org.apache.royale.compiler.internal.parsing.mxml.BalancingMXMLProcessor;
 import org.apache.royale.compiler.internal.parsing.mxml.MXMLToken;
+import org.apache.royale.compiler.internal.parsing.mxml.MXMLTokenStream;
 import org.apache.royale.compiler.internal.parsing.mxml.MXMLTokenizer;
 import org.apache.royale.compiler.internal.parsing.mxml.MXMLUnitDataIterator;
 import org.apache.royale.compiler.mxml.IMXMLData;
@@ -206,6 +209,22 @@ public class MXMLData implements IMXMLData
         init(tokens, map);
     }
 
+    /**
+     * Constructor. Builds the units as the tokens are lexed, without
+     * collecting the tokens of the whole document first.
+     * 
+     * @param tokens MXML tokens to build the MXMLData object from
+     * @param fileSpec the file the tokens are read from
+     */
+    public MXMLData(MXMLTokenStream tokens, IFileSpecification fileSpec)
+    {
+        path = fileSpec.getPath();
+        mxmlDialect = MXMLDialect.getMXMLDialect(tokens.getRootTagPrefixMap());
+        cursor = new Cursor();
+        parse(this, tokens, STREAMED_TOKEN_COUNT, mxmlDialect, problems);
+        cursor.reset();
+    }
+
     /**
      * Constructor
      * 
@@ -457,26 +476,33 @@ public class MXMLData implements IMXMLData
     protected void initializeFromTokens(List<MXMLToken> tokens)
     {
         cursor = new Cursor();
-        parse(this, tokens, mxmlDialect, problems);
+        parse(this, tokens.listIterator(), tokens.size(), mxmlDialect, problems);
         cursor.reset();
     }
 
+    /**
+     * Token count assumed for the initial capacities when the tokens are
+     * streamed, so their count isn't known up front.
+     */
+    private static final int STREAMED_TOKEN_COUNT = 512;
+
     /**
      * Use the MXML tokens to build MXMLUnitData.
      * 
      * @param data the {@link MXMLData} object
-     * @param tokens the list of tokens to build this data from
+     * @param tokenIterator the tokens to build this data from
+     * @param tokenCount the number of tokens, or an estimate of it
      * @param dialect the {@link MXMLDialect} we are working against
      * @param incremental true if this data is being built incrementally. All
      * location updates will need to be done outside this element
      */
-    private void parse(MXMLData data, List<MXMLToken> tokens, MXMLDialect dialect, Collection<ICompilerProblem> problems)
+    private void parse(MXMLData data, ListIterator<MXMLToken> tokenIterator, int tokenCount, MXMLDialect dialect, Collection<ICompilerProblem> problems)
     {
-        ArrayList<MXMLUnitData> units = new ArrayList<MXMLUnitData>(tokens.size() / 6);
+        ArrayList<MXMLUnitData> units = new ArrayList<MXMLUnitData>(tokenCount / 6);
         nsMap = new HashMap<IMXMLTagData, PrefixMap>();
         MXMLUnitData unit = null;
         MXMLToken currentComment = null;
-        FastStack<Integer> depth = new FastStack<Integer>(tokens.size() / 8);
+        FastStack<Integer> depth = new FastStack<Integer>(tokenCount / 8);
         IFileSpecification spec = new FileSpecification(data.getPath() != null ? data.getPath() : "");
         depth.setStackDecorator(new IFastStackDecorator<Integer>() {
             @Override
@@ -491,7 +517,6 @@ public class MXMLData implements IMXMLData
         int index = -1;
         int balancingIndex = 0;
         depth.push(index);
-        ListIterator<MXMLToken> tokenIterator = tokens.listIterator();
         BalancingMXMLProcessor processor = new BalancingMXMLProcessor(getFileSpecification(), problems);
         while (tokenIterator.hasNext())
         {
@@ -618,6 +643,42 @@ public class MXMLData implements IMXMLData
                 refreshPositionData();
             }
         }
+        if (fullContent)
+            compactSourceLocations();
+    }
+
+    /**
+     * Makes the units and attributes of this file share a table of the lines
+     * of the file, instead of each storing its own line and column numbers.
+     * The ones whose line and column numbers don't match the table keep
+     * their own.
+     */
+    private void compactSourceLocations()
+    {
+        if (path == null)
+            return;
+
+        final List<SourceLocation> locations = new ArrayList<SourceLocation>(units.length);
+        for (IMXMLUnitData unit : units)
+        {
+            if (unit instanceof SourceLocation)
+                locations.add((SourceLocation)unit);
+            if (unit instanceof IMXMLTagData)
+            {
+                for (IMXMLTagAttributeData attribute : ((IMXMLTagData)unit).getAttributeDatas())
+                {
+                    if (attribute instanceof SourceLocation)
+                        locations.add((SourceLocation)attribute);
+                }
+            }
+        }
+
+        final LineTable.Builder builder = new LineTable.Builder(path);
+        for (SourceLocation location : locations)
+            location.addLineStarts(builder);
+        final LineTable table = builder.build();
+        for (SourceLocation location : locations)
+            location.compact(table);
     }
 
     /**
@@ -99,6 +99,7 @@ import org.apache.royale.compiler.internal.tree.as.ScopedBlockNode;
 import org.apache.royale.compiler.internal.tree.as.UnaryOperatorNodeBase;
 import org.apache.royale.compiler.internal.tree.as.VariableNode;
 import org.apache.royale.compiler.internal.tree.as.metadata.MetaTagsNode;
+import org.apache.royale.compiler.internal.workspaces.NameInterner;
 import org.apache.royale.compiler.internal.workspaces.Workspace;
 import org.apache.royale.compiler.mxml.IMXMLTextData;
 import org.apache.royale.compiler.problems.AttributesNotAllowedOnPackageDefinitionProblem;
@@ -270,7 +271,8 @@ abstract class BaseASParser extends LLkParser implements IProblemReporter
                     includeHandler,
                     followIncludes,
                     includedFiles,
-                    strictIdentifierNames);
+                    strictIdentifierNames,
+                    getNameInterner(fileSpecGetter.getWorkspace()));
 
             final IRepairingTokenBuffer buffer = new StreamingTokenBuffer(tokenizer);
 
@@ -295,6 +297,7 @@ abstract class BaseASParser extends LLkParser implements IProblemReporter
             if (node.getAbsoluteEnd() < absoluteOffset[0])
                 node.setEnd(absoluteOffset[0]);
 
+            node.compactSourceLocations();
         }
         catch (FileNotFoundException e)
         {
@@ -369,6 +372,7 @@ abstract class BaseASParser extends LLkParser implements IProblemReporter
         try
         {
             tokenizer = StreamingASTokenizer.create(textFileSpec, includeHandler);
+            tokenizer.setNameInterner(getNameInterner(workspace));
             tokenizer.setSourcePositionAdjustment(offset, line, column);
 
             final IRepairingTokenBuffer buffer = new StreamingTokenBuffer(tokenizer);
@@ -449,6 +453,7 @@ abstract class BaseASParser extends LLkParser implements IProblemReporter
         try
         {
             tokenizer = new StreamingASTokenizer();
+            tokenizer.setNameInterner(getNameInterner(workspace));
             tokenizer.setReader(reader);
             tokenizer.setPath(path);
             tokenizer.setSourcePositionAdjustment(
@@ -536,6 +541,7 @@ abstract class BaseASParser extends LLkParser implements IProblemReporter
                         compilableTextStart,
                         compilableTextLine,
                         compilableTextColumn);
+        tokenizer.setNameInterner(getNameInterner(containingScope.getWorkspace()));
         final IRepairingTokenBuffer buffer = new StreamingTokenBuffer(tokenizer);
 
         // create parser
@@ -611,6 +617,7 @@ abstract class BaseASParser extends LLkParser implements IProblemReporter
                 StreamingASTokenizer.createForInlineExpressionParsing(
                         scriptReader,
                         sourcePath);
+        tokenizer.setNameInterner(getNameInterner(workspace));
 
         final IRepairingTokenBuffer buffer = new StreamingTokenBuffer(tokenizer);
 
@@ -710,6 +717,17 @@ abstract class BaseASParser extends LLkParser implements IProblemReporter
         return children;
     }
 
+    /**
+     * Gets the table the identifier texts of a workspace are shared in.
+     * 
+     * @param workspace Current workspace.
+     * @return The name interner of the workspace, or null if it has none.
+     */
+    private static NameInterner getNameInterner(IWorkspace workspace)
+    {
+        return workspace instanceof Workspace ? ((Workspace)workspace).getNameInterner() : null;
+    }
+
     /**
      * Parses a databinding expression.
      */
@@ -717,6 +735,7 @@ abstract class BaseASParser extends LLkParser implements IProblemReporter
             Collection<ICompilerProblem> problems)
     {
         StreamingASTokenizer tokenizer = new StreamingASTokenizer();
+        tokenizer.setNameInterner(getNameInterner(workspace));
         tokenizer.setReader(reader);
         IRepairingTokenBuffer buffer = new StreamingTokenBuffer(tokenizer);
         ASParser parser = new ASParser(workspace, buffer);
@@ -20,6 +20,7 @@
 package org.apache.royale.compiler.internal.parsing.as;
 
 import org.apache.royale.compiler.common.ISourceLocation;
+import org.apache.royale.compiler.internal.workspaces.NameInterner;
 import org.apache.royale.compiler.problems.ASDocNotClosedProblem;
 import org.apache.royale.compiler.problems.CDataNotClosedProblem;
 import org.apache.royale.compiler.problems.CommentNotClosedProblem;
@@ -80,6 +81,24 @@ public abstract class BaseRawASTokenizer extends BaseRawTokenizer<ASToken>
      */
     protected ASToken bufferToken;
 
+    /**
+     * Number of entries in {@link #identifierCache}. Must be a power of two.
+     */
+    private static final int IDENTIFIER_CACHE_SIZE = 512;
+
+    /**
+     * Texts of recently seen identifiers, indexed by a hash of their
+     * characters. Most identifiers of a file repeat, so this avoids creating a
+     * string for each occurrence.
+     */
+    private final String[] identifierCache = new String[IDENTIFIER_CACHE_SIZE];
+
+    /**
+     * Table the identifier texts are shared in with the other files of the
+     * workspace, or null.
+     */
+    private NameInterner nameInterner;
+
     @Override
     protected void continueAggregate()
     {
@@ -156,6 +175,53 @@ public abstract class BaseRawASTokenizer extends BaseRawTokenizer<ASToken>
         builder.append(buffer(), readStart(), markedPosition() - readStart());
     }
 
+    /**
+     * Gets the text of the current identifier. This is equal to yytext(), but
+     * the string is shared with the other occurrences of the identifier in
+     * this file and, through the {@link NameInterner} of the workspace, in
+     * other files.
+     * 
+     * @return the interned text of the current token.
+     */
+    protected final String identifierText()
+    {
+        final char[] buffer = buffer();
+        final int start = readStart();
+        final int length = markedPosition() - start;
+
+        int hash = 0;
+        for (int i = start; i < start + length; i++)
+            hash = 31 * hash + buffer[i];
+        final int index = (hash ^ (hash >>> 16)) & (IDENTIFIER_CACHE_SIZE - 1);
+
+        final String cached = identifierCache[index];
+        if (cached != null && cached.length() == length)
+        {
+            int i = 0;
+            while (i < length && cached.charAt(i) == buffer[start + i])
+                i++;
+            if (i == length)
+                return cached;
+        }
+
+        final String text = new String(buffer, start, length);
+        final String shared = nameInterner != null ? nameInterner.intern(text) : text;
+        identifierCache[index] = shared;
+        return shared;
+    }
+
+    /**
+     * Sets the table the identifier texts are shared in with the other files
+     * of the workspace.
+     * 
+     * @param nameInterner the name interner of the workspace, or null to only
+     * share texts within the file.
+     */
+    public final void setNameInterner(NameInterner nameInterner)
+    {
+        this.nameInterner = nameInterner;
+    }
+
     /**
      * returns the start of the current read
      * 
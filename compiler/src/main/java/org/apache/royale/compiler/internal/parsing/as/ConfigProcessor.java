@@ -344,6 +344,7 @@ public class ConfigProcessor
                 ((NodeBase)child).setParent(null);
                 if (child instanceof ConfigConstNode)
                 {
+                    ((ConfigConstNode)child).foldResolvedValue();
                     ((ConfigConstNode)child).reset();
                 }
                 children.add(child);
@@ -472,8 +473,9 @@ public class ConfigProcessor
             {
             	ConfigConstNode.ConfigDefinition def = (ConfigConstNode.ConfigDefinition)definition;
 	        	IExpressionNode initializer = def.getInitializer();
-	        	if (initializer.getNodeID() == ASTNodeID.MemberAccessExpressionID ||
-		        	initializer.getNodeID() == ASTNodeID.IdentifierID)
+	        	if (initializer != null &&
+	        		(initializer.getNodeID() == ASTNodeID.MemberAccessExpressionID ||
+		        	initializer.getNodeID() == ASTNodeID.IdentifierID))
 	        		return initializer;
         	}
         	
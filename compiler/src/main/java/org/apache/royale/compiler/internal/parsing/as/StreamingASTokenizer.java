@@ -39,6 +39,7 @@ import org.apache.royale.compiler.internal.parsing.ITokenStreamFilter;
 import org.apache.royale.compiler.internal.parsing.SourceFragmentsReader;
 import org.apache.royale.compiler.internal.parsing.TokenBase;
 import org.apache.royale.compiler.internal.units.ASCompilationUnit;
+import org.apache.royale.compiler.internal.workspaces.NameInterner;
 import org.apache.royale.compiler.parsing.IASToken;
 import org.apache.royale.compiler.parsing.IASTokenizer;
 import org.apache.royale.compiler.parsing.IASToken.ASTokenKind;
@@ -247,6 +248,12 @@ public class StreamingASTokenizer implements ASTokenTypes, IASTokenizer, Closeab
      */
     private Iterator<ASToken> ascIncludeImaginaryTokens;
 
+    /**
+     * Table the identifier texts are shared in with the other files of the
+     * workspace, or null.
+     */
+    private NameInterner nameInterner;
+
     /**
      * You should probably not use this constructor. There is some legacy code
      * that uses this constructor, but that code should be updated to use one of
@@ -321,6 +328,7 @@ public class StreamingASTokenizer implements ASTokenTypes, IASTokenizer, Closeab
             throws FileNotFoundException
     {
         final StreamingASTokenizer tokenizer = create(fileSpec, includeHandler);
+        tokenizer.setNameInterner(currentTokenizer.nameInterner);
         return tokenizer;
     }
 
@@ -355,6 +363,7 @@ public class StreamingASTokenizer implements ASTokenTypes, IASTokenizer, Closeab
      * @param includeHandler Include handler.
      * @param followIncludes True if included files are also parsed.
      * @param includedFiles A list of included file paths.
+     * @param nameInterner Name interner of the workspace, or null.
      * @return Lexer.
      * @throws FileNotFoundException error
      */
@@ -363,10 +372,12 @@ public class StreamingASTokenizer implements ASTokenTypes, IASTokenizer, Closeab
             final IncludeHandler includeHandler,
             final boolean followIncludes,
             final List<String> includedFiles,
-            final boolean strictIdentifierNames)
+            final boolean strictIdentifierNames,
+            final NameInterner nameInterner)
             throws FileNotFoundException
     {
         final StreamingASTokenizer tokenizer = create(fileSpec, includeHandler);
+        tokenizer.setNameInterner(nameInterner);
         tokenizer.setFollowIncludes(followIncludes);
         tokenizer.setStrictIdentifierNames(strictIdentifierNames);
 
@@ -498,6 +509,7 @@ public class StreamingASTokenizer implements ASTokenTypes, IASTokenizer, Closeab
         tokenizer = new RawASTokenizer();
         tokenizer.yyreset(reader);
         tokenizer.setCollectComments(config.collectComments);
+        tokenizer.setNameInterner(nameInterner);
         setSourcePositionAdjustment(offset, line, column);
     }
 
@@ -564,6 +576,21 @@ public class StreamingASTokenizer implements ASTokenTypes, IASTokenizer, Closeab
         config.strictIdentifierNames = value;
     }
 
+    /**
+     * Sets the table the identifier texts are shared in with the other files
+     * of the workspace. Included files use the same table.
+     * 
+     * @param nameInterner the name interner of the workspace, or null to only
+     * share texts within the file.
+     */
+    public void setNameInterner(NameInterner nameInterner)
+    {
+        this.nameInterner = nameInterner;
+
+        if (tokenizer != null)
+            tokenizer.setNameInterner(nameInterner);
+    }
+
     /**
      * Closes the underlying reader
      */
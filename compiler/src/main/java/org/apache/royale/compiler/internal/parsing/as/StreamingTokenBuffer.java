@@ -19,8 +19,6 @@
 
 package org.apache.royale.compiler.internal.parsing.as;
 
-import java.util.ArrayList;
-
 import org.apache.royale.compiler.parsing.IASToken;
 import org.apache.royale.compiler.parsing.IASToken.ASTokenKind;
 
@@ -36,8 +34,22 @@ public final class StreamingTokenBuffer extends BaseRepairingTokenBuffer impleme
      */
     private static final int REWIND_BUFFER_SIZE = 10;
 
+    /**
+     * Initial length of the {@link #buffer}. It must be a power of two.
+     */
+    private static final int INITIAL_BUFFER_LENGTH = 32;
+
     private final StreamingASTokenizer tokenizer;
-    private final ArrayList<ASToken> buffer;
+
+    /**
+     * The rewind buffer followed by the look-ahead tokens, as a circular
+     * array that starts at {@link #bufferStart}. Consuming a token and
+     * rewinding only move the start, instead of shifting all the tokens of
+     * a list.
+     */
+    private ASToken[] buffer;
+    private int bufferStart;
+    private int bufferLength;
     private int bufferSize;
     private ASToken previousToken;
 
@@ -45,10 +57,12 @@ public final class StreamingTokenBuffer extends BaseRepairingTokenBuffer impleme
     {
         super(tokens.getSourcePath());
         tokenizer = tokens;
-        buffer = new ArrayList<ASToken>();
+        buffer = new ASToken[INITIAL_BUFFER_LENGTH];
+        bufferStart = 0;
+        bufferLength = 0;
         for (int i = 0; i < REWIND_BUFFER_SIZE; i++)
         {
-            buffer.add(eofToken);
+            addLast(eofToken);
         }
         bufferSize = 0;
         previousToken = eofToken;
@@ -77,11 +91,57 @@ public final class StreamingTokenBuffer extends BaseRepairingTokenBuffer impleme
         for (int pos = 0; pos < distance; pos++)
         {
             final ASToken next = tokenizer.next();
-            buffer.add(next);
+            addLast(next);
             bufferSize++;
         }
     }
 
+    private ASToken get(final int index)
+    {
+        return buffer[(bufferStart + index) & (buffer.length - 1)];
+    }
+
+    private void addLast(final ASToken token)
+    {
+        if (bufferLength == buffer.length)
+            grow();
+        buffer[(bufferStart + bufferLength) & (buffer.length - 1)] = token;
+        bufferLength++;
+    }
+
+    private void addFirst(final ASToken token)
+    {
+        if (bufferLength == buffer.length)
+            grow();
+        bufferStart = (bufferStart - 1) & (buffer.length - 1);
+        buffer[bufferStart] = token;
+        bufferLength++;
+    }
+
+    /**
+     * Remove the token at index 1. The token at index 0 is the left-most
+     * padding of the rewind buffer, and stays where it is.
+     */
+    private void removeSecond()
+    {
+        final int mask = buffer.length - 1;
+        final int second = (bufferStart + 1) & mask;
+        buffer[second] = buffer[bufferStart];
+        buffer[bufferStart] = null;
+        bufferStart = second;
+        bufferLength--;
+    }
+
+    private void grow()
+    {
+        // The length stays a power of two, so that indexes can be masked.
+        final ASToken[] newBuffer = new ASToken[buffer.length * 2];
+        for (int i = 0; i < bufferLength; i++)
+            newBuffer[i] = get(i);
+        buffer = newBuffer;
+        bufferStart = 0;
+    }
+
     @Override
     public void rewind(final int position)
     {
@@ -97,7 +157,7 @@ public final class StreamingTokenBuffer extends BaseRepairingTokenBuffer impleme
         for (int i = 0; i < backSteps; i++)
         {
             // Left-pad the buffer with EOF tokens to push the look-ahead tokens further.
-            buffer.add(0, eofToken);
+            addFirst(eofToken);
             bufferSize++;
         }
         this.position = position;
@@ -119,8 +179,8 @@ public final class StreamingTokenBuffer extends BaseRepairingTokenBuffer impleme
             if (bufferSize > 0)
             {
                 assert previousToken != null;
-                previousToken = buffer.get(REWIND_BUFFER_SIZE);
-                buffer.remove(1);
+                previousToken = get(REWIND_BUFFER_SIZE);
+                removeSecond();
                 bufferSize--;
                 assert bufferSize >= 0 : "fBufferSize can not be negative";
             }
@@ -130,12 +190,12 @@ public final class StreamingTokenBuffer extends BaseRepairingTokenBuffer impleme
     @Override
     protected ASToken lookAheadSkipInsertedSemicolon(int i)
     {
-        assert bufferSize + REWIND_BUFFER_SIZE == buffer.size() : "buffer size out-of-sync";
+        assert bufferSize + REWIND_BUFFER_SIZE == bufferLength : "buffer size out-of-sync";
         if (bufferSize < i)
         {
             fill(i - bufferSize);
         }
-        final ASToken result = buffer.get(REWIND_BUFFER_SIZE - 1 + i);
+        final ASToken result = get(REWIND_BUFFER_SIZE - 1 + i);
         if (result != null)
             result.lock();
         return result != null ? result : eofToken;
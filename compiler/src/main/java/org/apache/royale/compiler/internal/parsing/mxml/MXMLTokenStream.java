@@ -0,0 +1,189 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.internal.parsing.mxml;
+
+import java.util.ArrayList;
+import java.util.ListIterator;
+import java.util.NoSuchElementException;
+
+import org.apache.royale.compiler.common.PrefixMap;
+
+/**
+ * Streams the tokens of an {@link MXMLTokenizer} as they are lexed, instead of
+ * collecting them in a list with {@link MXMLTokenizer#parseTokens}.
+ * <p>
+ * The stream is a {@link ListIterator} so that it can be handed to the code
+ * which builds {@code MXMLData} from a list of tokens. That code only ever
+ * steps back over the token it has just read, so the stream remembers the
+ * last token and nothing before it. Only {@link #hasNext()}, {@link #next()}
+ * and {@link #previous()} are supported.
+ * <p>
+ * The tokens of the root tag are read ahead by {@link #getRootTagPrefixMap()}
+ * because the dialect of the document has to be known before the first token
+ * is consumed.
+ */
+public final class MXMLTokenStream implements ListIterator<MXMLToken>
+{
+    /**
+     * Created by {@link MXMLTokenizer#streamTokens}.
+     */
+    MXMLTokenStream(MXMLTokenizer tokenizer)
+    {
+        this.tokenizer = tokenizer;
+    }
+
+    private final MXMLTokenizer tokenizer;
+
+    /**
+     * Tokens that were lexed but not returned yet.
+     */
+    private final ArrayList<MXMLToken> pending = new ArrayList<MXMLToken>();
+
+    private int pendingIndex = 0;
+
+    /**
+     * The token returned by the last call to {@link #next()}.
+     */
+    private MXMLToken last;
+
+    /**
+     * True if {@link #previous()} pushed {@link #last} back.
+     */
+    private boolean pushedBack = false;
+
+    private int index = 0;
+
+    private boolean finished = false;
+
+    /**
+     * Read the tokens up to the end of the root tag, so that the namespaces
+     * declared on the root tag are known.
+     *
+     * @return the {@link PrefixMap} for the root tag
+     */
+    public PrefixMap getRootTagPrefixMap()
+    {
+        if (index == 0 && pending.isEmpty())
+        {
+            MXMLToken token;
+            do
+            {
+                token = lex();
+                if (token != null)
+                    pending.add(token);
+            }
+            while (token != null && !token.isTagEnd());
+        }
+        return tokenizer.getPrefixMap();
+    }
+
+    @Override
+    public boolean hasNext()
+    {
+        if (pushedBack || pendingIndex < pending.size())
+            return true;
+        if (finished)
+            return false;
+        final MXMLToken token = lex();
+        if (token == null)
+            return false;
+        pending.add(token);
+        return true;
+    }
+
+    @Override
+    public MXMLToken next()
+    {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        index++;
+        if (pushedBack)
+        {
+            pushedBack = false;
+            return last;
+        }
+        last = pending.get(pendingIndex++);
+        if (pendingIndex == pending.size())
+        {
+            pending.clear();
+            pendingIndex = 0;
+        }
+        return last;
+    }
+
+    @Override
+    public boolean hasPrevious()
+    {
+        return !pushedBack && last != null;
+    }
+
+    @Override
+    public MXMLToken previous()
+    {
+        if (!hasPrevious())
+            throw new NoSuchElementException();
+        index--;
+        pushedBack = true;
+        return last;
+    }
+
+    @Override
+    public int nextIndex()
+    {
+        return index;
+    }
+
+    @Override
+    public int previousIndex()
+    {
+        return index - 1;
+    }
+
+    @Override
+    public void remove()
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void set(MXMLToken e)
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void add(MXMLToken e)
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    private MXMLToken lex()
+    {
+        if (finished)
+            return null;
+        final MXMLToken token = tokenizer.nextToken();
+        if (token == null)
+        {
+            finished = true;
+            tokenizer.finishTokens();
+        }
+        return token;
+    }
+}
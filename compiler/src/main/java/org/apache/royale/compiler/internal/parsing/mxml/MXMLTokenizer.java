@@ -248,13 +248,7 @@ public class MXMLTokenizer implements IMXMLTokenizer, Closeable
 	 * @return			List of MXMLTokens
 	 */
 	public List<MXMLToken> parseTokens(Reader input) {
-		// Add fake characters onto the end of the stream to make it easier to handle
-		// unclosed constructs like <![CDATA[ and <!--.
-		wasRepaired = false;
-		setReader(input);
-		// Set the start offset in the tokenizer
-		// This is done after setReader() as setReader() resets the tokenizer, setting yychar to 0
-		tokenizer.setOffset(startOffset);
+		startTokens(input);
 		MXMLToken token = null;
 		List<MXMLToken> list = new ArrayList<MXMLToken>(SIZE);
 		try {
@@ -264,15 +258,45 @@ public class MXMLTokenizer implements IMXMLTokenizer, Closeable
 			        buildTokenList((MXMLToken)token.clone(), list);
 			    
 			}while(token != null);
-			lastToken = null;
 			return list;
 		} finally {
-			try {
-				tokenizer.yyclose();
-			} catch (IOException e) {
-			    ICompilerProblem problem = new InternalCompilerProblem2(path, e, SUB_SYSTEM);
-			    problems.add(problem);
-			}
+			finishTokens();
+		}
+	}
+
+	/**
+	 * Streams the tokens of input as they are lexed. Unlike
+	 * {@link #parseTokens(Reader)}, the tokens are neither collected nor
+	 * cloned, so the stream must be the only consumer of this tokenizer.
+	 * The reader is closed once the last token has been read.
+	 * @param input		Reader containing file to be parsed
+	 * @return			an {@link MXMLTokenStream} over the tokens of input
+	 */
+	public MXMLTokenStream streamTokens(Reader input) {
+		startTokens(input);
+		return new MXMLTokenStream(this);
+	}
+
+	private void startTokens(Reader input) {
+		// Add fake characters onto the end of the stream to make it easier to handle
+		// unclosed constructs like <![CDATA[ and <!--.
+		wasRepaired = false;
+		setReader(input);
+		// Set the start offset in the tokenizer
+		// This is done after setReader() as setReader() resets the tokenizer, setting yychar to 0
+		tokenizer.setOffset(startOffset);
+	}
+
+	/**
+	 * Called once the last token of the input has been read.
+	 */
+	void finishTokens() {
+		lastToken = null;
+		try {
+			tokenizer.yyclose();
+		} catch (IOException e) {
+		    ICompilerProblem problem = new InternalCompilerProblem2(path, e, SUB_SYSTEM);
+		    problems.add(problem);
 		}
 	}
 	
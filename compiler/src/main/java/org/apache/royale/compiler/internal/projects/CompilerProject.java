@@ -42,10 +42,13 @@ import org.apache.royale.compiler.definitions.IDefinition;
 import org.apache.royale.compiler.definitions.IFunctionDefinition;
 import org.apache.royale.compiler.definitions.INamespaceDefinition;
 import org.apache.royale.compiler.definitions.ITypeDefinition;
+import org.apache.royale.compiler.internal.caches.ABCBytesDiskCache;
 import org.apache.royale.compiler.internal.definitions.ClassDefinition;
+import org.apache.royale.compiler.internal.definitions.DefinitionBase;
 import org.apache.royale.compiler.internal.definitions.NamespaceDefinition;
 import org.apache.royale.compiler.internal.embedding.EmbedData;
 import org.apache.royale.compiler.internal.parsing.as.IProjectConfigVariables;
+import org.apache.royale.compiler.internal.scopes.ASFileScope;
 import org.apache.royale.compiler.internal.scopes.ASProjectScope;
 import org.apache.royale.compiler.internal.scopes.ASScope;
 import org.apache.royale.compiler.internal.scopes.ASScopeCache;
@@ -148,6 +151,17 @@ public abstract class CompilerProject implements ICompilerProject
      */
     private boolean enableInlining;
 
+    /**
+     * If true, targets parse the source files ahead of their dependency walk.
+     */
+    private boolean parseAhead;
+
+    /**
+     * Cache of the ABC of unchanged compilation units between compiler
+     * processes, or null.
+     */
+    private volatile ABCBytesDiskCache abcBytesCache;
+
     private final boolean useAS3;
 
     /**
@@ -171,6 +185,7 @@ public abstract class CompilerProject implements ICompilerProject
         configManager = new ConfigManager();
         useParallelCodeGen = false;
         enableInlining = false;
+        parseAhead = false;
         workspace.addProject(this);
     }
     
@@ -397,6 +412,32 @@ public abstract class CompilerProject implements ICompilerProject
         }
     }
 
+    /**
+     * Gets the base names of the definitions that a compilation unit tried to
+     * find and failed.
+     * 
+     * @param compilationUnit The compilation unit.
+     * @return A new set of base names.
+     */
+    public Set<String> getUnfoundDefinitionDependencies(ICompilationUnit compilationUnit)
+    {
+        Set<String> result = new HashSet<String>();
+        unfoundDependenciesLock.readLock().lock();
+        try
+        {
+            for (Map.Entry<String, Map<ICompilationUnit, Object>> entry : unfoundDefinitionDependencies.entrySet())
+            {
+                if (entry.getValue().containsKey(compilationUnit))
+                    result.add(entry.getKey());
+            }
+        }
+        finally
+        {
+            unfoundDependenciesLock.readLock().unlock();
+        }
+        return result;
+    }
+
     public Set<ICompilationUnit> getDependenciesOnUnfoundDefinition(String definitionBaseName)
     {
         unfoundDependenciesLock.readLock().lock();
@@ -715,6 +756,30 @@ public abstract class CompilerProject implements ICompilerProject
         resetScopeCaches(relatedScopes);
     }
     
+    /**
+     * Resets what the definitions of the specified {@link ICompilationUnit}
+     * have cached about the definitions they refer to, such as the base
+     * classes and interfaces of a class. This must be called for a unit that
+     * is kept when a unit it depends on is replaced by a new version.
+     * 
+     * @param compilationUnit {@link ICompilationUnit} whose definitions'
+     * caches should be reset
+     */
+    public void resetResolutionCachesForCompilationUnit(ICompilationUnit compilationUnit)
+    {
+        List<IDefinition> definitions = new ArrayList<IDefinition>();
+        for (IASScope scope : projectScope.getCompilationUnitScopeList(compilationUnit))
+        {
+            if (scope instanceof ASFileScope)
+                ((ASFileScope)scope).collectExternallyVisibleDefinitions(definitions, true);
+        }
+        for (IDefinition definition : definitions)
+        {
+            if (definition instanceof DefinitionBase)
+                ((DefinitionBase)definition).resetResolutionCaches();
+        }
+    }
+    
     private void resetScopeCaches(Iterable<IASScope> scopes)
     {
         assert scopes != null;
@@ -950,6 +1015,64 @@ public abstract class CompilerProject implements ICompilerProject
         clean();
     }
     
+    /**
+     * Gets a boolean that indicates whether or not targets parse the source
+     * files of this project ahead of their dependency walk.
+     * @return true if the source files are parsed ahead, false otherwise.
+     * @see SourceFilePrefetcher
+     */
+    public boolean getParseAhead()
+    {
+        return parseAhead;
+    }
+
+    /**
+     * Set whether or not targets parse the source files of this project
+     * ahead of their dependency walk.
+     * 
+     * @param parseAhead true to parse the source files ahead.
+     */
+    public void setParseAhead(boolean parseAhead)
+    {
+        this.parseAhead = parseAhead;
+    }
+
+    /**
+     * Gets the cache that compilation units of this project look up their ABC
+     * in before they generate it.
+     * @return The cache, or null if the ABC is always generated.
+     */
+    public ABCBytesDiskCache getABCBytesCache()
+    {
+        return abcBytesCache;
+    }
+
+    /**
+     * Sets the cache that compilation units of this project look up their ABC
+     * in before they generate it.
+     * 
+     * @param abcBytesCache The cache, or null to always generate the ABC.
+     */
+    public void setABCBytesCache(ABCBytesDiskCache abcBytesCache)
+    {
+        this.abcBytesCache = abcBytesCache;
+    }
+
+    /**
+     * Determines whether the function bodies of a compilation unit are
+     * needed by the targets of this project. If they aren't, code is only
+     * generated for the signatures of the functions, and the bodies are
+     * never parsed.  By default, they are always needed.
+     * 
+     * @param unit The compilation unit.
+     * @return true if the function bodies must be parsed and checked.
+     * @throws InterruptedException
+     */
+    public boolean requiresFunctionBodies(ICompilationUnit unit) throws InterruptedException
+    {
+        return true;
+    }
+
     /**
      * Add AST to cache.  By default, not added to any cache.
      * 
@@ -959,6 +1082,16 @@ public abstract class CompilerProject implements ICompilerProject
     {
     }
 
+    /**
+     * Remove all ASTs from the cache, so that the compilation units can
+     * release them according to the
+     * {@link org.apache.royale.compiler.internal.units.SyntaxTreeRetention}
+     * of the workspace.  By default, there is no cache.
+     */
+    public void clearASTCache()
+    {
+    }
+
     /**
      * Override this to permit package aliasing on imports and elsewhere
      * 
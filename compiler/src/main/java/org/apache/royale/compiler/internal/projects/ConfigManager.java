@@ -21,20 +21,27 @@ package org.apache.royale.compiler.internal.projects;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
+import antlr.Token;
+
 import org.apache.royale.compiler.config.CompilerDiagnosticsConstants;
 import org.apache.royale.compiler.constants.IASKeywordConstants;
 import org.apache.royale.compiler.constants.IASLanguageConstants;
 import org.apache.royale.compiler.definitions.IDefinition;
 import org.apache.royale.compiler.internal.parsing.as.ASParser;
+import org.apache.royale.compiler.internal.parsing.as.ASToken;
+import org.apache.royale.compiler.internal.parsing.as.ASTokenTypes;
 import org.apache.royale.compiler.internal.parsing.as.IProjectConfigVariables;
 import org.apache.royale.compiler.internal.tree.as.ConfigConstNode;
 import org.apache.royale.compiler.internal.tree.as.ConfigNamespaceNode;
+import org.apache.royale.compiler.internal.tree.as.IdentifierNode;
+import org.apache.royale.compiler.internal.tree.as.LiteralNode;
+import org.apache.royale.compiler.internal.tree.as.NamespaceIdentifierNode;
 import org.apache.royale.compiler.problems.ICompilerProblem;
 import org.apache.royale.compiler.projects.ICompilerProject;
 import org.apache.royale.compiler.tree.as.IASNode;
@@ -47,6 +54,205 @@ import org.apache.royale.compiler.tree.as.IASNode;
  */
 public final class ConfigManager
 {
+    /**
+     * Maximum number of distinct configurations whose constants are kept in
+     * {@link #literalConfigs}.
+     */
+    private static final int MAX_LITERAL_CONFIGS = 16;
+
+    /**
+     * Resolved config constants whose values are all literals, keyed by the
+     * ActionScript encoding of the config mapping they were resolved from.
+     * The table is shared by all projects, so that projects with the same
+     * defines, like the SWF and JS projects of a cross-compile, resolve them
+     * only once. Literals have the same value in every project; the
+     * constants of other mappings are only kept by the manager of their
+     * project.
+     */
+    private static final Map<String, ResolvedConfig> literalConfigs = Collections.synchronizedMap(
+            new LinkedHashMap<String, ResolvedConfig>(MAX_LITERAL_CONFIGS, 0.75f, true)
+            {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, ResolvedConfig> eldest)
+                {
+                    return size() > MAX_LITERAL_CONFIGS;
+                }
+            });
+
+    /**
+     * Builds the ActionScript encoding of config mappings. The mappings
+     * cannot be parsed one at a time, because the value of one may refer to
+     * the value of another.
+     * 
+     * @param configValues Map from config names to expressions.
+     * @return AS3 code that declares the config namespaces and constants.
+     */
+    private static String buildConfigSource(Map<String, String> configValues)
+    {
+        StringBuilder cn = new StringBuilder();
+        for (Map.Entry<String, String> entry : configValues.entrySet())
+        {
+            String next = entry.getKey();
+            int q = next.indexOf("::");
+            if(q == -1) {
+                continue; //log an error
+            }
+            //builds the AS3 code that corresponds to the config key value pair
+            String subSequence = next.substring(0, q);
+            cn.append(IASKeywordConstants.CONFIG);
+            cn.append(" ");
+            cn.append(IASKeywordConstants.NAMESPACE);
+            cn.append(" ");
+            cn.append(subSequence);
+            cn.append(";");
+            cn.append(subSequence);
+            cn.append(" ");
+            cn.append(IASKeywordConstants.CONST);
+            cn.append(" ");
+            cn.append(next.substring(q+2));
+            cn.append("=");
+            cn.append(entry.getValue());
+            cn.append(";");
+        }
+        return cn.toString();
+    }
+
+    /**
+     * Parses the ActionScript encoding of config mappings.
+     * 
+     * @param project The project whose workspace parses the source.
+     * @param source Source returned by {@link #buildConfigSource(Map)}.
+     * @param constNodes Receives the config constants.
+     * @param configNamespaces Receives the config namespaces, without
+     * duplicates.
+     * @param problems Receives the problems found parsing the source.
+     */
+    private static void parseConfigSource(CompilerProject project, String source,
+            List<ConfigConstNode> constNodes, List<ConfigNamespaceNode> configNamespaces,
+            Collection<ICompilerProblem> problems)
+    {
+        HashSet<String> nsNames = new HashSet<String>();
+        IASNode[] nodes = ASParser.parseProjectConfigVariables(project.getWorkspace(), source, problems);
+        for(IASNode node: nodes) {
+            if(node instanceof ConfigConstNode) {
+                constNodes.add((ConfigConstNode)node);
+            } else if(node instanceof ConfigNamespaceNode) {
+                if (nsNames.add(((ConfigNamespaceNode)node).getName())) {
+                    configNamespaces.add((ConfigNamespaceNode)node);
+                }
+            } else {
+                //log error
+            }
+        }
+    }
+
+    /**
+     * Config namespaces and constants of a config mapping, as resolved by
+     * the parser. When the value of every constant could be resolved to a
+     * boolean, string, number or null, the table is folded and new
+     * {@link ConfigConstNode}s can be created from it for each parser,
+     * without parsing or resolving the config mapping again. A folded table
+     * whose values are all literals is shared by all projects.
+     */
+    static final class ResolvedConfig
+    {
+        ResolvedConfig(CompilerProject project, String source)
+        {
+            ArrayList<ConfigConstNode> constNodes = new ArrayList<ConfigConstNode>();
+            ArrayList<ConfigNamespaceNode> configNamespaces = new ArrayList<ConfigNamespaceNode>();
+            ArrayList<ICompilerProblem> problems = new ArrayList<ICompilerProblem>();
+            parseConfigSource(project, source, constNodes, configNamespaces, problems);
+
+            List<String> nsNames = new ArrayList<String>(configNamespaces.size());
+            for (ConfigNamespaceNode ns : configNamespaces)
+                nsNames.add(ns.getName());
+            this.nsNames = Collections.unmodifiableList(nsNames);
+
+            boolean folded = true;
+            boolean literal = problems.isEmpty();
+            constNamespaces = new String[constNodes.size()];
+            constNames = new String[constNodes.size()];
+            constValues = new Object[constNodes.size()];
+            for (int i = 0; i < constNodes.size(); i++)
+            {
+                ConfigConstNode node = constNodes.get(i);
+                constNamespaces[i] = node.getNamespaceNode() != null ? node.getNamespace() : null;
+                constNames[i] = node.getName();
+                constValues[i] = node.getFoldedValue();
+                if (constNamespaces[i] == null || constValues[i] == null)
+                    folded = false;
+                if (!(node.getAssignedValueNode() instanceof LiteralNode))
+                    literal = false;
+            }
+            this.folded = folded;
+            this.literal = folded && literal;
+            this.problems = Collections.unmodifiableList(problems);
+        }
+
+        private final List<String> nsNames;
+        private final String[] constNamespaces;
+        private final String[] constNames;
+        private final Object[] constValues;
+        private final boolean folded;
+        private final List<ICompilerProblem> problems;
+
+        /**
+         * True if the table is folded, and every value is a literal of the
+         * config mapping, so that the table can be shared by all projects.
+         */
+        private final boolean literal;
+
+        /**
+         * @return True if new config constant nodes are created from this
+         * table, instead of parsing the config mapping for each parser.
+         */
+        boolean isFolded()
+        {
+            return folded;
+        }
+
+        /**
+         * @return True if this table is shared by all projects with the same
+         * config mapping.
+         */
+        boolean isLiteral()
+        {
+            return literal;
+        }
+
+        /**
+         * @return new config constant nodes with the resolved values.
+         */
+        ArrayList<ConfigConstNode> createConfigConstNodes()
+        {
+            assert folded;
+            ArrayList<ConfigConstNode> constNodes = new ArrayList<ConfigConstNode>(constNames.length);
+            for (int i = 0; i < constNames.length; i++)
+            {
+                ConfigConstNode node = new ConfigConstNode(new IdentifierNode(constNames[i]));
+                node.setNamespace(new NamespaceIdentifierNode(constNamespaces[i]));
+                node.setKeyword(new ASToken(ASTokenTypes.TOKEN_KEYWORD_CONST, -1, -1, -1, -1, IASKeywordConstants.CONST));
+                node.setIsConst(true);
+                node.setFoldedValue(constValues[i]);
+                constNodes.add(node);
+            }
+            return constNodes;
+        }
+
+        /**
+         * @return new config namespace nodes.
+         */
+        ArrayList<ConfigNamespaceNode> createConfigNamespaceNodes()
+        {
+            ArrayList<ConfigNamespaceNode> configNamespaces = new ArrayList<ConfigNamespaceNode>(nsNames.size());
+            for (String name : nsNames)
+                configNamespaces.add(new ConfigNamespaceNode(new IdentifierNode(name, (Token)null)));
+            return configNamespaces;
+        }
+    }
+
     /**
      * Internal impl of {@link IProjectConfigVariables}
      */
@@ -54,15 +260,15 @@ public final class ConfigManager
     {
         private CompilerProject project;
         private Map<String, String> configValues;
+        private ResolvedConfig resolvedConfig;
         private ArrayList<IDefinition> definitions;
         private ArrayList<ConfigConstNode> constNodes;
         private ArrayList<ConfigNamespaceNode> configNamespaces;
-        private ArrayList<String> nsNames;
-        private ArrayList<ICompilerProblem> problems;
 
-        public ProjectVariables(CompilerProject project, Map<String, String> configValues) {
+        public ProjectVariables(CompilerProject project, Map<String, String> configValues, ResolvedConfig resolvedConfig) {
             this.project = project;
             this.configValues = configValues;
+            this.resolvedConfig = resolvedConfig;
         }
         
         @Override
@@ -85,63 +291,21 @@ public final class ConfigManager
          */
         
         private synchronized void loadConfigData() {
-            problems = new ArrayList<ICompilerProblem>();
-            HashSet<String> nsNames = new HashSet<String>();
+            if (resolvedConfig.folded)
+            {
+                constNodes = resolvedConfig.createConfigConstNodes();
+                configNamespaces = resolvedConfig.createConfigNamespaceNodes();
+                return;
+            }
+
+            // Some of the values could not be resolved by the parser, so
+            // the nodes can't be created from the resolved table. Parse
+            // the config again, the nodes are changed by each processor
+            // they are added to.
             constNodes = new ArrayList<ConfigConstNode>();
             configNamespaces = new ArrayList<ConfigNamespaceNode>();
-            
-            
-            
-            //------------------------------------------
-            // First, build up a big string that is an actionscript
-            // encoding of all the members of fConfigValues. These cannot be parsed
-            // one at a time, becuase the value of one may refer to the value of another
-            StringBuilder cn = new StringBuilder();
-            Iterator<String> it = configValues.keySet().iterator();
-            while(it.hasNext()) {
-                String next = it.next();
-                int q = next.indexOf("::");
-                if(q == -1) {
-                    continue; //log an error
-                }
-                //builds the AS3 code that corresponds to the config key value pair
-                String subSequence = next.substring(0, q);
-               // StringBuilder cn = new StringBuilder();
-                cn.append(IASKeywordConstants.CONFIG);
-                cn.append(" ");
-                cn.append(IASKeywordConstants.NAMESPACE);
-                cn.append(" ");
-                cn.append(subSequence);
-                cn.append(";");
-                cn.append(subSequence);
-                cn.append(" ");
-                cn.append(IASKeywordConstants.CONST);
-                cn.append(" ");
-                cn.append(next.substring(q+2));
-                cn.append("=");
-                cn.append(configMapping.get(next));
-                cn.append(";");
-            }
-            
-            // Now that cn contains all the AS3 code for the config, we can parse it
-            IASNode[] nodes = ASParser.parseProjectConfigVariables(project.getWorkspace(), cn.toString(), problems);
-            for(IASNode node: nodes) {
-                {
-                if(node instanceof ConfigConstNode) {
-                        constNodes.add((ConfigConstNode)node);
-                    } else if(node instanceof ConfigNamespaceNode) {
-                        if (!nsNames.contains( ((ConfigNamespaceNode)node).getName())) {
-                            configNamespaces.add((ConfigNamespaceNode)node);
-                            nsNames.add(((ConfigNamespaceNode)node).getName());
-                        }
-                    } else {
-                        //log error
-                    }
-                }
-            }
-           
-            this.nsNames = new ArrayList<String>(nsNames.size());
-            this.nsNames.addAll(nsNames);
+            parseConfigSource(project, buildConfigSource(configValues),
+                    constNodes, configNamespaces, new ArrayList<ICompilerProblem>());
         }
         
         @Override
@@ -184,29 +348,13 @@ public final class ConfigManager
         @Override
         public List<String> getConfigNamespaceNames()
         {
-            if(nsNames == null)
-            {
-            	if ((CompilerDiagnosticsConstants.diagnostics & CompilerDiagnosticsConstants.CONFIG_MANAGER) == CompilerDiagnosticsConstants.CONFIG_MANAGER)
-            		System.out.println("ConfigManager waiting for lock for loadConfigData");
-                loadConfigData();
-            	if ((CompilerDiagnosticsConstants.diagnostics & CompilerDiagnosticsConstants.CONFIG_MANAGER) == CompilerDiagnosticsConstants.CONFIG_MANAGER)
-            		System.out.println("ConfigManager done with lock for loadConfigData");
-            }
-            return nsNames;
+            return resolvedConfig.nsNames;
         }
 
         @Override
         public Collection<ICompilerProblem> getProblems()
         {
-            if(problems == null)
-            {
-            	if ((CompilerDiagnosticsConstants.diagnostics & CompilerDiagnosticsConstants.CONFIG_MANAGER) == CompilerDiagnosticsConstants.CONFIG_MANAGER)
-            		System.out.println("ConfigManager waiting for lock for loadConfigData");
-                loadConfigData();
-            	if ((CompilerDiagnosticsConstants.diagnostics & CompilerDiagnosticsConstants.CONFIG_MANAGER) == CompilerDiagnosticsConstants.CONFIG_MANAGER)
-            		System.out.println("ConfigManager done with lock for loadConfigData");
-            }
-            return problems;
+            return resolvedConfig.problems;
         }
 
     }
@@ -221,6 +369,12 @@ public final class ConfigManager
      */
     private boolean validated = false;
 
+    /**
+     * Resolved constants of {@link #configMapping}, or null if the mapping
+     * changed since they were last looked up.
+     */
+    private ResolvedConfig resolvedConfig;
+
     public ConfigManager() {
         configMapping = new LinkedHashMap<String, String>();
     }
@@ -230,9 +384,10 @@ public final class ConfigManager
      * @param namespace The config variable.
      * @param expression The expression.
      */
-    public void addConfigVariable(String namespace, String expression) {
+    public synchronized void addConfigVariable(String namespace, String expression) {
         configMapping.put(namespace, expression);
         validated = false;
+        resolvedConfig = null;
     }
     
     /**
@@ -314,25 +469,57 @@ public final class ConfigManager
      *    -define+="CONFIG::foo,'value'"
      * @param variables the mapping of config names to expressions
      */
-    public void addConfigVariables(Map<String, String> variables) {
+    public synchronized void addConfigVariables(Map<String, String> variables) {
         configMapping.putAll(variables);
         validated = false;
+        resolvedConfig = null;
     }
     
     /**
      * Returns the {@link IProjectConfigVariables} object for the given project.  Each value returned will be a new object, but could possibly share
-     * the same signature as other variables
+     * the same signature as other variables. The config mapping is parsed and resolved once. If its values are all literals, the result
+     * is shared with all the projects that have the same mapping.
      * @param project the {@link ICompilerProject} to pull our config data from
      * @return an {@link IProjectConfigVariables} object
      */
-    public IProjectConfigVariables getProjectConfig(CompilerProject project) {
+    public synchronized IProjectConfigVariables getProjectConfig(CompilerProject project) {
         LinkedHashMap<String, String> configValues = new LinkedHashMap<String, String>();
         configValues.putAll(configMapping);
-        ProjectVariables vars = new ProjectVariables(project, configValues);
+        if(resolvedConfig == null) {
+            resolvedConfig = getResolvedConfig(project, buildConfigSource(configValues));
+        }
+        ProjectVariables vars = new ProjectVariables(project, configValues, resolvedConfig);
         if(!validated) {
             vars.getProblems();
             validated = true;
         }
         return vars;
     }
+
+    /**
+     * @return The resolved constants of the config mapping, as of the last
+     * call to {@link #getProjectConfig(CompilerProject)}, or null.
+     */
+    synchronized ResolvedConfig getResolvedConfig() {
+        return resolvedConfig;
+    }
+
+    /**
+     * Looks up the resolved constants of a config source in the table shared
+     * by all projects, resolving them if they aren't there. Only constants
+     * whose values are all literals are added to the table.
+     */
+    private static ResolvedConfig getResolvedConfig(CompilerProject project, String source) {
+        ResolvedConfig resolved = literalConfigs.get(source);
+        if(resolved == null) {
+            // Resolved outside of the lock of the table, two projects that
+            // race here both resolve the same constants.
+            resolved = new ResolvedConfig(project, source);
+            if(resolved.isLiteral())
+                literalConfigs.put(source, resolved);
+        }
+        else if ((CompilerDiagnosticsConstants.diagnostics & CompilerDiagnosticsConstants.CONFIG_MANAGER) == CompilerDiagnosticsConstants.CONFIG_MANAGER)
+            System.out.println("ConfigManager reusing resolved config constants");
+        return resolved;
+    }
 }
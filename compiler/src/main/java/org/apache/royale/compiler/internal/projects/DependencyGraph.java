@@ -21,6 +21,7 @@ package org.apache.royale.compiler.internal.projects;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -35,7 +36,7 @@ import org.apache.royale.compiler.common.DependencyType;
 import org.apache.royale.compiler.common.DependencyTypeSet;
 import org.apache.royale.compiler.config.CompilerDiagnosticsConstants;
 import org.apache.royale.compiler.exceptions.CircularDependencyException;
-import org.apache.royale.compiler.internal.graph.Graph;
+import org.apache.royale.compiler.internal.graph.ConcurrentGraph;
 import org.apache.royale.compiler.internal.graph.GraphEdge;
 import org.apache.royale.compiler.internal.graph.TopologicalSort;
 import org.apache.royale.compiler.internal.units.CompilationUnitBase;
@@ -81,7 +82,12 @@ import com.google.common.collect.ImmutableList;
  * </dl>
  * <p>
  * The code in this class intends to make adding or updating a dependency edge
- * very fast and thread safe.
+ * very fast and thread safe. Semantic analysis threads add edges concurrently:
+ * the edges of each compilation unit are kept in concurrent maps, and each
+ * {@link Edge} is only locked while its own dependencies are updated. The
+ * shared side of a read-write lock is held while adding, so that removing
+ * compilation units or edges and sorting the graph, which take the exclusive
+ * side, still see a graph that isn't changing.
  */
 public final class DependencyGraph
 {
@@ -149,28 +155,28 @@ public final class DependencyGraph
 
         /**
          */
-        public boolean getIsInheritanceDependency()
+        public synchronized boolean getIsInheritanceDependency()
         {
             return dependencySet.contains(DependencyType.INHERITANCE);
         }
 
         /**
          */
-        public boolean getIsSignatureDependency()
+        public synchronized boolean getIsSignatureDependency()
         {
             return dependencySet.contains(DependencyType.SIGNATURE);
         }
 
         /**
          */
-        public boolean getIsNamespaceDependency()
+        public synchronized boolean getIsNamespaceDependency()
         {
             return dependencySet.contains(DependencyType.NAMESPACE);
         }
 
         /**
          */
-        public boolean getIsExpressionDependency()
+        public synchronized boolean getIsExpressionDependency()
         {
             return dependencySet.contains(DependencyType.EXPRESSION);
         }
@@ -179,7 +185,7 @@ public final class DependencyGraph
          * @return True if any of the union of the parameter set and this Edge's dependencySet is non-null.
          * 
          */
-        public boolean typeInSet(DependencyTypeSet set)
+        public synchronized boolean typeInSet(DependencyTypeSet set)
         {
             for (DependencyType t : set)
             {
@@ -196,7 +202,7 @@ public final class DependencyGraph
          * @param qname The definition qualified name that is depended on
          * @param types {@link DependencyType}'s to add to this edge.
          */
-        private void addDependency(String qname, DependencyTypeSet types)
+        private synchronized void addDependency(String qname, DependencyTypeSet types)
         {
             DependencyTypeSet typeSet = dependencies.get(qname);
             if(typeSet != null)
@@ -219,7 +225,7 @@ public final class DependencyGraph
          * @param qname The definition qualified name that is depended on
          * @param type {@link DependencyType} to add to this edge.
          */
-        private void addDependency(String qname, DependencyType type)
+        private synchronized void addDependency(String qname, DependencyType type)
         {
             DependencyTypeSet typeSet = dependencies.get(qname);
             if (typeSet != null)
@@ -240,7 +246,7 @@ public final class DependencyGraph
          * to this Edge.
          * @param type {@link DependencyType}'s to add to this edge.
          */
-        private void addDependency(DependencyType type)
+        private synchronized void addDependency(DependencyType type)
         {
             dependencySet.add(type);
         }
@@ -267,9 +273,9 @@ public final class DependencyGraph
          * {@link DependencyType} that they depend on.
          */
 
-        public Map<String, DependencyTypeSet> getNamedDependencies()
+        public synchronized Map<String, DependencyTypeSet> getNamedDependencies()
         {
-            return this.dependencies;
+            return new HashMap<String, DependencyTypeSet>(this.dependencies);
         }
         
         @Override
@@ -288,9 +294,15 @@ public final class DependencyGraph
             }
         }
         
-        public DependencyTypeSet getAllDependencies()
+        /**
+         * @return A copy of the {@link DependencyType}s of this edge. The
+         * set of the edge itself is changed by concurrent calls to
+         * <code>addDependency</code>, so it is copied while the edge is
+         * locked.
+         */
+        public synchronized DependencyTypeSet getAllDependencies()
         {
-            return dependencySet;
+            return DependencyTypeSet.copyOf(dependencySet);
         }        
     }
     
@@ -298,10 +310,7 @@ public final class DependencyGraph
     {
         Edge result = graph.getEdge(referencingCompilationUnit, declaringCompilationUnit);
         if (result == null)
-        {
-            result = new Edge(referencingCompilationUnit, declaringCompilationUnit);
-            graph.setEdge(result);
-        }
+            result = graph.addEdgeIfAbsent(new Edge(referencingCompilationUnit, declaringCompilationUnit));
         return result;
     }
 
@@ -310,11 +319,17 @@ public final class DependencyGraph
      */
     public DependencyGraph()
     {
-        graph = new Graph<ICompilationUnit, Edge>();
+        graph = new ConcurrentGraph<ICompilationUnit, Edge>();
         lock = new ReentrantReadWriteLock();
     }
 
-    private final Graph<ICompilationUnit, Edge> graph;
+    private final ConcurrentGraph<ICompilationUnit, Edge> graph;
+
+    /**
+     * The read lock is shared by the threads that add compilation units and
+     * dependencies. The write lock is held by operations that remove from the
+     * graph or need it to stay the same while they walk it.
+     */
     private final ReadWriteLock lock;
 
     /**
@@ -341,7 +356,7 @@ public final class DependencyGraph
         assert (!(depender instanceof InvisibleCompilationUnit))
             : "depender should only ever be an InvisibleCompilationUnit delegate, never an InvisibleCompilationUnit";
 
-        lock.writeLock().lock();
+        lock.readLock().lock();
         try
         {
             Edge e = getEdge(depender, dependee);
@@ -349,7 +364,7 @@ public final class DependencyGraph
         }
         finally
         {
-            lock.writeLock().unlock();
+            lock.readLock().unlock();
         }
     }
     
@@ -377,7 +392,7 @@ public final class DependencyGraph
         if (depender instanceof InvisibleCompilationUnit)
             depender = ((InvisibleCompilationUnit)depender).getDelegate();
 
-        lock.writeLock().lock();
+        lock.readLock().lock();
         try
         {
             Edge e = getEdge(depender, dependee);
@@ -385,7 +400,7 @@ public final class DependencyGraph
         }
         finally
         {
-            lock.writeLock().unlock();
+            lock.readLock().unlock();
         }
     }
 
@@ -412,7 +427,7 @@ public final class DependencyGraph
         if (depender instanceof InvisibleCompilationUnit)
             depender = ((InvisibleCompilationUnit)depender).getDelegate();
 
-        lock.writeLock().lock();
+        lock.readLock().lock();
         try
         {
             Edge e = getEdge(depender, dependee);
@@ -420,7 +435,7 @@ public final class DependencyGraph
         }
         finally
         {
-            lock.writeLock().unlock();
+            lock.readLock().unlock();
         }
     }
     
@@ -521,7 +536,7 @@ public final class DependencyGraph
      */
     public List<ICompilationUnit> topologicalSort(Collection<ICompilationUnit> roots, final Comparator<ICompilationUnit> comparator)
     {
-        lock.readLock().lock();
+        lock.writeLock().lock();
         try
         {
         	lastCircularDependencyException = null;
@@ -577,7 +592,7 @@ public final class DependencyGraph
         }
         finally
         {
-            lock.readLock().unlock();
+            lock.writeLock().unlock();
         }
     }
     
@@ -595,7 +610,31 @@ public final class DependencyGraph
      */
     public static Set<ICompilationUnit> computeInvalidationSet(Iterable<ICompilationUnit> roots)
     {
-        
+        return computeInvalidationSet(roots, Collections.<ICompilationUnit, DependencyTypeSet>emptyMap());
+    }
+
+    /**
+     * Computes the set of {@link ICompilationUnit}'s that should be cleaned
+     * given a collection of {@link ICompilationUnit}'s that are known to need
+     * cleaning, and what is known about how the roots changed.
+     * <p>
+     * If a root is mapped to a {@link DependencyTypeSet}, only the units that
+     * depend on that root through one of those dependency types are
+     * invalidated by it. For example, if only a function body of a root
+     * changed its set is empty, and none of its dependents need cleaning.
+     * Roots that are not in the map invalidate all of their dependents.
+     * <p>
+     * This method is not thread safe and must not be called while any
+     * compilation is occurring in any project in the workspace associated with
+     * the specified compilation units.
+     * 
+     * @param roots {@link ICompilationUnit}'s that are known to need cleaning
+     * @param changedDependencyTypes Map from root to the dependency types
+     * affected by the change of that root.
+     * @return Set of {@link ICompilationUnit}'s that should be cleaned.
+     */
+    public static Set<ICompilationUnit> computeInvalidationSet(Iterable<ICompilationUnit> roots, Map<ICompilationUnit, DependencyTypeSet> changedDependencyTypes)
+    {
         HashSet<ICompilationUnit> result = new HashSet<ICompilationUnit>();
         LinkedList<Edge> workList = new LinkedList<Edge>();
         for (ICompilationUnit unit : roots)
@@ -604,7 +643,22 @@ public final class DependencyGraph
             CompilationUnitBase compilationUnit = (CompilationUnitBase)unit;
             boolean alreadyVisited = !result.add(compilationUnit);
             if (!alreadyVisited)
-                workList.addAll(compilationUnit.getProject().getDependencyGraph().getIncomingEdges(compilationUnit));
+            {
+                Set<Edge> incomingEdges = compilationUnit.getProject().getDependencyGraph().getIncomingEdges(compilationUnit);
+                DependencyTypeSet changedTypes = changedDependencyTypes.get(compilationUnit);
+                if (changedTypes == null)
+                {
+                    workList.addAll(incomingEdges);
+                }
+                else
+                {
+                    for (Edge edge : incomingEdges)
+                    {
+                        if (edge.typeInSet(changedTypes))
+                            workList.add(edge);
+                    }
+                }
+            }
         }
         DependencyTypeSet recursiveInvalidationSet = DependencyTypeSet.of(DependencyType.INHERITANCE, DependencyType.SIGNATURE, DependencyType.NAMESPACE);
         HashSet<Edge> visitedEdges = new HashSet<Edge>();
@@ -615,8 +669,11 @@ public final class DependencyGraph
             {
                 assert currentEdge.getFrom() instanceof CompilationUnitBase;
                 CompilationUnitBase dependentUnit = (CompilationUnitBase)currentEdge.getFrom();
-                result.add(dependentUnit);
-                if (currentEdge.typeInSet(recursiveInvalidationSet))
+                boolean firstVisit = result.add(dependentUnit);
+                // the units that use a constant computed from the root have
+                // its old value folded into their code. The constants of a
+                // root are covered by the root's API fingerprint.
+                if (currentEdge.typeInSet(recursiveInvalidationSet) || (firstVisit && dependentUnit.hasComputedConstants()))
                     workList.addAll(dependentUnit.getProject().getDependencyGraph().getIncomingEdges(dependentUnit));
             }
         }
@@ -632,14 +689,14 @@ public final class DependencyGraph
         if (cu instanceof InvisibleCompilationUnit)
             cu = ((InvisibleCompilationUnit)cu).getDelegate();
 
-        lock.writeLock().lock();
+        lock.readLock().lock();
         try
         {
             graph.addVertex(cu);
         }
         finally
         {
-            lock.writeLock().unlock();
+            lock.readLock().unlock();
         }
     }
 
@@ -659,14 +716,14 @@ public final class DependencyGraph
                     return input;
             }});
 
-        lock.writeLock().lock();
+        lock.readLock().lock();
         try
         {
             graph.addVertices(transformed);
         }
         finally
         {
-            lock.writeLock().unlock();
+            lock.readLock().unlock();
         }
     }
 
@@ -711,6 +768,9 @@ public final class DependencyGraph
         if (cu instanceof InvisibleCompilationUnit)
             cu = ((InvisibleCompilationUnit)cu).getDelegate();
 
+        // The read lock only keeps out removals. Edges that other threads
+        // add under the read lock are in the incoming edges of cu as soon
+        // as getEdge() can find them, see ConcurrentGraph.
         lock.readLock().lock();
         try
         {
@@ -800,7 +860,15 @@ public final class DependencyGraph
     {
         assert !to.isInvisible()
             : "invisible compilation units must not be in the dependency graph";
-        return new HashMap<String, DependencyTypeSet>(getEdge(from, to).getNamedDependencies());
+        lock.readLock().lock();
+        try
+        {
+            return getEdge(from, to).getNamedDependencies();
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
     }
     
     /**
@@ -813,7 +881,15 @@ public final class DependencyGraph
     {
         assert !to.isInvisible()
             : "invisible compilation units must not be in the dependency graph";
-        return DependencyTypeSet.copyOf(getEdge(from, to).getAllDependencies());
+        lock.readLock().lock();
+        try
+        {
+            return getEdge(from, to).getAllDependencies();
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
     }
     
     /**
@@ -28,15 +28,20 @@ import java.util.*;
 import org.apache.royale.abc.semantics.Name;
 import org.apache.royale.abc.semantics.Namespace;
 import org.apache.royale.abc.semantics.Nsset;
+import org.apache.royale.compiler.common.VersionInfo;
 import org.apache.royale.compiler.config.Configuration;
 import org.apache.royale.compiler.config.Configurator;
 import org.apache.royale.compiler.filespecs.FileSpecification;
 import org.apache.royale.compiler.fxg.flex.FlexFXG2SWFTranscoder;
 import org.apache.royale.compiler.internal.as.codegen.BindableHelper;
+import org.apache.royale.compiler.internal.caches.ABCBytesDiskCache;
+import org.apache.royale.compiler.internal.caches.SWCDiskCache;
 import org.apache.royale.compiler.internal.config.RoyaleTargetSettings;
 import org.apache.royale.compiler.internal.definitions.ClassDefinition;
 import org.apache.royale.compiler.internal.embedding.transcoders.DataTranscoder;
 import org.apache.royale.compiler.internal.units.FXGCompilationUnit;
+import org.apache.royale.compiler.internal.workspaces.Workspace;
+import org.apache.royale.compiler.internal.workspaces.WorkspaceExecutorService;
 import org.apache.royale.compiler.mxml.IMXMLTypeConstants;
 import org.apache.royale.compiler.mxml.IMXMLNamespaceMapping;
 import org.apache.royale.compiler.problems.ANELibraryNotAllowedProblem;
@@ -44,6 +49,7 @@ import org.apache.royale.compiler.projects.IRoyaleProject;
 import org.apache.royale.compiler.projects.ICompilerProject;
 import org.apache.royale.compiler.targets.ITargetSettings;
 import org.apache.royale.swc.ISWC;
+import org.apache.royale.swc.SWCManager;
 import org.apache.royale.utils.FilenameNormalization;
 
 /**
@@ -309,6 +315,9 @@ public class RoyaleProjectConfigurator extends Configurator
         setupRoyale(royaleProject);
         setupCodegenOptions(royaleProject);
         royaleProject.setRuntimeSharedLibraryPath(getRSLSettingsFromConfiguration(configuration));
+        setupSWCCache(royaleProject);
+        setupABCBytesCache(royaleProject);
+        setupWorkspaceExecutor(royaleProject);
             
         if (!setupProjectLibraries(royaleProject))
             success = false;
@@ -317,6 +326,74 @@ public class RoyaleProjectConfigurator extends Configurator
         return success;
     }
     
+    /**
+     * Setup {@code -swc-cache-dir}. This has to happen before the libraries
+     * are added to the project, because that is when the SWCs are read.
+     * @param project
+     */
+    protected void setupSWCCache(RoyaleProject project)
+    {
+        final File cacheDirectory = configuration.getSWCCacheDirectory();
+        final SWCManager swcManager = (SWCManager)project.getWorkspace().getSWCManager();
+        if (cacheDirectory == null)
+            swcManager.setDiskCache(null);
+        else if (swcManager.getDiskCache() == null || !cacheDirectory.equals(swcManager.getDiskCache().getDirectory()))
+            swcManager.setDiskCache(new SWCDiskCache(cacheDirectory));
+    }
+
+    /**
+     * Setup {@code -abc-cache-dir}. The entries are keyed by the whole
+     * configuration and the compiler version, because most options can change
+     * the generated code.
+     * @param project
+     */
+    protected void setupABCBytesCache(RoyaleProject project)
+    {
+        final File cacheDirectory = configuration.getABCCacheDirectory();
+        if (cacheDirectory == null)
+            project.setABCBytesCache(null);
+        else
+            project.setABCBytesCache(new ABCBytesDiskCache(cacheDirectory,
+                    VersionInfo.buildMessage() + '\n' + getConfigurationBuffer().toString()));
+    }
+
+    /**
+     * Setup {@code -workspace-executor} and {@code -workspace-threads}. The
+     * options select a strategy and a thread count, and an option that isn't
+     * set selects the default from
+     * {@link WorkspaceExecutorService#getDefaultStrategy()} and
+     * {@link WorkspaceExecutorService#getDefaultThreads()}. The executor of
+     * the workspace is replaced when its strategy or thread count differs
+     * from the selected ones, so a workspace reused by a build without the
+     * options goes back to the default executor. It is not replaced when it
+     * matches, so a reused workspace keeps its threads, or when neither
+     * option is set and the executor was handed to the workspace rather
+     * than created from a strategy.
+     * @param project
+     */
+    protected void setupWorkspaceExecutor(RoyaleProject project)
+    {
+        final String strategyName = configuration.getWorkspaceExecutor();
+        final int threads = configuration.getWorkspaceThreads();
+
+        final Workspace workspace = (Workspace)project.getWorkspace();
+        final WorkspaceExecutorService.Statistics current = workspace.getExecutorStatistics();
+        // An executor handed to the workspace has no strategy, and is kept
+        // unless an option is set.
+        if (strategyName == null && threads == 0 && current.getStrategy() == null)
+            return;
+        WorkspaceExecutorService.Strategy strategy = strategyName != null ?
+                WorkspaceExecutorService.Strategy.fromName(strategyName) : null;
+        if (strategy == null)
+            strategy = WorkspaceExecutorService.getDefaultStrategy();
+        if (strategy == WorkspaceExecutorService.Strategy.VIRTUAL && !WorkspaceExecutorService.isVirtualThreadSupported())
+            strategy = WorkspaceExecutorService.Strategy.FORK_JOIN;
+        final int threadsToUse = threads > 0 ? threads : WorkspaceExecutorService.getDefaultThreads();
+        if (strategy == current.getStrategy() && threadsToUse == current.getThreads())
+            return;
+        workspace.setExecutorService(WorkspaceExecutorService.create(strategy, threadsToUse));
+    }
+
     /**
      * Setup {@code -compatibility-version} level. Royale only support Flex 3+.
      * @param project
@@ -486,6 +563,8 @@ public class RoyaleProjectConfigurator extends Configurator
     private void setupCodegenOptions(RoyaleProject royaleProject)
     {
         royaleProject.setEnableInlining(configuration.isInliningEnabled());
+        royaleProject.setParseAhead(configuration.getParseAhead());
+        royaleProject.setUseParallelCodeGeneration(configuration.getParallelCodegen());
     }
     
     /**
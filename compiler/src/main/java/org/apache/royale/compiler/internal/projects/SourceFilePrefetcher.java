@@ -0,0 +1,252 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.internal.projects;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.apache.royale.compiler.common.IDefinitionPriority;
+import org.apache.royale.compiler.internal.workspaces.Workspace;
+import org.apache.royale.compiler.units.ICompilationUnit;
+import org.apache.royale.compiler.units.ICompilationUnit.UnitType;
+import org.apache.royale.compiler.units.requests.IRequest;
+import org.apache.royale.compiler.units.requests.ISyntaxTreeRequestResult;
+
+/**
+ * Parses the source files of a project ahead of the dependency walk of a
+ * target.
+ * <p>
+ * A target only requests the syntax tree of a compilation unit once it has
+ * found a dependency on it, so at the start of a build only a few threads
+ * have work. When parse-ahead is enabled, the target starts a prefetcher
+ * which requests the syntax trees of all the AS and MXML compilation units
+ * from the source list and the source path, source list first, on a
+ * background thread. The dependency walk then finds most trees built.
+ * <p>
+ * The trees of units that turn out to be unreachable are kept until their
+ * compilation units are invalidated, so the prefetcher stops requesting
+ * trees once the used heap exceeds a percentage of the maximum heap. The
+ * percentage can be changed with the system property
+ * <code>royale.parse-ahead.heap-limit</code>. The number of requests in
+ * flight is limited to half the threads of the workspace executor, and to
+ * one request with a single thread, so that the other threads are left to
+ * the dependency walk.
+ * <p>
+ * The target stops the prefetcher before it tells the workspace that the
+ * build is done. {@link #stop()} waits for the requests in flight, so no
+ * syntax tree is built for the project once the build is done.
+ */
+public final class SourceFilePrefetcher
+{
+    private static final String HEAP_LIMIT_PROPERTY = "royale.parse-ahead.heap-limit";
+
+    /**
+     * The default percentage of the maximum heap that may be in use before
+     * the prefetcher stops.
+     */
+    public static final int DEFAULT_HEAP_LIMIT = 50;
+
+    /**
+     * Start parsing the source files of a project on a background thread.
+     *
+     * @param project The project whose source files are parsed.
+     * @return The started prefetcher.
+     */
+    public static SourceFilePrefetcher start(CompilerProject project)
+    {
+        final SourceFilePrefetcher prefetcher = new SourceFilePrefetcher(project);
+        prefetcher.thread = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                prefetcher.run();
+            }
+        }, "Royale parse-ahead");
+        prefetcher.thread.setDaemon(true);
+        prefetcher.thread.start();
+        return prefetcher;
+    }
+
+    /**
+     * @return The percentage of the maximum heap that may be in use before
+     * the prefetcher stops.
+     */
+    private static int getHeapLimit()
+    {
+        final String value = System.getProperty(HEAP_LIMIT_PROPERTY);
+        if (value != null)
+        {
+            try
+            {
+                final int limit = Integer.parseInt(value.trim());
+                if (limit > 0 && limit <= 100)
+                    return limit;
+            }
+            catch (NumberFormatException e)
+            {
+                // use the default
+            }
+        }
+        return DEFAULT_HEAP_LIMIT;
+    }
+
+    /**
+     * @return true if the unit is an AS or MXML unit from the source list or
+     * the source path.
+     */
+    private static boolean isSourceFileUnit(ICompilationUnit unit)
+    {
+        if (unit.isInvisible())
+            return false;
+        final UnitType type = unit.getCompilationUnitType();
+        if (type != UnitType.AS_UNIT && type != UnitType.MXML_UNIT)
+            return false;
+        return getBasePriority(unit) != null;
+    }
+
+    private static DefinitionPriority.BasePriority getBasePriority(ICompilationUnit unit)
+    {
+        final IDefinitionPriority priority = unit.getDefinitionPriority();
+        if (!(priority instanceof DefinitionPriority))
+            return null;
+        final DefinitionPriority.BasePriority basePriority = ((DefinitionPriority)priority).getBasePriority();
+        if (basePriority != DefinitionPriority.BasePriority.SOURCE_LIST &&
+            basePriority != DefinitionPriority.BasePriority.SOURCE_PATH)
+            return null;
+        return basePriority;
+    }
+
+    private SourceFilePrefetcher(CompilerProject project)
+    {
+        this.project = project;
+        this.heapLimit = getHeapLimit();
+
+        // Collect the units on the calling thread, the source path can't
+        // change while a target is building.
+        final List<ICompilationUnit> sourceList = new ArrayList<ICompilationUnit>();
+        final List<ICompilationUnit> sourcePath = new ArrayList<ICompilationUnit>();
+        for (ICompilationUnit unit : project.getCompilationUnits())
+        {
+            if (!isSourceFileUnit(unit))
+                continue;
+            if (getBasePriority(unit) == DefinitionPriority.BasePriority.SOURCE_LIST)
+                sourceList.add(unit);
+            else
+                sourcePath.add(unit);
+        }
+        units = new ArrayList<ICompilationUnit>(sourceList.size() + sourcePath.size());
+        units.addAll(sourceList);
+        units.addAll(sourcePath);
+    }
+
+    private final CompilerProject project;
+    private final int heapLimit;
+    private final List<ICompilationUnit> units;
+    private Thread thread;
+
+    private volatile boolean stopped = false;
+    private volatile int requested = 0;
+    private volatile boolean stoppedByHeapLimit = false;
+
+    /**
+     * Stop requesting syntax trees, and wait for the requests that were
+     * already made to complete.
+     */
+    public void stop()
+    {
+        stopped = true;
+        try
+        {
+            thread.join();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return the number of syntax trees requested so far.
+     */
+    int getRequestedCount()
+    {
+        return requested;
+    }
+
+    private void run()
+    {
+        final Runtime runtime = Runtime.getRuntime();
+        final long maxUsedMemory = runtime.maxMemory() / 100 * heapLimit;
+        final int maxInFlight = getMaxInFlight();
+        final LinkedList<IRequest<ISyntaxTreeRequestResult, ICompilationUnit>> inFlight =
+                new LinkedList<IRequest<ISyntaxTreeRequestResult, ICompilationUnit>>();
+        try
+        {
+            for (ICompilationUnit unit : units)
+            {
+                if (stopped)
+                    break;
+
+                while (inFlight.size() >= maxInFlight)
+                    inFlight.removeFirst().get();
+
+                if (runtime.totalMemory() - runtime.freeMemory() > maxUsedMemory)
+                {
+                    stoppedByHeapLimit = true;
+                    break;
+                }
+
+                inFlight.addLast(unit.getSyntaxTreeRequest());
+                requested++;
+            }
+
+            // Wait for the requests in flight, so that stop() returns once
+            // they are done.
+            while (!inFlight.isEmpty())
+                inFlight.removeFirst().get();
+        }
+        catch (InterruptedException e)
+        {
+            // the build was canceled
+        }
+    }
+
+    /**
+     * @return the number of syntax tree requests that may be in flight.
+     */
+    int getMaxInFlight()
+    {
+        int threads = 0;
+        if (project.getWorkspace() instanceof Workspace)
+            threads = ((Workspace)project.getWorkspace()).getExecutorStatistics().getThreads();
+        if (threads <= 0)
+            threads = Runtime.getRuntime().availableProcessors();
+        return Math.max(1, threads / 2);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "Parse-ahead: " + requested + " of " + units.size() + " source files requested" +
+               (stoppedByHeapLimit ? ", stopped at " + heapLimit + "% of the maximum heap" : "");
+    }
+}
@@ -246,7 +246,7 @@ public class ASFileScope extends ASScope implements IFileScope
     @Override
     public IWorkspace getWorkspace()
     {
-        return fileSpecGetter.getWorkspace();
+        return fileSpecGetter != null ? fileSpecGetter.getWorkspace() : null;
     }
 
     /**
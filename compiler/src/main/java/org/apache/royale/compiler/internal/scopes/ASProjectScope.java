@@ -1210,6 +1210,39 @@ public class ASProjectScope extends ASScopeBase
         }
     }
 
+    /**
+     * Gets the qualified names of all the definitions in this project scope
+     * with the specified base name, including the shadowed ones.
+     * <p>
+     * This method will not cause any processing for any compilation unit to be
+     * started.
+     * 
+     * @param name Base name of a symbol.
+     * @return A sorted list of dotted qualified names, which contains a name
+     * once for every definition with that name.
+     */
+    public List<String> getQualifiedNamesByDefinitionName(String name)
+    {
+        List<String> result = new ArrayList<String>();
+        readLock.lock();
+        try
+        {
+            IDefinitionSet definitionSet = super.getLocalDefinitionSetByName(name);
+            if (definitionSet != null)
+            {
+                int n = definitionSet.getSize();
+                for (int i = 0; i < n; i++)
+                    result.add(definitionSet.getDefinition(i).getQualifiedName());
+            }
+        }
+        finally
+        {
+            readLock.unlock();
+        }
+        Collections.sort(result);
+        return result;
+    }
+
     /**
      * Associates an {@link IASScope} for a file or package scope with a
      * {@link ICompilationUnit}. This association is used to establish
@@ -43,6 +43,7 @@ import org.apache.royale.compiler.definitions.references.INamespaceReference;
 import org.apache.royale.compiler.internal.definitions.AmbiguousDefinition;
 import org.apache.royale.compiler.internal.definitions.ClassDefinition;
 import org.apache.royale.compiler.internal.definitions.ClassDefinitionBase;
+import org.apache.royale.compiler.internal.definitions.DefinitionBase;
 import org.apache.royale.compiler.internal.definitions.FunctionDefinition;
 import org.apache.royale.compiler.internal.definitions.InterfaceDefinition;
 import org.apache.royale.compiler.internal.definitions.NamespaceDefinition;
@@ -192,6 +193,39 @@ public abstract class ASScope extends ASScopeBase
             CheapArray.optimize(loopChecks, EMPTY_LOOPCHECK_ARRAY);
     }
 
+    /**
+     * Adds the specified definition to this scope. Its storage name is
+     * replaced by the instance of the name shared by the workspace, so the
+     * definitions of a name in different files and libraries keep one copy.
+     * 
+     * @param definition The {@link IDefinition} to be added.
+     */
+    @Override
+    public void addDefinition(IDefinition definition)
+    {
+        internStorageName(definition);
+        super.addDefinition(definition);
+    }
+
+    /**
+     * Replaces the storage name of a definition that is added to this scope
+     * with the instance of the name shared by the workspace. Scopes that
+     * override {@link #addDefinition} call this before they store the
+     * definition.
+     * 
+     * @param definition The {@link IDefinition} to be added.
+     */
+    protected final void internStorageName(IDefinition definition)
+    {
+        if (!(definition instanceof DefinitionBase))
+            return;
+
+        final ASFileScope fileScope = getFileScope();
+        final IWorkspace workspace = fileScope != null ? fileScope.getWorkspace() : null;
+        if (workspace instanceof Workspace)
+            ((DefinitionBase)definition).internStorageName(((Workspace)workspace).getNameInterner());
+    }
+
     public void addNamespaceDirective(NamespaceDefinition.INamespaceDirective directive)
     {
         if (lastNamespaceDirective != null)
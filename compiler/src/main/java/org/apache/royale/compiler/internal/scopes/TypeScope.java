@@ -157,6 +157,7 @@ public class TypeScope extends ASScope
     {
         if (definition != null)
         {
+            internStorageName(definition);
             addDefinitionToStore(definition);
 
             // Set up the containing scope to correctly point to the static or instance scopes
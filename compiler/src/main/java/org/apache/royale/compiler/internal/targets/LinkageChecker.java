@@ -54,7 +54,7 @@ public class LinkageChecker
     
     private ICompilerProject project;
     private ITargetSettings targetSettings;
-    private Set<String> externs;
+    private volatile Set<String> externs;
     
     /**
      * Test if a compilation is should be included in the target or not.
@@ -54,6 +54,8 @@ import org.apache.royale.compiler.internal.projects.CompilerProject;
 import org.apache.royale.compiler.internal.projects.RoyaleProject;
 import org.apache.royale.compiler.internal.scopes.ASProjectScope;
 import org.apache.royale.compiler.internal.units.SWCCompilationUnit;
+import org.apache.royale.compiler.internal.workspaces.CompilationProfiler;
+import org.apache.royale.compiler.internal.workspaces.Workspace;
 import org.apache.royale.compiler.problems.ICompilerProblem;
 import org.apache.royale.compiler.problems.UnexpectedExceptionProblem;
 import org.apache.royale.compiler.targets.ISWFTarget;
@@ -241,8 +243,16 @@ public abstract class SWFTarget extends Target implements ISWFTarget
 
             FramesInformation frames = getFramesInformation();
             
-            BuiltCompilationUnitSet builtCompilationUnits =
-                getBuiltCompilationUnitSet();
+            CompilationProfiler.startPhase(project.getWorkspace(), "build compilation units");
+            final BuiltCompilationUnitSet builtCompilationUnits;
+            try
+            {
+                builtCompilationUnits = getBuiltCompilationUnitSet();
+            }
+            finally
+            {
+                CompilationProfiler.completePhase(project.getWorkspace(), "build compilation units");
+            }
             Iterables.addAll(problems, builtCompilationUnits.problems);
             
             doPostBuildWork(builtCompilationUnits.compilationUnits, problems);
@@ -256,12 +266,28 @@ public abstract class SWFTarget extends Target implements ISWFTarget
             // inheritance dependencies in the {@link DependencyGraph} ).
             Set<ICompilationUnit> emittedCompilationUnits = new HashSet<ICompilationUnit>();
             
-            frames.createFrames(this, swf, builtCompilationUnits.compilationUnits, emittedCompilationUnits, problems);
+            CompilationProfiler.startPhase(project.getWorkspace(), "create frames");
+            try
+            {
+                frames.createFrames(this, swf, builtCompilationUnits.compilationUnits, emittedCompilationUnits, problems);
+            }
+            finally
+            {
+                CompilationProfiler.completePhase(project.getWorkspace(), "create frames");
+            }
             
             createLinkReport(problems);
             
             // "Link" the resulting swf, if the optimize flag is set
-            return linkSWF(swf);
+            CompilationProfiler.startPhase(project.getWorkspace(), "link");
+            try
+            {
+                return linkSWF(swf);
+            }
+            finally
+            {
+                CompilationProfiler.completePhase(project.getWorkspace(), "link");
+            }
         }
         catch (BuildCanceledException bce)
         {
@@ -691,6 +717,15 @@ public abstract class SWFTarget extends Target implements ISWFTarget
     
     protected abstract void setKeepAS3MetadataLinkerSetting(ABCLinker.ABCLinkerSettings linkSettings);
     
+    /**
+     * Hook for targets that enable linker optimizations beyond those of the
+     * target settings. Called after the other linker settings are set.
+     * @param linkSettings the settings used to link the swf
+     */
+    protected void setOptimizationLinkerSettings(ABCLinker.ABCLinkerSettings linkSettings)
+    {
+    }
+    
     /**
      * Link the swf - this handles merging the DoABC tags inside each frame, and will
      * also handle stripping debug opcodes, optimizing the abcs, and/or stripping metadata
@@ -728,6 +763,8 @@ public abstract class SWFTarget extends Target implements ISWFTarget
         linkSettings.setStripFileAttributeFromGotoDefinitionHelp(settings.isOptimized());
         linkSettings.setProblemsCollection(this.problemCollection);
         linkSettings.setRemoveDeadCode(settings.getRemoveDeadCode());
+        Workspace workspace = project.getWorkspace();
+        linkSettings.setExecutorService(workspace.getExecutorService(), workspace.getExecutorStatistics().getThreads());
         
         Collection<String> metadataNames = getASMetadataNames();
         if (settings.isDebugEnabled() && metadataNames != null)
@@ -739,6 +776,7 @@ public abstract class SWFTarget extends Target implements ISWFTarget
         }
         
         setKeepAS3MetadataLinkerSetting(linkSettings);
+        setOptimizationLinkerSettings(linkSettings);
 
         for (int i = 0; i < unLinked.getFrameCount(); ++i)
         {
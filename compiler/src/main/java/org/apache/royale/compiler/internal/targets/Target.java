@@ -33,6 +33,7 @@ import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
 
+import org.apache.royale.compiler.config.CompilerDiagnosticsConstants;
 import org.apache.royale.compiler.definitions.IDefinition;
 import org.apache.royale.compiler.definitions.references.IResolvedQualifiersReference;
 import org.apache.royale.compiler.definitions.references.ReferenceFactory;
@@ -41,6 +42,7 @@ import org.apache.royale.compiler.internal.graph.LinkReportWriter;
 import org.apache.royale.compiler.internal.projects.CompilerProject;
 import org.apache.royale.compiler.internal.projects.DependencyGraph;
 import org.apache.royale.compiler.internal.projects.LibraryPathManager;
+import org.apache.royale.compiler.internal.projects.SourceFilePrefetcher;
 import org.apache.royale.compiler.internal.resourcebundles.ResourceBundleUtils;
 import org.apache.royale.compiler.internal.units.SWCCompilationUnit;
 import org.apache.royale.compiler.internal.workspaces.Workspace;
@@ -120,6 +122,12 @@ public abstract class Target implements ITarget
     private LinkageChecker linkageChecker;
     private Set<String> metadataNames;
     private BuiltCompilationUnitSet builtCompilationUnits;
+
+    /**
+     * Parses the source files ahead of the dependency walk while a build is
+     * running, or null.
+     */
+    private SourceFilePrefetcher prefetcher;
     
     /**
      * Lazily initialized {@link Iterable} of fatal {@link ICompilerProblem}s
@@ -532,6 +540,8 @@ public abstract class Target implements ITarget
             percentCompleted = 0;
         }
         project.getWorkspace().startBuilding();
+        if (project.getParseAhead())
+            prefetcher = SourceFilePrefetcher.start(project);
     }
     
     /**
@@ -625,6 +635,15 @@ public abstract class Target implements ITarget
      */
     protected final void buildFinished() 
     {
+        if (prefetcher != null)
+        {
+            // stop() waits for the syntax trees in flight, so none is built
+            // once the workspace is done building.
+            prefetcher.stop();
+            if ((CompilerDiagnosticsConstants.diagnostics & CompilerDiagnosticsConstants.WORKSPACE) == CompilerDiagnosticsConstants.WORKSPACE)
+                System.out.println(prefetcher.toString());
+            prefetcher = null;
+        }
         if(progressMonitor != null)
         {
             percentCompleted = 100;
@@ -19,6 +19,7 @@
 
 package org.apache.royale.compiler.internal.tree.as;
 
+import org.apache.royale.abc.ABCConstants;
 import org.apache.royale.compiler.internal.definitions.ConstantDefinition;
 import org.apache.royale.compiler.internal.definitions.DefinitionBase;
 import org.apache.royale.compiler.internal.definitions.VariableDefinition;
@@ -46,6 +47,11 @@ public class ConfigConstNode extends VariableNode
     {
         super(nameNode);
     }
+
+    /**
+     * Value of this const that is already known, or null.
+     */
+    private Object foldedValue;
     
     //
     // BaseVariableNode overrides
@@ -60,6 +66,8 @@ public class ConfigConstNode extends VariableNode
         fillInNamespaceAndModifiers(definition);
         setDefinition(definition);
         definition.setInitializer(this.getAssignedValueNode());
+        if (foldedValue != null)
+            definition.resolvedValue = foldedValue;
 
         return (VariableDefinition)definition;
     }
@@ -85,6 +93,45 @@ public class ConfigConstNode extends VariableNode
         definition = null;
         setParent(null);
     }
+
+    /**
+     * Remembers the value the definition of this const resolved to, so that
+     * a definition built after {@link #reset()} doesn't resolve the
+     * initializer again. Only values that don't depend on the project are
+     * kept: booleans, strings, numbers and null.
+     */
+    public void foldResolvedValue()
+    {
+        if (definition instanceof ConfigDefinition)
+        {
+            Object value = ((ConfigDefinition)definition).resolvedValue;
+            if (value instanceof Boolean || value instanceof String ||
+                value instanceof Number || value == ABCConstants.NULL_VALUE)
+            {
+                foldedValue = value;
+            }
+        }
+    }
+
+    /**
+     * @return The value of this const if it is already known, or null.
+     */
+    public Object getFoldedValue()
+    {
+        return foldedValue;
+    }
+
+    /**
+     * Sets the value of this const, so that its definition doesn't resolve
+     * the initializer.
+     * 
+     * @param value A boolean, string, number or null value, as returned by
+     * {@link #getFoldedValue()}.
+     */
+    public void setFoldedValue(Object value)
+    {
+        foldedValue = value;
+    }
     
     //
     // Inner types
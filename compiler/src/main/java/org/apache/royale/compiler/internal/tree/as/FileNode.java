@@ -174,6 +174,12 @@ public class FileNode extends ScopedBlockNode implements Serializable, IFileNode
      * are deferred.
      */
     private final Set<FunctionNode> deferredFunctionNodes;
+
+    /**
+     * True if the deferred function bodies in this file are never needed, so
+     * that requests to parse them are ignored.
+     */
+    private volatile boolean skipDeferredFunctionBodies = false;
     
     //
     // NodeBase overrides
@@ -410,6 +416,28 @@ public class FileNode extends ScopedBlockNode implements Serializable, IFileNode
         }
     }
 
+    /**
+     * Determines whether requests to parse the deferred function bodies in
+     * this file are ignored. The bodies of the functions in an externally
+     * linked compilation unit are not needed by some targets, which then
+     * only generate code for the signatures.
+     * 
+     * @param value true to leave the deferred function bodies unparsed.
+     */
+    public void setSkipDeferredFunctionBodies(boolean value)
+    {
+        skipDeferredFunctionBodies = value;
+    }
+
+    /**
+     * @return true if requests to parse the deferred function bodies in this
+     * file are ignored.
+     */
+    public boolean getSkipDeferredFunctionBodies()
+    {
+        return skipDeferredFunctionBodies;
+    }
+
     /**
      * Run through all the deferredFunctionNodes, and if their containing
      * scope isn't file, package or class, it needs to be parsed
@@ -802,7 +802,7 @@ public class FunctionNode extends BaseTypedDefinitionNode implements IFunctionNo
      */
     public final void parseFunctionBody(final Collection<ICompilerProblem> problems)
     {
-        if (!isBodyDeferred)
+        if (!isBodyDeferred || isBodySkipped())
             return;
 
         deferredBodyParsingLock.lock();
@@ -889,6 +889,7 @@ public class FunctionNode extends BaseTypedDefinitionNode implements IFunctionNo
                     PostProcessStep.RECONNECT_DEFINITIONS);
                 
                 problems.addAll(contents.runPostProcess(postProcess, contents.getASScope()));
+                contents.compactSourceLocations();
                 
                 // add implicit "arguments" argument to the local scope
                 tryAddDefaultArgument();
@@ -991,7 +992,7 @@ public class FunctionNode extends BaseTypedDefinitionNode implements IFunctionNo
      */
     public final void discardFunctionBody()
     {
-        if (!isBodyDeferred || containsLocalFunctions())
+        if (!isBodyDeferred || containsLocalFunctions() || isBodySkipped())
             return;
 
         deferredBodyParsingLock.lock();
@@ -1034,6 +1035,16 @@ public class FunctionNode extends BaseTypedDefinitionNode implements IFunctionNo
         }
     }
 
+    /**
+     * @return true if the containing {@code FileNode} ignores requests to
+     * parse its deferred function bodies.
+     */
+    private boolean isBodySkipped()
+    {
+        final FileNode fileNode = (FileNode)getAncestorOfType(FileNode.class);
+        return fileNode != null && fileNode.getSkipDeferredFunctionBodies();
+    }
+
     public final boolean hasBeenParsed()
     {
         if (!isBodyDeferred)
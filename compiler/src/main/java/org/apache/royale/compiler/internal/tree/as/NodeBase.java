@@ -19,14 +19,17 @@
 
 package org.apache.royale.compiler.internal.tree.as;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.EnumSet;
+import java.util.List;
 
 import antlr.Token;
 
 import org.apache.royale.compiler.common.ASModifier;
 import org.apache.royale.compiler.common.ISourceLocation;
+import org.apache.royale.compiler.common.LineTable;
 import org.apache.royale.compiler.common.SourceLocation;
 import org.apache.royale.compiler.config.CompilerDiagnosticsConstants;
 import org.apache.royale.compiler.definitions.IDefinition;
@@ -507,6 +510,42 @@ public abstract class NodeBase extends SourceLocation implements IASNode
         setEndColumn(endColumn);
     }
 
+    /**
+     * Makes the nodes of this subtree that are in the same file as this node
+     * share a table of the lines of the file, instead of each storing its
+     * own line and column numbers. Nodes whose line and column numbers don't
+     * match the table, such as the ones from included files, keep their own.
+     * The getters of every node return the same values as before. Used after
+     * parsing.
+     */
+    public final void compactSourceLocations()
+    {
+        final String sourcePath = getSourcePath();
+        if (sourcePath == null)
+            return;
+
+        final LineTable.Builder builder = new LineTable.Builder(sourcePath);
+        final List<NodeBase> nodes = new ArrayList<NodeBase>();
+        final ArrayDeque<NodeBase> pending = new ArrayDeque<NodeBase>();
+        pending.push(this);
+        while (!pending.isEmpty())
+        {
+            final NodeBase node = pending.pop();
+            node.addLineStarts(builder);
+            nodes.add(node);
+            for (int i = node.getChildCount() - 1; i >= 0; i--)
+            {
+                final IASNode child = node.getChild(i);
+                if (child instanceof NodeBase)
+                    pending.push((NodeBase)child);
+            }
+        }
+
+        final LineTable table = builder.build();
+        for (final NodeBase node : nodes)
+            node.compact(table);
+    }
+
     public Collection<ICompilerProblem> runPostProcess(EnumSet<PostProcessStep> set, ASScope containingScope)
     {
         ArrayList<ICompilerProblem> problems = new ArrayList<ICompilerProblem>(10);
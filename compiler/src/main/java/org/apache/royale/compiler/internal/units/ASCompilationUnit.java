@@ -19,6 +19,8 @@
 
 package org.apache.royale.compiler.internal.units;
 
+import java.lang.ref.Reference;
+import java.lang.ref.SoftReference;
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -30,11 +32,14 @@ import java.util.Set;
 
 import org.apache.royale.compiler.clients.ASC;
 import org.apache.royale.compiler.common.DependencyType;
+import org.apache.royale.compiler.common.DependencyTypeSet;
 import org.apache.royale.compiler.config.CompilerDiagnosticsConstants;
 import org.apache.royale.compiler.definitions.IDefinition;
 import org.apache.royale.compiler.filespecs.FileSpecification;
 import org.apache.royale.compiler.filespecs.IFileSpecification;
 import org.apache.royale.compiler.internal.as.codegen.CodeGeneratorManager;
+import org.apache.royale.compiler.internal.caches.ABCBytesDiskCache;
+import org.apache.royale.compiler.internal.definitions.APIFingerprint;
 import org.apache.royale.compiler.internal.parsing.as.ASParser;
 import org.apache.royale.compiler.internal.parsing.as.DeferFunctionBody;
 import org.apache.royale.compiler.internal.projects.CompilerProject;
@@ -46,6 +51,7 @@ import org.apache.royale.compiler.internal.tree.as.FileNode;
 import org.apache.royale.compiler.internal.tree.as.FunctionNode;
 import org.apache.royale.compiler.internal.tree.as.XMLLiteralNode;
 import org.apache.royale.compiler.internal.units.requests.ASFileScopeRequestResult;
+import org.apache.royale.compiler.internal.units.requests.FileScopeRequestResultBase;
 import org.apache.royale.compiler.internal.units.requests.SWFTagsRequestResult;
 import org.apache.royale.compiler.problems.ICompilerProblem;
 import org.apache.royale.compiler.projects.IASProject;
@@ -70,59 +76,63 @@ public class ASCompilationUnit extends CompilationUnitBase
 {
     /**
      * Implementation of {@link ISyntaxTreeRequestResult} that has the added feature
-     * of being able to transform the reference to the syntax tree to a weak reference.
+     * of being able to transform the reference to the syntax tree to a weak or soft
+     * reference.
      */
     private static class ASSyntaxTreeRequestResult implements ISyntaxTreeRequestResult
     {
-        private static class HardToWeakRef<T> extends WeakReference<T>
+        private static class ReleasableRef<T>
         {
             /**
-             * Constructs a reference to the specified object.
+             * Constructs a strong reference to the specified object.
              * @param referent Object to refer to.
              */
-            public HardToWeakRef(T referent)
+            public ReleasableRef(T referent)
             {
-                super(referent);
                 this.referent = referent;
             }
             
-            private T referent;
+            private volatile T referent;
+            private volatile Reference<T> releasedReferent;
             
-            public void makeWeak()
+            /**
+             * Replaces the strong reference with a weak or soft one.
+             * 
+             * @param soft true for a soft reference, false for a weak one.
+             * @return false if the reference was already released.
+             */
+            public synchronized boolean release(boolean soft)
             {
-                // No lock here because we are writing a single
-                // reference variable that is not a long or double.
-                referent = null;
+                final T referent = this.referent;
+                if (referent == null)
+                    return false;
+                
+                // Publish the released reference before dropping the strong
+                // one, so that get() sees at least one of them.
+                releasedReferent = soft ? new SoftReference<T>(referent) : new WeakReference<T>(referent);
+                this.referent = null;
+                return true;
             }
 
-            @Override
             public T get()
             {
-                // Overriding this method just to make
-                // sure the java compiler or vm does not
-                // optimize away the member variable that holds
-                // strong reference.
-                
-                // No lock here because we are reading a single reference
-                // variable that is not a long or double.
-                //
-                // We read the member variable into a local so we can return it
+                // We read the member variables into locals so we can return them
                 // without worrying about the another thread bashing
-                // the member variable.
-                T referent = this.referent;
+                // the member variables.
+                final T referent = this.referent;
                 if (referent != null)
                     return referent;
-                return super.get();
+                final Reference<T> releasedReferent = this.releasedReferent;
+                return releasedReferent != null ? releasedReferent.get() : null;
             }
-            
-            
         }
 
         ASSyntaxTreeRequestResult(ASCompilationUnit owner, IRequest<ISyntaxTreeRequestResult, ICompilationUnit> syntaxTreeRequest, IASNode ast, ImmutableSet<String> includedFiles, long lastModified, Collection<ICompilerProblem> problems)
         {
             ownerRef = new WeakReference<ASCompilationUnit>(owner);
             this.syntaxTreeRequest = syntaxTreeRequest;
-            astRef = new HardToWeakRef<IASNode>(ast);
+            astRef = new ReleasableRef<IASNode>(ast);
+            sourceLength = getTreeSourceLength(ast);
             this.includedFiles = includedFiles;
             this.problems = problems.toArray(new ICompilerProblem[problems.size()]);
             this.lastModified = lastModified;
@@ -130,7 +140,8 @@ public class ASCompilationUnit extends CompilationUnitBase
 
         private final WeakReference<ASCompilationUnit> ownerRef;
         private final IRequest<ISyntaxTreeRequestResult, ICompilationUnit> syntaxTreeRequest;
-        private final HardToWeakRef<IASNode> astRef;
+        private final ReleasableRef<IASNode> astRef;
+        private final int sourceLength;
         private final ImmutableSet<String> includedFiles;
         private final long lastModified;
         private final ICompilerProblem[] problems;
@@ -174,11 +185,21 @@ public class ASCompilationUnit extends CompilationUnitBase
         
         /**
          * Called by the {@link ASCompilationUnit} to make the reference to the syntax
-         * tree held by this class a weak reference.
+         * tree held by this class a weak or soft reference.
+         * 
+         * @return false if the reference was already released.
          */
-        public void dropASTRef()
+        public boolean dropASTRef(boolean soft)
         {
-            astRef.makeWeak();
+            return astRef.release(soft);
+        }
+
+        /**
+         * @return the number of characters the syntax tree was parsed from.
+         */
+        int getSourceLength()
+        {
+            return sourceLength;
         }
         
         @Override
@@ -269,6 +290,11 @@ public class ASCompilationUnit extends CompilationUnitBase
      * included by {@code -in} option.
      */
     private final List<String> includedFiles = new ArrayList<String>();
+
+    // Whether the last code generation found that the function bodies of this
+    // unit aren't needed. A syntax tree parsed again after it was released
+    // skips them too, so later consumers see the same tree.
+    private volatile boolean skipFunctionBodies;
     
     @Override
     public UnitType getCompilationUnitType()
@@ -316,6 +342,71 @@ public class ASCompilationUnit extends CompilationUnitBase
                 this);
     }
 
+    /**
+     * Determines how a new version of this compilation unit's file changes
+     * the definitions that other compilation units can depend on, by
+     * comparing the {@link APIFingerprint} of the current file scope with the
+     * fingerprint of the new file. The new file is parsed without function
+     * bodies, and the result is discarded.
+     * 
+     * @param changedFile The new version of the root file of this
+     * compilation unit.
+     * @return The dependency types that are affected by the change, or null
+     * if that can't be determined and all dependents should be invalidated.
+     * @throws InterruptedException
+     */
+    public DependencyTypeSet getChangedDependencyTypes(IFileSpecification changedFile) throws InterruptedException
+    {
+        if (isInvisible() || !changedFile.getPath().equals(getAbsoluteFilename()))
+            return null;
+
+        final IRequest<IFileScopeRequestResult, ICompilationUnit> fileScopeRequest = this.fileScopeRequest.get();
+        if ((fileScopeRequest == null) || (!fileScopeRequest.isDone()))
+            return null;
+        final IFileScopeRequestResult fileScopeResult = fileScopeRequest.get();
+        if (!(fileScopeResult instanceof FileScopeRequestResultBase))
+            return null;
+        final APIFingerprint previous = APIFingerprint.create(((FileScopeRequestResultBase)fileScopeResult).getFileScopes(), getProject());
+        if (previous == null)
+            return null;
+
+        final IASProject flashProject;
+        if (getProject() instanceof IASProject)
+            flashProject = (IASProject)getProject();
+        else
+            flashProject = null;
+
+        final DeferFunctionBody deferFunctionBody;
+        if (changedFile instanceof FileSpecification)
+            deferFunctionBody = DeferFunctionBody.ENABLED;
+        else
+            deferFunctionBody = DeferFunctionBody.DISABLED;
+
+        // Don't pass this compilation unit to the parser, so that the include
+        // handler doesn't record anything for it.
+        final FileNode ast = ASParser.parseFile(
+                changedFile,
+                getFileSpecificationGetter(),
+                EnumSet.of(PostProcessStep.CALCULATE_OFFSETS),
+                this.getProject().getProjectConfigVariables(),
+                true,
+                this.getProject().isAssetEmbeddingSupported(),
+                this.getProject().getStrictIdentifierNames(),
+                includedFiles,
+                deferFunctionBody,
+                flashProject,
+                null);
+        ast.runPostProcess(EnumSet.of(PostProcessStep.POPULATE_SCOPE));
+        // Resolving the values of constants records dependencies for the
+        // unit of the scope. They are removed when this unit is cleaned.
+        ast.getFileScope().setCompilationUnit(this);
+        final APIFingerprint current = APIFingerprint.create(new ASFileScope[] { ast.getFileScope() }, getProject());
+        if (current == null)
+            return null;
+
+        return current.getChangedDependencyTypes(previous);
+    }
+
     @Override
     protected ISyntaxTreeRequestResult handleSyntaxTreeRequest() throws InterruptedException
     {
@@ -326,8 +417,11 @@ public class ASCompilationUnit extends CompilationUnitBase
 
             final FileNode ast = createFileNode(getRootFileSpecification());
             IRequest<IFileScopeRequestResult, ICompilationUnit> fileScopeRequest = this.fileScopeRequest.get();
-            if ((fileScopeRequest != null) && (fileScopeRequest.isDone()))
+            final boolean rebuilt = (fileScopeRequest != null) && (fileScopeRequest.isDone());
+            if (rebuilt)
             {
+                // The previous tree was released and collected, but the file
+                // scope is still valid.
                 ast.reconnectDefinitions((ASFileScope)fileScopeRequest.get().getScopes()[0]);
             }
             else
@@ -335,6 +429,7 @@ public class ASCompilationUnit extends CompilationUnitBase
                 getProject().clearScopeCacheForCompilationUnit(this);
                 ast.runPostProcess(EnumSet.of(PostProcessStep.POPULATE_SCOPE));
             }
+            getProject().getWorkspace().getSyntaxTreeRetention().treeParsed(rebuilt, getTreeSourceLength(ast));
             final ImmutableSet<String> includedFiles = ast.getIncludeHandler().getIncludedFiles();
             addScopeToProjectScope(new ASFileScope[] { ast.getFileScope() });
         	if ((CompilerDiagnosticsConstants.diagnostics & CompilerDiagnosticsConstants.FILE_NODE) == CompilerDiagnosticsConstants.FILE_NODE)
@@ -342,6 +437,8 @@ public class ASCompilationUnit extends CompilationUnitBase
             ast.parseRequiredFunctionBodies();
         	if ((CompilerDiagnosticsConstants.diagnostics & CompilerDiagnosticsConstants.FILE_NODE) == CompilerDiagnosticsConstants.FILE_NODE)
         		System.out.println("ASCompilationUnit done with lock in parseRequiredFunctionBodies");
+            if (skipFunctionBodies)
+                ast.setSkipDeferredFunctionBodies(true);
             final Collection<ICompilerProblem> problemCollection = ast.getProblems();
             ASSyntaxTreeRequestResult result = new ASSyntaxTreeRequestResult(this, syntaxTreeRequest, ast, includedFiles, ast.getIncludeTreeLastModified(), problemCollection);
             getProject().getWorkspace().addIncludedFilesToCompilationUnit(this, result.getIncludedFiles());
@@ -390,15 +487,34 @@ public class ASCompilationUnit extends CompilationUnitBase
         final ISyntaxTreeRequestResult fsr = getSyntaxTreeRequest().get();
         final IASNode rootNode = fsr.getAST();
         final CompilerProject project = getProject();
+        final boolean skipFunctionBodies = !project.requiresFunctionBodies(this);
+        this.skipFunctionBodies = skipFunctionBodies;
+        if (rootNode instanceof FileNode)
+            ((FileNode)rootNode).setSkipDeferredFunctionBodies(skipFunctionBodies);
+
+        // Units that include other files are generated every time, because
+        // the key of a cache entry only covers the root file.
+        final ABCBytesDiskCache abcBytesCache = project.getABCBytesCache();
+        String cacheKey = null;
+        if (abcBytesCache != null && !isInvisible() && fsr.getIncludedFiles().isEmpty())
+            cacheKey = abcBytesCache.getKey(getRootFileSpecification(), skipFunctionBodies);
 
         startProfile(Operation.GET_ABC_BYTES);
-        IABCBytesRequestResult result = CodeGeneratorManager.getCodeGenerator().generate(project.getWorkspace().getExecutorService(),
-                project.getUseParallelCodeGeneration(),
-                this.getFilenameNoPath(),
-                rootNode,
-                this.getProject(),
-                this.isInvisible(),
-                this.getEncodedDebugFiles());
+        IABCBytesRequestResult result = null;
+        if (cacheKey != null)
+            result = abcBytesCache.load(cacheKey, project, this);
+        if (result == null)
+        {
+            result = CodeGeneratorManager.getCodeGenerator().generate(project.getWorkspace().getExecutorService(),
+                    project.getUseParallelCodeGeneration(),
+                    this.getFilenameNoPath(),
+                    rootNode,
+                    this.getProject(),
+                    this.isInvisible(),
+                    this.getEncodedDebugFiles());
+            if (cacheKey != null)
+                abcBytesCache.store(cacheKey, project, this, result);
+        }
         stopProfile(Operation.GET_ABC_BYTES);
 
         return result;
@@ -537,6 +653,14 @@ public class ASCompilationUnit extends CompilationUnitBase
         }
     }
 
+    /**
+     * @return the number of characters a syntax tree was parsed from.
+     */
+    private static int getTreeSourceLength(IASNode ast)
+    {
+        return ast != null ? Math.max(0, ast.getAbsoluteEnd()) : 0;
+    }
+
     @Override
     protected void removeAST()
     {
@@ -545,13 +669,18 @@ public class ASCompilationUnit extends CompilationUnitBase
         // We are attempting to remove all hard references to the AST after codege and
         // semantic analysis are complete.
         IRequest<ISyntaxTreeRequestResult, ICompilationUnit> syntaxTreeRequest = this.syntaxTreeRequest.get();
-        boolean canRemoveAST = operationsCompleted(EnumSet.of(ICompilationUnit.Operation.GET_SEMANTIC_PROBLEMS, ICompilationUnit.Operation.GET_ABC_BYTES));
+        final SyntaxTreeRetention retention = getProject().getWorkspace().getSyntaxTreeRetention();
+        final SyntaxTreeRetention.Policy policy = retention.getPolicy();
+        boolean canRemoveAST = policy != SyntaxTreeRetention.Policy.KEEP &&
+                operationsCompleted(EnumSet.of(ICompilationUnit.Operation.GET_SEMANTIC_PROBLEMS, ICompilationUnit.Operation.GET_ABC_BYTES));
         if (canRemoveAST)
         {
             try
             {
                 assert syntaxTreeRequest != null;
-                ((ASSyntaxTreeRequestResult)syntaxTreeRequest.get()).dropASTRef();
+                final ASSyntaxTreeRequestResult result = (ASSyntaxTreeRequestResult)syntaxTreeRequest.get();
+                if (result.dropASTRef(policy == SyntaxTreeRetention.Policy.SOFT))
+                    retention.treeReleased(result.getSourceLength());
             }
             catch (InterruptedException e)
             {
@@ -560,6 +689,28 @@ public class ASCompilationUnit extends CompilationUnitBase
         }
     }
 
+    @Override
+    protected void handleSyntaxTreeDiscarded(IRequest<ISyntaxTreeRequestResult, ICompilationUnit> syntaxTreeRequest)
+    {
+        if ((syntaxTreeRequest == null) || (!syntaxTreeRequest.isDone()))
+            return;
+        try
+        {
+            final ISyntaxTreeRequestResult result = syntaxTreeRequest.get();
+            // a tree that was released is no longer counted as retained.
+            if (result instanceof ASSyntaxTreeRequestResult &&
+                ((ASSyntaxTreeRequestResult)result).dropASTRef(false))
+            {
+                getProject().getWorkspace().getSyntaxTreeRetention().treeDiscarded(
+                        ((ASSyntaxTreeRequestResult)result).getSourceLength());
+            }
+        }
+        catch (InterruptedException e)
+        {
+            assert false : "The request is done";
+        }
+    }
+
     /**
      * TODO: Replace this with proper API call on CompilationUnit to get the
      * root class name.
@@ -51,6 +51,7 @@ import org.apache.royale.compiler.filespecs.IFileSpecification;
 import org.apache.royale.compiler.internal.css.CSSFunctionCallPropertyValue;
 import org.apache.royale.compiler.internal.css.codegen.CSSCompilationSession;
 import org.apache.royale.compiler.internal.css.semantics.CSSSemanticAnalyzer;
+import org.apache.royale.compiler.internal.definitions.APIFingerprint;
 import org.apache.royale.compiler.embedding.EmbedAttribute;
 import org.apache.royale.compiler.internal.embedding.EmbedData;
 import org.apache.royale.compiler.internal.graph.LinkReportWriter;
@@ -636,6 +637,37 @@ public abstract class CompilationUnitBase implements ICompilationUnit
         return outgoingDependenciesRequestMaker.getRequest(this, problems, project.getWorkspace(), false);
     }
 
+    /**
+     * Determines whether the current file scope of this compilation unit
+     * defines an externally visible constant whose value is computed from
+     * other definitions. See {@link APIFingerprint#hasComputedConstants}.
+     * <p>
+     * Units that use such a constant have its value folded into their code,
+     * so they have to be cleaned with this unit even if they only depend on it
+     * through an expression.
+     * 
+     * @return true if the unit has a file scope and it defines a computed
+     * constant.
+     */
+    public boolean hasComputedConstants()
+    {
+        final IRequest<IFileScopeRequestResult, ICompilationUnit> fileScopeRequest = this.fileScopeRequest.get();
+        if ((fileScopeRequest == null) || (!fileScopeRequest.isDone()))
+            return false;
+        try
+        {
+            final IFileScopeRequestResult fileScopeResult = fileScopeRequest.get();
+            if (!(fileScopeResult instanceof FileScopeRequestResultBase))
+                return false;
+            return APIFingerprint.hasComputedConstants(((FileScopeRequestResultBase)fileScopeResult).getFileScopes());
+        }
+        catch (InterruptedException e)
+        {
+            // the request is done, so this shouldn't happen.
+            return true;
+        }
+    }
+
     private Collection<IDefinition> getAllDefinitions() throws InterruptedException
     {
         Collection<IDefinition> definitions;
@@ -725,7 +757,7 @@ public abstract class CompilationUnitBase implements ICompilationUnit
 
             // If we are are invalidating the file scope,
             // we should also invalidate the ast.
-            syntaxTreeRequest.set(null);
+            handleSyntaxTreeDiscarded(syntaxTreeRequest.getAndSet(null));
 
             project.removeAnyUnfoundDependencies(this);
         }
@@ -770,6 +802,18 @@ public abstract class CompilationUnitBase implements ICompilationUnit
         }        
     }
 
+    /**
+     * Called by {@link #clean} when it drops the syntax tree request of this
+     * compilation unit. Sub-classes that count the syntax trees they hold can
+     * override this.
+     * 
+     * @param syntaxTreeRequest The dropped request, or null if there was none.
+     */
+    protected void handleSyntaxTreeDiscarded(IRequest<ISyntaxTreeRequestResult, ICompilationUnit> syntaxTreeRequest)
+    {
+
+    }
+
     /**
      * This method is overriden by base classes to
      * clean additional processing results not cleaned by
@@ -0,0 +1,303 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+
+package org.apache.royale.compiler.internal.units;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides how long the compilation units of a workspace keep their syntax
+ * trees once code generation and semantic analysis are done, and counts how
+ * often released trees have to be parsed again.
+ * <p>
+ * A released tree is rebuilt transparently by the syntax tree request of its
+ * compilation unit, with function bodies deferred and the definitions of the
+ * existing file scope reconnected to the new tree. The file scope itself is
+ * never released.
+ * <p>
+ * The default policy can be changed with the system property
+ * <code>royale.workspace.syntax-tree-retention</code>.
+ */
+public final class SyntaxTreeRetention
+{
+    private static final String POLICY_PROPERTY = "royale.workspace.syntax-tree-retention";
+
+    /**
+     * How long a syntax tree is kept after it is no longer needed.
+     */
+    public static enum Policy
+    {
+        /**
+         * Keep the tree as long as the compilation unit is valid.
+         */
+        KEEP("keep"),
+
+        /**
+         * Keep the tree until the garbage collector runs low on memory.
+         * This suits long-running workspaces, where a tree is often needed
+         * again.
+         */
+        SOFT("soft"),
+
+        /**
+         * Let the garbage collector reclaim the tree as soon as nothing else
+         * uses it.
+         */
+        WEAK("weak");
+
+        private Policy(String name)
+        {
+            this.name = name;
+        }
+
+        private final String name;
+
+        /**
+         * @return the name of the policy in the system property.
+         */
+        public String getName()
+        {
+            return name;
+        }
+
+        /**
+         * @param name name of a policy.
+         * @return the policy with that name, or null if there is none.
+         */
+        public static Policy fromName(String name)
+        {
+            for (Policy policy : values())
+            {
+                if (policy.name.equalsIgnoreCase(name))
+                    return policy;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * A snapshot of the syntax trees built, released and discarded since the
+     * statistics were last reset, for example at the start of a build, and of
+     * the trees that are held strongly, which isn't reset.
+     */
+    public static final class Statistics
+    {
+        private Statistics(Policy policy, long parsedTrees, long releasedTrees, long rebuiltTrees,
+                           long discardedTrees, long retainedTrees, long retainedCharacters)
+        {
+            this.policy = policy;
+            this.parsedTrees = parsedTrees;
+            this.releasedTrees = releasedTrees;
+            this.rebuiltTrees = rebuiltTrees;
+            this.discardedTrees = discardedTrees;
+            this.retainedTrees = retainedTrees;
+            this.retainedCharacters = retainedCharacters;
+        }
+
+        private final Policy policy;
+        private final long parsedTrees;
+        private final long releasedTrees;
+        private final long rebuiltTrees;
+        private final long discardedTrees;
+        private final long retainedTrees;
+        private final long retainedCharacters;
+
+        public Policy getPolicy()
+        {
+            return policy;
+        }
+
+        /**
+         * @return the number of syntax trees built, including rebuilt trees.
+         */
+        public long getParsedTrees()
+        {
+            return parsedTrees;
+        }
+
+        /**
+         * @return the number of syntax trees that the compilation units
+         * stopped holding strongly.
+         */
+        public long getReleasedTrees()
+        {
+            return releasedTrees;
+        }
+
+        /**
+         * @return the number of released syntax trees that were collected and
+         * then needed again.
+         */
+        public long getRebuiltTrees()
+        {
+            return rebuiltTrees;
+        }
+
+        /**
+         * @return the number of syntax trees that were held strongly when
+         * their compilation unit was invalidated.
+         */
+        public long getDiscardedTrees()
+        {
+            return discardedTrees;
+        }
+
+        /**
+         * @return the number of syntax trees that are held strongly, including
+         * the trees built before the statistics were reset.
+         */
+        public long getRetainedTrees()
+        {
+            return retainedTrees;
+        }
+
+        /**
+         * @return the number of source characters of the syntax trees that
+         * are held strongly.
+         */
+        public long getRetainedCharacters()
+        {
+            return retainedCharacters;
+        }
+
+        /**
+         * @return the fraction of the released trees that had to be rebuilt,
+         * or 0 if no tree was released.
+         */
+        public double getRebuildRate()
+        {
+            if (releasedTrees <= 0)
+                return 0;
+            return (double)rebuiltTrees / releasedTrees;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format(
+                    "%s syntax tree retention: %d trees parsed, %d released, %d rebuilt (%.1f%% of released), " +
+                    "%d discarded, %d retained (%d source characters)",
+                    policy.getName(), parsedTrees, releasedTrees, rebuiltTrees,
+                    getRebuildRate() * 100, discardedTrees, retainedTrees, retainedCharacters);
+        }
+    }
+
+    /**
+     * Creates a retention with the policy selected by the system property, or
+     * {@link Policy#WEAK}.
+     */
+    public SyntaxTreeRetention()
+    {
+        final Policy policy = Policy.fromName(System.getProperty(POLICY_PROPERTY, Policy.WEAK.getName()).trim());
+        this.policy = policy != null ? policy : Policy.WEAK;
+    }
+
+    private volatile Policy policy;
+
+    // counted since the statistics were last reset
+    private final AtomicLong parsedTrees = new AtomicLong();
+    private final AtomicLong releasedTrees = new AtomicLong();
+    private final AtomicLong rebuiltTrees = new AtomicLong();
+    private final AtomicLong discardedTrees = new AtomicLong();
+
+    // counted for the lifetime of the workspace
+    private final AtomicLong retainedTrees = new AtomicLong();
+    private final AtomicLong retainedCharacters = new AtomicLong();
+
+    public Policy getPolicy()
+    {
+        return policy;
+    }
+
+    /**
+     * Changes the policy. Trees that were already released stay released.
+     * 
+     * @param policy the new policy.
+     */
+    public void setPolicy(Policy policy)
+    {
+        assert policy != null;
+        this.policy = policy;
+    }
+
+    /**
+     * Called when a compilation unit builds a syntax tree.
+     * 
+     * @param rebuilt true if the tree replaces one that was released and
+     * collected.
+     * @param sourceLength the number of characters the tree was parsed from.
+     */
+    void treeParsed(boolean rebuilt, int sourceLength)
+    {
+        parsedTrees.incrementAndGet();
+        if (rebuilt)
+            rebuiltTrees.incrementAndGet();
+        retainedTrees.incrementAndGet();
+        retainedCharacters.addAndGet(sourceLength);
+    }
+
+    /**
+     * Called when a compilation unit stops holding its syntax tree strongly.
+     * 
+     * @param sourceLength the number of characters the tree was parsed from.
+     */
+    void treeReleased(int sourceLength)
+    {
+        releasedTrees.incrementAndGet();
+        retainedTrees.decrementAndGet();
+        retainedCharacters.addAndGet(-sourceLength);
+    }
+
+    /**
+     * Called when a compilation unit that holds its syntax tree strongly is
+     * invalidated.
+     * 
+     * @param sourceLength the number of characters the tree was parsed from.
+     */
+    void treeDiscarded(int sourceLength)
+    {
+        discardedTrees.incrementAndGet();
+        retainedTrees.decrementAndGet();
+        retainedCharacters.addAndGet(-sourceLength);
+    }
+
+    /**
+     * @return the trees built, released and discarded since the statistics
+     * were last reset, and the trees that are held strongly now.
+     */
+    public Statistics getStatistics()
+    {
+        return new Statistics(policy, parsedTrees.get(), releasedTrees.get(), rebuiltTrees.get(),
+                discardedTrees.get(), retainedTrees.get(), retainedCharacters.get());
+    }
+
+    /**
+     * Starts counting the trees built, released and discarded again, for
+     * example at the start of a build. The trees that are held strongly are
+     * still counted.
+     */
+    public void resetStatistics()
+    {
+        parsedTrees.set(0);
+        releasedTrees.set(0);
+        rebuiltTrees.set(0);
+        discardedTrees.set(0);
+    }
+}
@@ -29,6 +29,7 @@ import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.royale.compiler.internal.workspaces.Workspace;
+import org.apache.royale.compiler.internal.workspaces.WorkspaceExecutorService;
 import org.apache.royale.compiler.units.requests.IRequest;
 import org.apache.royale.compiler.units.requests.IRequestResult;
 
@@ -119,7 +120,7 @@ public abstract class RequestMaker<ResultType extends IRequestResult, RequesteeI
             try
             {
                 while (future == null)
-                    haveFuture.awaitUninterruptibly();
+                    WorkspaceExecutorService.awaitUninterruptibly(haveFuture);
                 return future;
             }
             finally
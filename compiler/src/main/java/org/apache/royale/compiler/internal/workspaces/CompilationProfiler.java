@@ -0,0 +1,512 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.internal.workspaces;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.apache.royale.compiler.config.CompilerDiagnosticsConstants;
+import org.apache.royale.compiler.internal.caches.SWCDiskCache;
+import org.apache.royale.compiler.internal.projects.CompilerProject;
+import org.apache.royale.compiler.units.ICompilationUnit;
+import org.apache.royale.compiler.units.ICompilationUnit.Operation;
+import org.apache.royale.compiler.workspaces.IWorkspace;
+import org.apache.royale.compiler.workspaces.IWorkspaceProfilingDelegate;
+import org.apache.royale.swc.SWCManager;
+
+/**
+ * {@link IWorkspaceProfilingDelegate} that records the time and, where the
+ * JVM supports it, the bytes allocated by every compilation unit operation,
+ * as well as by the named phases of a compilation (such as building the
+ * target or linking) reported by the compiler clients.
+ * <p>
+ * The recorded events can be written as a Chrome trace-event file, which can
+ * be loaded in {@code chrome://tracing} or Perfetto, or as collapsed stacks,
+ * which is the input format of the common flame graph tools.
+ * <p>
+ * Operations and phases nest per thread: an operation that blocks on another
+ * operation running on the same thread is recorded as its parent.
+ */
+public class CompilationProfiler implements IWorkspaceProfilingDelegate
+{
+    /**
+     * Output formats supported by {@link #write(File, Format)}.
+     */
+    public static enum Format
+    {
+        /**
+         * Chrome trace-event JSON.
+         */
+        CHROME,
+
+        /**
+         * Collapsed stacks, one line per stack with its self time in
+         * microseconds.
+         */
+        COLLAPSED;
+
+        /**
+         * @param name format name, case insensitive.
+         * @return the format, or null if the name is not a known format.
+         */
+        public static Format fromName(String name)
+        {
+            for (Format format : values())
+            {
+                if (format.name().equalsIgnoreCase(name))
+                    return format;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * A recorded operation or phase.
+     */
+    private static final class Event
+    {
+        String name;
+        String category;
+        String unit;
+        String stack;
+        long threadId;
+        long startNanos;
+        long durationNanos;
+        long selfNanos;
+        long allocatedBytes;
+    }
+
+    /**
+     * An operation or phase that has started but not completed.
+     */
+    private static final class Frame
+    {
+        Frame(String name, String category, String unit, String stack, long startNanos, long startAllocatedBytes)
+        {
+            this.name = name;
+            this.category = category;
+            this.unit = unit;
+            this.stack = stack;
+            this.startNanos = startNanos;
+            this.startAllocatedBytes = startAllocatedBytes;
+        }
+
+        final String name;
+        final String category;
+        final String unit;
+        final String stack;
+        final long startNanos;
+        final long startAllocatedBytes;
+        long childNanos;
+    }
+
+    private static final String CATEGORY_OPERATION = "operation";
+    private static final String CATEGORY_PHASE = "phase";
+
+    /**
+     * Report the start of a phase to the workspace's profiler, if the
+     * workspace is being profiled by a {@code CompilationProfiler}.
+     * 
+     * @param workspace workspace
+     * @param phase name of the phase.
+     */
+    public static void startPhase(IWorkspace workspace, String phase)
+    {
+        final IWorkspaceProfilingDelegate delegate = workspace.getProfilingDelegate();
+        if (delegate instanceof CompilationProfiler)
+            ((CompilationProfiler)delegate).phaseStarted(phase);
+    }
+
+    /**
+     * Report the completion of a phase to the workspace's profiler, if the
+     * workspace is being profiled by a {@code CompilationProfiler}.
+     * 
+     * @param workspace workspace
+     * @param phase name of the phase.
+     */
+    public static void completePhase(IWorkspace workspace, String phase)
+    {
+        final IWorkspaceProfilingDelegate delegate = workspace.getProfilingDelegate();
+        if (delegate instanceof CompilationProfiler)
+            ((CompilationProfiler)delegate).phaseCompleted(phase);
+    }
+
+    /**
+     * Start a build of a compiler client: the statistics of the workspace are
+     * reset and, if a profile is wanted, a new profiler is set as the
+     * profiling delegate of the workspace.
+     * 
+     * @param workspace workspace of the build.
+     * @param profileOutput file the profile will be written to, or null if
+     * the build isn't profiled.
+     * @return the new profiler, or null if the build isn't profiled.
+     */
+    public static CompilationProfiler startBuild(Workspace workspace, File profileOutput)
+    {
+        workspace.resetExecutorStatistics();
+        workspace.getSyntaxTreeRetention().resetStatistics();
+        if (profileOutput == null)
+            return null;
+        final CompilationProfiler profiler = new CompilationProfiler();
+        workspace.setProfilingDelegate(profiler);
+        return profiler;
+    }
+
+    /**
+     * Complete a build started with {@link #startBuild(Workspace, File)}:
+     * the profiler is removed from the workspace and its profile is written.
+     * 
+     * @param workspace workspace of the build.
+     * @param profiler profiler returned by {@code startBuild}, or null.
+     * @param profileOutput file to write the profile to.
+     * @param profileFormat name of a {@link Format}; anything else writes a
+     * Chrome trace.
+     * @throws IOException error writing the profile.
+     */
+    public static void completeBuild(Workspace workspace, CompilationProfiler profiler,
+                                     File profileOutput, String profileFormat) throws IOException
+    {
+        if (profiler == null)
+            return;
+        workspace.setProfilingDelegate(null);
+        profiler.write(profileOutput, Format.fromName(profileFormat));
+    }
+
+    /**
+     * Get the statistics that the compiler clients print at the end of a
+     * build when the {@link CompilerDiagnosticsConstants#WORKSPACE}
+     * diagnostics are enabled.
+     * 
+     * @param workspace workspace of the build.
+     * @param project project of the build.
+     * @return one line per statistic, or an empty list if the diagnostics
+     * are disabled.
+     */
+    public static List<String> getWorkspaceDiagnostics(Workspace workspace, CompilerProject project)
+    {
+        final List<String> lines = new ArrayList<String>();
+        if ((CompilerDiagnosticsConstants.diagnostics & CompilerDiagnosticsConstants.WORKSPACE) != CompilerDiagnosticsConstants.WORKSPACE)
+            return lines;
+        lines.add(workspace.getExecutorStatistics().toString());
+        lines.add(workspace.getSyntaxTreeRetention().getStatistics().toString());
+        if (workspace.getSWCManager() instanceof SWCManager)
+        {
+            final SWCDiskCache swcCache = ((SWCManager)workspace.getSWCManager()).getDiskCache();
+            if (swcCache != null)
+                lines.add(swcCache.toString());
+        }
+        if (project != null && project.getABCBytesCache() != null)
+            lines.add(project.getABCBytesCache().toString());
+        lines.add(workspace.getNameInterner().toString());
+        return lines;
+    }
+
+    public CompilationProfiler()
+    {
+        allocationBean = ManagementFactory.getThreadMXBean();
+        allocatedBytesMethod = findAllocatedBytesMethod(allocationBean);
+        originNanos = System.nanoTime();
+    }
+
+    /**
+     * Per-thread allocation counters are an extension of the HotSpot
+     * {@code ThreadMXBean}, so they are looked up reflectively.
+     * 
+     * @return the {@code getThreadAllocatedBytes(long)} method, or null if the
+     * JVM doesn't count allocations per thread.
+     */
+    private static Method findAllocatedBytesMethod(ThreadMXBean threadBean)
+    {
+        try
+        {
+            final Class<?> extension = Class.forName("com.sun.management.ThreadMXBean");
+            if (!extension.isInstance(threadBean))
+                return null;
+            if (!(Boolean)extension.getMethod("isThreadAllocatedMemorySupported").invoke(threadBean))
+                return null;
+            if (!(Boolean)extension.getMethod("isThreadAllocatedMemoryEnabled").invoke(threadBean))
+                extension.getMethod("setThreadAllocatedMemoryEnabled", boolean.class).invoke(threadBean, true);
+            return extension.getMethod("getThreadAllocatedBytes", long.class);
+        }
+        catch (Exception e)
+        {
+            return null;
+        }
+    }
+
+    private final ThreadMXBean allocationBean;
+    private final Method allocatedBytesMethod;
+    private final long originNanos;
+    private final ConcurrentLinkedQueue<Event> events = new ConcurrentLinkedQueue<Event>();
+    private final ThreadLocal<Deque<Frame>> frames = new ThreadLocal<Deque<Frame>>()
+    {
+        @Override
+        protected Deque<Frame> initialValue()
+        {
+            return new ArrayDeque<Frame>();
+        }
+    };
+
+    @Override
+    public void operationStarted(ICompilationUnit cu, Operation operation)
+    {
+        start(operation.name(), CATEGORY_OPERATION, cu.getName());
+    }
+
+    @Override
+    public void operationCompleted(ICompilationUnit cu, Operation operation)
+    {
+        complete(operation.name(), CATEGORY_OPERATION, cu.getName());
+    }
+
+    /**
+     * Called by the compiler clients when a phase of the compilation that is
+     * not a compilation unit operation starts on the current thread.
+     * 
+     * @param phase name of the phase.
+     */
+    public void phaseStarted(String phase)
+    {
+        start(phase, CATEGORY_PHASE, null);
+    }
+
+    /**
+     * Called by the compiler clients when a phase started with
+     * {@link #phaseStarted(String)} completes on the current thread.
+     * 
+     * @param phase name of the phase.
+     */
+    public void phaseCompleted(String phase)
+    {
+        complete(phase, CATEGORY_PHASE, null);
+    }
+
+    private void start(String name, String category, String unit)
+    {
+        final Deque<Frame> stack = frames.get();
+        final String label = unit != null ? name + " " + unit : name;
+        final String path;
+        if (stack.isEmpty())
+            path = Thread.currentThread().getName().replace(';', '_') + ";" + label.replace(';', '_');
+        else
+            path = stack.peek().stack + ";" + label.replace(';', '_');
+        stack.push(new Frame(name, category, unit, path, System.nanoTime(), getAllocatedBytes()));
+    }
+
+    private void complete(String name, String category, String unit)
+    {
+        final Deque<Frame> stack = frames.get();
+
+        // Find the matching frame. Frames above it were never completed,
+        // because an operation threw before reporting its completion, and
+        // are discarded.
+        Frame frame = null;
+        for (Frame f : stack)
+        {
+            if (f.name.equals(name) && f.category.equals(category) &&
+                (f.unit == null ? unit == null : f.unit.equals(unit)))
+            {
+                frame = f;
+                break;
+            }
+        }
+        if (frame == null)
+            return;
+        while (stack.peek() != frame)
+            stack.pop();
+        stack.pop();
+
+        final long endNanos = System.nanoTime();
+        final Event event = new Event();
+        event.name = name;
+        event.category = category;
+        event.unit = unit;
+        event.stack = frame.stack;
+        event.threadId = Thread.currentThread().getId();
+        event.startNanos = frame.startNanos - originNanos;
+        event.durationNanos = endNanos - frame.startNanos;
+        event.selfNanos = Math.max(0, event.durationNanos - frame.childNanos);
+        event.allocatedBytes = frame.startAllocatedBytes >= 0 ? getAllocatedBytes() - frame.startAllocatedBytes : -1;
+        events.add(event);
+
+        if (!stack.isEmpty())
+            stack.peek().childNanos += event.durationNanos;
+    }
+
+    private long getAllocatedBytes()
+    {
+        if (allocatedBytesMethod == null)
+            return -1;
+        try
+        {
+            return (Long)allocatedBytesMethod.invoke(allocationBean, Thread.currentThread().getId());
+        }
+        catch (Exception e)
+        {
+            return -1;
+        }
+    }
+
+    /**
+     * Write the recorded events to a file.
+     * 
+     * @param file output file.
+     * @param format output format.
+     * @throws IOException error writing the file.
+     */
+    public void write(File file, Format format) throws IOException
+    {
+        final File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null)
+            parent.mkdirs();
+
+        final Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+        try
+        {
+            if (format == Format.COLLAPSED)
+                writeCollapsedStacks(writer);
+            else
+                writeChromeTrace(writer);
+        }
+        finally
+        {
+            writer.close();
+        }
+    }
+
+    /**
+     * Write the recorded events as a Chrome trace-event JSON document. Every
+     * event is a complete ("X") event whose arguments are the compilation unit
+     * and the bytes allocated on the thread while the event ran.
+     * 
+     * @param writer output.
+     * @throws IOException error writing.
+     */
+    public void writeChromeTrace(Writer writer) throws IOException
+    {
+        writer.write("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[");
+        boolean first = true;
+        for (Event event : getEvents())
+        {
+            if (!first)
+                writer.write(",");
+            first = false;
+            writer.write("\n{\"name\":");
+            writeJSONString(writer, event.name);
+            writer.write(",\"cat\":");
+            writeJSONString(writer, event.category);
+            writer.write(",\"ph\":\"X\",\"pid\":1,\"tid\":");
+            writer.write(Long.toString(event.threadId));
+            writer.write(",\"ts\":");
+            writer.write(Long.toString(event.startNanos / 1000));
+            writer.write(",\"dur\":");
+            writer.write(Long.toString(event.durationNanos / 1000));
+            writer.write(",\"args\":{");
+            if (event.unit != null)
+            {
+                writer.write("\"unit\":");
+                writeJSONString(writer, event.unit);
+                writer.write(",");
+            }
+            writer.write("\"allocatedBytes\":");
+            writer.write(Long.toString(event.allocatedBytes));
+            writer.write("}}");
+        }
+        writer.write("\n]}\n");
+    }
+
+    /**
+     * Write the recorded events as collapsed stacks: one line per distinct
+     * stack, holding the frames separated by semicolons followed by the total
+     * self time of the stack in microseconds.
+     * 
+     * @param writer output.
+     * @throws IOException error writing.
+     */
+    public void writeCollapsedStacks(Writer writer) throws IOException
+    {
+        final Map<String, Long> selfTimes = new TreeMap<String, Long>();
+        for (Event event : getEvents())
+        {
+            final Long previous = selfTimes.get(event.stack);
+            final long selfMicros = event.selfNanos / 1000;
+            selfTimes.put(event.stack, previous == null ? selfMicros : previous + selfMicros);
+        }
+        for (Map.Entry<String, Long> entry : selfTimes.entrySet())
+        {
+            writer.write(entry.getKey());
+            writer.write(" ");
+            writer.write(Long.toString(entry.getValue()));
+            writer.write("\n");
+        }
+    }
+
+    private List<Event> getEvents()
+    {
+        return new ArrayList<Event>(events);
+    }
+
+    private static void writeJSONString(Writer writer, String value) throws IOException
+    {
+        writer.write('"');
+        for (int i = 0; i < value.length(); i++)
+        {
+            final char c = value.charAt(i);
+            switch (c)
+            {
+                case '"':
+                    writer.write("\\\"");
+                    break;
+                case '\\':
+                    writer.write("\\\\");
+                    break;
+                case '\n':
+                    writer.write("\\n");
+                    break;
+                case '\r':
+                    writer.write("\\r");
+                    break;
+                case '\t':
+                    writer.write("\\t");
+                    break;
+                default:
+                    if (c < 0x20)
+                        writer.write(String.format("\\u%04x", (int)c));
+                    else
+                        writer.write(c);
+            }
+        }
+        writer.write('"');
+    }
+}
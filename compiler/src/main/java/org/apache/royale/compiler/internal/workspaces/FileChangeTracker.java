@@ -0,0 +1,220 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.internal.workspaces;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.royale.compiler.filespecs.FileSpecification;
+import org.apache.royale.utils.FilenameNormalization;
+
+/**
+ * Detects files that were changed, added or removed between two builds of a
+ * long lived {@link Workspace}, and forwards them to
+ * {@link Workspace#fileChanged}, {@link Workspace#fileAdded} and
+ * {@link Workspace#fileRemoved} so that only the affected compilation units
+ * are invalidated.
+ * <p>
+ * Changes are detected by comparing modification times against the times
+ * read by {@link #notifyWorkspace(Collection)} when the previous build
+ * started. {@link #snapshot(Collection, Collection)} adds the files the build
+ * found, so a file that is saved while a build reads it is reported by the
+ * next build. Files that are new in one of the source roots are reported as
+ * added. Libraries are tracked too, since the workspace doesn't know the
+ * paths of the SWCs it has read.
+ */
+public class FileChangeTracker
+{
+    private static final String[] SOURCE_EXTENSIONS = { ".as", ".mxml", ".fxg", ".css" };
+
+    /**
+     * Constructor.
+     * 
+     * @param workspace The workspace to notify.
+     */
+    public FileChangeTracker(Workspace workspace)
+    {
+        this.workspace = workspace;
+        timestamps = new HashMap<String, Long>();
+    }
+
+    /**
+     * Timestamp of a file that may have changed after the build read it.
+     */
+    private static final long DIRTY = -1;
+
+    private final Workspace workspace;
+
+    /**
+     * Maps normalized paths to the modification time seen when the last build
+     * started, or when the file was found after it started. A value of zero
+     * means that the file did not exist, and {@link #DIRTY} that it has to be
+     * reported as changed.
+     */
+    private final Map<String, Long> timestamps;
+
+    /**
+     * The time the last call to {@link #notifyWorkspace(Collection)} started,
+     * in milliseconds.
+     */
+    private long buildStartTime = Long.MAX_VALUE;
+
+    /**
+     * Adds every file known to the workspace, every source file found under
+     * the specified roots and every library to the tracked files. Call this
+     * when a build is done.
+     * <p>
+     * The files that were tracked when the build started keep the
+     * modification time read then. A file that was found by the build and
+     * was modified after the build started is marked as changed, because the
+     * build may have read its previous content.
+     * 
+     * @param sourceRoots Source path directories to scan for new files.
+     * @param libraries Library files of the projects built in the workspace.
+     */
+    public void snapshot(Collection<File> sourceRoots, Collection<File> libraries)
+    {
+        final Map<String, Long> previous = new HashMap<String, Long>(timestamps);
+        timestamps.clear();
+        for (String path : workspace.getKnownFilePaths())
+            track(path, previous);
+        for (String path : collectSourceFiles(sourceRoots))
+            track(path, previous);
+        if (libraries != null)
+        {
+            for (File library : libraries)
+                track(FilenameNormalization.normalize(library.getAbsolutePath()), previous);
+        }
+    }
+
+    private void track(String path, Map<String, Long> previous)
+    {
+        final Long timestamp = previous.get(path);
+        final long lastModified = new File(path).lastModified();
+        if (timestamp != null && (timestamp != 0 || lastModified == 0))
+            timestamps.put(path, timestamp);
+        else if (lastModified > buildStartTime)
+            timestamps.put(path, DIRTY);
+        else
+            timestamps.put(path, lastModified);
+    }
+
+    /**
+     * Notifies the workspace about every file that changed since the
+     * previous build started, and records the modification times it read.
+     * Call this when a build starts.
+     * 
+     * @param sourceRoots Source path directories to scan for new files.
+     * @return The number of files the workspace was notified about.
+     */
+    public int notifyWorkspace(Collection<File> sourceRoots)
+    {
+        buildStartTime = System.currentTimeMillis();
+        if (timestamps.isEmpty())
+            return 0;
+
+        final List<String> changed = new ArrayList<String>();
+        final List<String> removed = new ArrayList<String>();
+        final List<String> added = new ArrayList<String>();
+
+        final Set<String> knownPaths = new HashSet<String>(workspace.getKnownFilePaths());
+        for (Map.Entry<String, Long> entry : timestamps.entrySet())
+        {
+            final long lastModified = new File(entry.getKey()).lastModified();
+            final long timestamp = entry.getValue();
+            if (lastModified == timestamp)
+                continue;
+            entry.setValue(lastModified);
+            if (lastModified == 0)
+                removed.add(entry.getKey());
+            else if (timestamp == 0 || (timestamp == DIRTY && !knownPaths.contains(entry.getKey())))
+                added.add(entry.getKey());
+            else
+                changed.add(entry.getKey());
+        }
+
+        for (String path : collectSourceFiles(sourceRoots))
+        {
+            if (!timestamps.containsKey(path))
+            {
+                timestamps.put(path, new File(path).lastModified());
+                added.add(path);
+            }
+        }
+
+        for (String path : removed)
+            workspace.fileRemoved(new FileSpecification(path));
+        for (String path : changed)
+        {
+            // A changed library has to be re-read by the SWCManager, which
+            // is what fileAdded() does for a path that is already known.
+            if (path.endsWith(".swc"))
+                workspace.fileAdded(new FileSpecification(path));
+            else
+                workspace.fileChanged(new FileSpecification(path));
+        }
+        for (String path : added)
+            workspace.fileAdded(new FileSpecification(path));
+
+        return removed.size() + changed.size() + added.size();
+    }
+
+    private static Set<String> collectSourceFiles(Collection<File> sourceRoots)
+    {
+        final Set<String> result = new HashSet<String>();
+        if (sourceRoots == null)
+            return result;
+        for (File root : sourceRoots)
+            collectSourceFiles(root, result);
+        return result;
+    }
+
+    private static void collectSourceFiles(File dir, Set<String> result)
+    {
+        final File[] children = dir.listFiles();
+        if (children == null)
+            return;
+        for (File child : children)
+        {
+            if (child.isDirectory())
+            {
+                collectSourceFiles(child, result);
+            }
+            else
+            {
+                final String name = child.getName();
+                for (String extension : SOURCE_EXTENSIONS)
+                {
+                    if (name.endsWith(extension))
+                    {
+                        result.add(FilenameNormalization.normalize(child.getAbsolutePath()));
+                        break;
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.internal.workspaces;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
+import org.apache.royale.abc.ABCParser;
+
+/**
+ * Shares the names used by the libraries, syntax trees and definitions of a
+ * workspace.
+ * <p>
+ * Every SWC carries its own string pool, so without interning each library
+ * that refers to a framework class, such as <code>mx.core.UIComponent</code>,
+ * holds its own copy of the class name and of the namespace URI of its
+ * package, and the definitions, references and multinames built from the ABC
+ * keep them alive. Likewise each identifier node of a syntax tree keeps the
+ * text of its token. The table is used by:
+ * <ul>
+ * <li>{@link org.apache.royale.abc.ABCParser}, for the string pools of the
+ * libraries read by {@link org.apache.royale.compiler.internal.abc.ABCScopeBuilder}.</li>
+ * <li>The ActionScript tokenizer, for the text of identifier tokens.</li>
+ * <li>{@link org.apache.royale.compiler.internal.scopes.ASScope}, for the
+ * storage names of the definitions added to the scopes of the workspace.</li>
+ * </ul>
+ * A name used both by a library and by source code is kept once.
+ * <p>
+ * Each workspace has its own table, which holds the names weakly. A
+ * workspace doesn't contend with the other workspaces of a process for the
+ * table, and its names are released with it.
+ */
+public final class NameInterner implements ABCParser.IStringInterner
+{
+    private final Interner<String> names = Interners.newWeakInterner();
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private volatile boolean enabled = true;
+
+    NameInterner()
+    {
+    }
+
+    /**
+     * Get the instance of a name shared by this workspace.
+     *
+     * @param name An identifier, qualified name or namespace URI.
+     * @return a string equal to {@code name}, which is {@code name} itself if
+     * it wasn't interned yet or if interning is disabled.
+     */
+    @Override
+    public String intern(String name)
+    {
+        if (name == null || !enabled)
+            return name;
+
+        lookups.increment();
+        final String result = names.intern(name);
+        if (result == name)
+            misses.increment();
+        return result;
+    }
+
+    /**
+     * Enable or disable interning. It is enabled by default; disabling it is
+     * only useful to measure its effect.
+     */
+    public void setEnabled(boolean enabled)
+    {
+        this.enabled = enabled;
+    }
+
+    /**
+     * @return the number of names looked up in this workspace.
+     */
+    public long getLookupCount()
+    {
+        return lookups.sum();
+    }
+
+    /**
+     * @return the number of looked up names that weren't interned yet.
+     */
+    public long getMissCount()
+    {
+        return misses.sum();
+    }
+
+    @Override
+    public String toString()
+    {
+        final long lookupCount = getLookupCount();
+        final long missCount = getMissCount();
+        return "Name interning: " + lookupCount + " names, " + missCount + " copies kept" +
+               (lookupCount > 0 ? String.format(" (%.1f%% shared)", 100.0 * (lookupCount - missCount) / lookupCount) : "");
+    }
+}
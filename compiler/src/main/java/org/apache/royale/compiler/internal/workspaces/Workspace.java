@@ -34,19 +34,19 @@ import java.util.Map.Entry;
 import java.util.Set;
 import java.util.WeakHashMap;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.SynchronousQueue;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.apache.royale.compiler.asdoc.IASDocDelegate;
+import org.apache.royale.compiler.common.DependencyType;
+import org.apache.royale.compiler.common.DependencyTypeSet;
 import org.apache.royale.compiler.definitions.IDefinition;
 import org.apache.royale.compiler.filespecs.FileSpecification;
 import org.apache.royale.compiler.filespecs.IBinaryFileSpecification;
 import org.apache.royale.compiler.filespecs.IFileSpecification;
+import org.apache.royale.compiler.filespecs.SourceTextCache;
 import org.apache.royale.compiler.internal.caches.PackageNamespaceDefinitionCache;
 import org.apache.royale.compiler.internal.definitions.references.ReferenceCache;
 import org.apache.royale.compiler.internal.embedding.EmbedData;
@@ -56,8 +56,10 @@ import org.apache.royale.compiler.internal.projects.CompilerProject;
 import org.apache.royale.compiler.internal.projects.DependencyGraph;
 import org.apache.royale.compiler.internal.projects.ASProject;
 import org.apache.royale.compiler.internal.scopes.ASProjectScope;
+import org.apache.royale.compiler.internal.units.ASCompilationUnit;
 import org.apache.royale.compiler.internal.units.CompilationUnitBase;
 import org.apache.royale.compiler.internal.units.StringToCompilationUnitMap;
+import org.apache.royale.compiler.internal.units.SyntaxTreeRetention;
 import org.apache.royale.compiler.internal.units.requests.RequestMaker;
 import org.apache.royale.compiler.mxml.IMXMLDataManager;
 import org.apache.royale.compiler.projects.ICompilerProject;
@@ -93,7 +95,9 @@ public final class Workspace implements IWorkspace
         assert assertionsEnabled = true; // intentional side effect
     }
 
-    private ExecutorService executorService;
+    private WorkspaceExecutorService executorService;
+    private final SyntaxTreeRetention syntaxTreeRetention;
+    private final NameInterner nameInterner;
     protected final Map<CompilerProject, Object> projects;
     private IWorkspaceProfilingDelegate profilingDelegate;
     private final Set<IInvalidationListener> invalidationListeners;
@@ -153,12 +157,9 @@ public final class Workspace implements IWorkspace
      */
     public Workspace()
     {
-        // Limit the number of threads to the number of processors
-        // If you want to run single threaded, update getNumberOfThreadToUse()
-        this(new ThreadPoolExecutor(0, getNumberOfThreadToUse(),
-                                    60L, TimeUnit.SECONDS,
-                                    new SynchronousQueue<Runnable>(),
-                                    new ThreadPoolExecutor.CallerRunsPolicy()));
+        // The strategy and number of threads can be changed with system
+        // properties, see WorkspaceExecutorService.
+        this(WorkspaceExecutorService.createDefault());
 
 //        this(Executors.newCachedThreadPool(), indexingDelegate);
     }
@@ -171,7 +172,9 @@ public final class Workspace implements IWorkspace
      */
     public Workspace(ExecutorService es)
     {
-        executorService = es;
+        executorService = WorkspaceExecutorService.wrap(es);
+        syntaxTreeRetention = new SyntaxTreeRetention();
+        nameInterner = new NameInterner();
 
         profilingDelegate = null;
         invalidationListeners = new LinkedHashSet<IInvalidationListener>();
@@ -195,28 +198,6 @@ public final class Workspace implements IWorkspace
         buildSync = new BuildSynchronizationState();
     }
 
-    private static int getNumberOfThreadToUse()
-    {
-        /*
-         * OK, we needs some heuristic for how many threads to put in the work queue.
-         * Our "version 1" heuristic was min ( num cores, 8).
-         * That turned out to be sub-optimal. I believe there are two reasons for this:
-         *      1) Often with apps like this that do a lot of disk I/O you want more threads than cores,
-         *      because some threads will be waiting for disk I/O, so you need extra threads to keep the work
-         *      going.
-         *      2) Our current work queuing system will eat up threads as we run into compile time
-         *      dependencies that fan out too far. This is perhaps a defect in the queuing system, but
-         *      in any case it can be beneficial to have extra threads.
-         *      
-         * I tested on 1,2, and 4 core machines, and in most cases num cores was too few threads.
-         * I also found that 16 was either optimal, or not noticeably worse than a smaller number.
-         * 
-         * TODO: we should run some more benchmark on a many core system and a many core + hyper-threading.
-         * I suspect we may find that those systems can use more cores...
-         */
-        return 16;
-    }
-
     /**
      * Gets the {@link ExecutorService} to use in this workspace.
      * 
@@ -227,6 +208,67 @@ public final class Workspace implements IWorkspace
         return executorService;
     }
 
+    /**
+     * Replaces the {@link ExecutorService} of this workspace, for example with
+     * one selected by configuration options. The previous executor is shut
+     * down. This must not be called while the workspace is building.
+     * 
+     * @param es {@link ExecutorService} to use to do background work in this
+     * workspace.
+     */
+    public void setExecutorService(ExecutorService es)
+    {
+        assert !isBuilding() : "The executor can't be replaced during a build.";
+        final ExecutorService previous = executorService;
+        executorService = WorkspaceExecutorService.wrap(es);
+        if (previous != null && previous != executorService)
+            previous.shutdown();
+    }
+
+    /**
+     * Gets the number of tasks that the executor of this workspace ran and
+     * how busy its threads were.
+     * 
+     * @return statistics collected since the executor was created or the
+     * statistics were last reset.
+     */
+    public WorkspaceExecutorService.Statistics getExecutorStatistics()
+    {
+        return executorService.getStatistics();
+    }
+
+    /**
+     * Starts collecting new statistics for the executor of this workspace,
+     * for example at the start of a build.
+     */
+    public void resetExecutorStatistics()
+    {
+        executorService.resetStatistics();
+    }
+
+    /**
+     * Gets the policy that decides how long the compilation units of this
+     * workspace keep their syntax trees, and the statistics of how often
+     * released trees are rebuilt.
+     * 
+     * @return the syntax tree retention of this workspace.
+     */
+    public SyntaxTreeRetention getSyntaxTreeRetention()
+    {
+        return syntaxTreeRetention;
+    }
+
+    /**
+     * Gets the interner of the names used by the libraries, syntax trees and
+     * definitions of this workspace.
+     * 
+     * @return the name interner of this workspace.
+     */
+    public NameInterner getNameInterner()
+    {
+        return nameInterner;
+    }
+
     private CompilerProject[] getProjects()
     {
         return projects.keySet().toArray(new CompilerProject[0]);
@@ -387,6 +429,20 @@ public final class Workspace implements IWorkspace
     }
 
     private final void invalidate(IFileSpecification fileSpec, Collection<ICompilationUnit> compilationUnits, Map<ICompilerProject, Set<ICompilationUnit>> cusToUpdate)
+    {
+        invalidate(fileSpec, compilationUnits, Collections.<ICompilationUnit, DependencyTypeSet>emptyMap(), cusToUpdate);
+    }
+
+    /**
+     * Invalidates the specified compilation units and the compilation units
+     * that depend on them.
+     * 
+     * @param changedDependencyTypes Map from compilation unit to the
+     * dependency types affected by its change, for the units whose change is
+     * known to only affect some of their dependents. See
+     * {@link DependencyGraph#computeInvalidationSet(Iterable, Map)}.
+     */
+    private final void invalidate(IFileSpecification fileSpec, Collection<ICompilationUnit> compilationUnits, Map<ICompilationUnit, DependencyTypeSet> changedDependencyTypes, Map<ICompilerProject, Set<ICompilationUnit>> cusToUpdate)
     {
         mxmlDataManager.invalidate(fileSpec);
         // Tell the SWC manager the SWC file is invalid.
@@ -397,9 +453,34 @@ public final class Workspace implements IWorkspace
 
         Set<ICompilationUnit> unitsToInvalidate = new HashSet<ICompilationUnit>();
         unitsToInvalidate.addAll(compilationUnits);
-        Set<ICompilationUnit> unitsToClean = Sets.<ICompilationUnit>union(DependencyGraph.computeInvalidationSet(unitsToInvalidate), getCompilationUnitsDependingOnMissingDefinitions(unitsToInvalidate));
 
-        
+        // A unit whose change doesn't affect namespace dependencies still has
+        // the same top-level definitions, so it can't hide or provide a
+        // definition that another unit looks for by name.
+        Set<ICompilationUnit> unitsWithChangedNames = new HashSet<ICompilationUnit>();
+        for (ICompilationUnit unit : unitsToInvalidate)
+        {
+            DependencyTypeSet changedTypes = changedDependencyTypes.get(unit);
+            if ((changedTypes == null) || changedTypes.contains(DependencyType.NAMESPACE))
+                unitsWithChangedNames.add(unit);
+        }
+        Set<ICompilationUnit> unitsToClean = Sets.<ICompilationUnit>union(DependencyGraph.computeInvalidationSet(unitsToInvalidate, changedDependencyTypes), getCompilationUnitsDependingOnMissingDefinitions(unitsWithChangedNames));
+
+        // The dependents that don't need cleaning still cache lookups, base
+        // classes and interfaces that found the old definitions of the
+        // invalidated units.
+        if (!changedDependencyTypes.isEmpty())
+        {
+            for (ICompilationUnit unit : DependencyGraph.computeInvalidationSet(unitsToInvalidate))
+            {
+                if (!unitsToClean.contains(unit) && (unit.getProject() instanceof CompilerProject))
+                {
+                    ((CompilerProject)unit.getProject()).resetScopeCacheForCompilationUnit(unit);
+                    ((CompilerProject)unit.getProject()).resetResolutionCachesForCompilationUnit(unit);
+                }
+            }
+        }
+
         notifyInvalidationListener(unitsToClean);
         
         // Do the actual invalidation
@@ -515,6 +596,7 @@ public final class Workspace implements IWorkspace
     {
         // paths passed into this function need to have been normalized 
         assert (changedFile.getPath().equals(FilenameNormalization.normalize(changedFile.getPath()))) : "Path not normalized";
+        SourceTextCache.invalidate(changedFile.getPath());
         Map<ICompilerProject, Set<ICompilationUnit>> cusToUpdate = new HashMap<ICompilerProject, Set<ICompilationUnit>>();
         startIdleState();
         try
@@ -522,7 +604,7 @@ public final class Workspace implements IWorkspace
             Collection<ICompilationUnit> relatedCompilationUnits = collectAssociatedCompilationUnits(changedFile);
             HashSet<ICompilationUnit> compilationUnitsToInvalidate = new HashSet<ICompilationUnit>();
             compilationUnitsToInvalidate.addAll(relatedCompilationUnits);
-            invalidate(changedFile, relatedCompilationUnits, cusToUpdate);
+            invalidate(changedFile, relatedCompilationUnits, getChangedDependencyTypes(changedFile, relatedCompilationUnits), cusToUpdate);
 
             pathToFileSpecMap.put(changedFile.getPath(), changedFile);        
         }
@@ -538,6 +620,7 @@ public final class Workspace implements IWorkspace
         // paths passed into this function need to have been normalized 
         assert (removedFile.getPath().equals(FilenameNormalization.normalize(removedFile.getPath()))) : "Path not normalized";
         final String path = removedFile.getPath();
+        SourceTextCache.invalidate(path);
         final Set<ASProject> affectedProjects = new HashSet<ASProject>();
         Map<ICompilerProject, Set<ICompilationUnit>> cusToUpdate = new HashMap<ICompilerProject, Set<ICompilationUnit>>();
         Collection<ICompilationUnit> relatedCompilationUnits = Collections.emptyList();
@@ -591,6 +674,7 @@ public final class Workspace implements IWorkspace
     {
         // paths passed into this function need to have been normalized
         assert (addedFile.getPath().equals(FilenameNormalization.normalize(addedFile.getPath()))) : "Path not normalized";
+        SourceTextCache.invalidate(addedFile.getPath());
         Map<ICompilerProject, Set<ICompilationUnit>> cusToUpdate = new HashMap<ICompilerProject, Set<ICompilationUnit>>();
 
         startIdleState();
@@ -649,6 +733,33 @@ public final class Workspace implements IWorkspace
         }
     }
 
+    /**
+     * Compares the API of the AS compilation units of a changed file with
+     * their previous API, so that dependents which can't be affected by the
+     * change don't have to be invalidated.
+     */
+    private Map<ICompilationUnit, DependencyTypeSet> getChangedDependencyTypes(IFileSpecification changedFile, Collection<ICompilationUnit> compilationUnits)
+    {
+        Map<ICompilationUnit, DependencyTypeSet> result = new HashMap<ICompilationUnit, DependencyTypeSet>();
+        for (ICompilationUnit unit : compilationUnits)
+        {
+            if (!(unit instanceof ASCompilationUnit))
+                continue;
+            try
+            {
+                DependencyTypeSet changedTypes = ((ASCompilationUnit)unit).getChangedDependencyTypes(changedFile);
+                if (changedTypes != null)
+                    result.put(unit, changedTypes);
+            }
+            catch (InterruptedException e)
+            {
+                // should never happen, as all threads should be stopped
+                e.printStackTrace();
+            }
+        }
+        return result;
+    }
+
     private Set<ICompilationUnit> getCompilationUnitsDependingOnMissingDefinitions(Collection<ICompilationUnit> addedUnits)
     {
         Set<ICompilationUnit> compilationUnitsToInvalidate = new HashSet<ICompilationUnit>();
@@ -967,6 +1078,18 @@ public final class Workspace implements IWorkspace
         return fileSpec;
     }
     
+    /**
+     * Returns the paths of every file the workspace has handed out an
+     * {@link IFileSpecification} for. This is a snapshot; later changes to the
+     * workspace are not reflected in the returned collection.
+     * 
+     * @return The paths of the files known to this workspace.
+     */
+    public synchronized Collection<String> getKnownFilePaths()
+    {
+        return new ArrayList<String>(pathToFileSpecMap.keySet());
+    }
+
     @Override
     public IWorkspace getWorkspace()
     {
@@ -1085,7 +1208,7 @@ public final class Workspace implements IWorkspace
             try
             {
                 while (!canStartRequest(isFileScopeRequest))
-                    condition.awaitUninterruptibly();
+                    WorkspaceExecutorService.awaitUninterruptibly(condition);
                 ++activitiyCount;
             }
             finally
@@ -1127,7 +1250,7 @@ public final class Workspace implements IWorkspace
                 threadsRequestingIdle.add(currentThread);
                 
                 while ((activitiyCount > 0) || (threadsRequestingIdle.getFirst() != currentThread))
-                    condition.awaitUninterruptibly();
+                    WorkspaceExecutorService.awaitUninterruptibly(condition);
                 
                 assert idleStateCount == 0;
                 assert activitiyCount == 0;
@@ -1169,7 +1292,7 @@ public final class Workspace implements IWorkspace
                 assert currentThread == currentIdleThread;
                 assert allowFileScopeRequests;
                 while (activitiyCount > 0)
-                    condition.awaitUninterruptibly();
+                    WorkspaceExecutorService.awaitUninterruptibly(condition);
                 allowFileScopeRequests = false;
             }
             finally
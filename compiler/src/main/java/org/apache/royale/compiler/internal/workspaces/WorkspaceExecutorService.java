@@ -0,0 +1,645 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+
+package org.apache.royale.compiler.internal.workspaces;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+
+/**
+ * The {@link ExecutorService} a {@link Workspace} schedules its requests on.
+ * It wraps an executor created for one of the {@link Strategy strategies}, or
+ * an executor supplied by the client, and measures how busy the executor is.
+ * <p>
+ * Requests block on the results of other requests, so every strategy must
+ * make progress while all of its threads are waiting for queued work: the
+ * thread pool strategies run a request on the submitting thread when no pool
+ * thread is free, the fork-join pool adds threads while its workers wait for
+ * other tasks or in {@link #awaitUninterruptibly(Condition)}, and virtual threads are not limited.
+ * <p>
+ * The default strategy can be set with the system properties
+ * <code>royale.workspace.executor</code> and
+ * <code>royale.workspace.threads</code>.
+ */
+public final class WorkspaceExecutorService extends AbstractExecutorService
+{
+    private static final String EXECUTOR_PROPERTY = "royale.workspace.executor";
+    private static final String THREADS_PROPERTY = "royale.workspace.threads";
+
+    /**
+     * The default number of threads, independent of the number of cores.
+     * <p>
+     * A compilation reads many files, and requests wait for the results of
+     * the requests they depend on, so more threads than cores keep the cores
+     * busy. On machines with 1, 2 and 4 cores, 16 threads were faster than one
+     * thread per core, and not noticeably slower than any smaller number.
+     */
+    public static final int DEFAULT_THREADS = 16;
+
+    /**
+     * How the threads that run the requests of a workspace are managed.
+     */
+    public static enum Strategy
+    {
+        /**
+         * Up to the specified number of threads, which are started on
+         * demand and stop after a minute without work. When all threads are
+         * busy, a request runs on the thread that submits it.
+         */
+        THREAD_POOL("thread-pool"),
+
+        /**
+         * Like {@link #THREAD_POOL}, but the threads are started up front and
+         * never stop.
+         */
+        FIXED("fixed"),
+
+        /**
+         * A work-stealing {@link ForkJoinPool} whose parallelism is the
+         * specified number of threads. Workers that wait for the result of
+         * another request, or for the workspace to allow a request to start,
+         * tell the pool through {@link #awaitUninterruptibly(Condition)}, so
+         * that it can start a spare thread.
+         */
+        FORK_JOIN("fork-join"),
+
+        /**
+         * A new virtual thread for each request. Needs Java 21 or later;
+         * {@link #FORK_JOIN} is used on older runtimes.
+         */
+        VIRTUAL("virtual");
+
+        private Strategy(String name)
+        {
+            this.name = name;
+        }
+
+        private final String name;
+
+        /**
+         * @return the name of the strategy in configuration options.
+         */
+        public String getName()
+        {
+            return name;
+        }
+
+        /**
+         * @param name name of a strategy.
+         * @return the strategy with that name, or null if there is none.
+         */
+        public static Strategy fromName(String name)
+        {
+            for (Strategy strategy : values())
+            {
+                if (strategy.name.equalsIgnoreCase(name))
+                    return strategy;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * A snapshot of how busy the executor has been since it was created or
+     * its statistics were last reset.
+     */
+    public static final class Statistics
+    {
+        private Statistics(Strategy strategy, int threads, long submittedTasks, long completedTasks,
+                           long callerRunTasks, int activeTasks, int peakActiveTasks,
+                           long busyNanos, long elapsedNanos)
+        {
+            this.strategy = strategy;
+            this.threads = threads;
+            this.submittedTasks = submittedTasks;
+            this.completedTasks = completedTasks;
+            this.callerRunTasks = callerRunTasks;
+            this.activeTasks = activeTasks;
+            this.peakActiveTasks = peakActiveTasks;
+            this.busyNanos = busyNanos;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        private final Strategy strategy;
+        private final int threads;
+        private final long submittedTasks;
+        private final long completedTasks;
+        private final long callerRunTasks;
+        private final int activeTasks;
+        private final int peakActiveTasks;
+        private final long busyNanos;
+        private final long elapsedNanos;
+
+        /**
+         * @return the strategy of the executor, or null if the client
+         * supplied the executor.
+         */
+        public Strategy getStrategy()
+        {
+            return strategy;
+        }
+
+        /**
+         * @return the number of threads the executor was created for, or 0
+         * if it isn't known. For {@link Strategy#VIRTUAL}, the number of
+         * threads that was asked for, although every task gets its own
+         * thread.
+         */
+        public int getThreads()
+        {
+            return threads;
+        }
+
+        public long getSubmittedTasks()
+        {
+            return submittedTasks;
+        }
+
+        public long getCompletedTasks()
+        {
+            return completedTasks;
+        }
+
+        /**
+         * @return the number of tasks that ran on the thread that submitted
+         * them, because no pool thread was free.
+         */
+        public long getCallerRunTasks()
+        {
+            return callerRunTasks;
+        }
+
+        public int getActiveTasks()
+        {
+            return activeTasks;
+        }
+
+        /**
+         * @return the largest number of tasks that ran at the same time.
+         */
+        public int getPeakActiveTasks()
+        {
+            return peakActiveTasks;
+        }
+
+        /**
+         * @return the total time spent running tasks, including the time
+         * tasks spent waiting for the results of other tasks.
+         */
+        public long getBusyNanos()
+        {
+            return busyNanos;
+        }
+
+        public long getElapsedNanos()
+        {
+            return elapsedNanos;
+        }
+
+        /**
+         * @return true if {@link #getUtilization()} is meaningful, which
+         * needs a known, fixed number of threads.
+         */
+        public boolean hasUtilization()
+        {
+            return strategy != Strategy.VIRTUAL && threads > 0;
+        }
+
+        /**
+         * @return the average number of tasks that were running, divided by
+         * the number of threads, or 0 if {@link #hasUtilization()} is false.
+         */
+        public double getUtilization()
+        {
+            if (!hasUtilization() || elapsedNanos <= 0)
+                return 0;
+            return (double)busyNanos / elapsedNanos / threads;
+        }
+
+        @Override
+        public String toString()
+        {
+            final StringBuilder sb = new StringBuilder();
+            sb.append(strategy != null ? strategy.getName() : "custom").append(" executor");
+            if (strategy != Strategy.VIRTUAL)
+                sb.append(", ").append(threads).append(" threads");
+            sb.append(String.format(
+                    ": %d tasks submitted, %d completed, %d run by the caller, %d active, %d peak active",
+                    submittedTasks, completedTasks, callerRunTasks, activeTasks, peakActiveTasks));
+            if (hasUtilization())
+                sb.append(String.format(", %.1f%% utilization", getUtilization() * 100));
+            sb.append(String.format(" over %.3f seconds", elapsedNanos / 1e9));
+            return sb.toString();
+        }
+    }
+
+    /**
+     * Creates the executor selected by the system properties, or a
+     * {@link Strategy#THREAD_POOL} executor with {@link #DEFAULT_THREADS}
+     * threads.
+     * 
+     * @return new executor.
+     */
+    public static WorkspaceExecutorService createDefault()
+    {
+        return create(getDefaultStrategy(), getDefaultThreads());
+    }
+
+    /**
+     * @return the strategy selected by the system properties, or
+     * {@link Strategy#THREAD_POOL}.
+     */
+    public static Strategy getDefaultStrategy()
+    {
+        final Strategy strategy = Strategy.fromName(System.getProperty(EXECUTOR_PROPERTY, Strategy.THREAD_POOL.getName()).trim());
+        return strategy != null ? strategy : Strategy.THREAD_POOL;
+    }
+
+    /**
+     * @return the number of threads selected by the system properties, or
+     * {@link #DEFAULT_THREADS}.
+     */
+    public static int getDefaultThreads()
+    {
+        final String threadsProperty = System.getProperty(THREADS_PROPERTY);
+        if (threadsProperty != null)
+        {
+            try
+            {
+                final int threads = Integer.parseInt(threadsProperty.trim());
+                if (threads > 0)
+                    return threads;
+            }
+            catch (NumberFormatException e)
+            {
+                // keep the default
+            }
+        }
+        return DEFAULT_THREADS;
+    }
+
+    /**
+     * Creates an executor.
+     * 
+     * @param strategy how threads are managed.
+     * @param threads the number of threads, or 0 or less for
+     * {@link #DEFAULT_THREADS} threads. Ignored by {@link Strategy#VIRTUAL}.
+     * @return new executor.
+     */
+    public static WorkspaceExecutorService create(Strategy strategy, int threads)
+    {
+        if (threads <= 0)
+            threads = DEFAULT_THREADS;
+
+        if (strategy == Strategy.VIRTUAL)
+        {
+            final ExecutorService virtualThreadExecutor = newVirtualThreadPerTaskExecutor();
+            if (virtualThreadExecutor != null)
+                return new WorkspaceExecutorService(virtualThreadExecutor, Strategy.VIRTUAL, threads);
+            strategy = Strategy.FORK_JOIN;
+        }
+
+        final ExecutorService executor;
+        switch (strategy)
+        {
+            case FIXED:
+            {
+                final ThreadPoolExecutor threadPool = new ThreadPoolExecutor(threads, threads,
+                        60L, TimeUnit.SECONDS,
+                        new SynchronousQueue<Runnable>(),
+                        new ThreadPoolExecutor.CallerRunsPolicy());
+                threadPool.prestartAllCoreThreads();
+                executor = threadPool;
+                break;
+            }
+            case FORK_JOIN:
+                executor = new ForkJoinPool(threads);
+                break;
+            default:
+                executor = new ThreadPoolExecutor(0, threads,
+                        60L, TimeUnit.SECONDS,
+                        new SynchronousQueue<Runnable>(),
+                        new ThreadPoolExecutor.CallerRunsPolicy());
+                break;
+        }
+        return new WorkspaceExecutorService(executor, strategy, threads);
+    }
+
+    /**
+     * Wraps an executor supplied by a client of the workspace, so that its
+     * statistics can be collected.
+     * 
+     * @param executor executor to wrap.
+     * @return the executor, if it already is a
+     * {@link WorkspaceExecutorService}, or a new wrapper.
+     */
+    public static WorkspaceExecutorService wrap(ExecutorService executor)
+    {
+        if (executor instanceof WorkspaceExecutorService)
+            return (WorkspaceExecutorService)executor;
+        int threads = 0;
+        if (executor instanceof ThreadPoolExecutor)
+            threads = ((ThreadPoolExecutor)executor).getMaximumPoolSize();
+        else if (executor instanceof ForkJoinPool)
+            threads = ((ForkJoinPool)executor).getParallelism();
+        return new WorkspaceExecutorService(executor, null, threads);
+    }
+
+    /**
+     * Waits for a condition, like {@link Condition#awaitUninterruptibly()}.
+     * On a fork-join worker the wait is run as a
+     * {@link ForkJoinPool.ManagedBlocker}, so that the pool can start a spare
+     * thread for its queued tasks. Otherwise a pool whose workers all wait
+     * for requests that are still queued would never finish them.
+     * <p>
+     * The caller must hold the lock of the condition, and check what it is
+     * waiting for again when this method returns.
+     * 
+     * @param condition condition to wait for.
+     */
+    public static void awaitUninterruptibly(final Condition condition)
+    {
+        if (!(Thread.currentThread() instanceof ForkJoinWorkerThread))
+        {
+            condition.awaitUninterruptibly();
+            return;
+        }
+
+        boolean interrupted = false;
+        final ForkJoinPool.ManagedBlocker blocker = new ForkJoinPool.ManagedBlocker()
+        {
+            private boolean signalled;
+
+            @Override
+            public boolean block()
+            {
+                condition.awaitUninterruptibly();
+                signalled = true;
+                return true;
+            }
+
+            @Override
+            public boolean isReleasable()
+            {
+                return signalled;
+            }
+        };
+        while (true)
+        {
+            try
+            {
+                ForkJoinPool.managedBlock(blocker);
+                break;
+            }
+            catch (InterruptedException e)
+            {
+                interrupted = true;
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    /**
+     * @return true if the runtime supports {@link Strategy#VIRTUAL}, which
+     * needs Java 21 or later.
+     */
+    public static boolean isVirtualThreadSupported()
+    {
+        return getNewVirtualThreadPerTaskExecutorMethod() != null;
+    }
+
+    private static Method getNewVirtualThreadPerTaskExecutorMethod()
+    {
+        try
+        {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        }
+        catch (NoSuchMethodException e)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Calls Executors.newVirtualThreadPerTaskExecutor() reflectively, as the
+     * compiler also runs on Java versions that don't have it.
+     */
+    private static ExecutorService newVirtualThreadPerTaskExecutor()
+    {
+        final Method method = getNewVirtualThreadPerTaskExecutorMethod();
+        if (method == null)
+            return null;
+        try
+        {
+            return (ExecutorService)method.invoke(null);
+        }
+        catch (Exception e)
+        {
+            return null;
+        }
+    }
+
+    private WorkspaceExecutorService(ExecutorService delegate, Strategy strategy, int threads)
+    {
+        this.delegate = delegate;
+        this.strategy = strategy;
+        this.threads = threads;
+        this.startNanos = new AtomicLong(System.nanoTime());
+    }
+
+    private final ExecutorService delegate;
+    private final Strategy strategy;
+    private final int threads;
+    private final AtomicLong startNanos;
+    private final AtomicLong submittedTasks = new AtomicLong();
+    private final AtomicLong completedTasks = new AtomicLong();
+    private final AtomicLong callerRunTasks = new AtomicLong();
+    private final AtomicLong busyNanos = new AtomicLong();
+    private final AtomicInteger activeTasks = new AtomicInteger();
+    private final AtomicInteger peakActiveTasks = new AtomicInteger();
+
+    /**
+     * @return the strategy of the executor, or null if the client supplied
+     * the executor.
+     */
+    public Strategy getStrategy()
+    {
+        return strategy;
+    }
+
+    /**
+     * @return the statistics collected since the executor was created or
+     * {@link #resetStatistics()} was last called.
+     */
+    public Statistics getStatistics()
+    {
+        return new Statistics(strategy, threads, submittedTasks.get(), completedTasks.get(),
+                callerRunTasks.get(), activeTasks.get(), peakActiveTasks.get(),
+                busyNanos.get(), System.nanoTime() - startNanos.get());
+    }
+
+    /**
+     * Starts collecting new statistics, for example at the start of a build.
+     */
+    public void resetStatistics()
+    {
+        startNanos.set(System.nanoTime());
+        submittedTasks.set(0);
+        completedTasks.set(0);
+        callerRunTasks.set(0);
+        busyNanos.set(0);
+        peakActiveTasks.set(activeTasks.get());
+    }
+
+    private void taskStarted(Thread submitter)
+    {
+        if (Thread.currentThread() == submitter)
+            callerRunTasks.incrementAndGet();
+        final int active = activeTasks.incrementAndGet();
+        int peak = peakActiveTasks.get();
+        while (active > peak && !peakActiveTasks.compareAndSet(peak, active))
+            peak = peakActiveTasks.get();
+    }
+
+    private void taskCompleted(long startNanos)
+    {
+        busyNanos.addAndGet(System.nanoTime() - startNanos);
+        activeTasks.decrementAndGet();
+        completedTasks.incrementAndGet();
+    }
+
+    private Runnable instrument(final Runnable task)
+    {
+        submittedTasks.incrementAndGet();
+        final Thread submitter = Thread.currentThread();
+        return new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                taskStarted(submitter);
+                final long start = System.nanoTime();
+                try
+                {
+                    task.run();
+                }
+                finally
+                {
+                    taskCompleted(start);
+                }
+            }
+        };
+    }
+
+    private <T> Callable<T> instrument(final Callable<T> task)
+    {
+        submittedTasks.incrementAndGet();
+        final Thread submitter = Thread.currentThread();
+        return new Callable<T>()
+        {
+            @Override
+            public T call() throws Exception
+            {
+                taskStarted(submitter);
+                final long start = System.nanoTime();
+                try
+                {
+                    return task.call();
+                }
+                finally
+                {
+                    taskCompleted(start);
+                }
+            }
+        };
+    }
+
+    // The submit methods are passed on, rather than implemented on top of
+    // execute(), so that a fork-join pool returns its own tasks, which help
+    // run other tasks while they are waited for.
+
+    @Override
+    public <T> Future<T> submit(Callable<T> task)
+    {
+        return delegate.submit(instrument(task));
+    }
+
+    @Override
+    public Future<?> submit(Runnable task)
+    {
+        return delegate.submit(instrument(task));
+    }
+
+    @Override
+    public <T> Future<T> submit(Runnable task, T result)
+    {
+        return delegate.submit(instrument(task), result);
+    }
+
+    @Override
+    public void execute(Runnable command)
+    {
+        delegate.execute(instrument(command));
+    }
+
+    @Override
+    public void shutdown()
+    {
+        delegate.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow()
+    {
+        return delegate.shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown()
+    {
+        return delegate.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated()
+    {
+        return delegate.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException
+    {
+        return delegate.awaitTermination(timeout, unit);
+    }
+}
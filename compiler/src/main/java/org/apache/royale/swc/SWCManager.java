@@ -21,7 +21,10 @@ package org.apache.royale.swc;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
+import org.apache.royale.compiler.asdoc.IPackageDITAParser;
 import org.apache.royale.compiler.caches.IAssetTagCache;
 import org.apache.royale.compiler.caches.ICSSDocumentCache;
 import org.apache.royale.compiler.caches.IFileScopeCache;
@@ -29,12 +32,16 @@ import org.apache.royale.compiler.caches.ISWFCache;
 import org.apache.royale.compiler.internal.caches.AssetTagCache;
 import org.apache.royale.compiler.internal.caches.CSSDocumentCache;
 import org.apache.royale.compiler.internal.caches.CacheStoreKeyBase;
+import org.apache.royale.compiler.internal.caches.CacheStorePolicy;
 import org.apache.royale.compiler.internal.caches.ConcurrentCacheStoreBase;
 import org.apache.royale.compiler.internal.caches.FileScopeCache;
+import org.apache.royale.compiler.internal.caches.SWCDiskCache;
 import org.apache.royale.compiler.internal.caches.SWFCache;
 import org.apache.royale.compiler.workspaces.IWorkspace;
 import org.apache.royale.swc.io.SWCReader;
 
+import com.google.common.cache.CacheStats;
+
 /**
  * This is a cached implementation for {@link ISWCManager} based on
  * {@link ConcurrentCacheStoreBase}.
@@ -75,6 +82,9 @@ public class SWCManager extends ConcurrentCacheStoreBase<ISWC> implements ISWCMa
      */
     public SWCManager(IWorkspace workspace)
     {
+        // The SWC models are held by the library path managers of the
+        // projects that use them, so only unused models can be collected.
+        super(CacheStorePolicy.forStore("swc", CacheStorePolicy.SOFT_VALUES));
         swfCache = new SWFCache(this);
         fileScopeCache = new FileScopeCache(this);
         assetTagCache = new AssetTagCache(this);
@@ -87,6 +97,7 @@ public class SWCManager extends ConcurrentCacheStoreBase<ISWC> implements ISWCMa
     private final AssetTagCache assetTagCache;
     private final CSSDocumentCache cssDocumentCache;
     private final IWorkspace workspace;
+    private volatile SWCDiskCache diskCache;
 
 
 
@@ -122,14 +133,66 @@ public class SWCManager extends ConcurrentCacheStoreBase<ISWC> implements ISWCMa
         return workspace;
     }
 
+    /**
+     * Get the hit, miss, load time and eviction counters of the SWC cache
+     * and of the caches it owns.
+     * 
+     * @return counters keyed by cache name, in a stable order.
+     */
+    public Map<String, CacheStats> getCacheStatistics()
+    {
+        final Map<String, CacheStats> result = new LinkedHashMap<String, CacheStats>();
+        result.put("swc", getStatistics());
+        result.put("swf", swfCache.getStatistics());
+        result.put("fileScope", fileScopeCache.getStatistics());
+        result.put("assetTag", assetTagCache.getStatistics());
+        result.put("cssDocument", cssDocumentCache.getStatistics());
+        return result;
+    }
+
+    /**
+     * @return the on-disk cache of SWC catalogs and library ABC, or null if
+     * SWCs are always read from the SWC files.
+     */
+    public SWCDiskCache getDiskCache()
+    {
+        return diskCache;
+    }
+
+    /**
+     * Sets the on-disk cache used to read SWC catalogs and library ABC
+     * without decoding the SWC files.
+     * 
+     * @param diskCache the cache, or null to disable it.
+     */
+    public void setDiskCache(SWCDiskCache diskCache)
+    {
+        this.diskCache = diskCache;
+    }
+
     @Override
     protected ISWC createEntryValue(CacheStoreKeyBase key)
     {
         if (key instanceof SWCCacheKey)
         {
             final SWCCacheKey cacheKey = (SWCCacheKey)key;
-            final SWCReader reader = new SWCReader(cacheKey.file, workspace.getASDocDelegate().getPackageDitaParser());
+            final IPackageDITAParser packageDitaParser = workspace.getASDocDelegate().getPackageDitaParser();
+
+            // The cached catalog doesn't include the DITA list, so only use it
+            // when nobody asks for ASDoc.
+            final SWCDiskCache diskCache = this.diskCache;
+            final boolean useDiskCache = diskCache != null && packageDitaParser == IPackageDITAParser.NIL_PARSER;
+            if (useDiskCache)
+            {
+                final ISWC cachedSWC = diskCache.readCatalog(cacheKey.file);
+                if (cachedSWC != null)
+                    return cachedSWC;
+            }
+
+            final SWCReader reader = new SWCReader(cacheKey.file, packageDitaParser);
             final ISWC swc = reader.getSWC();
+            if (useDiskCache)
+                diskCache.writeCatalog(swc);
             
             assert swc != null : "Expect a SWC model object.";
             return swc;
@@ -0,0 +1,224 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.abc;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.royale.compiler.internal.projects.RoyaleProject;
+import org.apache.royale.compiler.internal.workspaces.Workspace;
+import org.apache.royale.compiler.problems.ICompilerProblem;
+import org.apache.royale.compiler.units.ICompilationUnit;
+import org.apache.royale.utils.TestSourceFolder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit tests for {@link ABCLinker}.
+ */
+public class ABCLinkerTests
+{
+    private static final int CLASS_COUNT = 8;
+
+    private TestSourceFolder sources;
+    private List<byte[]> inputABCs;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        sources = new TestSourceFolder(getClass());
+
+        List<String> paths = new ArrayList<String>();
+        for (int i = 0; i < CLASS_COUNT; i++)
+            paths.add(sources.writeSource("p/C" + i + ".as", getClassCode(i)));
+
+        Workspace workspace = new Workspace();
+        try
+        {
+            RoyaleProject project = sources.createProject(workspace);
+
+            inputABCs = new ArrayList<byte[]>();
+            for (String path : paths)
+            {
+                ICompilationUnit unit = workspace.getCompilationUnits(path, project).iterator().next();
+                inputABCs.add(unit.getABCBytesRequest().get().getABCBytes());
+            }
+        }
+        finally
+        {
+            workspace.close();
+        }
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        sources.delete();
+    }
+
+    /**
+     * A class that extends the previous one, with code the peephole optimizer
+     * and the dead code filter change.
+     */
+    private static String getClassCode(int i)
+    {
+        StringBuilder code = new StringBuilder();
+        code.append("package p\n{\n");
+        code.append("    public class C" + i + (i > 0 ? " extends C" + (i - 1) : "") + "\n    {\n");
+        code.append("        public var v" + i + ":int;\n");
+        code.append("        public function f" + i + "(x:int):int\n");
+        code.append("        {\n");
+        code.append("            var y:int = x;\n");
+        code.append("            var s:String = \"c" + i + "\";\n");
+        code.append("            if (false) { y = 0; }\n");
+        code.append("            for (var j:int = 0; j < x; j++) y += j * " + i + ";\n");
+        code.append("            return y + s.length + v" + i + ";\n");
+        code.append("            y = 1;\n");
+        code.append("        }\n");
+        code.append("    }\n}\n");
+        return code.toString();
+    }
+
+    private ABCLinker.ABCLinkerSettings createSettings(List<ICompilerProblem> problems)
+    {
+        ABCLinker.ABCLinkerSettings settings = new ABCLinker.ABCLinkerSettings();
+        settings.setOptimize(true);
+        settings.setStripDebugOpcodes(true);
+        settings.setRemoveDeadCode(true);
+        settings.setStripGotoDefinitionHelp(true);
+        settings.setProblemsCollection(problems);
+        return settings;
+    }
+
+    private byte[] link(ExecutorService executorService, int threadCount, List<ICompilerProblem> problems) throws Exception
+    {
+        ABCLinker.ABCLinkerSettings settings = createSettings(problems);
+        settings.setExecutorService(executorService, threadCount);
+        return ABCLinker.linkABC(inputABCs, ABCConstants.VERSION_ABC_MAJOR_FP10, ABCConstants.VERSION_ABC_MINOR_FP10, settings);
+    }
+
+    /**
+     * Linking the inputs in parallel produces the same bytes and problems as
+     * linking them on the calling thread.
+     */
+    @Test
+    public void ABCLinker_parallelMatchesSerial() throws Exception
+    {
+        List<ICompilerProblem> serialProblems = new ArrayList<ICompilerProblem>();
+        byte[] serial = link(null, 0, serialProblems);
+
+        ExecutorService executorService = Executors.newFixedThreadPool(4);
+        try
+        {
+            for (int i = 0; i < 3; i++)
+            {
+                List<ICompilerProblem> parallelProblems = new ArrayList<ICompilerProblem>();
+                byte[] parallel = link(executorService, 4, parallelProblems);
+                assertThat("bytes " + i, parallel, is(serial));
+                assertThat("problems " + i, parallelProblems.toString(), is(serialProblems.toString()));
+            }
+        }
+        finally
+        {
+            executorService.shutdown();
+        }
+    }
+
+    /**
+     * An executor with a single thread, or a single input, is linked on the
+     * calling thread.
+     */
+    @Test
+    public void ABCLinker_serialWithOneThreadOrInput() throws Exception
+    {
+        CountingExecutorService executorService = new CountingExecutorService();
+        byte[] serial = link(null, 0, new ArrayList<ICompilerProblem>());
+
+        byte[] oneThread = link(executorService, 1, new ArrayList<ICompilerProblem>());
+        assertThat("bytes", oneThread, is(serial));
+        assertThat("tasks with one thread", executorService.taskCount.get(), is(0));
+
+        ABCLinker.ABCLinkerSettings settings = createSettings(new ArrayList<ICompilerProblem>());
+        settings.setExecutorService(executorService, 4);
+        ABCLinker.linkABC(inputABCs.subList(0, 1), ABCConstants.VERSION_ABC_MAJOR_FP10, ABCConstants.VERSION_ABC_MINOR_FP10, settings);
+        assertThat("tasks with one input", executorService.taskCount.get(), is(0));
+
+        link(executorService, 4, new ArrayList<ICompilerProblem>());
+        assertThat("tasks with several threads and inputs", executorService.taskCount.get(), is(CLASS_COUNT));
+    }
+
+    /**
+     * Runs its tasks on the calling thread, and counts them.
+     */
+    private static final class CountingExecutorService extends AbstractExecutorService
+    {
+        final AtomicInteger taskCount = new AtomicInteger();
+        private boolean shutdown;
+
+        @Override
+        public void execute(Runnable command)
+        {
+            taskCount.incrementAndGet();
+            command.run();
+        }
+
+        @Override
+        public void shutdown()
+        {
+            shutdown = true;
+        }
+
+        @Override
+        public List<Runnable> shutdownNow()
+        {
+            shutdown = true;
+            return Collections.emptyList();
+        }
+
+        @Override
+        public boolean isShutdown()
+        {
+            return shutdown;
+        }
+
+        @Override
+        public boolean isTerminated()
+        {
+            return shutdown;
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit)
+        {
+            return true;
+        }
+    }
+}
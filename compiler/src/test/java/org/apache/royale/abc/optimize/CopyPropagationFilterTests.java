@@ -0,0 +1,200 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.abc.optimize;
+
+import static org.apache.royale.abc.ABCConstants.*;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.royale.abc.graph.IBasicBlock;
+import org.apache.royale.abc.semantics.ExceptionInfo;
+import org.apache.royale.abc.semantics.Instruction;
+import org.apache.royale.abc.semantics.Label;
+import org.apache.royale.abc.semantics.MethodBodyInfo;
+import org.apache.royale.abc.semantics.MethodInfo;
+import org.apache.royale.abc.visitors.NilMethodBodyVisitor;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit tests for {@link CopyPropagationFilter}, on method bodies without
+ * parameters, so register 2 is the first local the filter may remove.
+ */
+public class CopyPropagationFilterTests
+{
+    private MethodBodyInfo mbi;
+
+    @Before
+    public void setUp()
+    {
+        mbi = new MethodBodyInfo();
+        mbi.setMethodInfo(new MethodInfo());
+    }
+
+    /**
+     * Runs the filter over the method body.
+     *
+     * @return the number of copies removed.
+     */
+    private int propagateCopies()
+    {
+        CopyPropagationFilter filter = new CopyPropagationFilter(mbi, new NilMethodBodyVisitor());
+        filter.visitEnd();
+        return filter.getEliminatedCopyCount();
+    }
+
+    /**
+     * @return the instructions of the blocks in entry order, without the
+     * targets of the branches.
+     */
+    private List<String> describe()
+    {
+        List<String> result = new ArrayList<String>();
+        for (IBasicBlock b : mbi.getCfg().getBlocksInEntryOrder())
+        {
+            for (Instruction insn : b.getInstructions())
+                result.add(insn.isBranch() ? Instruction.decodeOp(insn.getOpcode()) : insn.toString());
+        }
+        return result;
+    }
+
+    private static List<String> list(String... instructions)
+    {
+        List<String> result = new ArrayList<String>();
+        for (String insn : instructions)
+            result.add(insn);
+        return result;
+    }
+
+    /**
+     * A copy of <code>this</code> is removed, and its reads in the same block
+     * and at a branch target it dominates read <code>this</code>.
+     */
+    @Test
+    public void CopyPropagationFilter_copyReplaced()
+    {
+        Label target = new Label();
+        mbi.insn(OP_getlocal0);
+        mbi.insn(OP_setlocal, 2);
+        mbi.insn(OP_getlocal, 2);
+        mbi.insn(OP_iffalse, target);
+        mbi.insn(OP_pushnull);
+        mbi.insn(OP_returnvalue);
+        mbi.labelNext(target);
+        mbi.insn(OP_getlocal, 2);
+        mbi.insn(OP_returnvalue);
+
+        assertThat("count", propagateCopies(), is(1));
+        assertThat("instructions", describe(), is(list(
+                "getlocal0", "iffalse",
+                "pushnull", "returnvalue",
+                "getlocal0", "returnvalue")));
+    }
+
+    /**
+     * The read after a <code>kill</code> of the copy reads
+     * <code>undefined</code>, so the copy is kept.
+     */
+    @Test
+    public void CopyPropagationFilter_copyKilled()
+    {
+        mbi.insn(OP_getlocal0);
+        mbi.insn(OP_setlocal, 2);
+        mbi.insn(OP_getlocal, 2);
+        mbi.insn(OP_pop);
+        mbi.insn(OP_kill, 2);
+        mbi.insn(OP_getlocal, 2);
+        mbi.insn(OP_returnvalue);
+
+        assertThat("count", propagateCopies(), is(0));
+        assertThat("instructions", describe(), is(list(
+                "getlocal0", "setlocal(2)", "getlocal(2)", "pop", "kill(2)", "getlocal(2)", "returnvalue")));
+    }
+
+    /**
+     * A copy whose source is killed is kept.
+     */
+    @Test
+    public void CopyPropagationFilter_sourceKilled()
+    {
+        mbi.insn(OP_getlocal, 3);
+        mbi.insn(OP_setlocal, 2);
+        mbi.insn(OP_kill, 3);
+        mbi.insn(OP_getlocal, 2);
+        mbi.insn(OP_returnvalue);
+
+        assertThat("count", propagateCopies(), is(0));
+        assertThat("instructions", describe(), is(list(
+                "getlocal(3)", "setlocal(2)", "kill(3)", "getlocal(2)", "returnvalue")));
+    }
+
+    /**
+     * A branch target that is reached without going through the copy reads
+     * the register itself, so the copy is kept.
+     */
+    @Test
+    public void CopyPropagationFilter_branchTargetNotDominated()
+    {
+        Label target = new Label();
+        mbi.insn(OP_pushtrue);
+        mbi.insn(OP_iffalse, target);
+        mbi.insn(OP_getlocal0);
+        mbi.insn(OP_setlocal, 2);
+        mbi.labelNext(target);
+        mbi.insn(OP_getlocal, 2);
+        mbi.insn(OP_returnvalue);
+
+        assertThat("count", propagateCopies(), is(0));
+        assertThat("instructions", describe(), is(list(
+                "pushtrue", "iffalse",
+                "getlocal0", "setlocal(2)",
+                "getlocal(2)", "returnvalue")));
+    }
+
+    /**
+     * A method with an exception handler is left alone, even when the copy
+     * dominates the reads in the try block.
+     */
+    @Test
+    public void CopyPropagationFilter_exceptionHandler()
+    {
+        Label from = new Label();
+        Label to = new Label();
+        Label target = new Label();
+        mbi.labelNext(from);
+        mbi.insn(OP_getlocal0);
+        mbi.insn(OP_setlocal, 2);
+        mbi.insn(OP_getlocal, 2);
+        mbi.labelCurrent(to);
+        mbi.insn(OP_returnvalue);
+        mbi.labelNext(target);
+        mbi.insn(OP_getlocal, 2);
+        mbi.insn(OP_returnvalue);
+        mbi.addExceptionInfo(new ExceptionInfo(from, to, target, null, null));
+
+        assertThat("count", propagateCopies(), is(0));
+        assertThat("instructions", describe(), is(list(
+                "getlocal0", "setlocal(2)", "getlocal(2)", "returnvalue",
+                "getlocal(2)", "returnvalue")));
+    }
+}
@@ -0,0 +1,282 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.abc.optimize;
+
+import static org.apache.royale.abc.ABCConstants.*;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.royale.abc.instructionlist.InstructionList;
+import org.apache.royale.abc.semantics.Instruction;
+import org.apache.royale.abc.semantics.Label;
+import org.apache.royale.abc.semantics.Name;
+import org.apache.royale.abc.visitors.NilMethodBodyVisitor;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit tests for the peephole window of
+ * {@link PeepholeOptimizerMethodBodyVisitor}: the window filling and
+ * wrapping around, and the labels of instructions that are replaced or
+ * deleted.
+ */
+public class PeepholeOptimizerMethodBodyVisitorTests
+{
+    /**
+     * Records what the optimizer passes on, one instruction or label per
+     * line.
+     */
+    private static final class TraceVisitor extends NilMethodBodyVisitor
+    {
+        private final List<String> trace = new ArrayList<String>();
+        private InstructionList instructionList;
+
+        @Override
+        public void visitInstruction(Instruction insn)
+        {
+            trace.add(describe(insn));
+        }
+
+        @Override
+        public void labelCurrent(Label l)
+        {
+            trace.add("current " + l);
+        }
+
+        @Override
+        public void labelNext(Label l)
+        {
+            trace.add("next " + l);
+        }
+
+        @Override
+        public void visitInstructionList(InstructionList list)
+        {
+            instructionList = list;
+        }
+    }
+
+    private TraceVisitor delegate;
+    private PeepholeOptimizerMethodBodyVisitor optimizer;
+
+    @Before
+    public void setUp()
+    {
+        delegate = new TraceVisitor();
+        optimizer = new PeepholeOptimizerMethodBodyVisitor(delegate);
+    }
+
+    private static String describe(Instruction insn)
+    {
+        if (insn.isBranch())
+            return Instruction.decodeOp(insn.getOpcode()) + " " + insn.getTarget();
+        if (insn.isImmediate())
+            return insn.toString();
+        return Instruction.decodeOp(insn.getOpcode());
+    }
+
+    private static List<String> list(String... lines)
+    {
+        List<String> result = new ArrayList<String>();
+        for (String line : lines)
+            result.add(line);
+        return result;
+    }
+
+    private void pushbytes(int from, int to)
+    {
+        for (int i = from; i <= to; i++)
+            optimizer.visitInstruction(OP_pushbyte, i);
+    }
+
+    /**
+     * The window holds the last four instructions. Once it is full, each new
+     * instruction passes the oldest one on, and the labels of an instruction
+     * don't stay on the instructions that later reuse its place in the
+     * window.
+     */
+    @Test
+    public void PeepholeOptimizerMethodBodyVisitor_fillAndWrap()
+    {
+        List<String> expected = new ArrayList<String>();
+        for (int i = 0; i < 11; i++)
+        {
+            optimizer.visitInstruction(OP_pushbyte, i);
+            if (i % 3 == 0)
+                optimizer.labelCurrent(new Label("L" + i));
+
+            if (i >= 4)
+            {
+                expected.add("pushbyte(" + (i - 4) + ")");
+                if ((i - 4) % 3 == 0)
+                    expected.add("current L" + (i - 4));
+            }
+            assertThat("passed on after " + i, delegate.trace, is(expected));
+        }
+        optimizer.visitEnd();
+
+        List<String> all = new ArrayList<String>();
+        for (int i = 0; i < 11; i++)
+        {
+            all.add("pushbyte(" + i + ")");
+            if (i % 3 == 0)
+                all.add("current L" + i);
+        }
+        assertThat("trace", delegate.trace, is(all));
+    }
+
+    /**
+     * A jump to the next instruction is deleted, and its label is kept on
+     * the instruction before it, also when the window has wrapped around.
+     */
+    @Test
+    public void PeepholeOptimizerMethodBodyVisitor_deleteJumpToNext()
+    {
+        Label l1 = new Label("L1");
+        pushbytes(0, 5);
+        optimizer.visitInstruction(OP_jump, l1);
+        optimizer.labelNext(l1);
+        optimizer.visitInstruction(OP_pushbyte, 9);
+        optimizer.visitEnd();
+
+        assertThat("trace", delegate.trace, is(list(
+                "pushbyte(0)", "pushbyte(1)", "pushbyte(2)", "pushbyte(3)", "pushbyte(4)",
+                "pushbyte(5)", "next L1", "pushbyte(9)")));
+    }
+
+    /**
+     * A jump to the current instruction is replaced by that instruction,
+     * which keeps the label.
+     */
+    @Test
+    public void PeepholeOptimizerMethodBodyVisitor_replaceJumpToCurrent()
+    {
+        Label l1 = new Label("L1");
+        pushbytes(0, 2);
+        optimizer.visitInstruction(OP_jump, l1);
+        optimizer.visitInstruction(OP_pushbyte, 9);
+        optimizer.labelCurrent(l1);
+        optimizer.visitInstruction(OP_pushbyte, 10);
+        optimizer.visitEnd();
+
+        assertThat("trace", delegate.trace, is(list(
+                "pushbyte(0)", "pushbyte(1)", "pushbyte(2)", "pushbyte(9)", "current L1",
+                "pushbyte(10)")));
+    }
+
+    /**
+     * An if that only jumps over a jump is inverted, and the label of the
+     * if's target is on the new if.
+     */
+    @Test
+    public void PeepholeOptimizerMethodBodyVisitor_invertIf()
+    {
+        Label l1 = new Label("L1");
+        Label l2 = new Label("L2");
+        pushbytes(0, 2);
+        optimizer.visitInstruction(OP_getlocal0);
+        optimizer.visitInstruction(OP_iffalse, l1);
+        optimizer.visitInstruction(OP_jump, l2);
+        optimizer.labelNext(l1);
+        optimizer.visitInstruction(OP_pushbyte, 9);
+        optimizer.visitEnd();
+
+        assertThat("trace", delegate.trace, is(list(
+                "pushbyte(0)", "pushbyte(1)", "pushbyte(2)", "getlocal0", "iftrue L2", "next L1",
+                "pushbyte(9)")));
+    }
+
+    /**
+     * When a call and the pop of its result are replaced by a call that
+     * returns nothing, the labels of the instructions before and of the
+     * replaced call stay where they are.
+     */
+    @Test
+    public void PeepholeOptimizerMethodBodyVisitor_replaceKeepsLabels()
+    {
+        Label l1 = new Label("L1");
+        Label l2 = new Label("L2");
+        pushbytes(0, 2);
+        optimizer.labelCurrent(l1);
+        optimizer.visitInstruction(OP_callproperty, new Object[] {new Name("f"), 0});
+        optimizer.labelCurrent(l2);
+        optimizer.visitInstruction(OP_pop);
+        optimizer.visitInstruction(OP_pushbyte, 9);
+        optimizer.visitEnd();
+
+        assertThat("trace", delegate.trace, is(list(
+                "pushbyte(0)", "pushbyte(1)", "pushbyte(2)", "current L1",
+                "callpropvoid", "current L2", "pushbyte(9)")));
+    }
+
+    /**
+     * When a constant and the branch on it are deleted, the label of the
+     * constant moves to the next instruction, also when the window has
+     * wrapped around.
+     */
+    @Test
+    public void PeepholeOptimizerMethodBodyVisitor_deleteMovesLabel()
+    {
+        Label l1 = new Label("L1");
+        Label l2 = new Label("L2");
+        pushbytes(0, 3);
+        optimizer.visitInstruction(OP_pushfalse);
+        optimizer.labelCurrent(l1);
+        optimizer.visitInstruction(OP_iftrue, l2);
+        optimizer.visitInstruction(OP_pushbyte, 9);
+        optimizer.visitEnd();
+
+        assertThat("trace", delegate.trace, is(list(
+                "pushbyte(0)", "pushbyte(1)", "pushbyte(2)", "pushbyte(3)",
+                "pushbyte(9)", "current L1")));
+    }
+
+    /**
+     * An instruction list is optimized into a new list, through many turns
+     * of the window.
+     */
+    @Test
+    public void PeepholeOptimizerMethodBodyVisitor_instructionList()
+    {
+        InstructionList il = new InstructionList();
+        for (int i = 0; i < 6; i++)
+        {
+            il.addInstruction(OP_getlocal0);
+            il.addInstruction(OP_callproperty, new Object[] {new Name("f"), 0});
+            il.addInstruction(OP_pop);
+        }
+        optimizer.visitInstructionList(il);
+
+        List<String> expected = new ArrayList<String>();
+        for (int i = 0; i < 6; i++)
+        {
+            expected.add("getlocal0");
+            expected.add("callpropvoid");
+        }
+        List<String> actual = new ArrayList<String>();
+        for (Instruction insn : delegate.instructionList.getInstructions())
+            actual.add(describe(insn));
+        assertThat("instructions", actual, is(expected));
+        assertThat("passed on", delegate.trace.size(), is(0));
+    }
+}
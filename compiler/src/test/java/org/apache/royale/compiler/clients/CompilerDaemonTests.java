@@ -0,0 +1,199 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.clients;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.royale.compiler.filespecs.SourceTextCache;
+import org.apache.royale.compiler.internal.projects.RoyaleProject;
+import org.apache.royale.compiler.internal.workspaces.Workspace;
+import org.apache.royale.utils.FilenameNormalization;
+import org.apache.royale.utils.ITestAdapter;
+import org.apache.royale.utils.TestAdapterFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit tests for the explicit file notifications of {@link CompilerDaemon}.
+ */
+public class CompilerDaemonTests
+{
+    /**
+     * A daemon whose <code>probe</code> tool records, for each build, the
+     * text of {@link #file} and whether its workspace knows the paths of
+     * {@link #knownFiles}.
+     */
+    private class ProbeDaemon extends CompilerDaemon
+    {
+        final List<String> results = new ArrayList<String>();
+
+        @Override
+        protected CompilationSession createSession(String toolName)
+        {
+            if (!"probe".equals(toolName))
+                return super.createSession(toolName);
+            final Workspace workspace = new Workspace();
+            return new CompilationSession(workspace, new RoyaleProject(workspace))
+            {
+                @Override
+                protected int compile(String[] args, PrintStream err)
+                {
+                    try
+                    {
+                        StringBuilder result = new StringBuilder(SourceTextCache.getText(file, false));
+                        for (File knownFile : knownFiles)
+                        {
+                            String path = FilenameNormalization.normalize(knownFile.getAbsolutePath());
+                            result.append(" ").append(workspace.getKnownFilePaths().contains(path));
+                        }
+                        results.add(result.toString());
+                        return 0;
+                    }
+                    catch (IOException e)
+                    {
+                        return 1;
+                    }
+                }
+            };
+        }
+    }
+
+    private ITestAdapter testAdapter = TestAdapterFactory.getTestAdapter();
+    private File folder;
+    private File file;
+    private List<File> knownFiles;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        folder = File.createTempFile(getClass().getSimpleName(), "", new File(testAdapter.getTempDir()));
+        folder.delete();
+        folder.mkdirs();
+        // The source text cache is keyed by the normalized path, as the
+        // workspace gives it.
+        file = new File(FilenameNormalization.normalize(new File(folder, "A.as").getAbsolutePath()));
+        knownFiles = Arrays.asList(file, new File(folder, "B.as"));
+        FileUtils.writeStringToFile(file, "aaa", "UTF-8");
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        SourceTextCache.invalidate(file.getPath());
+        FileUtils.deleteDirectory(folder);
+    }
+
+    /**
+     * Rewrites the file without changing its length or modification time, as
+     * an edit within the resolution of the file system clock does.
+     */
+    private void rewrite(String text) throws IOException
+    {
+        long lastModified = file.lastModified();
+        FileUtils.writeStringToFile(file, text, "UTF-8");
+        file.setLastModified(lastModified);
+    }
+
+    private List<String> run(ProbeDaemon daemon, String... commands)
+    {
+        StringBuilder input = new StringBuilder();
+        for (String command : commands)
+            input.append(command).append("\n");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PrintStream stream = new PrintStream(out);
+        int exitCode = daemon.run(new ByteArrayInputStream(input.toString().getBytes()), stream, stream);
+        assertThat("exit code", exitCode, is(0));
+        return daemon.results;
+    }
+
+    private String path(String name)
+    {
+        return "\"" + new File(folder, name).getAbsolutePath() + "\"";
+    }
+
+    /**
+     * A notification received before the session exists is given to the
+     * session when it is created, so the text read by an earlier build isn't
+     * used.
+     */
+    @Test
+    public void CompilerDaemon_notificationBeforeSession() throws IOException
+    {
+        SourceTextCache.getText(file, false);
+        rewrite("bbb");
+
+        List<String> results = run(new ProbeDaemon(),
+                "changed " + path("A.as"),
+                "added " + path("B.as"),
+                "probe");
+        assertThat(results, is(Arrays.asList("bbb true true")));
+    }
+
+    /**
+     * A notification is given to one new session only, so the daemon doesn't
+     * keep every notification it receives.
+     */
+    @Test
+    public void CompilerDaemon_notificationConsumedOnce() throws IOException
+    {
+        List<String> results = run(new ProbeDaemon(),
+                "added " + path("B.as"),
+                "probe",
+                "reset probe",
+                "probe");
+        assertThat(results, is(Arrays.asList(
+                "aaa false true",
+                "aaa false false")));
+    }
+
+    /**
+     * A session that exists is notified immediately, and the notification
+     * isn't given to later sessions.
+     */
+    @Test
+    public void CompilerDaemon_notificationAfterSession() throws IOException
+    {
+        List<String> results = run(new ProbeDaemon(),
+                "probe",
+                "added " + path("B.as"),
+                "probe",
+                "removed " + path("B.as"),
+                "probe",
+                "reset probe",
+                "probe");
+        assertThat(results, is(Arrays.asList(
+                "aaa false false",
+                "aaa false true",
+                "aaa false false",
+                "aaa false false")));
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.filespecs;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.royale.compiler.filespecs.FileSpecification.NoCRLFInputStream;
+import org.apache.royale.compiler.internal.workspaces.Workspace;
+import org.apache.royale.utils.FilenameNormalization;
+import org.apache.royale.utils.ITestAdapter;
+import org.apache.royale.utils.TestAdapterFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit tests for {@link SourceTextCache} and the {@link SourceTextReader}s
+ * that {@link FileSpecification} creates from it.
+ */
+public class SourceTextCacheTests
+{
+    private ITestAdapter testAdapter = TestAdapterFactory.getTestAdapter();
+    private File folder;
+    private File file;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        folder = File.createTempFile(getClass().getSimpleName(), "", new File(testAdapter.getTempDir()));
+        folder.delete();
+        folder.mkdirs();
+        // The workspace invalidates entries by normalized path.
+        file = new File(FilenameNormalization.normalize(new File(folder, "A.as").getAbsolutePath()));
+        FileUtils.writeStringToFile(file, "var a:int;", "UTF-8");
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        SourceTextCache.invalidate(file.getPath());
+        FileUtils.deleteDirectory(folder);
+    }
+
+    /**
+     * Rewrites the file and gives it the specified modification time.
+     */
+    private void rewrite(String text, long lastModified) throws IOException
+    {
+        FileUtils.writeStringToFile(file, text, "UTF-8");
+        file.setLastModified(lastModified);
+    }
+
+    private static String readAll(Reader reader) throws IOException
+    {
+        StringBuilder result = new StringBuilder();
+        char[] buffer = new char[3];
+        int count;
+        while ((count = reader.read(buffer, 0, buffer.length)) != -1)
+            result.append(buffer, 0, count);
+        reader.close();
+        return result.toString();
+    }
+
+    /**
+     * The text is only read once while the file is unchanged.
+     */
+    @Test
+    public void SourceTextCache_unchangedHit() throws IOException
+    {
+        assertThat("first", SourceTextCache.getText(file, false), is("var a:int;"));
+        long hits = SourceTextCache.getStatistics().hitCount();
+        assertThat("second", SourceTextCache.getText(file, false), is("var a:int;"));
+        assertThat("hits", SourceTextCache.getStatistics().hitCount(), is(hits + 1));
+    }
+
+    /**
+     * A new modification time forces a read, even when the length is the
+     * same.
+     */
+    @Test
+    public void SourceTextCache_modificationTimeChanged() throws IOException
+    {
+        long lastModified = file.lastModified();
+        SourceTextCache.getText(file, false);
+        rewrite("var b:int;", lastModified - 10000);
+        assertThat(SourceTextCache.getText(file, false), is("var b:int;"));
+    }
+
+    /**
+     * A new length forces a read, even when the modification time is the
+     * same.
+     */
+    @Test
+    public void SourceTextCache_lengthChanged() throws IOException
+    {
+        long lastModified = file.lastModified();
+        SourceTextCache.getText(file, false);
+        rewrite("var bb:int;", lastModified);
+        assertThat(SourceTextCache.getText(file, false), is("var bb:int;"));
+    }
+
+    /**
+     * An edit that keeps the length and the modification time is only seen
+     * once the workspace is told that the file changed.
+     */
+    @Test
+    public void SourceTextCache_workspaceFileChanged() throws IOException
+    {
+        long lastModified = file.lastModified();
+        SourceTextCache.getText(file, false);
+        rewrite("var b:int;", lastModified);
+        assertThat("cached", SourceTextCache.getText(file, false), is("var a:int;"));
+
+        Workspace workspace = new Workspace();
+        try
+        {
+            workspace.fileChanged(new FileSpecification(file.getPath()));
+        }
+        finally
+        {
+            workspace.close();
+        }
+        assertThat("invalidated", SourceTextCache.getText(file, false), is("var b:int;"));
+    }
+
+    /**
+     * Text read with the other carriage return setting isn't returned from
+     * the cache.
+     */
+    @Test
+    public void SourceTextCache_stripCRIsPartOfTheEntry() throws IOException
+    {
+        rewrite("a\r\nb", file.lastModified());
+        assertThat("stripped", SourceTextCache.getText(file, true), is("a\nb"));
+        assertThat("kept", SourceTextCache.getText(file, false), is("a\r\nb"));
+        assertThat("stripped again", SourceTextCache.getText(file, true), is("a\nb"));
+    }
+
+    /**
+     * The text without carriage returns is the text that the
+     * NoCRLFInputStream used to give, so the offsets of the tokens are the
+     * same. The BOM isn't part of the text.
+     */
+    @Test
+    public void SourceTextCache_stripCRMatchesNoCRLFInputStream() throws IOException
+    {
+        String text = "package p\r\n{\r\n\tpublic class A // caf\u00e9\r\n\t{\rpublic var x:int;\r\n\t}\r\n}\r\n";
+        byte[] bom = new byte[] {(byte)0xEF, (byte)0xBB, (byte)0xBF};
+        byte[] bytes = text.getBytes("UTF-8");
+        byte[] withBOM = new byte[bom.length + bytes.length];
+        System.arraycopy(bom, 0, withBOM, 0, bom.length);
+        System.arraycopy(bytes, 0, withBOM, bom.length, bytes.length);
+        FileUtils.writeByteArrayToFile(file, withBOM);
+
+        ByteArrayOutputStream filtered = new ByteArrayOutputStream();
+        InputStream in = new NoCRLFInputStream(new FileInputStream(file));
+        try
+        {
+            int c;
+            while ((c = in.read()) != -1)
+                filtered.write(c);
+        }
+        finally
+        {
+            in.close();
+        }
+        byte[] filteredBytes = filtered.toByteArray();
+        String expected = new String(filteredBytes, bom.length, filteredBytes.length - bom.length, "UTF-8");
+
+        String stripped = SourceTextCache.getText(file, true);
+        assertThat("text", stripped, is(expected));
+        assertThat("offset", stripped.indexOf("public var"), is(expected.indexOf("public var")));
+        assertThat("no CR", stripped.indexOf('\r'), is(-1));
+    }
+
+    /**
+     * Every reader of the file reads the whole text, with or without the
+     * carriage returns depending on the filter setting.
+     */
+    @Test
+    public void SourceTextCache_fileSpecificationReaders() throws IOException
+    {
+        rewrite("a\r\nbcdefg", file.lastModified());
+        FileSpecification fileSpec = new FileSpecification(file.getPath());
+        boolean useCRLFFilter = FileSpecification.useCRLFFilter;
+        try
+        {
+            FileSpecification.useCRLFFilter = false;
+            assertThat("first reader", readAll(fileSpec.createReader()), is("a\r\nbcdefg"));
+            assertThat("second reader", readAll(fileSpec.createReader()), is("a\r\nbcdefg"));
+            FileSpecification.useCRLFFilter = true;
+            assertThat("filtered", readAll(fileSpec.createReader()), is("a\nbcdefg"));
+        }
+        finally
+        {
+            FileSpecification.useCRLFFilter = useCRLFFilter;
+        }
+    }
+
+    /**
+     * A SourceTextReader skips, marks and resets like other readers.
+     */
+    @Test
+    public void SourceTextReader_skipMarkReset() throws IOException
+    {
+        SourceTextReader reader = new SourceTextReader(new StringBuilder("abcdef"));
+        assertThat("length", reader.getLength(), is(6));
+        assertThat("read", (char)reader.read(), is('a'));
+        assertThat("skip", reader.skip(2), is(2L));
+        reader.mark(0);
+        char[] buffer = new char[10];
+        assertThat("count", reader.read(buffer, 1, 9), is(3));
+        assertThat("chars", new String(buffer, 1, 3), is("def"));
+        assertThat("end", reader.read(), is(-1));
+        assertThat("skip at end", reader.skip(5), is(0L));
+        reader.reset();
+        assertThat("after reset", (char)reader.read(), is('d'));
+        assertThat("empty read", reader.read(buffer, 0, 0), is(0));
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.internal.as.codegen;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.apache.royale.compiler.internal.projects.RoyaleProject;
+import org.apache.royale.compiler.internal.workspaces.Workspace;
+import org.apache.royale.compiler.problems.ICompilerProblem;
+import org.apache.royale.compiler.units.ICompilationUnit;
+import org.apache.royale.compiler.units.requests.IABCBytesRequestResult;
+import org.apache.royale.utils.TestSourceFolder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit tests for the generation of function and method bodies on the
+ * threads of the workspace.
+ */
+public class ParallelCodegenTests
+{
+    private static final int RUNS = 5;
+
+    private TestSourceFolder sources;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        sources = new TestSourceFolder(getClass());
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        sources.delete();
+    }
+
+    /**
+     * Generates the ABC of a file in a new workspace, and checks that it has
+     * no problems.
+     */
+    private byte[] generateABC(String path, boolean parallel) throws Exception
+    {
+        Workspace workspace = new Workspace();
+        try
+        {
+            RoyaleProject project = sources.createProject(workspace);
+            project.setUseParallelCodeGeneration(parallel);
+
+            ICompilationUnit unit = workspace.getCompilationUnits(path, project).iterator().next();
+            IABCBytesRequestResult result = unit.getABCBytesRequest().get();
+            assertThat("problems", Arrays.asList(result.getProblems()), is(Collections.<ICompilerProblem>emptyList()));
+            return result.getABCBytes();
+        }
+        finally
+        {
+            workspace.close();
+        }
+    }
+
+    private void assertParallelABCIsSerialABC(String path) throws Exception
+    {
+        byte[] serial = generateABC(path, false);
+        assertThat("generated", serial.length > 0, is(true));
+        for (int i = 0; i < RUNS; i++)
+            assertThat("run " + i, generateABC(path, true), is(serial));
+    }
+
+    /**
+     * The methods of a class, with nested and anonymous functions, generate
+     * the same bytes in every parallel build as in a serial build.
+     */
+    @Test
+    public void ParallelCodegen_classMethods() throws Exception
+    {
+        StringBuilder code = new StringBuilder();
+        code.append("package p\n{\n");
+        code.append("    public class A\n    {\n");
+        code.append("        public function A() { n = 1; }\n");
+        code.append("        private var n:int;\n");
+        for (int i = 0; i < 20; i++)
+        {
+            code.append("        public function f" + i + "(x:int):Function\n");
+            code.append("        {\n");
+            code.append("            function g(y:int):int { return x + y + " + i + "; }\n");
+            code.append("            var h:Function = function(z:int):int { return g(z) * n; };\n");
+            code.append("            for (var j:int = 0; j < x; j++) n += g(j);\n");
+            code.append("            return h;\n");
+            code.append("        }\n");
+            code.append("        public static function s" + i + "():String { return \"" + i + "\"; }\n");
+            code.append("        public function get p" + i + "():int { return n + " + i + "; }\n");
+        }
+        code.append("    }\n}\n");
+        String path = sources.writeSource("p/A.as", code.toString());
+
+        assertParallelABCIsSerialABC(path);
+    }
+
+    /**
+     * Package-level functions and their anonymous functions generate the
+     * same bytes in every parallel build as in a serial build.
+     */
+    @Test
+    public void ParallelCodegen_packageFunctions() throws Exception
+    {
+        StringBuilder code = new StringBuilder();
+        code.append("package p\n{\n");
+        code.append("    public function f(x:int):Function\n");
+        code.append("    {\n");
+        for (int i = 0; i < 20; i++)
+            code.append("        var h" + i + ":Function = function():int { return x + " + i + "; };\n");
+        code.append("        return h0;\n");
+        code.append("    }\n}\n");
+        String path = sources.writeSource("p/f.as", code.toString());
+
+        assertParallelABCIsSerialABC(path);
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.internal.caches;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.royale.compiler.internal.projects.RoyaleProject;
+import org.apache.royale.compiler.internal.workspaces.Workspace;
+import org.apache.royale.compiler.units.ICompilationUnit;
+import org.apache.royale.utils.TestSourceFolder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit tests for {@link ABCBytesDiskCache}. Each build runs in a new
+ * workspace with a new cache on the same directory, as a new compiler
+ * process would.
+ */
+public class ABCBytesDiskCacheTests
+{
+    private static final String CONFIGURATION = "configuration";
+
+    private TestSourceFolder sources;
+    private File cacheFolder;
+    private String pathA;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        sources = new TestSourceFolder(getClass());
+        cacheFolder = new File(sources.getRoot(), "cache");
+
+        pathA = sources.writeSource("p/A.as", "package p { public class A { public function f(b:B):int { return b.x + new C().y; } } }");
+        sources.writeSource("p/B.as", "package p { public class B { public var x:int; } }");
+        sources.writeSource("C.as", "package { public class C { public var y:int; } }");
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        sources.delete();
+    }
+
+    /**
+     * Generates the ABC of <code>p.A</code> in a new workspace.
+     */
+    private byte[] build(ABCBytesDiskCache cache) throws Exception
+    {
+        Workspace workspace = new Workspace();
+        try
+        {
+            RoyaleProject project = sources.createProject(workspace);
+            project.setABCBytesCache(cache);
+
+            ICompilationUnit unit = workspace.getCompilationUnits(pathA, project).iterator().next();
+            return unit.getABCBytesRequest().get().getABCBytes();
+        }
+        finally
+        {
+            workspace.close();
+        }
+    }
+
+    /**
+     * Builds with an empty cache, which stores the ABC of <code>p.A</code>.
+     */
+    private byte[] buildFirst() throws Exception
+    {
+        ABCBytesDiskCache cache = new ABCBytesDiskCache(cacheFolder, CONFIGURATION);
+        byte[] abc = build(cache);
+        assertThat("first misses", cache.getMissCount(), is(1L));
+        assertThat("first stored", cache.getStoredCount(), is(1L));
+        return abc;
+    }
+
+    private void assertMiss(ABCBytesDiskCache cache, byte[] abc)
+    {
+        assertThat("hits", cache.getHitCount(), is(0L));
+        assertThat("misses", cache.getMissCount(), is(1L));
+        assertThat("stored", cache.getStoredCount(), is(1L));
+        assertThat("generated", abc.length > 0, is(true));
+    }
+
+    /**
+     * A build of unchanged sources uses the entry.
+     */
+    @Test
+    public void ABCBytesDiskCache_unchangedHit() throws Exception
+    {
+        byte[] first = buildFirst();
+
+        ABCBytesDiskCache cache = new ABCBytesDiskCache(cacheFolder, CONFIGURATION);
+        byte[] second = build(cache);
+        assertThat("hits", cache.getHitCount(), is(1L));
+        assertThat("misses", cache.getMissCount(), is(0L));
+        assertThat("stored", cache.getStoredCount(), is(0L));
+        assertThat("abc", second, is(first));
+    }
+
+    /**
+     * A new member of a class that <code>p.A</code> depends on changes the
+     * fingerprint of its unit.
+     */
+    @Test
+    public void ABCBytesDiskCache_dependeeSignatureChangeMisses() throws Exception
+    {
+        buildFirst();
+        sources.writeSource("p/B.as", "package p { public class B { public var x:int; public function g():void {} } }");
+
+        ABCBytesDiskCache cache = new ABCBytesDiskCache(cacheFolder, CONFIGURATION);
+        assertMiss(cache, build(cache));
+    }
+
+    /**
+     * A new <code>p.C</code> changes the definitions that the name
+     * <code>C</code> in <code>p.A</code> can resolve to, although no file that
+     * <code>p.A</code> depends on changed.
+     */
+    @Test
+    public void ABCBytesDiskCache_shadowingDefinitionMisses() throws Exception
+    {
+        buildFirst();
+        sources.writeSource("p/C.as", "package p { public class C { public var y:int; } }");
+
+        ABCBytesDiskCache cache = new ABCBytesDiskCache(cacheFolder, CONFIGURATION);
+        build(cache);
+        assertThat("hits", cache.getHitCount(), is(0L));
+        assertThat("misses", cache.getMissCount(), is(1L));
+    }
+
+    /**
+     * <code>p.K</code> is initialized from <code>L</code>, and its value is
+     * folded into the code of <code>p.A</code>. A change of the value of
+     * <code>L</code> changes the fingerprint of <code>p.K</code>, although
+     * its file didn't change.
+     */
+    @Test
+    public void ABCBytesDiskCache_foldedConstantChangeMisses() throws Exception
+    {
+        sources.writeSource("p/A.as", "package p { public class A { public function f(b:B):int { return b.x + new C().y + K; } } }");
+        sources.writeSource("p/K.as", "package p { public const K:int = L + 1; }");
+        sources.writeSource("L.as", "package { public const L:int = 1; }");
+        byte[] first = buildFirst();
+        sources.writeSource("L.as", "package { public const L:int = 41; }");
+
+        ABCBytesDiskCache cache = new ABCBytesDiskCache(cacheFolder, CONFIGURATION);
+        byte[] second = build(cache);
+        assertMiss(cache, second);
+        assertThat("abc changed", Arrays.equals(second, first), is(false));
+    }
+
+    /**
+     * An entry written with another configuration isn't found.
+     */
+    @Test
+    public void ABCBytesDiskCache_configurationChangeMisses() throws Exception
+    {
+        byte[] first = buildFirst();
+
+        ABCBytesDiskCache cache = new ABCBytesDiskCache(cacheFolder, CONFIGURATION + " -debug");
+        byte[] second = build(cache);
+        assertMiss(cache, second);
+        assertThat("abc", second, is(first));
+    }
+
+    /**
+     * A truncated entry is a miss, and is replaced by a complete one.
+     */
+    @Test
+    public void ABCBytesDiskCache_truncatedEntryMisses() throws Exception
+    {
+        byte[] first = buildFirst();
+        File[] entries = cacheFolder.listFiles();
+        assertThat("entries", entries.length, is(1));
+        byte[] entry = FileUtils.readFileToByteArray(entries[0]);
+        FileOutputStream out = new FileOutputStream(entries[0]);
+        try
+        {
+            out.write(Arrays.copyOf(entry, entry.length / 2));
+        }
+        finally
+        {
+            out.close();
+        }
+
+        ABCBytesDiskCache cache = new ABCBytesDiskCache(cacheFolder, CONFIGURATION);
+        byte[] second = build(cache);
+        assertMiss(cache, second);
+        assertThat("abc", second, is(first));
+
+        cache = new ABCBytesDiskCache(cacheFolder, CONFIGURATION);
+        assertThat("replaced", build(cache), is(first));
+        assertThat("hits", cache.getHitCount(), is(1L));
+    }
+}
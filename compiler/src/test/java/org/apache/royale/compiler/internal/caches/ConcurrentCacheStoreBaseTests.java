@@ -0,0 +1,275 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.internal.caches;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * JUnit tests for {@link ConcurrentCacheStoreBase} and the system property
+ * overrides of {@link CacheStorePolicy}.
+ */
+public class ConcurrentCacheStoreBaseTests
+{
+    private static final String STORE = "concurrentCacheStoreBaseTests";
+    private static final String MAXIMUM_WEIGHT_PROPERTY = "royale.cache." + STORE + ".maximumWeight";
+    private static final String SOFT_VALUES_PROPERTY = "royale.cache." + STORE + ".softValues";
+
+    private static class Key extends CacheStoreKeyBase
+    {
+        Key(String name)
+        {
+            this.name = name;
+        }
+
+        final String name;
+
+        @Override
+        public String generateKey()
+        {
+            return name;
+        }
+    }
+
+    /**
+     * A store whose values are the names of their keys. A key named
+     * <code>slow</code> takes a while to load, and the loading of other keys
+     * throws {@link #failure} if it is set.
+     */
+    private static class Store extends ConcurrentCacheStoreBase<String>
+    {
+        Store(CacheStorePolicy policy)
+        {
+            super(policy);
+        }
+
+        final AtomicInteger loads = new AtomicInteger();
+        volatile Throwable failure;
+
+        @Override
+        protected String createEntryValue(CacheStoreKeyBase key)
+        {
+            loads.incrementAndGet();
+            final String name = key.generateKey();
+            if ("slow".equals(name))
+            {
+                try
+                {
+                    Thread.sleep(200);
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            else if ("null".equals(name))
+            {
+                return null;
+            }
+            if (failure instanceof RuntimeException)
+                throw (RuntimeException)failure;
+            if (failure instanceof Error)
+                throw (Error)failure;
+            return name;
+        }
+    }
+
+    @After
+    public void tearDown()
+    {
+        System.clearProperty(MAXIMUM_WEIGHT_PROPERTY);
+        System.clearProperty(SOFT_VALUES_PROPERTY);
+    }
+
+    /**
+     * Threads that ask for the same missing key at the same time share one
+     * call to createEntryValue.
+     */
+    @Test(timeout = 30000)
+    public void ConcurrentCacheStoreBase_singleFlight() throws Exception
+    {
+        final Store store = new Store(CacheStorePolicy.UNBOUNDED);
+        final int threads = 8;
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try
+        {
+            List<Future<String>> futures = new ArrayList<Future<String>>();
+            for (int i = 0; i < threads; i++)
+            {
+                futures.add(executor.submit(new Callable<String>()
+                {
+                    @Override
+                    public String call() throws Exception
+                    {
+                        start.await();
+                        return store.get(new Key("slow"));
+                    }
+                }));
+            }
+            start.countDown();
+            for (Future<String> future : futures)
+                assertThat("value", future.get(), is("slow"));
+        }
+        finally
+        {
+            executor.shutdown();
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        }
+
+        assertThat("loads", store.loads.get(), is(1));
+        assertThat("requests", store.getStatistics().requestCount(), is((long)threads));
+        assertThat("successful loads", store.getStatistics().loadSuccessCount(), is(1L));
+        assertThat("size", store.size(), is(1));
+    }
+
+    /**
+     * A runtime exception thrown by createEntryValue reaches the caller
+     * unchanged, nothing is cached, and the next get tries again.
+     */
+    @Test
+    public void ConcurrentCacheStoreBase_runtimeExceptionPassesThrough()
+    {
+        Store store = new Store(CacheStorePolicy.UNBOUNDED);
+        IllegalStateException failure = new IllegalStateException("can't create entry");
+        store.failure = failure;
+        try
+        {
+            store.get(new Key("a"));
+            fail("expected an exception");
+        }
+        catch (IllegalStateException e)
+        {
+            assertThat("same exception", e == failure, is(true));
+        }
+        assertThat("size", store.size(), is(0));
+
+        store.failure = null;
+        assertThat("retried", store.get(new Key("a")), is("a"));
+        assertThat("loads", store.loads.get(), is(2));
+    }
+
+    /**
+     * An error thrown by createEntryValue reaches the caller unchanged.
+     */
+    @Test
+    public void ConcurrentCacheStoreBase_errorPassesThrough()
+    {
+        Store store = new Store(CacheStorePolicy.UNBOUNDED);
+        LinkageError failure = new LinkageError("broken entry");
+        store.failure = failure;
+        try
+        {
+            store.get(new Key("a"));
+            fail("expected an error");
+        }
+        catch (LinkageError e)
+        {
+            assertThat("same error", e == failure, is(true));
+        }
+    }
+
+    /**
+     * A null value isn't cached.
+     */
+    @Test
+    public void ConcurrentCacheStoreBase_nullValue()
+    {
+        Store store = new Store(CacheStorePolicy.UNBOUNDED);
+        try
+        {
+            store.get(new Key("null"));
+            fail("expected an exception");
+        }
+        catch (NullPointerException e)
+        {
+            assertThat("size", store.size(), is(0));
+        }
+    }
+
+    /**
+     * The maximum weight from the system property bounds the store, and the
+     * least recently used value is evicted first.
+     */
+    @Test
+    public void ConcurrentCacheStoreBase_maximumWeightOverride()
+    {
+        System.setProperty(MAXIMUM_WEIGHT_PROPERTY, " 2 ");
+        CacheStorePolicy policy = CacheStorePolicy.forStore(STORE, CacheStorePolicy.UNBOUNDED);
+        assertThat("maximum weight", policy.getMaximumWeight(), is(2L));
+        assertThat("soft values", policy.isSoftValues(), is(false));
+
+        Store store = new Store(policy);
+        store.get(new Key("a"));
+        store.get(new Key("b"));
+        store.get(new Key("a"));
+        store.get(new Key("c"));
+        assertThat("size", store.size(), is(2));
+        assertThat("evictions", store.getStatistics().evictionCount(), is(1L));
+
+        store.get(new Key("a"));
+        assertThat("a kept", store.loads.get(), is(3));
+        store.get(new Key("b"));
+        assertThat("b evicted", store.loads.get(), is(4));
+    }
+
+    /**
+     * The soft values property overrides the default, and a maximum weight
+     * that isn't a number keeps the default weight.
+     */
+    @Test
+    public void ConcurrentCacheStoreBase_softValuesOverride()
+    {
+        System.setProperty(SOFT_VALUES_PROPERTY, "true");
+        System.setProperty(MAXIMUM_WEIGHT_PROPERTY, "lots");
+        CacheStorePolicy policy = CacheStorePolicy.forStore(STORE, CacheStorePolicy.maximumWeight(10));
+        assertThat("soft values", policy.isSoftValues(), is(true));
+        assertThat("maximum weight", policy.getMaximumWeight(), is(10L));
+
+        System.setProperty(SOFT_VALUES_PROPERTY, "false");
+        System.clearProperty(MAXIMUM_WEIGHT_PROPERTY);
+        policy = CacheStorePolicy.forStore(STORE, CacheStorePolicy.SOFT_VALUES);
+        assertThat("strong values", policy.isSoftValues(), is(false));
+        assertThat("unbounded", policy.getMaximumWeight(), is(-1L));
+    }
+
+    /**
+     * Without overrides the default policy is used as is.
+     */
+    @Test
+    public void ConcurrentCacheStoreBase_noOverride()
+    {
+        assertThat(CacheStorePolicy.forStore(STORE, CacheStorePolicy.SOFT_VALUES) == CacheStorePolicy.SOFT_VALUES, is(true));
+    }
+}
@@ -0,0 +1,266 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.internal.caches;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.royale.compiler.common.DependencyType;
+import org.apache.royale.compiler.problems.FileIOProblem;
+import org.apache.royale.swc.ISWC;
+import org.apache.royale.swc.ISWCComponent;
+import org.apache.royale.swc.ISWCLibrary;
+import org.apache.royale.swc.ISWCScript;
+import org.apache.royale.swc.SWC;
+import org.apache.royale.swc.SWCComponent;
+import org.apache.royale.swc.SWCDigest;
+import org.apache.royale.swc.SWCLibrary;
+import org.apache.royale.swc.SWCScript;
+import org.apache.royale.swf.SWFFrame;
+import org.apache.royale.swf.tags.DoABCTag;
+import org.apache.royale.utils.ITestAdapter;
+import org.apache.royale.utils.TestAdapterFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit tests for {@link SWCDiskCache}, on SWC models built by hand. Each
+ * read uses a new cache on the same directory, as a new compiler process
+ * would.
+ */
+public class SWCDiskCacheTests
+{
+    private static final String DIGEST_1 = "0123456789abcdef0123456789abcdef0123456789abcdef0123456789abcdef";
+    private static final String DIGEST_2 = "fedcba9876543210fedcba9876543210fedcba9876543210fedcba9876543210";
+
+    private ITestAdapter testAdapter = TestAdapterFactory.getTestAdapter();
+    private File folder;
+    private File swcFile;
+    private File cacheFolder;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        folder = File.createTempFile(getClass().getSimpleName(), "", new File(testAdapter.getTempDir()));
+        folder.delete();
+        folder.mkdirs();
+        swcFile = new File(folder, "library.swc");
+        FileUtils.writeStringToFile(swcFile, "not read by the cache", "UTF-8");
+        cacheFolder = new File(folder, "cache");
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        FileUtils.deleteDirectory(folder);
+    }
+
+    private static SWCLibrary createLibrary(String digestValue)
+    {
+        SWCLibrary library = new SWCLibrary("library.swf");
+        SWCDigest digest = new SWCDigest();
+        digest.setType(SWCDigest.SHA_256);
+        digest.setValue(digestValue);
+        digest.setSigned(false);
+        library.addDigest(digest);
+        return library;
+    }
+
+    private SWC createSWC()
+    {
+        SWC swc = new SWC(swcFile);
+        swc.getVersion().setSWCVersion("1.2");
+        swc.getVersion().setCompilerName("royale");
+
+        SWCComponent component = new SWCComponent();
+        component.setQName("p:A");
+        component.setName("A");
+        swc.addComponent(component);
+
+        SWCLibrary library = createLibrary(DIGEST_1);
+        library.addNameToKeepAS3MetadataSet("Event");
+        SWCScript script = new SWCScript();
+        script.setName("p/A");
+        script.setLastModified(1234L);
+        script.addDefinition("p:A");
+        script.addDependency("p:B", DependencyType.INHERITANCE);
+        script.addDependency("Object", DependencyType.SIGNATURE);
+        library.addScript(script);
+        swc.addLibrary(library);
+
+        swc.addFile("defaults.css", 5678L, new byte[0]);
+        return swc;
+    }
+
+    private static SWFFrame createTags()
+    {
+        SWFFrame frame = new SWFFrame();
+        frame.addTag(new DoABCTag(1, "p/A", new byte[] {1, 2, 3}));
+        frame.addTag(new DoABCTag(1, "p/B", new byte[] {4, 5}));
+        return frame;
+    }
+
+    private static List<String> list(Iterable<?> values)
+    {
+        List<String> result = new ArrayList<String>();
+        for (Object value : values)
+            result.add(String.valueOf(value));
+        return result;
+    }
+
+    /**
+     * A catalog read from the cache has the components, libraries, scripts,
+     * dependencies and files that were written.
+     */
+    @Test
+    public void SWCDiskCache_catalogRoundTrip()
+    {
+        SWC written = createSWC();
+        new SWCDiskCache(cacheFolder).writeCatalog(written);
+
+        SWCDiskCache cache = new SWCDiskCache(cacheFolder);
+        ISWC read = cache.readCatalog(swcFile);
+        assertThat("hit", read != null, is(true));
+        assertThat("hits", cache.getCatalogHitCount(), is(1L));
+        assertThat("SWC file", read.getSWCFile(), is(swcFile));
+        assertThat("SWC version", read.getVersion().getSWCVersion(), is("1.2"));
+        assertThat("compiler", read.getVersion().getCompilerName(), is("royale"));
+        assertThat("royale version", read.getVersion().getRoyaleVersion(), is(written.getVersion().getRoyaleVersion()));
+        assertThat("ANE", read.isANE(), is(false));
+
+        assertThat("components", read.getComponents().size(), is(1));
+        ISWCComponent component = read.getComponents().get(0);
+        assertThat("qname", component.getQName(), is("p:A"));
+        assertThat("name", component.getName(), is("A"));
+        assertThat("uri", component.getURI(), is((String)null));
+
+        assertThat("libraries", read.getLibraries().size(), is(1));
+        ISWCLibrary library = read.getLibraries().iterator().next();
+        ISWCLibrary writtenLibrary = written.getLibraries().iterator().next();
+        assertThat("path", library.getPath(), is("library.swf"));
+        assertThat("digest", library.getDigests().get(0).getValue(), is(DIGEST_1));
+        assertThat("metadata", list(library.getKeepAS3MetadataSet()), is(list(writtenLibrary.getKeepAS3MetadataSet())));
+
+        assertThat("scripts", library.getScripts().size(), is(1));
+        ISWCScript script = library.getScripts().get(0);
+        assertThat("script", script.getName(), is("p/A"));
+        assertThat("last modified", script.getLastModified(), is(1234L));
+        assertThat("definitions", list(script.getDefinitions()), is(list(writtenLibrary.getScripts().get(0).getDefinitions())));
+        assertThat("dependencies", script.getDependencies(), is(writtenLibrary.getScripts().get(0).getDependencies()));
+        assertThat("component script", component.getScript() == script, is(true));
+
+        assertThat("files", read.getFiles().keySet(), is(written.getFiles().keySet()));
+        assertThat("file time", read.getFiles().get("defaults.css").getLastModified(), is(5678L));
+    }
+
+    /**
+     * A SWC with problems isn't cached, so the problems are reported again.
+     */
+    @Test
+    public void SWCDiskCache_catalogWithProblemsNotWritten()
+    {
+        SWC swc = createSWC();
+        swc.addProblem(new FileIOProblem(new IOException("unreadable catalog")));
+        new SWCDiskCache(cacheFolder).writeCatalog(swc);
+
+        SWCDiskCache cache = new SWCDiskCache(cacheFolder);
+        assertThat("miss", cache.readCatalog(swcFile) == null, is(true));
+        assertThat("misses", cache.getCatalogMissCount(), is(1L));
+    }
+
+    /**
+     * A new modification time or size of the SWC file invalidates its
+     * catalog.
+     */
+    @Test
+    public void SWCDiskCache_catalogInvalidated() throws IOException
+    {
+        new SWCDiskCache(cacheFolder).writeCatalog(createSWC());
+        swcFile.setLastModified(swcFile.lastModified() - 10000);
+        SWCDiskCache cache = new SWCDiskCache(cacheFolder);
+        assertThat("modification time", cache.readCatalog(swcFile) == null, is(true));
+
+        new SWCDiskCache(cacheFolder).writeCatalog(createSWC());
+        assertThat("rewritten", new SWCDiskCache(cacheFolder).readCatalog(swcFile) != null, is(true));
+
+        long lastModified = swcFile.lastModified();
+        FileUtils.writeStringToFile(swcFile, "not read by the cache either", "UTF-8");
+        swcFile.setLastModified(lastModified);
+        cache = new SWCDiskCache(cacheFolder);
+        assertThat("size", cache.readCatalog(swcFile) == null, is(true));
+        assertThat("misses", cache.getCatalogMissCount(), is(1L));
+    }
+
+    /**
+     * The ABC of the scripts of a library is found by the digest of the
+     * library, from any copy of the SWC.
+     */
+    @Test
+    public void SWCDiskCache_libraryABC()
+    {
+        new SWCDiskCache(cacheFolder).writeLibraryABC(createLibrary(DIGEST_1), createTags());
+
+        SWCDiskCache cache = new SWCDiskCache(cacheFolder);
+        ISWCLibrary library = createLibrary(DIGEST_1);
+        assertThat("A", cache.readScriptABC(library, "p/A"), is(new byte[] {1, 2, 3}));
+        assertThat("B", cache.readScriptABC(library, "p/B"), is(new byte[] {4, 5}));
+        assertThat("C", cache.readScriptABC(library, "p/C") == null, is(true));
+        assertThat("hits", cache.getLibraryHitCount(), is(1L));
+
+        assertThat("other digest", cache.readScriptABC(createLibrary(DIGEST_2), "p/A") == null, is(true));
+        assertThat("misses", cache.getLibraryMissCount(), is(1L));
+    }
+
+    /**
+     * An entry whose recorded digest isn't the digest of the library is a
+     * miss.
+     */
+    @Test
+    public void SWCDiskCache_digestMismatch() throws IOException
+    {
+        new SWCDiskCache(cacheFolder).writeLibraryABC(createLibrary(DIGEST_1), createTags());
+        FileUtils.copyFile(new File(cacheFolder, DIGEST_1 + ".abc"), new File(cacheFolder, DIGEST_2 + ".abc"));
+
+        SWCDiskCache cache = new SWCDiskCache(cacheFolder);
+        assertThat("mismatch", cache.readScriptABC(createLibrary(DIGEST_2), "p/A") == null, is(true));
+        assertThat("misses", cache.getLibraryMissCount(), is(1L));
+        assertThat("match", cache.readScriptABC(createLibrary(DIGEST_1), "p/A"), is(new byte[] {1, 2, 3}));
+    }
+
+    /**
+     * A library without an unsigned SHA-256 digest isn't cached.
+     */
+    @Test
+    public void SWCDiskCache_libraryWithoutDigest()
+    {
+        SWCLibrary library = new SWCLibrary("library.swf");
+        SWCDiskCache cache = new SWCDiskCache(cacheFolder);
+        cache.writeLibraryABC(library, createTags());
+        assertThat("written", cacheFolder.exists(), is(false));
+        assertThat("read", cache.readScriptABC(library, "p/A") == null, is(true));
+    }
+}
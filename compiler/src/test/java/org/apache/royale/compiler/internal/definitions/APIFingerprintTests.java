@@ -0,0 +1,207 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.internal.definitions;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsSame.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.royale.compiler.common.DependencyType;
+import org.apache.royale.compiler.common.DependencyTypeSet;
+import org.apache.royale.compiler.definitions.IClassDefinition;
+import org.apache.royale.compiler.filespecs.FileSpecification;
+import org.apache.royale.compiler.internal.projects.RoyaleProject;
+import org.apache.royale.compiler.internal.units.ASCompilationUnit;
+import org.apache.royale.compiler.internal.units.requests.FileScopeRequestResultBase;
+import org.apache.royale.compiler.internal.workspaces.Workspace;
+import org.apache.royale.compiler.units.ICompilationUnit;
+import org.apache.royale.compiler.units.requests.IFileScopeRequestResult;
+import org.apache.royale.utils.FilenameNormalization;
+import org.apache.royale.utils.TestSourceFolder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit tests for {@link APIFingerprint} and the selective invalidation of
+ * the dependents of a changed file.
+ */
+public class APIFingerprintTests
+{
+    private static final String A_TEMPLATE =
+        "package { import %1.Foo; public class A { public function f(x:Foo):void { %2 } } }";
+
+    private Workspace workspace;
+    private RoyaleProject project;
+    private TestSourceFolder sources;
+    private String pathA;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        sources = new TestSourceFolder(getClass());
+
+        sources.writeSource("p1/Foo.as", "package p1 { public class Foo {} }");
+        sources.writeSource("p2/Foo.as", "package p2 { public class Foo {} }");
+        pathA = sources.writeSource("A.as", getA("p1", "var i:int = 1;"));
+        sources.writeSource("B.as", "package { public class B extends A {} }");
+
+        workspace = new Workspace();
+        project = sources.createProject(workspace);
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        workspace.close();
+        sources.delete();
+    }
+
+    private static String getA(String importedPackage, String body)
+    {
+        return A_TEMPLATE.replace("%1", importedPackage).replace("%2", body);
+    }
+
+    private ICompilationUnit getUnit(String path)
+    {
+        return workspace.getCompilationUnits(path, project).iterator().next();
+    }
+
+    private String getDigest(ICompilationUnit unit) throws InterruptedException
+    {
+        FileScopeRequestResultBase fileScope = (FileScopeRequestResultBase)unit.getFileScopeRequest().get();
+        return APIFingerprint.create(fileScope.getFileScopes(), project).getDigest();
+    }
+
+    private DependencyTypeSet getChangedDependencyTypes(String newCodeForA) throws Exception
+    {
+        ASCompilationUnit unitA = (ASCompilationUnit)getUnit(pathA);
+        unitA.getFileScopeRequest().get();
+        sources.writeSource("A.as", newCodeForA);
+        return unitA.getChangedDependencyTypes(new FileSpecification(pathA));
+    }
+
+    /**
+     * Editing a function body doesn't change the API.
+     */
+    @Test
+    public void APIFingerprint_bodyChange() throws Exception
+    {
+        DependencyTypeSet changedTypes = getChangedDependencyTypes(getA("p1", "var i:int = 2;"));
+        assertThat("isEmpty", changedTypes.isEmpty(), is(true));
+    }
+
+    /**
+     * Adding a parameter changes the signature of a member.
+     */
+    @Test
+    public void APIFingerprint_signatureChange() throws Exception
+    {
+        String newCode = "package { import p1.Foo; public class A { public function f(x:Foo, y:Foo):void { var i:int = 1; } } }";
+        DependencyTypeSet changedTypes = getChangedDependencyTypes(newCode);
+        assertThat("SIGNATURE", changedTypes.contains(DependencyType.SIGNATURE), is(true));
+    }
+
+    /**
+     * The parameter is still written as <code>Foo</code>, but the import now
+     * binds that name to another class.
+     */
+    @Test
+    public void APIFingerprint_importRebinding() throws Exception
+    {
+        DependencyTypeSet changedTypes = getChangedDependencyTypes(getA("p2", "var i:int = 1;"));
+        assertThat("SIGNATURE", changedTypes.contains(DependencyType.SIGNATURE), is(true));
+    }
+
+    /**
+     * A subclass of a class whose function body changed is kept, and no
+     * longer refers to the old definition of its base class.
+     */
+    @Test
+    public void APIFingerprint_bodyChangeKeepsDependents() throws Exception
+    {
+        boolean performanceCachingEnabled = DefinitionBase.getPerformanceCachingEnabled();
+        DefinitionBase.setPerformanceCachingEnabled(true);
+        try
+        {
+            ICompilationUnit unitA = getUnit(pathA);
+            ICompilationUnit unitB = getUnit(FilenameNormalization.normalize(new File(sources.getSourceFolder(), "B.as").getAbsolutePath()));
+            unitB.getOutgoingDependenciesRequest().get();
+            IFileScopeRequestResult fileScopeB = unitB.getFileScopeRequest().get();
+            IClassDefinition classB = (IClassDefinition)fileScopeB.getMainDefinition("B");
+            IClassDefinition oldClassA = (IClassDefinition)unitA.getFileScopeRequest().get().getMainDefinition("A");
+            assertThat("isInstanceOf old A", classB.isInstanceOf(oldClassA, project), is(true));
+
+            sources.writeSource("A.as", getA("p1", "var i:int = 2;"));
+            workspace.fileChanged(new FileSpecification(pathA));
+
+            assertThat("B kept", unitB.getFileScopeRequest().get(), sameInstance(fileScopeB));
+            IClassDefinition newClassA = (IClassDefinition)unitA.getFileScopeRequest().get().getMainDefinition("A");
+            assertThat("A rebuilt", newClassA == oldClassA, is(false));
+            assertThat("isInstanceOf new A", classB.isInstanceOf(newClassA, project), is(true));
+        }
+        finally
+        {
+            DefinitionBase.setPerformanceCachingEnabled(performanceCachingEnabled);
+        }
+    }
+
+    /**
+     * <code>CX</code> is initialized from <code>CY</code>, which is in another
+     * file. When the value of <code>CY</code> changes, the fingerprint of
+     * <code>CX</code> changes, and <code>Z</code>, whose code has the value of
+     * <code>CX</code> folded into it, is generated again.
+     */
+    @Test
+    public void APIFingerprint_computedConstantChange() throws Exception
+    {
+        String pathCY = sources.writeSource("CY.as", "package { public const CY:int = 1; }");
+        String pathCX = sources.writeSource("CX.as", "package { public const CX:int = CY + 1; }");
+        String pathZ = sources.writeSource("Z.as", "package { public class Z { public function f():int { return CX; } } }");
+
+        ICompilationUnit unitCX = getUnit(pathCX);
+        ICompilationUnit unitZ = getUnit(pathZ);
+        byte[] oldABC = unitZ.getABCBytesRequest().get().getABCBytes();
+        String oldDigest = getDigest(unitCX);
+
+        sources.writeSource("CY.as", "package { public const CY:int = 41; }");
+        workspace.fileChanged(new FileSpecification(pathCY));
+
+        assertThat("CX fingerprint changed", getDigest(unitCX).equals(oldDigest), is(false));
+        byte[] newABC = unitZ.getABCBytesRequest().get().getABCBytes();
+        assertThat("Z regenerated", Arrays.equals(newABC, oldABC), is(false));
+
+        Workspace cleanWorkspace = new Workspace();
+        try
+        {
+            RoyaleProject cleanProject = sources.createProject(cleanWorkspace);
+            ICompilationUnit cleanZ = cleanWorkspace.getCompilationUnits(pathZ, cleanProject).iterator().next();
+            assertThat("Z abc", newABC, is(cleanZ.getABCBytesRequest().get().getABCBytes()));
+        }
+        finally
+        {
+            cleanWorkspace.close();
+        }
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.internal.graph;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+/**
+ * JUnit tests for {@link ConcurrentGraph}.
+ */
+public class ConcurrentGraphTests
+{
+    private static class Edge implements IGraphEdge<Integer>
+    {
+        Edge(int from, int to)
+        {
+            this.from = from;
+            this.to = to;
+        }
+
+        private final Integer from;
+        private final Integer to;
+
+        @Override
+        public Integer getFrom()
+        {
+            return from;
+        }
+
+        @Override
+        public Integer getTo()
+        {
+            return to;
+        }
+    }
+
+    private static final int VERTICES = 50;
+    private static final int THREADS = 4;
+
+    /**
+     * An edge that is added is found from both of its vertices, and a second
+     * edge between the same vertices isn't added.
+     */
+    @Test
+    public void ConcurrentGraph_addEdgeIfAbsent()
+    {
+        ConcurrentGraph<Integer, Edge> graph = new ConcurrentGraph<Integer, Edge>();
+        Edge edge = new Edge(1, 2);
+        assertThat("added", graph.addEdgeIfAbsent(edge) == edge, is(true));
+        assertThat("existing", graph.addEdgeIfAbsent(new Edge(1, 2)) == edge, is(true));
+        assertThat("get", graph.getEdge(1, 2) == edge, is(true));
+        assertThat("reverse", graph.getEdge(2, 1) == null, is(true));
+        assertThat("outgoing", graph.getOutgoingEdges(1).contains(edge), is(true));
+        assertThat("incoming", graph.getIncomingEdges(2).contains(edge), is(true));
+        assertThat("incoming size", graph.getIncomingEdges(2).size(), is(1));
+        assertThat("no incoming", graph.getIncomingEdges(1).isEmpty(), is(true));
+    }
+
+    /**
+     * setEdge replaces the edge in both directions.
+     */
+    @Test
+    public void ConcurrentGraph_setEdge()
+    {
+        ConcurrentGraph<Integer, Edge> graph = new ConcurrentGraph<Integer, Edge>();
+        Edge first = new Edge(1, 2);
+        Edge second = new Edge(1, 2);
+        assertThat("new", graph.setEdge(first) == null, is(true));
+        assertThat("replaced", graph.setEdge(second) == first, is(true));
+        assertThat("outgoing", graph.getOutgoingEdges(1).iterator().next() == second, is(true));
+        assertThat("incoming", graph.getIncomingEdges(2).iterator().next() == second, is(true));
+    }
+
+    /**
+     * Removing an edge or a vertex removes the edges from both of their
+     * vertices.
+     */
+    @Test
+    public void ConcurrentGraph_remove()
+    {
+        ConcurrentGraph<Integer, Edge> graph = new ConcurrentGraph<Integer, Edge>();
+        graph.addVertex(4);
+        Edge a = graph.addEdgeIfAbsent(new Edge(1, 2));
+        graph.addEdgeIfAbsent(new Edge(2, 3));
+        graph.addEdgeIfAbsent(new Edge(3, 1));
+
+        assertThat("removed", graph.removeEdge(a) == a, is(true));
+        assertThat("outgoing", graph.getOutgoingEdges(1).isEmpty(), is(true));
+        assertThat("incoming", graph.getIncomingEdges(2).isEmpty(), is(true));
+        assertThat("removed again", graph.removeEdge(a) == null, is(true));
+
+        graph.removeVertex(3);
+        assertThat("vertices", graph.getVertices().size(), is(3));
+        assertThat("outgoing of 2", graph.getOutgoingEdges(2).isEmpty(), is(true));
+        assertThat("incoming of 1", graph.getIncomingEdges(1).isEmpty(), is(true));
+    }
+
+    /**
+     * Threads that add the same edges at the same time all get the edge that
+     * was added first, and that edge is the only incoming edge from its
+     * source.
+     */
+    @Test(timeout = 60000)
+    public void ConcurrentGraph_concurrentAdds() throws Exception
+    {
+        final ConcurrentGraph<Integer, Edge> graph = new ConcurrentGraph<Integer, Edge>();
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try
+        {
+            List<Future<List<Edge>>> futures = new ArrayList<Future<List<Edge>>>();
+            for (int t = 0; t < THREADS; t++)
+            {
+                futures.add(executor.submit(new Callable<List<Edge>>()
+                {
+                    @Override
+                    public List<Edge> call() throws Exception
+                    {
+                        start.await();
+                        List<Edge> result = new ArrayList<Edge>();
+                        for (int from = 0; from < VERTICES; from++)
+                        {
+                            for (int to = 0; to < VERTICES; to++)
+                                result.add(graph.addEdgeIfAbsent(new Edge(from, to)));
+                        }
+                        return result;
+                    }
+                }));
+            }
+            start.countDown();
+
+            List<Edge> first = futures.get(0).get();
+            for (Future<List<Edge>> future : futures)
+            {
+                List<Edge> edges = future.get();
+                for (int i = 0; i < edges.size(); i++)
+                    assertThat("same edge " + i, edges.get(i) == first.get(i), is(true));
+            }
+            for (Edge edge : first)
+            {
+                assertThat("outgoing", graph.getEdge(edge.getFrom(), edge.getTo()) == edge, is(true));
+                assertThat("incoming", graph.getIncomingEdges(edge.getTo()).contains(edge), is(true));
+            }
+            for (int to = 0; to < VERTICES; to++)
+                assertThat("incoming size", graph.getIncomingEdges(to).size(), is(VERTICES));
+        }
+        finally
+        {
+            executor.shutdown();
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * A thread that finds an edge with getEdge while other threads are still
+     * adding edges also finds it in the incoming edges of its target. This
+     * is what the dependency graph relies on when it looks up the dependents
+     * of a unit under its read lock.
+     */
+    @Test(timeout = 60000)
+    public void ConcurrentGraph_incomingPublishedWithOutgoing() throws Exception
+    {
+        final ConcurrentGraph<Integer, Edge> graph = new ConcurrentGraph<Integer, Edge>();
+        final AtomicBoolean adding = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS + 1);
+        try
+        {
+            List<Future<?>> adders = new ArrayList<Future<?>>();
+            for (int t = 0; t < THREADS; t++)
+            {
+                adders.add(executor.submit(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        for (int from = 0; from < VERTICES; from++)
+                        {
+                            for (int to = 0; to < VERTICES; to++)
+                                graph.addEdgeIfAbsent(new Edge(from, to));
+                        }
+                    }
+                }));
+            }
+            Future<Integer> checker = executor.submit(new Callable<Integer>()
+            {
+                @Override
+                public Integer call()
+                {
+                    int missing = 0;
+                    while (adding.get())
+                    {
+                        for (int from = 0; from < VERTICES; from++)
+                        {
+                            for (int to = 0; to < VERTICES; to++)
+                            {
+                                Edge edge = graph.getEdge(from, to);
+                                if (edge != null && !graph.getIncomingEdges(to).contains(edge))
+                                    missing++;
+                            }
+                        }
+                    }
+                    return missing;
+                }
+            });
+
+            for (Future<?> adder : adders)
+                adder.get();
+            adding.set(false);
+            assertThat("edges missing from the incoming edges", checker.get(), is(0));
+        }
+        finally
+        {
+            executor.shutdown();
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+}
@@ -28,12 +28,17 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.util.List;
 
 import org.apache.royale.compiler.filespecs.FileSpecification;
 import org.apache.royale.compiler.filespecs.IFileSpecification;
+import org.apache.royale.compiler.internal.parsing.mxml.MXMLToken;
+import org.apache.royale.compiler.internal.parsing.mxml.MXMLTokenizer;
 import org.apache.royale.compiler.internal.workspaces.Workspace;
 import org.apache.royale.compiler.mxml.IMXMLData;
 import org.apache.royale.compiler.mxml.IMXMLDataManager;
+import org.apache.royale.compiler.mxml.IMXMLTagData;
+import org.apache.royale.compiler.mxml.IMXMLUnitData;
 import org.apache.royale.utils.ITestAdapter;
 import org.apache.royale.utils.StringUtils;
 import org.apache.royale.utils.TestAdapterFactory;
@@ -49,6 +54,16 @@ public class MXMLDataTests
     }
 	
 	protected IMXMLData getMXMLData(String mxml)
+	{
+		IFileSpecification fileSpec = writeMXML(mxml);
+		
+		Workspace workspace = new Workspace();
+		IMXMLDataManager mxmlDataManager = workspace.getMXMLDataManager();
+		IMXMLData mxmlData = mxmlDataManager.get(fileSpec);
+		return mxmlData;
+	}
+	
+	private IFileSpecification writeMXML(String mxml)
 	{
 		File tempMXMLFile = null;
 		try
@@ -66,12 +81,74 @@ public class MXMLDataTests
 			e1.printStackTrace();
 		}
 
-		IFileSpecification fileSpec = new FileSpecification(tempMXMLFile.getPath());
+		return new FileSpecification(tempMXMLFile.getPath());
+	}
+	
+	/**
+	 * Builds an MXMLData from a list of all the tokens of a file,
+	 * the way it was built before tokens were streamed.
+	 */
+	private MXMLData getMXMLDataFromTokenList(IFileSpecification fileSpec) throws IOException
+	{
+		MXMLTokenizer tokenizer = new MXMLTokenizer(fileSpec);
+		try
+		{
+			List<MXMLToken> tokens = tokenizer.parseTokens(fileSpec.createReader());
+			MXMLData mxmlData = new MXMLData(tokens, tokenizer.getPrefixMap(), fileSpec);
+			mxmlData.getProblems().addAll(tokenizer.getTokenizationProblems());
+			return mxmlData;
+		}
+		finally
+		{
+			tokenizer.close();
+		}
+	}
+	
+	/**
+	 * Builds an MXMLData from the tokens of a file as they are lexed.
+	 */
+	private MXMLData getMXMLDataFromTokenStream(IFileSpecification fileSpec) throws IOException
+	{
+		MXMLTokenizer tokenizer = new MXMLTokenizer(fileSpec);
+		try
+		{
+			MXMLData mxmlData = new MXMLData(tokenizer.streamTokens(fileSpec.createReader()), fileSpec);
+			mxmlData.getProblems().addAll(tokenizer.getTokenizationProblems());
+			return mxmlData;
+		}
+		finally
+		{
+			tokenizer.close();
+		}
+	}
+	
+	/**
+	 * Checks that streaming the tokens of some MXML builds the same
+	 * MXMLData as building it from a list of all its tokens.
+	 */
+	private void assertStreamedMXMLDataMatches(String mxml) throws IOException
+	{
+		IFileSpecification fileSpec = writeMXML(mxml);
+		MXMLData expected = getMXMLDataFromTokenList(fileSpec);
+		MXMLData actual = getMXMLDataFromTokenStream(fileSpec);
 		
-		Workspace workspace = new Workspace();
-		IMXMLDataManager mxmlDataManager = workspace.getMXMLDataManager();
-		IMXMLData mxmlData = mxmlDataManager.get(fileSpec);
-		return mxmlData;
+		assertThat("getNumUnits", actual.getNumUnits(), is(expected.getNumUnits()));
+		assertThat("units", actual.toString(), is(expected.toString()));
+		for (int i = 0; i < expected.getNumUnits(); i++)
+		{
+			IMXMLUnitData expectedUnit = expected.getUnit(i);
+			IMXMLUnitData actualUnit = actual.getUnit(i);
+			if (expectedUnit instanceof IMXMLTagData)
+			{
+				assertThat("getPrefixMap " + i, ((IMXMLTagData)actualUnit).getPrefixMap(), is(((IMXMLTagData)expectedUnit).getPrefixMap()));
+				assertThat("getAttributeDatas " + i, ((IMXMLTagData)actualUnit).getAttributeDatas().length, is(((IMXMLTagData)expectedUnit).getAttributeDatas().length));
+			}
+		}
+		assertThat("getEnd", actual.getEnd(), is(expected.getEnd()));
+		assertThat("getMXMLDialect", actual.getMXMLDialect(), is(expected.getMXMLDialect()));
+		assertThat("getRootTagPrefixMap", actual.getRootTagPrefixMap(), is(expected.getRootTagPrefixMap()));
+		assertThat("getProblems", actual.getProblems().size(), is(expected.getProblems().size()));
+		assertThat("isDataRepaired", actual.isDataRepaired(), is(expected.isDataRepaired()));
 	}
 	
 	/**
@@ -93,4 +170,66 @@ public class MXMLDataTests
 		assertThat("getMXMLDialect", mxmlData.getMXMLDialect(), is(MXMLDialect.DEFAULT));
 		assertThat("getProblems", mxmlData.getProblems().size(), is(0));
 	}
+	
+	/**
+	 * Tests that a document with namespaces, attributes, text, comments,
+	 * CDATA and a script is built the same from streamed tokens.
+	 */
+	@Test
+	public void MXMLData_streamedTokens_document() throws IOException
+	{
+		String[] code = new String[]
+		{
+			"<?xml version='1.0' encoding='utf-8'?>",
+			"<fx:Object xmlns:fx='http://ns.adobe.com/mxml/2009' xmlns:ns1='ns1' xmlns='default'>",
+			"    <!-- comment -->",
+			"    <fx:Script><![CDATA[",
+			"        private var i:int = 1 < 2 ? 1 : 2;",
+			"    ]]></fx:Script>",
+			"    <ns1:Child a='1' b=\"{i}\" xmlns:ns2='ns2'>",
+			"        <ns2:Grandchild/>",
+			"        text &amp; more text",
+			"    </ns1:Child>",
+			"    <Empty />",
+			"</fx:Object>"
+		};
+		assertStreamedMXMLDataMatches(getMXML(code));
+	}
+	
+	/**
+	 * Tests that an empty document is built the same from streamed tokens.
+	 */
+	@Test
+	public void MXMLData_streamedTokens_empty() throws IOException
+	{
+		assertStreamedMXMLDataMatches("");
+	}
+	
+	/**
+	 * Tests that a document with unbalanced tags is repaired the same way
+	 * from streamed tokens.
+	 */
+	@Test
+	public void MXMLData_streamedTokens_unbalanced() throws IOException
+	{
+		String[] code = new String[]
+		{
+			"<fx:Object xmlns:fx='http://ns.adobe.com/mxml/2009'>",
+			"    <fx:Declarations>",
+			"        <fx:String>abc",
+			"    </fx:Declarations>",
+			"    <fx:Array></fx:Boolean>",
+		};
+		assertStreamedMXMLDataMatches(getMXML(code));
+	}
+	
+	/**
+	 * Tests that a document whose root tag isn't closed is built the same
+	 * from streamed tokens, when the tokens of the root tag are read ahead.
+	 */
+	@Test
+	public void MXMLData_streamedTokens_unclosedRootTag() throws IOException
+	{
+		assertStreamedMXMLDataMatches("<fx:Object xmlns:fx='http://ns.adobe.com/mxml/2006' a='1'");
+	}
 }
@@ -0,0 +1,248 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.internal.parsing.as;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit tests for the look-ahead ring of {@link StreamingTokenBuffer}. The
+ * buffer is compared with a list based model of the rewind buffer, which is
+ * how the buffer used to be implemented.
+ */
+public class StreamingTokenBufferTests
+{
+    private static final String PATH = "A.as";
+    private static final int REWIND_BUFFER_SIZE = 10;
+
+    /**
+     * The rewind buffer as a list: the padding, then the consumed tokens,
+     * then the look-ahead tokens. A null token is the end of the file.
+     */
+    private static final class ModelBuffer
+    {
+        ModelBuffer(List<ASToken> tokens)
+        {
+            this.tokens = tokens.iterator();
+            for (int i = 0; i < REWIND_BUFFER_SIZE; i++)
+                buffer.add(null);
+        }
+
+        private final Iterator<ASToken> tokens;
+        private final List<ASToken> buffer = new ArrayList<ASToken>();
+        private int bufferSize = 0;
+        private int position = 0;
+
+        ASToken LT(int i)
+        {
+            while (bufferSize < i)
+            {
+                buffer.add(tokens.hasNext() ? tokens.next() : null);
+                bufferSize++;
+            }
+            return buffer.get(REWIND_BUFFER_SIZE - 1 + i);
+        }
+
+        void consume()
+        {
+            position++;
+            if (bufferSize > 0)
+            {
+                buffer.remove(1);
+                bufferSize--;
+            }
+        }
+
+        void rewind(int position)
+        {
+            for (int i = 0; i < this.position - position; i++)
+            {
+                buffer.add(0, null);
+                bufferSize++;
+            }
+            this.position = position;
+        }
+    }
+
+    private String code;
+    private List<ASToken> tokens;
+    private StreamingTokenBuffer buffer;
+
+    @Before
+    public void setUp()
+    {
+        StringBuilder source = new StringBuilder();
+        for (int i = 0; i < 60; i++)
+            source.append("a").append(i).append(" = b").append(i).append(" + ").append(i).append(";\n");
+        code = source.toString();
+        tokens = Arrays.asList(new StreamingASTokenizer().getTokens(new StringReader(code)));
+        buffer = createBuffer();
+    }
+
+    private StreamingTokenBuffer createBuffer()
+    {
+        StreamingASTokenizer tokenizer = new StreamingASTokenizer();
+        tokenizer.setPath(PATH);
+        tokenizer.setReader(new StringReader(code));
+        return new StreamingTokenBuffer(tokenizer);
+    }
+
+    private static String describe(ASToken token)
+    {
+        if (token == null || token.getType() == ASTokenTypes.EOF)
+            return "EOF";
+        return token.getType() + "@" + token.getStart();
+    }
+
+    private void consume(int count)
+    {
+        for (int i = 0; i < count; i++)
+            buffer.consume();
+    }
+
+    /**
+     * Asserts that the look-ahead tokens are the tokens of the file from an
+     * index on.
+     */
+    private void assertLookAhead(int from, int count)
+    {
+        for (int i = 1; i <= count; i++)
+        {
+            assertThat("LT(" + i + ")", describe(buffer.LT(i)), is(describe(tokens.get(from + i - 1))));
+            assertThat("LA(" + i + ")", buffer.LA(i), is(tokens.get(from + i - 1).getType()));
+        }
+    }
+
+    /**
+     * LA and LT give the tokens of the file, and the tokens after the last
+     * one are EOF.
+     */
+    @Test
+    public void StreamingTokenBuffer_lookAhead()
+    {
+        assertLookAhead(0, 20);
+        consume(7);
+        assertLookAhead(7, 20);
+        consume(tokens.size() - 7);
+        assertThat("end", describe(buffer.LT(1)), is("EOF"));
+        assertThat("after end", buffer.LA(3), is(ASTokenTypes.EOF));
+    }
+
+    /**
+     * A rewind of less than the size of the rewind buffer restores the
+     * consumed tokens. A rewind of the full size reaches the padding on the
+     * left of the buffer, and a longer one fails.
+     */
+    @Test
+    public void StreamingTokenBuffer_rewindPastPadding()
+    {
+        consume(12);
+        int mark = buffer.mark();
+        buffer.rewind(mark - (REWIND_BUFFER_SIZE - 1));
+        assertLookAhead(3, 15);
+
+        consume(REWIND_BUFFER_SIZE - 1);
+        buffer.rewind(mark - REWIND_BUFFER_SIZE);
+        assertThat("padding", describe(buffer.LT(1)), is("EOF"));
+        assertThat("after padding", describe(buffer.LT(2)), is(describe(tokens.get(3))));
+
+        try
+        {
+            buffer.rewind(buffer.mark() - REWIND_BUFFER_SIZE - 1);
+            fail("expected an exception");
+        }
+        catch (IllegalStateException e)
+        {
+            // expected
+        }
+    }
+
+    /**
+     * A look-ahead that is longer than the ring, once consuming has moved
+     * the start of the ring, grows it and keeps the order of the tokens.
+     */
+    @Test
+    public void StreamingTokenBuffer_growWhileWrapped()
+    {
+        consume(25);
+        assertLookAhead(25, 5);
+        assertLookAhead(25, 70);
+        consume(30);
+        buffer.rewind(buffer.mark() - 6);
+        assertLookAhead(49, 100);
+    }
+
+    /**
+     * LA and LT after a rewind give the tokens that were consumed.
+     */
+    @Test
+    public void StreamingTokenBuffer_lookAheadAfterRewind()
+    {
+        consume(5);
+        int mark = buffer.mark();
+        consume(4);
+        buffer.rewind(mark);
+        assertLookAhead(5, 30);
+        consume(1);
+        assertLookAhead(6, 30);
+    }
+
+    /**
+     * Random look-aheads, consumes and rewinds give the same tokens as the
+     * list based model.
+     */
+    @Test
+    public void StreamingTokenBuffer_sameAsModel()
+    {
+        ModelBuffer model = new ModelBuffer(tokens);
+        Random random = new Random(0);
+        for (int step = 0; step < 5000; step++)
+        {
+            int operation = random.nextInt(10);
+            if (operation < 5)
+            {
+                int i = 1 + random.nextInt(45);
+                assertThat("step " + step + " LT(" + i + ")", describe(buffer.LT(i)), is(describe(model.LT(i))));
+            }
+            else if (operation < 9)
+            {
+                buffer.consume();
+                model.consume();
+            }
+            else
+            {
+                int position = Math.max(0, buffer.mark() - random.nextInt(REWIND_BUFFER_SIZE + 1));
+                buffer.rewind(position);
+                model.rewind(position);
+            }
+        }
+    }
+}
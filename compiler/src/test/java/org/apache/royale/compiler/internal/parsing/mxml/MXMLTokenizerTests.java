@@ -24,9 +24,11 @@ import static org.hamcrest.core.Is.is;
 
 import java.io.Reader;
 import java.io.StringReader;
+import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.commons.io.IOUtils;
+import org.apache.royale.compiler.common.PrefixMap;
 import org.apache.royale.compiler.parsing.MXMLTokenTypes;
 import org.junit.Ignore;
 import org.junit.Test;
@@ -50,6 +52,42 @@ public class MXMLTokenizerTests
 		return tokens.toArray(new MXMLToken[0]);
 	}
 	
+	/**
+	 * Lexes MXML code into MXML tokens through an MXMLTokenStream.
+	 */
+	private MXMLToken[] stream(String code)
+	{
+		Reader reader = new StringReader(code);
+		MXMLTokenizer tokenizer = new MXMLTokenizer();
+		MXMLTokenStream stream = tokenizer.streamTokens(reader);
+		List<MXMLToken> tokens = new ArrayList<MXMLToken>();
+		while (stream.hasNext())
+			tokens.add(stream.next());
+		IOUtils.closeQuietly(tokenizer);
+		return tokens.toArray(new MXMLToken[0]);
+	}
+	
+	/**
+	 * Checks that streaming the tokens of some MXML returns the same tokens
+	 * as collecting them in a list.
+	 */
+	private void assertStreamedTokensMatch(String code)
+	{
+		MXMLToken[] expected = lex(code);
+		MXMLToken[] actual = stream(code);
+		
+		assertThat("count", actual.length, is(expected.length));
+		for (int i = 0; i < expected.length; i++)
+		{
+			assertThat(i + " type", actual[i].getType(), is(expected[i].getType()));
+			assertThat(i + " text", actual[i].getText(), is(expected[i].getText()));
+			assertThat(i + " start", actual[i].getStart(), is(expected[i].getStart()));
+			assertThat(i + " end", actual[i].getEnd(), is(expected[i].getEnd()));
+			assertThat(i + " line", actual[i].getLine(), is(expected[i].getLine()));
+			assertThat(i + " column", actual[i].getColumn(), is(expected[i].getColumn()));
+		}
+	}
+	
 	/*
 	 * Smallest processing instruction.
 	 */
@@ -820,4 +858,77 @@ public class MXMLTokenizerTests
 	    assertThat("7 type", tokens[7].getType(), is(MXMLTokenTypes.TOKEN_TAG_END));
 	    assertThat("7 text", tokens[7].getText(), is(">"));
 	}
+	
+	/*
+	 * Streamed tokens are the same as the tokens of a list.
+	 */
+	@Test
+	public void streamedTokens1()
+	{
+		assertStreamedTokensMatch(
+			"<?xml version='1.0'?>\n" +
+			"<fx:Object xmlns:fx='http://ns.adobe.com/mxml/2009' a=\"1\">\n" +
+			"  <!-- comment --><fx:Script><![CDATA[ var i:int = 1 < 2; ]]></fx:Script>\n" +
+			"  <b c='{i}'/>text &amp; more\n" +
+			"</fx:Object>");
+	}
+	
+	/*
+	 * Streamed tokens of unclosed constructs are repaired the same way.
+	 */
+	@Test
+	public void streamedTokens2()
+	{
+		assertStreamedTokensMatch("<a><b c='1'><![CDATA[ x");
+		assertStreamedTokensMatch("<a><!-- x");
+		assertStreamedTokensMatch("");
+	}
+	
+	/*
+	 * The stream steps back over the last token it returned.
+	 */
+	@Test
+	public void streamedTokens3()
+	{
+		MXMLTokenizer tokenizer = new MXMLTokenizer();
+		MXMLTokenStream stream = tokenizer.streamTokens(new StringReader("<a><b/></a>"));
+		
+		MXMLToken first = stream.next();
+		MXMLToken second = stream.next();
+		assertThat("1 text", second.getText(), is(">"));
+		assertThat("hasPrevious", stream.hasPrevious(), is(true));
+		assertThat("previous", stream.previous() == second, is(true));
+		assertThat("hasPrevious after previous", stream.hasPrevious(), is(false));
+		assertThat("nextIndex", stream.nextIndex(), is(1));
+		assertThat("next after previous", stream.next() == second, is(true));
+		assertThat("0 text", first.getText(), is("<a"));
+		assertThat("2 text", stream.next().getText(), is("<b"));
+		IOUtils.closeQuietly(tokenizer);
+	}
+	
+	/*
+	 * The namespaces of the root tag are known before its tokens are
+	 * consumed, and reading them ahead doesn't lose any token.
+	 */
+	@Test
+	public void streamedTokens4()
+	{
+		String code = "<fx:Object xmlns:fx='http://ns.adobe.com/mxml/2009' xmlns:ns1='ns1'><ns1:B/></fx:Object>";
+		MXMLTokenizer tokenizer = new MXMLTokenizer();
+		MXMLTokenStream stream = tokenizer.streamTokens(new StringReader(code));
+		
+		PrefixMap prefixMap = stream.getRootTagPrefixMap();
+		assertThat("fx", prefixMap.getNamespaceForPrefix("fx"), is("http://ns.adobe.com/mxml/2009"));
+		assertThat("ns1", prefixMap.getNamespaceForPrefix("ns1"), is("ns1"));
+		
+		List<MXMLToken> tokens = new ArrayList<MXMLToken>();
+		while (stream.hasNext())
+			tokens.add(stream.next());
+		IOUtils.closeQuietly(tokenizer);
+		
+		MXMLToken[] expected = lex(code);
+		assertThat("count", tokens.size(), is(expected.length));
+		for (int i = 0; i < expected.length; i++)
+			assertThat(i + " text", tokens.get(i).getText(), is(expected[i].getText()));
+	}
 }
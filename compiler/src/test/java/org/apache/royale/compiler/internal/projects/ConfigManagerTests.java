@@ -0,0 +1,184 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.internal.projects;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.royale.compiler.internal.parsing.as.IProjectConfigVariables;
+import org.apache.royale.compiler.internal.tree.as.ConfigConstNode;
+import org.apache.royale.compiler.internal.workspaces.Workspace;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit tests for the resolved config constants of {@link ConfigManager}.
+ */
+public class ConfigManagerTests
+{
+    private Workspace workspace;
+    private RoyaleProject swfProject;
+    private RoyaleProject jsProject;
+
+    @Before
+    public void setUp()
+    {
+        workspace = new Workspace();
+        swfProject = new RoyaleProject(workspace);
+        jsProject = new RoyaleProject(workspace);
+    }
+
+    @After
+    public void tearDown()
+    {
+        workspace.close();
+    }
+
+    private static Map<String, Object> getValues(IProjectConfigVariables variables)
+    {
+        Map<String, Object> values = new HashMap<String, Object>();
+        for (ConfigConstNode node : variables.getConfigVariables())
+            values.put(node.getNamespace() + "::" + node.getName(), node.getFoldedValue());
+        return values;
+    }
+
+    private static ConfigManager createManager(String name, String debug)
+    {
+        ConfigManager manager = new ConfigManager();
+        manager.addConfigVariable("CONFIG::" + name, "'" + name + "'");
+        manager.addConfigVariable("CONFIG::debug", debug);
+        manager.addConfigVariable("CONFIG::size", "3");
+        return manager;
+    }
+
+    /**
+     * The SWF and JS projects of a cross-compile, with the same literal
+     * defines, share the constants resolved for the first one.
+     */
+    @Test
+    public void ConfigManager_sharedDefines()
+    {
+        ConfigManager swfManager = createManager("sharedDefines", "true");
+        ConfigManager jsManager = createManager("sharedDefines", "true");
+        IProjectConfigVariables swfVariables = swfManager.getProjectConfig(swfProject);
+        IProjectConfigVariables jsVariables = jsManager.getProjectConfig(jsProject);
+
+        assertThat("literal", swfManager.getResolvedConfig().isLiteral(), is(true));
+        assertThat("shared", swfManager.getResolvedConfig() == jsManager.getResolvedConfig(), is(true));
+        assertThat("values", getValues(jsVariables), is(getValues(swfVariables)));
+        assertThat("debug", getValues(jsVariables).get("CONFIG::debug"), is((Object)Boolean.TRUE));
+
+        List<ConfigConstNode> swfNodes = swfVariables.getConfigVariables();
+        List<ConfigConstNode> jsNodes = jsVariables.getConfigVariables();
+        assertThat("new nodes", swfNodes.get(0) != jsNodes.get(0), is(true));
+    }
+
+    /**
+     * Other literal defines are resolved again.
+     */
+    @Test
+    public void ConfigManager_otherDefines()
+    {
+        ConfigManager swfManager = createManager("otherDefines", "true");
+        ConfigManager jsManager = createManager("otherDefines", "false");
+        IProjectConfigVariables swfVariables = swfManager.getProjectConfig(swfProject);
+        IProjectConfigVariables jsVariables = jsManager.getProjectConfig(jsProject);
+
+        assertThat("shared", swfManager.getResolvedConfig() == jsManager.getResolvedConfig(), is(false));
+        assertThat("swf debug", getValues(swfVariables).get("CONFIG::debug"), is((Object)Boolean.TRUE));
+        assertThat("js debug", getValues(jsVariables).get("CONFIG::debug"), is((Object)Boolean.FALSE));
+    }
+
+    /**
+     * Adding a config variable drops the resolved constants, and the next
+     * config has the new value.
+     */
+    @Test
+    public void ConfigManager_addConfigVariable()
+    {
+        ConfigManager manager = createManager("addConfigVariable", "true");
+        assertThat("before", getValues(manager.getProjectConfig(swfProject)).get("CONFIG::debug"), is((Object)Boolean.TRUE));
+
+        manager.addConfigVariable("CONFIG::debug", "false");
+        assertThat("dropped", manager.getResolvedConfig() == null, is(true));
+        assertThat("after", getValues(manager.getProjectConfig(swfProject)).get("CONFIG::debug"), is((Object)Boolean.FALSE));
+
+        Map<String, String> variables = new HashMap<String, String>();
+        variables.put("CONFIG::size", "4");
+        manager.addConfigVariables(variables);
+        assertThat("dropped again", manager.getResolvedConfig() == null, is(true));
+        assertThat("size", ((Number)getValues(manager.getProjectConfig(swfProject)).get("CONFIG::size")).intValue(), is(4));
+    }
+
+    /**
+     * A value that refers to another constant is resolved for the project,
+     * and isn't shared with another project.
+     */
+    @Test
+    public void ConfigManager_referenceNotShared()
+    {
+        ConfigManager swfManager = createManager("referenceNotShared", "true");
+        swfManager.addConfigVariable("CONFIG::release", "!CONFIG::debug");
+        ConfigManager jsManager = createManager("referenceNotShared", "true");
+        jsManager.addConfigVariable("CONFIG::release", "!CONFIG::debug");
+        IProjectConfigVariables swfVariables = swfManager.getProjectConfig(swfProject);
+        jsManager.getProjectConfig(jsProject);
+
+        assertThat("literal", swfManager.getResolvedConfig().isLiteral(), is(false));
+        assertThat("shared", swfManager.getResolvedConfig() == jsManager.getResolvedConfig(), is(false));
+        assertThat("release", getValues(swfVariables).get("CONFIG::release"), is((Object)Boolean.FALSE));
+    }
+
+    /**
+     * A value that can't be resolved to a literal is parsed again for each
+     * parser, and isn't shared.
+     */
+    @Test
+    public void ConfigManager_unresolvedValueParsedAgain()
+    {
+        ConfigManager manager = createManager("unresolvedValueParsedAgain", "true");
+        manager.addConfigVariable("CONFIG::type", "Object");
+        IProjectConfigVariables first = manager.getProjectConfig(swfProject);
+        IProjectConfigVariables second = manager.getProjectConfig(swfProject);
+
+        assertThat("folded", manager.getResolvedConfig().isFolded(), is(false));
+        assertThat("literal", manager.getResolvedConfig().isLiteral(), is(false));
+        ConfigConstNode firstType = findConst(first, "type");
+        ConfigConstNode secondType = findConst(second, "type");
+        assertThat("parsed again", firstType != secondType, is(true));
+        assertThat("initializer", secondType.getAssignedValueNode() != null, is(true));
+        assertThat("value", secondType.getFoldedValue() == null, is(true));
+    }
+
+    private static ConfigConstNode findConst(IProjectConfigVariables variables, String name)
+    {
+        for (ConfigConstNode node : variables.getConfigVariables())
+        {
+            if (node.getName().equals(name))
+                return node;
+        }
+        throw new AssertionError("no config constant " + name);
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.internal.projects;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.royale.compiler.internal.workspaces.Workspace;
+import org.apache.royale.compiler.units.ICompilationUnit;
+import org.apache.royale.utils.FilenameNormalization;
+import org.apache.royale.utils.ITestAdapter;
+import org.apache.royale.utils.TestAdapterFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit tests for {@link SourceFilePrefetcher}.
+ */
+public class SourceFilePrefetcherTests
+{
+    private static final int FILES = 200;
+
+    private ITestAdapter testAdapter = TestAdapterFactory.getTestAdapter();
+    private File folder;
+    private Workspace workspace;
+    private RoyaleProject project;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        folder = File.createTempFile(getClass().getSimpleName(), "", new File(testAdapter.getTempDir()));
+        folder.delete();
+        folder.mkdirs();
+        for (int i = 0; i < FILES; i++)
+        {
+            FileUtils.writeStringToFile(new File(folder, "p/A" + i + ".as"),
+                    "package p { public class A" + i + " { public var next:A" + ((i + 1) % FILES) + "; " +
+                    "public function f():void { var x:int = " + i + "; } } }",
+                    "UTF-8");
+        }
+
+        workspace = new Workspace();
+        project = new RoyaleProject(workspace);
+        project.setSourcePath(Collections.singletonList(new File(FilenameNormalization.normalize(folder.getAbsolutePath()))));
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        workspace.close();
+        FileUtils.deleteDirectory(folder);
+    }
+
+    private long getParsedTrees()
+    {
+        return workspace.getSyntaxTreeRetention().getStatistics().getParsedTrees();
+    }
+
+    /**
+     * Once stop() returns, the trees that were requested are built and no
+     * other tree is requested, as a target relies on when it tells the
+     * workspace that the build is done.
+     */
+    @Test(timeout = 60000)
+    public void SourceFilePrefetcher_stop() throws InterruptedException
+    {
+        SourceFilePrefetcher prefetcher = SourceFilePrefetcher.start(project);
+        prefetcher.stop();
+        int requested = prefetcher.getRequestedCount();
+        assertThat("parsed", getParsedTrees(), is((long)requested));
+
+        Thread.sleep(200);
+        assertThat("requested after stop", prefetcher.getRequestedCount(), is(requested));
+        assertThat("parsed after stop", getParsedTrees(), is((long)requested));
+    }
+
+    /**
+     * A prefetcher that isn't stopped requests the tree of every source
+     * file.
+     */
+    @Test(timeout = 60000)
+    public void SourceFilePrefetcher_all() throws InterruptedException
+    {
+        System.setProperty("royale.parse-ahead.heap-limit", "100");
+        try
+        {
+            SourceFilePrefetcher prefetcher = SourceFilePrefetcher.start(project);
+            while (prefetcher.getRequestedCount() < FILES)
+                Thread.sleep(10);
+            prefetcher.stop();
+            assertThat("parsed", getParsedTrees(), is((long)FILES));
+        }
+        finally
+        {
+            System.clearProperty("royale.parse-ahead.heap-limit");
+        }
+    }
+
+    /**
+     * The prefetcher leaves executor threads to the dependency walk, which
+     * completes while prefetches are in flight, and every tree is only
+     * parsed once.
+     */
+    @Test(timeout = 60000)
+    public void SourceFilePrefetcher_dependencyWalk() throws InterruptedException
+    {
+        System.setProperty("royale.parse-ahead.heap-limit", "100");
+        try
+        {
+            SourceFilePrefetcher prefetcher = SourceFilePrefetcher.start(project);
+            int threads = workspace.getExecutorStatistics().getThreads();
+            assertThat("in flight", prefetcher.getMaxInFlight(), is(Math.max(1, threads / 2)));
+
+            int walked = 0;
+            for (ICompilationUnit unit : project.getCompilationUnits())
+            {
+                unit.getOutgoingDependenciesRequest().get();
+                walked++;
+            }
+            prefetcher.stop();
+
+            assertThat("walked", walked, is(FILES));
+            assertThat("parsed", getParsedTrees(), is((long)FILES));
+        }
+        finally
+        {
+            System.clearProperty("royale.parse-ahead.heap-limit");
+        }
+    }
+}
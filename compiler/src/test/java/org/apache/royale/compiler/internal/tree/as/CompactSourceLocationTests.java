@@ -0,0 +1,244 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.internal.tree.as;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.royale.compiler.common.LineTable;
+import org.apache.royale.compiler.common.SourceLocation;
+import org.apache.royale.compiler.internal.filespecs.StringFileSpecification;
+import org.apache.royale.compiler.internal.parsing.as.ASParser;
+import org.apache.royale.compiler.internal.workspaces.Workspace;
+import org.apache.royale.compiler.tree.as.IASNode;
+import org.apache.royale.utils.FilenameNormalization;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit tests for the locations of syntax tree nodes that share the
+ * {@link LineTable} of their file.
+ */
+public class CompactSourceLocationTests
+{
+    private static final String CODE =
+            "package p\n" +
+            "{\n" +
+            "\tpublic class C\n" +
+            "\t{\n" +
+            "\t\tpublic var x:int = 1;\r\n" +
+            "\t\tpublic function f(a:String):String\n" +
+            "\t\t{\n" +
+            "\t\t\treturn a + \"\\n\" + x;\n" +
+            "\t\t}\n" +
+            "\t}\n" +
+            "}\n";
+
+    private Workspace workspace;
+    private String path;
+
+    @Before
+    public void setUp()
+    {
+        workspace = new Workspace();
+        path = FilenameNormalization.normalize(
+                new File(System.getProperty("java.io.tmpdir"), "CompactSourceLocation.as").getAbsolutePath());
+    }
+
+    @After
+    public void tearDown()
+    {
+        workspace.close();
+    }
+
+    private FileNode parse()
+    {
+        return ASParser.parseFile(new StringFileSpecification(path, CODE), workspace);
+    }
+
+    private static List<NodeBase> getNodes(IASNode root)
+    {
+        List<NodeBase> nodes = new ArrayList<NodeBase>();
+        addNodes(root, nodes);
+        return nodes;
+    }
+
+    private static void addNodes(IASNode node, List<NodeBase> nodes)
+    {
+        nodes.add((NodeBase)node);
+        for (int i = 0; i < node.getChildCount(); i++)
+            addNodes(node.getChild(i), nodes);
+    }
+
+    private static String describe(SourceLocation location)
+    {
+        return location.getSourcePath() + " " + location.getAbsoluteStart() + "-" + location.getAbsoluteEnd() + " " +
+               location.getLine() + ":" + location.getColumn() + "-" +
+               location.getEndLine() + ":" + location.getEndColumn();
+    }
+
+    private static List<String> describe(List<NodeBase> nodes)
+    {
+        List<String> result = new ArrayList<String>(nodes.size());
+        for (NodeBase node : nodes)
+            result.add(describe(node));
+        return result;
+    }
+
+    private static int countCompact(List<NodeBase> nodes)
+    {
+        int count = 0;
+        for (NodeBase node : nodes)
+        {
+            if (node.isCompact())
+                count++;
+        }
+        return count;
+    }
+
+    private int getLine(int offset)
+    {
+        int line = 0;
+        for (int i = 0; i < offset; i++)
+        {
+            if (CODE.charAt(i) == '\n')
+                line++;
+        }
+        return line;
+    }
+
+    private int getColumn(int offset)
+    {
+        return offset - (CODE.lastIndexOf('\n', offset - 1) + 1);
+    }
+
+    /**
+     * The nodes of a parsed file share the table of the file, and the table
+     * gives the lines and columns of the text.
+     */
+    @Test
+    public void CompactSourceLocation_parsedFile()
+    {
+        List<NodeBase> nodes = getNodes(parse());
+
+        for (NodeBase node : nodes)
+        {
+            if (node.isCompact() && node instanceof IdentifierNode && node.getAbsoluteStart() >= 0)
+            {
+                assertThat(describe(node), node.getLine(), is(getLine(node.getAbsoluteStart())));
+                assertThat(describe(node), node.getColumn(), is(getColumn(node.getAbsoluteStart())));
+            }
+        }
+        int compact = countCompact(nodes);
+        assertThat("compact nodes " + compact + " of " + nodes.size(), compact * 2 > nodes.size(), is(true));
+    }
+
+    /**
+     * Compacting the locations of a tree doesn't change any of them.
+     */
+    @Test
+    public void CompactSourceLocation_lossless()
+    {
+        FileNode fileNode = parse();
+        List<NodeBase> nodes = getNodes(fileNode);
+        List<String> expected = describe(nodes);
+        int expectedCompact = countCompact(nodes);
+
+        for (NodeBase node : nodes)
+        {
+            node.setSourceLocation(new SourceLocation(node));
+            assertThat("explicit", node.isCompact(), is(false));
+        }
+        assertThat("explicit", describe(nodes), is(expected));
+
+        fileNode.compactSourceLocations();
+        assertThat("compact", describe(nodes), is(expected));
+        assertThat("compact nodes", countCompact(nodes), is(expectedCompact));
+    }
+
+    /**
+     * Setting a line or an offset of a compact location stores its locations
+     * again, and keeps the ones that weren't set.
+     */
+    @Test
+    public void CompactSourceLocation_setter()
+    {
+        NodeBase node = null;
+        for (NodeBase n : getNodes(parse()))
+        {
+            if (n instanceof IdentifierNode && n.isCompact())
+            {
+                node = n;
+                break;
+            }
+        }
+        assertThat("compact identifier", node != null, is(true));
+        int start = node.getAbsoluteStart();
+        int line = node.getLine();
+        int column = node.getColumn();
+        int endLine = node.getEndLine();
+
+        node.setEnd(node.getAbsoluteEnd() + 100);
+        node.setEndColumn(1000);
+
+        assertThat("compact", node.isCompact(), is(false));
+        assertThat("start", node.getAbsoluteStart(), is(start));
+        assertThat("line", node.getLine(), is(line));
+        assertThat("column", node.getColumn(), is(column));
+        assertThat("end line", node.getEndLine(), is(endLine));
+        assertThat("end column", node.getEndColumn(), is(1000));
+        assertThat("path", node.getSourcePath(), is(path));
+    }
+
+    /**
+     * Locations that the table doesn't describe keep their own lines and
+     * columns.
+     */
+    @Test
+    public void CompactSourceLocation_mismatch()
+    {
+        SourceLocation first = new SourceLocation(path, 0, 5, 0, 0, 0, 5);
+        SourceLocation second = new SourceLocation(path, 10, 15, 1, 2, 1, 7);
+        SourceLocation column = new SourceLocation(path, 12, 14, 1, 3, 1, 5);
+        SourceLocation included = new SourceLocation(path + ".included", 10, 15, 1, 2, 1, 7);
+        SourceLocation unknown = new SourceLocation(path, SourceLocation.UNKNOWN, SourceLocation.UNKNOWN, 1, 2, 1, 7);
+
+        LineTable.Builder builder = new LineTable.Builder(path);
+        first.addLineStarts(builder);
+        second.addLineStarts(builder);
+        column.addLineStarts(builder);
+        included.addLineStarts(builder);
+        LineTable table = builder.build();
+
+        assertThat("lines", table.getLineCount(), is(2));
+        assertThat("first", first.compact(table), is(true));
+        assertThat("second", second.compact(table), is(true));
+        assertThat("column", column.compact(table), is(false));
+        assertThat("included", included.compact(table), is(false));
+        assertThat("unknown", unknown.compact(table), is(false));
+        assertThat("column", describe(column), is(path + " 12-14 1:3-1:5"));
+        assertThat("second", describe(second), is(path + " 10-15 1:2-1:7"));
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.internal.units;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsSame.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+
+import org.apache.royale.compiler.filespecs.FileSpecification;
+import org.apache.royale.compiler.internal.projects.RoyaleProject;
+import org.apache.royale.compiler.internal.workspaces.Workspace;
+import org.apache.royale.compiler.tree.as.IASNode;
+import org.apache.royale.compiler.units.ICompilationUnit;
+import org.apache.royale.utils.TestSourceFolder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit tests for {@link SyntaxTreeRetention} and the release and rebuilding
+ * of the syntax trees of {@link ASCompilationUnit}s.
+ */
+public class SyntaxTreeRetentionTests
+{
+    // no function bodies, which the file scope would keep parsed.
+    private static final String CODE = "package p { public class A { public var x:int; } }";
+
+    private TestSourceFolder sources;
+    private String path;
+    private Workspace workspace;
+    private RoyaleProject project;
+    private SyntaxTreeRetention retention;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        sources = new TestSourceFolder(getClass());
+        path = sources.writeSource("p/A.as", CODE);
+
+        workspace = new Workspace();
+        retention = workspace.getSyntaxTreeRetention();
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        workspace.close();
+        sources.delete();
+    }
+
+    /**
+     * Generates the code of <code>p.A</code> and checks it for problems,
+     * after which its compilation unit no longer needs its syntax tree.
+     */
+    private ICompilationUnit build(SyntaxTreeRetention.Policy policy) throws InterruptedException
+    {
+        retention.setPolicy(policy);
+        project = sources.createProject(workspace);
+
+        ICompilationUnit unit = workspace.getCompilationUnits(path, project).iterator().next();
+        unit.getOutgoingDependenciesRequest().get();
+        unit.getABCBytesRequest().get();
+        return unit;
+    }
+
+    private void assertStatistics(long parsed, long released, long rebuilt, long discarded, long retained)
+    {
+        SyntaxTreeRetention.Statistics statistics = retention.getStatistics();
+        assertThat("parsed", statistics.getParsedTrees(), is(parsed));
+        assertThat("released", statistics.getReleasedTrees(), is(released));
+        assertThat("rebuilt", statistics.getRebuiltTrees(), is(rebuilt));
+        assertThat("discarded", statistics.getDiscardedTrees(), is(discarded));
+        assertThat("retained", statistics.getRetainedTrees(), is(retained));
+        assertThat("retained characters", statistics.getRetainedCharacters() > 0, is(retained > 0));
+    }
+
+    /**
+     * With {@link SyntaxTreeRetention.Policy#KEEP} the tree stays retained.
+     */
+    @Test
+    public void SyntaxTreeRetention_keep() throws InterruptedException
+    {
+        build(SyntaxTreeRetention.Policy.KEEP);
+        assertStatistics(1, 0, 0, 0, 1);
+    }
+
+    /**
+     * With {@link SyntaxTreeRetention.Policy#SOFT} the tree is released, but
+     * it is still reachable while there is enough memory.
+     */
+    @Test
+    public void SyntaxTreeRetention_soft() throws InterruptedException
+    {
+        ICompilationUnit unit = build(SyntaxTreeRetention.Policy.SOFT);
+        assertStatistics(1, 1, 0, 0, 0);
+
+        IASNode ast = unit.getSyntaxTreeRequest().get().getAST();
+        assertThat("same tree", unit.getSyntaxTreeRequest().get().getAST(), sameInstance(ast));
+        assertStatistics(1, 1, 0, 0, 0);
+    }
+
+    /**
+     * With {@link SyntaxTreeRetention.Policy#WEAK} the tree is released.
+     */
+    @Test
+    public void SyntaxTreeRetention_weak() throws InterruptedException
+    {
+        build(SyntaxTreeRetention.Policy.WEAK);
+        assertStatistics(1, 1, 0, 0, 0);
+    }
+
+    /**
+     * A released tree that was collected is parsed again when it is needed,
+     * and the rebuilt tree is retained.
+     */
+    @Test
+    public void SyntaxTreeRetention_rebuild() throws InterruptedException
+    {
+        // keep the tree until the test holds a reference to it.
+        ASCompilationUnit unit = (ASCompilationUnit)build(SyntaxTreeRetention.Policy.KEEP);
+        WeakReference<IASNode> released = new WeakReference<IASNode>(unit.getSyntaxTreeRequest().get().getAST());
+        retention.setPolicy(SyntaxTreeRetention.Policy.WEAK);
+        unit.removeAST();
+        assertStatistics(1, 1, 0, 0, 0);
+
+        for (int i = 0; i < 100 && released.get() != null; i++)
+        {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertThat("collected", released.get() == null, is(true));
+
+        IASNode ast = unit.getSyntaxTreeRequest().get().getAST();
+        assertThat("rebuilt tree", ast != null, is(true));
+        assertStatistics(2, 1, 1, 0, 1);
+    }
+
+    /**
+     * Resetting the statistics, as each build of a long lived workspace does,
+     * keeps counting the trees that earlier builds retained, and the tree of
+     * an invalidated unit is no longer retained.
+     */
+    @Test
+    public void SyntaxTreeRetention_laterBuild() throws InterruptedException
+    {
+        build(SyntaxTreeRetention.Policy.KEEP);
+        retention.resetStatistics();
+        assertStatistics(0, 0, 0, 0, 1);
+
+        workspace.fileChanged(new FileSpecification(path));
+        assertStatistics(0, 0, 0, 1, 0);
+
+        ICompilationUnit unit = workspace.getCompilationUnits(path, project).iterator().next();
+        unit.getABCBytesRequest().get();
+        assertStatistics(1, 0, 0, 1, 1);
+    }
+}
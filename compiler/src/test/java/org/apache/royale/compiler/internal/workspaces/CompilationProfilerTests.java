@@ -0,0 +1,223 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.internal.workspaces;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.royale.compiler.internal.workspaces.CompilationProfiler.Format;
+import org.apache.royale.utils.ITestAdapter;
+import org.apache.royale.utils.TestAdapterFactory;
+import org.junit.Test;
+
+/**
+ * JUnit tests for the Chrome trace and collapsed stack outputs of
+ * {@link CompilationProfiler}.
+ */
+public class CompilationProfilerTests
+{
+    private static final String THREAD = Thread.currentThread().getName().replace(';', '_');
+
+    private ITestAdapter testAdapter = TestAdapterFactory.getTestAdapter();
+
+    private static String chromeTrace(CompilationProfiler profiler) throws IOException
+    {
+        StringWriter writer = new StringWriter();
+        profiler.writeChromeTrace(writer);
+        return writer.toString();
+    }
+
+    /**
+     * @return the lines of the collapsed stacks, each split into its stack
+     * and its self time.
+     */
+    private static List<String[]> collapsedStacks(CompilationProfiler profiler) throws IOException
+    {
+        StringWriter writer = new StringWriter();
+        profiler.writeCollapsedStacks(writer);
+        List<String[]> result = new ArrayList<String[]>();
+        for (String line : writer.toString().split("\n"))
+        {
+            if (line.isEmpty())
+                continue;
+            int space = line.lastIndexOf(' ');
+            result.add(new String[] {line.substring(0, space), line.substring(space + 1)});
+        }
+        return result;
+    }
+
+    private static int count(String s, String sub)
+    {
+        int result = 0;
+        for (int i = s.indexOf(sub); i >= 0; i = s.indexOf(sub, i + sub.length()))
+            result++;
+        return result;
+    }
+
+    /**
+     * Every completed phase is a complete event of the phase category, and
+     * the names are escaped.
+     */
+    @Test
+    public void CompilationProfiler_chromeTrace() throws IOException
+    {
+        CompilationProfiler profiler = new CompilationProfiler();
+        profiler.phaseStarted("outer");
+        profiler.phaseStarted("a\"b\\c\n");
+        profiler.phaseCompleted("a\"b\\c\n");
+        profiler.phaseCompleted("outer");
+
+        String trace = chromeTrace(profiler);
+        assertThat("start", trace.startsWith("{\"displayTimeUnit\":\"ms\",\"traceEvents\":["), is(true));
+        assertThat("end", trace.endsWith("\n]}\n"), is(true));
+        assertThat("events", count(trace, "\"ph\":\"X\""), is(2));
+        assertThat("phases", count(trace, "\"cat\":\"phase\""), is(2));
+        assertThat("outer", trace.contains("{\"name\":\"outer\","), is(true));
+        assertThat("escaped", trace.contains("{\"name\":\"a\\\"b\\\\c\\n\","), is(true));
+        assertThat("no unit", trace.contains("\"unit\""), is(false));
+        assertThat("tid", trace.contains("\"tid\":" + Thread.currentThread().getId() + ","), is(true));
+    }
+
+    /**
+     * A profiler without events writes an empty event list.
+     */
+    @Test
+    public void CompilationProfiler_emptyChromeTrace() throws IOException
+    {
+        assertThat(chromeTrace(new CompilationProfiler()),
+                is("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[\n]}\n"));
+        assertThat(collapsedStacks(new CompilationProfiler()).size(), is(0));
+    }
+
+    /**
+     * A nested phase is a frame of its own stack, and its time isn't part of
+     * the self time of the enclosing phase.
+     */
+    @Test
+    public void CompilationProfiler_collapsedStacks() throws Exception
+    {
+        CompilationProfiler profiler = new CompilationProfiler();
+        profiler.phaseStarted("outer");
+        profiler.phaseStarted("inner");
+        Thread.sleep(50);
+        profiler.phaseCompleted("inner");
+        profiler.phaseCompleted("outer");
+
+        List<String[]> stacks = collapsedStacks(profiler);
+        assertThat("stacks", stacks.size(), is(2));
+        assertThat("outer", stacks.get(0)[0], is(THREAD + ";outer"));
+        assertThat("inner", stacks.get(1)[0], is(THREAD + ";outer;inner"));
+        long outerSelf = Long.parseLong(stacks.get(0)[1]);
+        long innerSelf = Long.parseLong(stacks.get(1)[1]);
+        assertThat("inner self", innerSelf >= 50000, is(true));
+        assertThat("outer self", outerSelf < innerSelf, is(true));
+    }
+
+    /**
+     * The self times of the events on the same stack are added up, and
+     * semicolons in names don't split the frames.
+     */
+    @Test
+    public void CompilationProfiler_collapsedStacksMerged() throws Exception
+    {
+        CompilationProfiler profiler = new CompilationProfiler();
+        for (int i = 0; i < 2; i++)
+        {
+            profiler.phaseStarted("a;b");
+            Thread.sleep(20);
+            profiler.phaseCompleted("a;b");
+        }
+
+        List<String[]> stacks = collapsedStacks(profiler);
+        assertThat("stacks", stacks.size(), is(1));
+        assertThat("stack", stacks.get(0)[0], is(THREAD + ";a_b"));
+        assertThat("self", Long.parseLong(stacks.get(0)[1]) >= 40000, is(true));
+    }
+
+    /**
+     * A phase that never completes is discarded when the phase around it
+     * completes, and a completion without a start is ignored.
+     */
+    @Test
+    public void CompilationProfiler_uncompletedPhase() throws IOException
+    {
+        CompilationProfiler profiler = new CompilationProfiler();
+        profiler.phaseStarted("outer");
+        profiler.phaseStarted("failed");
+        profiler.phaseCompleted("outer");
+        profiler.phaseCompleted("unknown");
+        profiler.phaseStarted("next");
+        profiler.phaseCompleted("next");
+
+        List<String[]> stacks = collapsedStacks(profiler);
+        assertThat("stacks", stacks.size(), is(2));
+        assertThat("next", stacks.get(0)[0], is(THREAD + ";next"));
+        assertThat("outer", stacks.get(1)[0], is(THREAD + ";outer"));
+        assertThat("events", count(chromeTrace(profiler), "\"ph\":\"X\""), is(2));
+    }
+
+    /**
+     * A client build records the phases reported to the workspace and writes
+     * them in the requested format.
+     */
+    @Test
+    public void CompilationProfiler_build() throws IOException
+    {
+        File folder = File.createTempFile(getClass().getSimpleName(), "", new File(testAdapter.getTempDir()));
+        folder.delete();
+        folder.mkdirs();
+        Workspace workspace = new Workspace();
+        try
+        {
+            assertThat("not profiled", CompilationProfiler.startBuild(workspace, null) == null, is(true));
+            CompilationProfiler.completeBuild(workspace, null, null, null);
+
+            File collapsed = new File(folder, "profile/build.txt");
+            CompilationProfiler profiler = CompilationProfiler.startBuild(workspace, collapsed);
+            assertThat("delegate", workspace.getProfilingDelegate() == profiler, is(true));
+            CompilationProfiler.startPhase(workspace, "link");
+            CompilationProfiler.completePhase(workspace, "link");
+            CompilationProfiler.completeBuild(workspace, profiler, collapsed, "Collapsed");
+            assertThat("removed", workspace.getProfilingDelegate() == null, is(true));
+            String text = FileUtils.readFileToString(collapsed, "UTF-8");
+            assertThat("collapsed", text.startsWith(THREAD + ";link "), is(true));
+
+            File chrome = new File(folder, "build.json");
+            profiler = CompilationProfiler.startBuild(workspace, chrome);
+            CompilationProfiler.startPhase(workspace, "link");
+            CompilationProfiler.completePhase(workspace, "link");
+            CompilationProfiler.completeBuild(workspace, profiler, chrome, "unknown");
+            text = FileUtils.readFileToString(chrome, "UTF-8");
+            assertThat("chrome", text.contains("{\"name\":\"link\",\"cat\":\"phase\",\"ph\":\"X\""), is(true));
+        }
+        finally
+        {
+            workspace.close();
+            FileUtils.deleteDirectory(folder);
+        }
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.internal.workspaces;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.royale.utils.FilenameNormalization;
+import org.apache.royale.utils.ITestAdapter;
+import org.apache.royale.utils.TestAdapterFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit tests for {@link FileChangeTracker}.
+ */
+public class FileChangeTrackerTests
+{
+    private ITestAdapter testAdapter = TestAdapterFactory.getTestAdapter();
+    private File folder;
+    private File sourceFolder;
+    private File library;
+    private Workspace workspace;
+    private FileChangeTracker tracker;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        folder = File.createTempFile(getClass().getSimpleName(), "", new File(testAdapter.getTempDir()));
+        folder.delete();
+        folder.mkdirs();
+        sourceFolder = new File(folder, "src");
+        FileUtils.writeStringToFile(new File(sourceFolder, "p/A.as"), "package p { public class A {} }", "UTF-8");
+        FileUtils.writeStringToFile(new File(sourceFolder, "notes.txt"), "not a source file", "UTF-8");
+        library = new File(folder, "libs/library.swc");
+        FileUtils.writeStringToFile(library, "not read by the tracker", "UTF-8");
+        workspace = new Workspace();
+        tracker = new FileChangeTracker(workspace);
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        workspace.close();
+        FileUtils.deleteDirectory(folder);
+    }
+
+    private int notifyWorkspace()
+    {
+        return tracker.notifyWorkspace(Collections.singletonList(sourceFolder));
+    }
+
+    private void snapshot()
+    {
+        tracker.snapshot(Collections.singletonList(sourceFolder), Collections.singletonList(library));
+    }
+
+    private boolean isKnown(File file)
+    {
+        return workspace.getKnownFilePaths().contains(FilenameNormalization.normalize(file.getAbsolutePath()));
+    }
+
+    private static void touch(File file)
+    {
+        file.setLastModified(file.lastModified() - 10000);
+    }
+
+    /**
+     * Nothing is reported before the first snapshot, or when nothing changed.
+     */
+    @Test
+    public void FileChangeTracker_unchanged()
+    {
+        assertThat("before snapshot", notifyWorkspace(), is(0));
+        snapshot();
+        assertThat("unchanged", notifyWorkspace(), is(0));
+        assertThat("known", isKnown(new File(sourceFolder, "p/A.as")), is(false));
+    }
+
+    /**
+     * A changed source file is reported as changed, and new source files
+     * are reported as added.
+     */
+    @Test
+    public void FileChangeTracker_sourceChanges() throws IOException
+    {
+        snapshot();
+        touch(new File(sourceFolder, "p/A.as"));
+        FileUtils.writeStringToFile(new File(sourceFolder, "p/B.as"), "package p { public class B {} }", "UTF-8");
+        FileUtils.writeStringToFile(new File(sourceFolder, "other.txt"), "not a source file", "UTF-8");
+
+        assertThat("count", notifyWorkspace(), is(2));
+        assertThat("changed", isKnown(new File(sourceFolder, "p/A.as")), is(true));
+        assertThat("added", isKnown(new File(sourceFolder, "p/B.as")), is(true));
+        assertThat("other", isKnown(new File(sourceFolder, "other.txt")), is(false));
+
+        snapshot();
+        assertThat("after snapshot", notifyWorkspace(), is(0));
+    }
+
+    /**
+     * A tracked file that is saved while a build runs keeps the modification
+     * time read when the build started, so the next build reports it.
+     */
+    @Test
+    public void FileChangeTracker_changedDuringBuild()
+    {
+        File file = new File(sourceFolder, "p/A.as");
+        snapshot();
+        notifyWorkspace();
+        touch(file);
+        snapshot();
+
+        assertThat("count", notifyWorkspace(), is(1));
+        assertThat("changed", isKnown(file), is(true));
+        snapshot();
+        assertThat("after snapshot", notifyWorkspace(), is(0));
+    }
+
+    /**
+     * A file that is found by a build, and was saved after the build started,
+     * is reported by the next build although it wasn't tracked before.
+     */
+    @Test
+    public void FileChangeTracker_addedDuringBuild() throws IOException
+    {
+        File file = new File(sourceFolder, "p/B.as");
+        snapshot();
+        notifyWorkspace();
+        FileUtils.writeStringToFile(file, "package p { public class B {} }", "UTF-8");
+        file.setLastModified(System.currentTimeMillis() + 10000);
+        snapshot();
+
+        assertThat("count", notifyWorkspace(), is(1));
+        assertThat("added", isKnown(file), is(true));
+    }
+
+    /**
+     * A removed source file is reported as removed.
+     */
+    @Test
+    public void FileChangeTracker_sourceRemoved()
+    {
+        File file = new File(sourceFolder, "p/A.as");
+        snapshot();
+        touch(file);
+        notifyWorkspace();
+        snapshot();
+        file.delete();
+
+        assertThat("count", notifyWorkspace(), is(1));
+        assertThat("removed", isKnown(file), is(false));
+    }
+
+    /**
+     * A changed library is given to the workspace again, so that it is read
+     * again, although the workspace doesn't know its path.
+     */
+    @Test
+    public void FileChangeTracker_libraryChanged()
+    {
+        snapshot();
+        assertThat("known", isKnown(library), is(false));
+        touch(library);
+
+        assertThat("count", notifyWorkspace(), is(1));
+        assertThat("added", isKnown(library), is(true));
+    }
+
+    /**
+     * A library that isn't given to the snapshot isn't tracked.
+     */
+    @Test
+    public void FileChangeTracker_libraryNotTracked()
+    {
+        tracker.snapshot(Collections.singletonList(sourceFolder), null);
+        touch(library);
+
+        assertThat("count", notifyWorkspace(), is(0));
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.internal.workspaces;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.util.EnumSet;
+
+import org.apache.royale.compiler.internal.definitions.VariableDefinition;
+import org.apache.royale.compiler.internal.filespecs.StringFileSpecification;
+import org.apache.royale.compiler.internal.parsing.as.ASParser;
+import org.apache.royale.compiler.internal.parsing.as.ASToken;
+import org.apache.royale.compiler.internal.parsing.as.ASTokenTypes;
+import org.apache.royale.compiler.internal.parsing.as.StreamingASTokenizer;
+import org.apache.royale.compiler.internal.scopes.ASFileScope;
+import org.apache.royale.compiler.internal.tree.as.FileNode;
+import org.apache.royale.compiler.parsing.IASToken;
+import org.apache.royale.compiler.tree.as.IASNode;
+import org.apache.royale.compiler.tree.as.IClassNode;
+import org.apache.royale.compiler.tree.as.IFileNode;
+import org.apache.royale.compiler.tree.as.IPackageNode;
+import org.apache.royale.compiler.tree.as.IScopedNode;
+import org.apache.royale.utils.FilenameNormalization;
+import org.junit.Test;
+
+/**
+ * JUnit tests for {@link NameInterner} and the tokenizers and scopes that
+ * share their names through it.
+ */
+public class NameInternerTests
+{
+    private static IASToken[] tokenize(NameInterner nameInterner, String code)
+    {
+        StreamingASTokenizer tokenizer = new StreamingASTokenizer();
+        tokenizer.setNameInterner(nameInterner);
+        return tokenizer.getTokens(code);
+    }
+
+    private static FileNode parse(Workspace workspace, String fileName, String code)
+    {
+        String path = FilenameNormalization.normalize(
+                new File(System.getProperty("java.io.tmpdir"), fileName).getAbsolutePath());
+        FileNode fileNode = ASParser.parseFile(new StringFileSpecification(path, code), workspace);
+        fileNode.runPostProcess(EnumSet.of(IASNode.PostProcessStep.POPULATE_SCOPE));
+        return fileNode;
+    }
+
+    private static IClassNode getClassNode(IFileNode fileNode)
+    {
+        IPackageNode packageNode = (IPackageNode)fileNode.getChild(0);
+        IScopedNode block = packageNode.getScopedNode();
+        return (IClassNode)block.getChild(0);
+    }
+
+    /**
+     * Equal names are interned to the first instance, and only the first one
+     * is counted as a miss.
+     */
+    @Test
+    public void NameInterner_intern()
+    {
+        NameInterner nameInterner = new NameInterner();
+        String first = new String("internFirstInstance");
+
+        assertThat("first", nameInterner.intern(first) == first, is(true));
+        assertThat("equal", nameInterner.intern(new String("internFirstInstance")) == first, is(true));
+        assertThat("null", nameInterner.intern(null) == null, is(true));
+        assertThat("lookups", nameInterner.getLookupCount(), is(2L));
+        assertThat("misses", nameInterner.getMissCount(), is(1L));
+    }
+
+    /**
+     * A disabled interner returns its argument and doesn't count it.
+     */
+    @Test
+    public void NameInterner_disabled()
+    {
+        NameInterner nameInterner = new NameInterner();
+        String first = nameInterner.intern(new String("disabledInstance"));
+        nameInterner.setEnabled(false);
+
+        String other = new String("disabledInstance");
+        assertThat("not interned", nameInterner.intern(other) == other, is(true));
+        assertThat("lookups", nameInterner.getLookupCount(), is(1L));
+
+        nameInterner.setEnabled(true);
+        assertThat("enabled", nameInterner.intern(other) == first, is(true));
+    }
+
+    /**
+     * Each workspace has its own table.
+     */
+    @Test
+    public void NameInterner_perWorkspace()
+    {
+        Workspace first = new Workspace();
+        Workspace second = new Workspace();
+        try
+        {
+            String name = first.getNameInterner().intern(new String("workspaceName"));
+            String other = new String("workspaceName");
+
+            assertThat("other workspace", second.getNameInterner().intern(other) == other, is(true));
+            assertThat("same workspace", first.getNameInterner().intern(other) == name, is(true));
+        }
+        finally
+        {
+            first.close();
+            second.close();
+        }
+    }
+
+    /**
+     * The occurrences of an identifier in a file share one string, and only
+     * the first occurrence is looked up in the table.
+     */
+    @Test
+    public void NameInterner_tokenizerCache()
+    {
+        NameInterner nameInterner = new NameInterner();
+        IASToken[] tokens = tokenize(nameInterner, "cacheA = cacheB + cacheA; cacheB(cacheA);");
+
+        assertThat("lookups", nameInterner.getLookupCount(), is(2L));
+        String a = null;
+        String b = null;
+        int count = 0;
+        for (IASToken token : tokens)
+        {
+            if (token.getType() != ASTokenTypes.TOKEN_IDENTIFIER)
+                continue;
+            count++;
+            String text = token.getText();
+            if ("cacheA".equals(text))
+            {
+                if (a == null)
+                    a = text;
+                assertThat("same A", text == a, is(true));
+            }
+            else
+            {
+                if (b == null)
+                    b = text;
+                assertThat("same B", text == b, is(true));
+            }
+        }
+        assertThat("identifiers", count, is(5));
+    }
+
+    /**
+     * Files tokenized with the same table share the text of their common
+     * identifiers.
+     */
+    @Test
+    public void NameInterner_sharedBetweenTokenizers()
+    {
+        NameInterner nameInterner = new NameInterner();
+        ASToken first = (ASToken)tokenize(nameInterner, "sharedName;")[0];
+        ASToken second = (ASToken)tokenize(nameInterner, "sharedName = sharedName;")[2];
+
+        assertThat("text", second.getText(), is("sharedName"));
+        assertThat("shared", first.getText() == second.getText(), is(true));
+        assertThat("misses", nameInterner.getMissCount(), is(1L));
+    }
+
+    /**
+     * The syntax trees and definitions of the files parsed in a workspace
+     * share their names, including the base names cut from qualified names.
+     */
+    @Test
+    public void NameInterner_parsedFiles()
+    {
+        Workspace workspace = new Workspace();
+        try
+        {
+            FileNode a = parse(workspace, "NameInternerA.as",
+                    "package p { public class SharedClass { public var x:SharedClass; } }");
+            FileNode b = parse(workspace, "NameInternerB.as",
+                    "package q { public class SharedClass { } }");
+
+            IClassNode classA = getClassNode(a);
+            IClassNode classB = getClassNode(b);
+            assertThat("class names", classA.getName() == classB.getName(), is(true));
+            assertThat("definition names",
+                    classA.getDefinition().getBaseName() == classB.getDefinition().getBaseName(), is(true));
+
+            ASFileScope scope = a.getFileScope();
+            VariableDefinition variable = new VariableDefinition(new String("r.SharedClass"));
+            scope.addDefinition(variable);
+            assertThat("qualified name", variable.getBaseName() == classA.getName(), is(true));
+        }
+        finally
+        {
+            workspace.close();
+        }
+    }
+}
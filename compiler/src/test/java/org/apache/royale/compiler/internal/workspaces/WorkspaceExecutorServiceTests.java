@@ -0,0 +1,319 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.internal.workspaces;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.royale.compiler.internal.workspaces.WorkspaceExecutorService.Statistics;
+import org.apache.royale.compiler.internal.workspaces.WorkspaceExecutorService.Strategy;
+import org.junit.Test;
+
+/**
+ * JUnit tests for the strategies of {@link WorkspaceExecutorService}.
+ */
+public class WorkspaceExecutorServiceTests
+{
+    private static final int TASKS = 20;
+
+    /**
+     * Runs tasks, and checks that they were all counted.
+     */
+    private static void assertRunsTasks(WorkspaceExecutorService executor) throws Exception
+    {
+        @SuppressWarnings("unchecked")
+        Future<Integer>[] futures = new Future[TASKS];
+        for (int i = 0; i < TASKS; i++)
+        {
+            final int value = i;
+            futures[i] = executor.submit(new Callable<Integer>()
+            {
+                @Override
+                public Integer call()
+                {
+                    return value * 2;
+                }
+            });
+        }
+        for (int i = 0; i < TASKS; i++)
+            assertThat("result " + i, futures[i].get(), is(i * 2));
+
+        Statistics statistics = executor.getStatistics();
+        assertThat("submitted", statistics.getSubmittedTasks(), is((long)TASKS));
+        assertThat("completed", statistics.getCompletedTasks(), is((long)TASKS));
+        assertThat("active", statistics.getActiveTasks(), is(0));
+    }
+
+    /**
+     * When the only pool thread is busy, a task runs on the thread that
+     * submits it.
+     */
+    private static void assertCallerRuns(Strategy strategy) throws Exception
+    {
+        WorkspaceExecutorService executor = WorkspaceExecutorService.create(strategy, 1);
+        try
+        {
+            assertThat("strategy", executor.getStrategy(), is(strategy));
+            assertRunsTasks(executor);
+
+            final Thread caller = Thread.currentThread();
+            final CountDownLatch started = new CountDownLatch(1);
+            final CountDownLatch release = new CountDownLatch(1);
+            Runnable blocker = new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    if (Thread.currentThread() == caller)
+                        return;
+                    started.countDown();
+                    try
+                    {
+                        release.await();
+                    }
+                    catch (InterruptedException e)
+                    {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            };
+            // A pool thread that is between two tasks can't take a new one
+            // yet, and the blocker then returns on the caller: try again.
+            Future<?> blocking = executor.submit(blocker);
+            while (!started.await(10, TimeUnit.MILLISECONDS))
+                blocking = executor.submit(blocker);
+            executor.resetStatistics();
+
+            Future<Boolean> onCaller = executor.submit(new Callable<Boolean>()
+            {
+                @Override
+                public Boolean call()
+                {
+                    return Thread.currentThread() == caller;
+                }
+            });
+            assertThat("ran on caller", onCaller.get(), is(true));
+            release.countDown();
+            blocking.get();
+
+            Statistics statistics = executor.getStatistics();
+            assertThat("caller run", statistics.getCallerRunTasks(), is(1L));
+            assertThat("peak active", statistics.getPeakActiveTasks(), is(2));
+            assertThat("threads", statistics.getThreads(), is(1));
+            assertThat("has utilization", statistics.hasUtilization(), is(true));
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * The default executor is the one selected by the system properties, so
+     * that a build without executor options can go back to it.
+     */
+    @Test
+    public void WorkspaceExecutorService_defaults() throws Exception
+    {
+        assertThat("strategy", WorkspaceExecutorService.getDefaultStrategy(), is(Strategy.THREAD_POOL));
+        assertThat("threads", WorkspaceExecutorService.getDefaultThreads(), is(WorkspaceExecutorService.DEFAULT_THREADS));
+
+        System.setProperty("royale.workspace.executor", "fixed");
+        System.setProperty("royale.workspace.threads", "3");
+        try
+        {
+            assertThat("strategy", WorkspaceExecutorService.getDefaultStrategy(), is(Strategy.FIXED));
+            assertThat("threads", WorkspaceExecutorService.getDefaultThreads(), is(3));
+
+            WorkspaceExecutorService executor = WorkspaceExecutorService.createDefault();
+            try
+            {
+                assertThat("created strategy", executor.getStrategy(), is(Strategy.FIXED));
+                assertThat("created threads", executor.getStatistics().getThreads(), is(3));
+            }
+            finally
+            {
+                executor.shutdown();
+            }
+        }
+        finally
+        {
+            System.clearProperty("royale.workspace.executor");
+            System.clearProperty("royale.workspace.threads");
+        }
+    }
+
+    @Test
+    public void WorkspaceExecutorService_threadPool() throws Exception
+    {
+        assertCallerRuns(Strategy.THREAD_POOL);
+    }
+
+    @Test
+    public void WorkspaceExecutorService_fixed() throws Exception
+    {
+        assertCallerRuns(Strategy.FIXED);
+    }
+
+    /**
+     * A fork-join pool with one thread finishes a task whose worker waits in
+     * awaitUninterruptibly() for a task queued behind it, because the pool
+     * starts a spare thread while the worker is blocked.
+     */
+    @Test(timeout = 30000)
+    public void WorkspaceExecutorService_forkJoinCompensates() throws Exception
+    {
+        WorkspaceExecutorService executor = WorkspaceExecutorService.create(Strategy.FORK_JOIN, 1);
+        try
+        {
+            assertThat("strategy", executor.getStrategy(), is(Strategy.FORK_JOIN));
+            assertRunsTasks(executor);
+            assertThat("caller run", executor.getStatistics().getCallerRunTasks(), is(0L));
+
+            final WorkspaceExecutorService pool = executor;
+            Future<Boolean> waiter = executor.submit(new Callable<Boolean>()
+            {
+                @Override
+                public Boolean call()
+                {
+                    final ReentrantLock lock = new ReentrantLock();
+                    final Condition done = lock.newCondition();
+                    final boolean[] finished = new boolean[1];
+                    pool.submit(new Runnable()
+                    {
+                        @Override
+                        public void run()
+                        {
+                            lock.lock();
+                            try
+                            {
+                                finished[0] = true;
+                                done.signalAll();
+                            }
+                            finally
+                            {
+                                lock.unlock();
+                            }
+                        }
+                    });
+
+                    lock.lock();
+                    try
+                    {
+                        while (!finished[0])
+                            WorkspaceExecutorService.awaitUninterruptibly(done);
+                        return finished[0];
+                    }
+                    finally
+                    {
+                        lock.unlock();
+                    }
+                }
+            });
+            assertThat("finished", waiter.get(20, TimeUnit.SECONDS), is(true));
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Virtual threads are used where the runtime has them, without a
+     * utilization. Older runtimes get a fork-join pool instead.
+     */
+    @Test
+    public void WorkspaceExecutorService_virtual() throws Exception
+    {
+        WorkspaceExecutorService executor = WorkspaceExecutorService.create(Strategy.VIRTUAL, 4);
+        try
+        {
+            assertRunsTasks(executor);
+            Statistics statistics = executor.getStatistics();
+            if (WorkspaceExecutorService.isVirtualThreadSupported())
+            {
+                assertThat("strategy", executor.getStrategy(), is(Strategy.VIRTUAL));
+                assertThat("has utilization", statistics.hasUtilization(), is(false));
+                assertThat("utilization", statistics.getUtilization(), is(0.0));
+                assertThat("reported", statistics.toString().contains("utilization"), is(false));
+            }
+            else
+            {
+                assertThat("strategy", executor.getStrategy(), is(Strategy.FORK_JOIN));
+                assertThat("threads", statistics.getThreads(), is(4));
+                assertThat("has utilization", statistics.hasUtilization(), is(true));
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * The wait on a thread that isn't a fork-join worker returns once the
+     * condition is signalled.
+     */
+    @Test(timeout = 30000)
+    public void WorkspaceExecutorService_awaitOutsidePool() throws Exception
+    {
+        final ReentrantLock lock = new ReentrantLock();
+        final Condition done = lock.newCondition();
+        final boolean[] finished = new boolean[1];
+        Thread signaller = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                lock.lock();
+                try
+                {
+                    finished[0] = true;
+                    done.signalAll();
+                }
+                finally
+                {
+                    lock.unlock();
+                }
+            }
+        };
+
+        lock.lock();
+        try
+        {
+            signaller.start();
+            while (!finished[0])
+                WorkspaceExecutorService.awaitUninterruptibly(done);
+        }
+        finally
+        {
+            lock.unlock();
+        }
+        signaller.join();
+        assertThat("finished", finished[0], is(true));
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.royale.compiler.internal.projects.RoyaleProject;
+import org.apache.royale.compiler.internal.workspaces.Workspace;
+
+/**
+ * A temporary folder of source files for the tests that compile a few files
+ * in a workspace. The sources are in the <code>src</code> folder of the
+ * temporary folder, which leaves room for other files of the test.
+ */
+public class TestSourceFolder
+{
+    /**
+     * Creates an empty temporary folder.
+     *
+     * @param testClass The test, whose name starts the name of the folder.
+     */
+    public TestSourceFolder(Class<?> testClass) throws IOException
+    {
+        root = File.createTempFile(testClass.getSimpleName(), "", new File(testAdapter.getTempDir()));
+        root.delete();
+        root.mkdirs();
+        sourceFolder = new File(FilenameNormalization.normalize(new File(root, "src").getAbsolutePath()));
+        sourceFolder.mkdirs();
+    }
+
+    private final ITestAdapter testAdapter = TestAdapterFactory.getTestAdapter();
+    private final File root;
+    private final File sourceFolder;
+
+    /**
+     * @return the temporary folder.
+     */
+    public File getRoot()
+    {
+        return root;
+    }
+
+    /**
+     * @return the folder of the source files.
+     */
+    public File getSourceFolder()
+    {
+        return sourceFolder;
+    }
+
+    /**
+     * Writes a source file, replacing the file if it exists.
+     *
+     * @param relativePath The path of the file in the source folder.
+     * @param code The text of the file.
+     * @return the normalized path of the file.
+     */
+    public String writeSource(String relativePath, String code) throws IOException
+    {
+        File file = new File(sourceFolder, relativePath);
+        FileUtils.writeStringToFile(file, code, "UTF-8");
+        return FilenameNormalization.normalize(file.getAbsolutePath());
+    }
+
+    /**
+     * Creates a project whose source path is the source folder, with
+     * playerglobal as its library when the test environment has it.
+     *
+     * @param workspace The workspace of the project.
+     * @return the project.
+     */
+    public RoyaleProject createProject(Workspace workspace)
+    {
+        RoyaleProject project = new RoyaleProject(workspace);
+        project.setSourcePath(Collections.singletonList(sourceFolder));
+        File playerglobal = testAdapter.getPlayerglobal();
+        if (playerglobal != null && playerglobal.isFile())
+            project.setLibraries(Collections.singletonList(playerglobal));
+        return project;
+    }
+
+    /**
+     * Deletes the temporary folder.
+     */
+    public void delete() throws IOException
+    {
+        FileUtils.deleteDirectory(root);
+    }
+}